@@ -0,0 +1,151 @@
+/**
+ * AppResourceMonitor follows the cpu and memory usage of the running applications
+ * so that the launcher can choose which application to kill (KillApplication, forceKillAppFromPackageName)
+ * from their real resource usage.
+ * <p>
+ * The running processes are mapped to their packages with ActivityManager, then
+ * ProcessSampler reads /proc periodically on the monitor thread.
+ *
+ * @see ProcessSampler
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+
+import java.io.File;
+import java.util.List;
+
+public class AppResourceMonitor {
+
+    /** Default sampling period */
+    public static final int DEFAULT_SAMPLING_PERIOD_MS = 2000;
+
+    /** The process list is asked to ActivityManager every PROCESS_LIST_REFRESH_COUNT samples */
+    static final int PROCESS_LIST_REFRESH_COUNT = 5;
+
+    private final ActivityManager mActivityManager;
+    private final Handler         mHandler;
+    private final ProcessSampler  mSampler;
+    private final int             mSamplingPeriodMs;
+
+    // Reused to give the process list to the sampler :
+    private final String[] mPackageNames = new String[ProcessSampler.MAX_PROCESSES];
+    private final int[]    mPids         = new int[ProcessSampler.MAX_PROCESSES];
+
+    private int              mSampleCount = 0;
+    private volatile boolean mRunning     = false;
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            if (mSampleCount % PROCESS_LIST_REFRESH_COUNT == 0) {
+                refreshProcessList();
+            }
+            mSampleCount++;
+            mSampler.sample(SystemClock.elapsedRealtime());
+            mHandler.postDelayed(this, mSamplingPeriodMs);
+        }
+    };
+
+    public AppResourceMonitor(Context context, int samplingPeriodMs, int windowSize)
+    {
+        mActivityManager  = (ActivityManager) context.getApplicationContext().getSystemService(Context.ACTIVITY_SERVICE);
+        mHandler          = MonitorThread.getHandler();
+        mSamplingPeriodMs = samplingPeriodMs > 0 ? samplingPeriodMs : DEFAULT_SAMPLING_PERIOD_MS;
+        mSampler          = new ProcessSampler(new File(ProcessSampler.DEFAULT_PROC_ROOT),
+                                               (int) Os.sysconf(OsConstants._SC_CLK_TCK),
+                                               Os.sysconf(OsConstants._SC_PAGESIZE),
+                                               windowSize);
+    }
+
+    /**
+     * Start the periodic sampling
+     */
+    public void start()
+    {
+        if (mRunning) {
+            return;
+        }
+        mRunning     = true;
+        mSampleCount = 0;
+        mHandler.post(mSampleRunnable);
+        Log.d("LynxAndroidSystem", "AppResourceMonitor started with period (ms) : " + mSamplingPeriodMs);
+    }
+
+    /**
+     * Stop the periodic sampling
+     */
+    public void stop()
+    {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mHandler.removeCallbacks(mSampleRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSampler.close();
+            }
+        });
+        Log.d("LynxAndroidSystem", "AppResourceMonitor stopped");
+    }
+
+    /**
+     * Get the usage of all running applications
+     *
+     * @return String packageName$pid$cpuPerMille$rssInKB|... sorted by cpu usage
+     */
+    public String getPackedTable() {
+        return mSampler.getPackedTable();
+    }
+
+    /**
+     * Get the sampler, to read the usage of one package
+     *
+     * @return ProcessSampler
+     */
+    public ProcessSampler getSampler() {
+        return mSampler;
+    }
+
+    /**
+     * Map the running processes to their package. Called on the monitor thread.
+     * Note that the calling application needs to be a system app to see the processes of the other applications.
+     */
+    private void refreshProcessList()
+    {
+        List<ActivityManager.RunningAppProcessInfo> processes = mActivityManager.getRunningAppProcesses();
+        if (processes == null) {
+            return;
+        }
+
+        int count = 0;
+        for (ActivityManager.RunningAppProcessInfo process : processes)
+        {
+            if (count >= ProcessSampler.MAX_PROCESSES) {
+                break;
+            }
+            if (process.pkgList == null || process.pkgList.length == 0) {
+                continue;
+            }
+            mPackageNames[count] = process.pkgList[0];
+            mPids[count]         = process.pid;
+            count++;
+        }
+
+        mSampler.setProcesses(mPackageNames, mPids, count);
+    }
+}
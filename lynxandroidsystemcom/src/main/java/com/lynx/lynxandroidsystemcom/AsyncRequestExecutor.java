@@ -0,0 +1,254 @@
+/**
+ * AsyncRequestExecutor runs the long library calls (binder calls, process executions...)
+ * out of the Unity main thread.
+ * <p>
+ * Each request gets an id returned immediately to the caller. The requests are run on a small
+ * pool of threads, by priority then by order of arrival. When a request ends, AsyncRequestResult
+ * is called on the unity object with id$status$result where status is one of the STATUS_ values.
+ * A request can be cancelled, and a timeout can be given : exactly one result is sent per request.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AsyncRequestExecutor {
+
+    // Priorities, the lowest value is run first :
+    public static final int PRIORITY_HIGH   = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW    = 2;
+
+    // Status sent to Unity with the result :
+    public static final int STATUS_SUCCESS   = 0;
+    public static final int STATUS_ERROR     = 1;
+    public static final int STATUS_TIMEOUT   = 2;
+    public static final int STATUS_CANCELLED = 3;
+
+    /** Number of threads that run the requests */
+    static final int THREAD_COUNT = 2;
+
+    /**
+     * The work of a request
+     */
+    public interface Task {
+        /**
+         * Do the work. Called on a thread of the executor.
+         *
+         * @return the result sent to Unity
+         */
+        String run() throws Exception;
+    }
+
+    /**
+     * Listener of the results, by default the results are sent to Unity
+     */
+    public interface ResultListener {
+        void onResult(int requestId, int status, String result);
+    }
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler            mTimeoutHandler;
+    private final AtomicInteger      mNextRequestId = new AtomicInteger(1);
+    private final AtomicLong         mNextSequence  = new AtomicLong(0);
+    private final Map<Integer, Request> mRequests   = new ConcurrentHashMap<Integer, Request>();
+    private volatile ResultListener  mResultListener = null;
+
+    public AsyncRequestExecutor()
+    {
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger mThreadCount = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "LynxAsyncRequest-" + mThreadCount.getAndIncrement());
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+        mTimeoutHandler = MonitorThread.getHandler();
+    }
+
+    /**
+     * Replace the default listener that sends the results to Unity
+     *
+     * @param  listener the new listener, null to send the results to Unity again
+     */
+    public void setResultListener(ResultListener listener) {
+        mResultListener = listener;
+    }
+
+    /**
+     * Submit a request
+     *
+     * @param  name      name of the request, for the logs
+     * @param  task      the work to do
+     * @param  priority  one of the PRIORITY_ values
+     * @param  timeoutMs maximum duration of the request from its submission, 0 for no timeout
+     * @return the id of the request
+     */
+    public int submit(String name, Task task, int priority, long timeoutMs)
+    {
+        final Request request = new Request(mNextRequestId.getAndIncrement(), name, task, priority, mNextSequence.getAndIncrement());
+        mRequests.put(request.mId, request);
+
+        if (timeoutMs > 0) {
+            mTimeoutHandler.postDelayed(request.mTimeoutRunnable, timeoutMs);
+        }
+
+        mExecutor.execute(request);
+
+        Log.d("LynxAndroidSystem", "Async request " + request.mId + " (" + name + ") submitted with priority " + priority);
+        return request.mId;
+    }
+
+    /**
+     * Cancel a request. If the request is running, its thread is interrupted and its result is ignored.
+     *
+     * @param  requestId id given by submit
+     * @return true if the request was not finished yet
+     */
+    public boolean cancel(int requestId)
+    {
+        Request request = mRequests.get(requestId);
+        if (request == null) {
+            return false;
+        }
+        return request.finish(STATUS_CANCELLED, null);
+    }
+
+    /**
+     * Get the number of requests not finished yet
+     *
+     * @return int
+     */
+    public int getPendingRequestCount() {
+        return mRequests.size();
+    }
+
+    private void sendResult(int requestId, int status, String result)
+    {
+        ResultListener listener = mResultListener;
+        if (listener != null) {
+            listener.onResult(requestId, status, result);
+        } else {
+            LynxAndroidSystemComMng.sendUnityMessage("AsyncRequestResult", requestId + "$" + status + "$" + (result == null ? "" : result));
+        }
+    }
+
+    /**
+     * A submitted request
+     */
+    private class Request implements Runnable, Comparable<Request> {
+
+        private static final int STATE_PENDING  = 0;
+        private static final int STATE_RUNNING  = 1;
+        private static final int STATE_FINISHED = 2;
+
+        final int    mId;
+        final String mName;
+        final Task   mTask;
+        final int    mPriority;
+        final long   mSequence;
+
+        final AtomicInteger mState = new AtomicInteger(STATE_PENDING);
+        volatile Thread     mThread = null;
+
+        final Runnable mTimeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (finish(STATUS_TIMEOUT, null)) {
+                    Log.w("LynxAndroidSystem", "Async request " + mId + " (" + mName + ") timeout");
+                }
+            }
+        };
+
+        Request(int id, String name, Task task, int priority, long sequence) {
+            mId       = id;
+            mName     = name;
+            mTask     = task;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!mState.compareAndSet(STATE_PENDING, STATE_RUNNING)) {
+                return; // cancelled or timeout before start
+            }
+
+            mThread = Thread.currentThread();
+            try {
+                String result = mTask.run();
+                finish(STATUS_SUCCESS, result);
+            } catch (Exception e) {
+                Log.e("LynxAndroidSystem", "Async request " + mId + " (" + mName + ") error : ", e);
+                finish(STATUS_ERROR, e.toString());
+            } finally {
+                synchronized (this) {
+                    mThread = null;
+                    // clear the interrupt flag of a cancelled request before the thread runs the next one.
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        /**
+         * Finish the request and send its result, only once.
+         *
+         * @return true if the request was not finished yet
+         */
+        boolean finish(int status, String result)
+        {
+            int state;
+            do {
+                state = mState.get();
+                if (state == STATE_FINISHED) {
+                    return false;
+                }
+            } while (!mState.compareAndSet(state, STATE_FINISHED));
+
+            mRequests.remove(mId);
+            mTimeoutHandler.removeCallbacks(mTimeoutRunnable);
+
+            if (state == STATE_PENDING) {
+                mExecutor.remove(this);
+            } else if (status != STATUS_SUCCESS && status != STATUS_ERROR) {
+                synchronized (this) {
+                    if (mThread != null) {
+                        mThread.interrupt();
+                    }
+                }
+            }
+
+            sendResult(mId, status, result);
+            return true;
+        }
+
+        @Override
+        public int compareTo(Request other)
+        {
+            if (mPriority != other.mPriority) {
+                return Integer.compare(mPriority, other.mPriority);
+            }
+            return Long.compare(mSequence, other.mSequence);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * AudioStateMonitor keeps the audio state (music volume, microphone mute, output route) in memory
+ * so that it can be read every frame without any call to AudioManager.
+ * <p>
+ * The state is updated by the volume and microphone mute broadcasts and by an AudioDeviceCallback
+ * for the output route (headset, bluetooth, built-in speaker).
+ * AudioStateChange is sent to Unity with volume$maxVolume$microphoneMute$route$routeName when it changes.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioDeviceCallback;
+import android.media.AudioDeviceInfo;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.util.Log;
+
+public class AudioStateMonitor {
+
+    public static final int ROUTE_BUILTIN   = 0;
+    public static final int ROUTE_WIRED     = 1;
+    public static final int ROUTE_BLUETOOTH = 2;
+    public static final int ROUTE_USB       = 3;
+    public static final int ROUTE_OTHER     = 4;
+
+    /** AudioManager.VOLUME_CHANGED_ACTION and its extras, hidden */
+    static final String ACTION_VOLUME_CHANGED     = "android.media.VOLUME_CHANGED_ACTION";
+    static final String EXTRA_VOLUME_STREAM_TYPE  = "android.media.EXTRA_VOLUME_STREAM_TYPE";
+    static final String EXTRA_VOLUME_STREAM_VALUE = "android.media.EXTRA_VOLUME_STREAM_VALUE";
+
+    /** The instance shared by the library */
+    private static AudioStateMonitor mInstance = null;
+
+    private final Context      mContext;
+    private final Handler      mHandler;
+    private final AudioManager mAudioManager;
+
+    // Current state :
+    private volatile int     mVolume         = 0;
+    private volatile int     mMaxVolume      = 15;
+    private volatile boolean mMicrophoneMute = false;
+    private volatile int     mRoute          = ROUTE_BUILTIN;
+    private volatile String  mRouteName      = "";
+    private volatile boolean mStarted        = false;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            if (AudioManager.ACTION_MICROPHONE_MUTE_CHANGED.equals(intent.getAction()))
+            {
+                // the broadcast has no extra.
+                boolean mute = mAudioManager.isMicrophoneMute();
+                if (mute != mMicrophoneMute) {
+                    mMicrophoneMute = mute;
+                    sendState();
+                }
+            }
+            else if (ACTION_VOLUME_CHANGED.equals(intent.getAction()))
+            {
+                if (intent.getIntExtra(EXTRA_VOLUME_STREAM_TYPE, -1) != AudioManager.STREAM_MUSIC) {
+                    return;
+                }
+                int volume = intent.getIntExtra(EXTRA_VOLUME_STREAM_VALUE, mVolume);
+                if (volume != mVolume) {
+                    mVolume = volume;
+                    sendState();
+                }
+            }
+        }
+    };
+
+    private final AudioDeviceCallback mDeviceCallback = new AudioDeviceCallback() {
+        @Override
+        public void onAudioDevicesAdded(AudioDeviceInfo[] addedDevices) {
+            updateRoute();
+        }
+
+        @Override
+        public void onAudioDevicesRemoved(AudioDeviceInfo[] removedDevices) {
+            updateRoute();
+        }
+    };
+
+    private AudioStateMonitor(Context context) {
+        mContext      = context.getApplicationContext();
+        mHandler      = MonitorThread.getHandler();
+        mAudioManager = (AudioManager) mContext.getSystemService(Context.AUDIO_SERVICE);
+    }
+
+    /**
+     * Get the audio state monitor of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return AudioStateMonitor
+     */
+    public static synchronized AudioStateMonitor getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new AudioStateMonitor(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Read the audio state once and follow its changes
+     */
+    public synchronized void start()
+    {
+        if (mStarted) {
+            return;
+        }
+
+        mVolume         = mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
+        mMaxVolume      = mAudioManager.getStreamMaxVolume(AudioManager.STREAM_MUSIC);
+        mMicrophoneMute = mAudioManager.isMicrophoneMute();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(AudioManager.ACTION_MICROPHONE_MUTE_CHANGED);
+        filter.addAction(ACTION_VOLUME_CHANGED);
+        mContext.registerReceiver(mReceiver, filter, null, mHandler);
+
+        // the callback is called at once with the current devices.
+        mAudioManager.registerAudioDeviceCallback(mDeviceCallback, mHandler);
+
+        mStarted = true;
+        Log.d("LynxAndroidSystem", "AudioStateMonitor started");
+    }
+
+    /**
+     * Stop following the changes
+     */
+    public synchronized void stop()
+    {
+        if (!mStarted) {
+            return;
+        }
+        mContext.unregisterReceiver(mReceiver);
+        mAudioManager.unregisterAudioDeviceCallback(mDeviceCallback);
+        mStarted = false;
+        Log.d("LynxAndroidSystem", "AudioStateMonitor stopped");
+    }
+
+    /**
+     * Say if the monitor is started : the getters below are only up to date when it is
+     *
+     * @return boolean
+     */
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Get the volume of the music stream
+     *
+     * @return int between 0 and getMaxVolume
+     */
+    public int getVolume() {
+        return mVolume;
+    }
+
+    /**
+     * Get the maximum volume of the music stream
+     *
+     * @return int
+     */
+    public int getMaxVolume() {
+        return mMaxVolume;
+    }
+
+    /**
+     * Say if the microphone is muted
+     *
+     * @return boolean
+     */
+    public boolean isMicrophoneMute() {
+        return mMicrophoneMute;
+    }
+
+    /**
+     * Get the output route
+     *
+     * @return one of the ROUTE_ values
+     */
+    public int getRoute() {
+        return mRoute;
+    }
+
+    /**
+     * Get the state packed in a string, same format as AudioStateChange
+     *
+     * @return String volume$maxVolume$microphoneMute$route$routeName
+     */
+    public String getInfo() {
+        return mVolume + "$" + mMaxVolume + "$" + mMicrophoneMute + "$" + mRoute + "$" + mRouteName;
+    }
+
+    /**
+     * Keep a volume set by the library, without waiting for the broadcast
+     *
+     * @param  volume
+     */
+    void onVolumeSet(int volume) {
+        mVolume = volume;
+    }
+
+    /**
+     * Keep a microphone mute set by the library, without waiting for the broadcast
+     *
+     * @param  mute
+     */
+    void onMicrophoneMuteSet(boolean mute) {
+        mMicrophoneMute = mute;
+    }
+
+    /**
+     * Choose the output route from the connected devices. Called on the monitor thread.
+     * A headset is preferred to the built-in speaker, as the audio policy does.
+     */
+    private void updateRoute()
+    {
+        int    route = ROUTE_BUILTIN;
+        String name  = "";
+
+        for (AudioDeviceInfo device : mAudioManager.getDevices(AudioManager.GET_DEVICES_OUTPUTS))
+        {
+            int deviceRoute = getRoute(device.getType());
+            if (deviceRoute != ROUTE_BUILTIN && (route == ROUTE_BUILTIN || deviceRoute < route)) {
+                route = deviceRoute;
+                name  = device.getProductName() != null ? device.getProductName().toString() : "";
+            }
+        }
+
+        if (route != mRoute || !name.equals(mRouteName)) {
+            mRoute     = route;
+            mRouteName = name;
+            Log.d("LynxAndroidSystem", "AudioStateMonitor route : " + route + " " + name);
+            sendState();
+        }
+    }
+
+    /**
+     * Route of a type of AudioDeviceInfo
+     */
+    static int getRoute(int deviceType)
+    {
+        switch (deviceType)
+        {
+            case AudioDeviceInfo.TYPE_WIRED_HEADSET:
+            case AudioDeviceInfo.TYPE_WIRED_HEADPHONES:
+                return ROUTE_WIRED;
+            case AudioDeviceInfo.TYPE_BLUETOOTH_A2DP:
+            case AudioDeviceInfo.TYPE_BLUETOOTH_SCO:
+                return ROUTE_BLUETOOTH;
+            case AudioDeviceInfo.TYPE_USB_HEADSET:
+            case AudioDeviceInfo.TYPE_USB_DEVICE:
+                return ROUTE_USB;
+            case AudioDeviceInfo.TYPE_BUILTIN_SPEAKER:
+            case AudioDeviceInfo.TYPE_BUILTIN_EARPIECE:
+            case AudioDeviceInfo.TYPE_TELEPHONY:
+                return ROUTE_BUILTIN;
+            case AudioDeviceInfo.TYPE_HDMI:
+            case AudioDeviceInfo.TYPE_LINE_ANALOG:
+            case AudioDeviceInfo.TYPE_LINE_DIGITAL:
+                return ROUTE_OTHER;
+            default:
+                // internal devices (remote submix, bus...) are not a route.
+                return ROUTE_BUILTIN;
+        }
+    }
+
+    private void sendState() {
+        LynxAndroidSystemComMng.sendUnityMessage("AudioStateChange", getInfo());
+    }
+}
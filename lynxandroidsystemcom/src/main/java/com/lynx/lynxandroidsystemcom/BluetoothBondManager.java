@@ -0,0 +1,331 @@
+/**
+ * BluetoothBondManager pairs and unpairs bluetooth devices. Several operations can be in progress,
+ * one per device, each one with its own timeout.
+ * <p>
+ * The bond state is followed by one receiver registered for the life of the library.
+ * At the end of each operation BluetoothBondResult is sent to Unity with
+ * address$name$operation$result$elapsedMs, and NewBluetoophDeviceBonded / BluetoophDeviceUnbonded
+ * with the name of the device when it succeeds.
+ * <p>
+ * createBond is public, removeBond and cancelBondProcess are hidden : their Method is looked up once and kept.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.bluetooth.BluetoothDevice;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BluetoothBondManager {
+
+    public static final int OPERATION_BOND   = 0;
+    public static final int OPERATION_UNBOND = 1;
+
+    public static final int RESULT_SUCCESS      = 0;
+    public static final int RESULT_ALREADY_DONE = 1;
+    public static final int RESULT_FAILED       = 2;
+    public static final int RESULT_TIMEOUT      = 3;
+    public static final int RESULT_ERROR        = 4;
+    public static final int RESULT_CANCELLED    = 5;
+
+    /** Default timeout of an operation, the user may have to confirm the pairing */
+    public static final long DEFAULT_TIMEOUT_MS = 30 * 1000;
+
+    /**
+     * Listener of the bond state of all the devices
+     */
+    public interface Listener {
+        /**
+         * Called on the monitor thread when the bond state of a device changes
+         *
+         * @param  device
+         * @param  bondState         BluetoothDevice.BOND_NONE, BOND_BONDING or BOND_BONDED
+         * @param  previousBondState
+         */
+        void onBondStateChanged(BluetoothDevice device, int bondState, int previousBondState);
+    }
+
+    /**
+     * An operation in progress
+     */
+    private class Operation implements Runnable {
+        final BluetoothDevice device;
+        final int             type;
+        final long            startMs;
+
+        Operation(BluetoothDevice device, int type) {
+            this.device  = device;
+            this.type    = type;
+            this.startMs = SystemClock.elapsedRealtime();
+        }
+
+        /** The timeout */
+        @Override
+        public void run() {
+            if (type == OPERATION_BOND) {
+                invoke(getCancelBondProcessMethod(), device);
+            }
+            finish(this, RESULT_TIMEOUT);
+        }
+    }
+
+    /** The instance shared by the library */
+    private static BluetoothBondManager mInstance = null;
+
+    // Hidden methods of BluetoothDevice, looked up once :
+    private static Method mRemoveBondMethod        = null;
+    private static Method mCancelBondProcessMethod = null;
+
+    private final Handler mHandler;
+
+    /** The operations in progress by address, only used on the monitor thread */
+    private final Map<String, Operation> mOperations = new HashMap<String, Operation>();
+    private final List<Listener>         mListeners  = new CopyOnWriteArrayList<Listener>();
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            if (!BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(intent.getAction())) {
+                return;
+            }
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+            if (device == null) {
+                return;
+            }
+            int state         = intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR);
+            int previousState = intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE, BluetoothDevice.ERROR);
+            onBondStateChanged(device, state, previousState);
+        }
+    };
+
+    private BluetoothBondManager(Context context)
+    {
+        mHandler = MonitorThread.getHandler();
+
+        IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
+        context.getApplicationContext().registerReceiver(mReceiver, filter, null, mHandler);
+    }
+
+    /**
+     * Say if the bond manager is created : its receiver is then registered for the life of the library
+     *
+     * @return boolean
+     */
+    static synchronized boolean isCreated() {
+        return mInstance != null;
+    }
+
+    /**
+     * Get the bond manager of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return BluetoothBondManager
+     */
+    public static synchronized BluetoothBondManager getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new BluetoothBondManager(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Add a listener of the bond state of all the devices
+     *
+     * @param  listener
+     */
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener added with addListener
+     *
+     * @param  listener
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Pair a device. The result is sent to Unity with BluetoothBondResult.
+     *
+     * @param  device
+     * @param  timeoutMs timeout of the operation, 0 for the default (30s)
+     */
+    public void bond(BluetoothDevice device, long timeoutMs) {
+        start(device, OPERATION_BOND, timeoutMs);
+    }
+
+    /**
+     * Unpair a device. The result is sent to Unity with BluetoothBondResult.
+     *
+     * @param  device
+     * @param  timeoutMs timeout of the operation, 0 for the default (30s)
+     */
+    public void unbond(BluetoothDevice device, long timeoutMs) {
+        start(device, OPERATION_UNBOND, timeoutMs);
+    }
+
+    private void start(final BluetoothDevice device, final int type, long timeoutMs)
+    {
+        if (device == null) {
+            return;
+        }
+        final long timeout = timeoutMs > 0 ? timeoutMs : DEFAULT_TIMEOUT_MS;
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Operation previous = mOperations.get(device.getAddress());
+                if (previous != null)
+                {
+                    if (previous.type == type) {
+                        Log.d("LynxAndroidSystem", "BluetoothBondManager : operation already in progress for " + device.getAddress());
+                        return;
+                    }
+                    // the opposite operation replaces it.
+                    finish(previous, RESULT_CANCELLED);
+                }
+
+                Operation operation = new Operation(device, type);
+                int state = device.getBondState();
+
+                if ((type == OPERATION_BOND && state == BluetoothDevice.BOND_BONDED)
+                        || (type == OPERATION_UNBOND && state == BluetoothDevice.BOND_NONE)) {
+                    finish(operation, RESULT_ALREADY_DONE);
+                    return;
+                }
+
+                mOperations.put(device.getAddress(), operation);
+                mHandler.postDelayed(operation, timeout);
+
+                boolean started;
+                if (type == OPERATION_BOND) {
+                    // a bond already in progress (started by the system) is followed without a new createBond.
+                    started = state == BluetoothDevice.BOND_BONDING || device.createBond();
+                } else {
+                    started = invoke(getRemoveBondMethod(), device);
+                }
+                Log.d("LynxAndroidSystem", "BluetoothBondManager : operation " + type + " on " + device.getAddress() + " started : " + started);
+
+                if (!started) {
+                    finish(operation, RESULT_ERROR);
+                }
+            }
+        });
+    }
+
+    /**
+     * Follow the bond state. Called on the monitor thread.
+     */
+    private void onBondStateChanged(BluetoothDevice device, int state, int previousState)
+    {
+        Log.d("LynxAndroidSystem", "BluetoothBondManager : " + device.getAddress() + " bond state " + previousState + " -> " + state);
+
+        Operation operation = mOperations.get(device.getAddress());
+        if (operation != null)
+        {
+            if (operation.type == OPERATION_BOND && state == BluetoothDevice.BOND_BONDED) {
+                finish(operation, RESULT_SUCCESS);
+            } else if (operation.type == OPERATION_BOND && state == BluetoothDevice.BOND_NONE) {
+                // refused by the user or the device, wrong pin.
+                finish(operation, RESULT_FAILED);
+            } else if (operation.type == OPERATION_UNBOND && state == BluetoothDevice.BOND_NONE) {
+                finish(operation, RESULT_SUCCESS);
+            }
+        }
+
+        for (Listener listener : mListeners) {
+            listener.onBondStateChanged(device, state, previousState);
+        }
+    }
+
+    /**
+     * End an operation and inform Unity. Called on the monitor thread.
+     */
+    private void finish(Operation operation, int result)
+    {
+        mHandler.removeCallbacks(operation);
+        if (mOperations.get(operation.device.getAddress()) == operation) {
+            mOperations.remove(operation.device.getAddress());
+        }
+
+        String name    = operation.device.getName();
+        long   elapsed = SystemClock.elapsedRealtime() - operation.startMs;
+
+        LynxAndroidSystemComMng.sendUnityMessage("BluetoothBondResult", operation.device.getAddress() + "$" + (name != null ? name : "")
+                + "$" + operation.type + "$" + result + "$" + elapsed);
+
+        if (result == RESULT_SUCCESS || result == RESULT_ALREADY_DONE) {
+            LynxAndroidSystemComMng.sendUnityMessage(operation.type == OPERATION_BOND ? "NewBluetoophDeviceBonded" : "BluetoophDeviceUnbonded", name);
+        }
+    }
+
+    private static synchronized Method getRemoveBondMethod()
+    {
+        if (mRemoveBondMethod == null) {
+            mRemoveBondMethod = findMethod("removeBond");
+        }
+        return mRemoveBondMethod;
+    }
+
+    private static synchronized Method getCancelBondProcessMethod()
+    {
+        if (mCancelBondProcessMethod == null) {
+            mCancelBondProcessMethod = findMethod("cancelBondProcess");
+        }
+        return mCancelBondProcessMethod;
+    }
+
+    /**
+     * Find a public or hidden method of BluetoothDevice without parameters
+     *
+     * @return Method, null if not found
+     */
+    static Method findMethod(String name)
+    {
+        try {
+            return BluetoothDevice.class.getMethod(name);
+        } catch (NoSuchMethodException e) {
+            Log.d("LynxAndroidSystem", "BluetoothDevice." + name + " not found");
+            return null;
+        }
+    }
+
+    /**
+     * Call a hidden boolean method of BluetoothDevice
+     *
+     * @return the result of the method, false if it failed
+     */
+    private static boolean invoke(Method method, BluetoothDevice device)
+    {
+        if (method == null) {
+            return false;
+        }
+        try {
+            Object result = method.invoke(device);
+            return Boolean.TRUE.equals(result);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
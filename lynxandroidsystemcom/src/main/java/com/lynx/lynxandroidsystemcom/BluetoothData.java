@@ -14,6 +14,18 @@ public class BluetoothData  {
 
     /** The type of device that has bluetooth ON : phone, headphone, PC etc... */
     public int     type;
+
+    /** The mac address of the device, unique for each device */
+    public String  address;
+
+    /** The signal of the device in dBm when it was discovered, 0 if unknown */
+    public int     rssi;
+
+    /** The full class of the device (BluetoothClass.getDeviceClass), 0 if unknown */
+    public int     deviceClass;
+
+    /** True if a paired device is connected, only given for the paired devices */
+    public boolean connected;
 }
 
 
@@ -0,0 +1,563 @@
+/**
+ * BluetoothDiscoveryRegistry keeps the bluetooth devices found by the discovery, one per mac address,
+ * with their name, class and signal. It can be read from any thread while the discovery is running.
+ * <p>
+ * The new devices and the devices that changed (name received, signal changed of more than
+ * RSSI_CHANGE_STEP_DB) are sent to Unity in batches, at most once per BATCH_DELAY_MS :
+ * BluetoothDevicesDiscovered with address$name$type$rssi$deviceClass|...
+ * BluetoothDiscoveryFinished is sent with the number of devices at the end of the discovery.
+ * <p>
+ * The low energy devices (controllers, trackers) are found with startLeScan, merged in the same list.
+ * With a report delay the bluetooth controller keeps the advertisements and gives them in batches,
+ * so the CPU is not woken up for each advertisement.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.ParcelUuid;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class BluetoothDiscoveryRegistry {
+
+    /** Minimum delay between two batches sent to Unity */
+    static final long BATCH_DELAY_MS = 500;
+
+    /** Minimum change of the signal to send a device again */
+    static final int RSSI_CHANGE_STEP_DB = 5;
+
+    /** Default delay of the low energy scan reports, the results are batched by the bluetooth controller */
+    public static final int DEFAULT_LE_REPORT_DELAY_MS = 1000;
+
+    /**
+     * A discovered device. Replaced, never modified, so that it can be read from any thread.
+     */
+    static final class Entry {
+        final BluetoothDevice device;
+        final String          name;
+        final int             deviceClass;
+        final int             type;
+        final int             rssi;
+        final long            lastSeenMs;
+
+        Entry(BluetoothDevice device, String name, int deviceClass, int type, int rssi, long lastSeenMs) {
+            this.device      = device;
+            this.name        = name;
+            this.deviceClass = deviceClass;
+            this.type        = type;
+            this.rssi        = rssi;
+            this.lastSeenMs  = lastSeenMs;
+        }
+
+        BluetoothData toBluetoothData()
+        {
+            BluetoothData bluetoothData = new BluetoothData();
+            bluetoothData.name        = name;
+            bluetoothData.type        = type;
+            bluetoothData.address     = device.getAddress();
+            bluetoothData.rssi        = rssi;
+            bluetoothData.deviceClass = deviceClass;
+            return bluetoothData;
+        }
+
+        String pack() {
+            return device.getAddress() + "$" + (name != null ? name : "") + "$" + type + "$" + rssi + "$" + deviceClass;
+        }
+    }
+
+    /** The instance shared by the library */
+    private static BluetoothDiscoveryRegistry mInstance = null;
+
+    private final Context mContext;
+    private final Handler mHandler;
+
+    /** The devices, by mac address */
+    private final ConcurrentHashMap<String, Entry> mDevices = new ConcurrentHashMap<String, Entry>();
+
+    /** Addresses of the devices to send in the next batch, only used on the monitor thread */
+    private final Set<String> mChangedAddresses = new LinkedHashSet<String>();
+
+    private boolean          mBatchPending = false;
+    private volatile boolean mRegistered   = false;
+    private volatile boolean mDiscovering  = false;
+
+    private BluetoothLeScanner mLeScanner  = null;
+    private volatile boolean   mLeScanning = false;
+
+    // Parameters of the last low energy scan, to restart it :
+    private int    mLeScanMode      = ScanSettings.SCAN_MODE_LOW_POWER;
+    private long   mLeReportDelayMs = DEFAULT_LE_REPORT_DELAY_MS;
+    private String mLeFilters       = null;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            String action = intent.getAction();
+
+            if (BluetoothDevice.ACTION_FOUND.equals(action) || BluetoothDevice.ACTION_NAME_CHANGED.equals(action))
+            {
+                BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+                BluetoothClass bluetoothClass = intent.getParcelableExtra(BluetoothDevice.EXTRA_CLASS);
+                String name = intent.getStringExtra(BluetoothDevice.EXTRA_NAME);
+                int rssi = intent.getShortExtra(BluetoothDevice.EXTRA_RSSI, Short.MIN_VALUE);
+                update(device, name, bluetoothClass, rssi == Short.MIN_VALUE ? 0 : rssi);
+            }
+            else if (BluetoothAdapter.ACTION_DISCOVERY_STARTED.equals(action))
+            {
+                mDiscovering = true;
+            }
+            else if (BluetoothAdapter.ACTION_DISCOVERY_FINISHED.equals(action))
+            {
+                mDiscovering = false;
+                sendBatch();
+                LynxAndroidSystemComMng.sendUnityMessage("BluetoothDiscoveryFinished", Integer.toString(mDevices.size()));
+            }
+        }
+    };
+
+    /**
+     * Low energy results, called on the main thread : given to the monitor thread
+     */
+    private final ScanCallback mScanCallback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, final ScanResult result) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    update(result);
+                }
+            });
+        }
+
+        @Override
+        public void onBatchScanResults(final List<ScanResult> results) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    for (ScanResult result : results) {
+                        update(result);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.d("LynxAndroidSystem", "Bluetooth low energy scan failed : " + errorCode);
+            mLeScanning = false;
+        }
+    };
+
+    private final Runnable mBatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mBatchPending = false;
+            sendBatch();
+        }
+    };
+
+    private BluetoothDiscoveryRegistry(Context context) {
+        mContext = context.getApplicationContext();
+        mHandler = MonitorThread.getHandler();
+    }
+
+    /**
+     * Get the discovery registry of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return BluetoothDiscoveryRegistry
+     */
+    public static synchronized BluetoothDiscoveryRegistry getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new BluetoothDiscoveryRegistry(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Forget the devices found before and start a discovery
+     *
+     * @return true if the discovery is started
+     */
+    public synchronized boolean startDiscovery()
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null) {
+            return false;
+        }
+
+        if (!mLeScanning) {
+            clearDevices();
+        }
+
+        if (!mRegistered)
+        {
+            IntentFilter filter = new IntentFilter();
+            filter.addAction(BluetoothDevice.ACTION_FOUND);
+            filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+            filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_STARTED);
+            filter.addAction(BluetoothAdapter.ACTION_DISCOVERY_FINISHED);
+            mContext.registerReceiver(mReceiver, filter, null, mHandler);
+            mRegistered = true;
+        }
+
+        if (bluetoothAdapter.isDiscovering()) {
+            bluetoothAdapter.cancelDiscovery();
+        }
+        return bluetoothAdapter.startDiscovery();
+    }
+
+    /**
+     * Stop the discovery. The devices found are kept.
+     */
+    public synchronized void stopDiscovery()
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter != null) {
+            bluetoothAdapter.cancelDiscovery();
+        }
+
+        if (mRegistered) {
+            mContext.unregisterReceiver(mReceiver);
+            mRegistered  = false;
+            mDiscovering = false;
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    sendBatch();
+                }
+            });
+        }
+    }
+
+    /**
+     * Start a low energy scan. The devices found are merged with the devices of the classic discovery.
+     *
+     * @param  scanMode      ScanSettings.SCAN_MODE_LOW_POWER (0), SCAN_MODE_BALANCED (1), SCAN_MODE_LOW_LATENCY (2)
+     *                       or SCAN_MODE_OPPORTUNISTIC (-1)
+     * @param  reportDelayMs delay of the batched reports, 0 to report each advertisement,
+     *                       ignored if the controller can not batch the results
+     * @param  filters       name:DeviceName, address:AA:BB:CC:DD:EE:FF or uuid:service-uuid separated by |,
+     *                       null or empty for all the devices
+     * @return true if the scan is started
+     */
+    public synchronized boolean startLeScan(int scanMode, long reportDelayMs, String filters) {
+        return startLeScan(scanMode, reportDelayMs, filters, mRegistered);
+    }
+
+    private boolean startLeScan(int scanMode, long reportDelayMs, String filters, boolean keepDevices)
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            return false;
+        }
+
+        stopLeScan();
+        mLeScanMode      = scanMode;
+        mLeReportDelayMs = reportDelayMs;
+        mLeFilters       = filters;
+        mLeScanner = bluetoothAdapter.getBluetoothLeScanner();
+        if (mLeScanner == null) {
+            return false;
+        }
+
+        if (!keepDevices) {
+            clearDevices();
+        }
+
+        if (scanMode < ScanSettings.SCAN_MODE_OPPORTUNISTIC || scanMode > ScanSettings.SCAN_MODE_LOW_LATENCY) {
+            scanMode = ScanSettings.SCAN_MODE_LOW_POWER;
+        }
+        if (reportDelayMs > 0 && !bluetoothAdapter.isOffloadedScanBatchingSupported()) {
+            Log.d("LynxAndroidSystem", "Bluetooth low energy batching not supported by the controller");
+            reportDelayMs = 0;
+        }
+
+        ScanSettings settings = new ScanSettings.Builder()
+                .setScanMode(scanMode)
+                .setReportDelay(Math.max(0, reportDelayMs))
+                .build();
+
+        List<ScanFilter> scanFilters = parseFilters(filters);
+        try {
+            mLeScanner.startScan(scanFilters.isEmpty() ? null : scanFilters, settings, mScanCallback);
+        } catch (SecurityException e) {
+            Log.d("LynxAndroidSystem", "Bluetooth low energy scan not allowed : " + e.getMessage());
+            mLeScanner = null;
+            return false;
+        }
+        mLeScanning = true;
+        Log.d("LynxAndroidSystem", "Bluetooth low energy scan started, mode " + scanMode + ", report delay (ms) : " + reportDelayMs);
+        return true;
+    }
+
+    /**
+     * Stop the low energy scan. The devices found are kept.
+     * <p>
+     * The results batched by the controller are flushed, but they are given asynchronously on the main thread,
+     * then merged on the monitor thread : they are not in getDevices when this method returns.
+     * They are sent to Unity with BluetoothDevicesDiscovered, as the other devices.
+     */
+    public synchronized void stopLeScan()
+    {
+        if (mLeScanner == null) {
+            return;
+        }
+        try {
+            // the results kept by the controller are given before the end.
+            mLeScanner.flushPendingScanResults(mScanCallback);
+            mLeScanner.stopScan(mScanCallback);
+        } catch (Exception e) {
+            // bluetooth off : the scan is already stopped.
+        }
+        mLeScanner  = null;
+        mLeScanning = false;
+    }
+
+    /**
+     * Start the low energy scan again with the parameters of the last one, the devices found are kept
+     *
+     * @return true if the scan is started
+     */
+    public synchronized boolean restartLeScan()
+    {
+        return startLeScan(mLeScanMode, mLeReportDelayMs, mLeFilters, true);
+    }
+
+    /**
+     * Say if the low energy scan is running
+     *
+     * @return boolean
+     */
+    public boolean isLeScanning() {
+        return mLeScanning;
+    }
+
+    /**
+     * Say if the discovery receiver or the low energy scan is registered
+     *
+     * @return boolean
+     */
+    public boolean isRegistered() {
+        return mRegistered || mLeScanning;
+    }
+
+    /**
+     * Say if the discovery is running
+     *
+     * @return boolean
+     */
+    public boolean isDiscovering() {
+        return mDiscovering;
+    }
+
+    /**
+     * Get the devices found
+     *
+     * @return List<BluetoothData>, a new list
+     */
+    public List<BluetoothData> getDevices()
+    {
+        List<BluetoothData> devices = new ArrayList<BluetoothData>();
+        for (Entry entry : mDevices.values()) {
+            devices.add(entry.toBluetoothData());
+        }
+        return devices;
+    }
+
+    /**
+     * Get the devices found packed in a string : address$name$type$rssi$deviceClass|...
+     *
+     * @return String
+     */
+    public String getPackedDevices()
+    {
+        StringBuilder packed = new StringBuilder();
+        for (Entry entry : mDevices.values()) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entry.pack());
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Find a device found by the discovery
+     *
+     * @param  nameOrAddress the mac address of the device, or its name
+     * @return BluetoothDevice, null if not found
+     */
+    public BluetoothDevice findDevice(String nameOrAddress)
+    {
+        if (nameOrAddress == null) {
+            return null;
+        }
+        Entry entry = mDevices.get(nameOrAddress.toUpperCase());
+        if (entry != null) {
+            return entry.device;
+        }
+        for (Entry other : mDevices.values()) {
+            if (nameOrAddress.equals(other.name)) {
+                return other.device;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Forget the devices found
+     */
+    private void clearDevices()
+    {
+        mDevices.clear();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mChangedAddresses.clear();
+            }
+        });
+    }
+
+    /**
+     * Parse the low energy filters : name:..., address:..., uuid:... separated by |
+     */
+    static List<ScanFilter> parseFilters(String filters)
+    {
+        List<ScanFilter> scanFilters = new ArrayList<ScanFilter>();
+        if (filters == null) {
+            return scanFilters;
+        }
+
+        for (String text : filters.split("\\|"))
+        {
+            int separator = text.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String kind  = text.substring(0, separator).trim();
+            String value = text.substring(separator + 1).trim();
+            try {
+                if ("name".equals(kind)) {
+                    scanFilters.add(new ScanFilter.Builder().setDeviceName(value).build());
+                } else if ("address".equals(kind)) {
+                    scanFilters.add(new ScanFilter.Builder().setDeviceAddress(value.toUpperCase()).build());
+                } else if ("uuid".equals(kind)) {
+                    scanFilters.add(new ScanFilter.Builder().setServiceUuid(ParcelUuid.fromString(value)).build());
+                } else {
+                    Log.w("LynxAndroidSystem", "Bluetooth low energy scan : invalid filter " + text);
+                }
+            } catch (IllegalArgumentException e) {
+                Log.w("LynxAndroidSystem", "Bluetooth low energy scan : invalid filter " + text);
+            }
+        }
+        return scanFilters;
+    }
+
+    /**
+     * Add or update a low energy device. Called on the monitor thread.
+     */
+    private void update(ScanResult result)
+    {
+        BluetoothDevice device = result.getDevice();
+        if (device == null) {
+            return;
+        }
+        ScanRecord record = result.getScanRecord();
+        String name = record != null ? record.getDeviceName() : null;
+        if (name == null) {
+            name = device.getName();
+        }
+        update(device, name, device.getBluetoothClass(), result.getRssi());
+    }
+
+    /**
+     * Add or update a device. Called on the monitor thread.
+     */
+    void update(BluetoothDevice device, String name, BluetoothClass bluetoothClass, int rssi)
+    {
+        if (device == null) {
+            return;
+        }
+        String address = device.getAddress();
+        Entry old = mDevices.get(address);
+
+        if (name == null) {
+            name = old != null ? old.name : null;
+        }
+        int deviceClass = bluetoothClass != null ? bluetoothClass.getDeviceClass() : (old != null ? old.deviceClass : 0);
+        int type = bluetoothClass != null ? LynxAndroidSystemComMng.getBluetoothDeviceTypeCode(bluetoothClass.getMajorDeviceClass())
+                                          : (old != null ? old.type : 0);
+        if (rssi == 0 && old != null) {
+            rssi = old.rssi;
+        }
+
+        mDevices.put(address, new Entry(device, name, deviceClass, type, rssi, SystemClock.elapsedRealtime()));
+
+        boolean changed = old == null
+                || (name != null && !name.equals(old.name))
+                || deviceClass != old.deviceClass
+                || Math.abs(rssi - old.rssi) >= RSSI_CHANGE_STEP_DB;
+        if (!changed) {
+            return;
+        }
+
+        mChangedAddresses.add(address);
+        if (!mBatchPending) {
+            mBatchPending = true;
+            mHandler.postDelayed(mBatchRunnable, BATCH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Send the changed devices to Unity. Called on the monitor thread.
+     */
+    private void sendBatch()
+    {
+        if (mChangedAddresses.isEmpty()) {
+            return;
+        }
+
+        StringBuilder batch = new StringBuilder();
+        for (String address : mChangedAddresses)
+        {
+            Entry entry = mDevices.get(address);
+            if (entry == null) {
+                continue;
+            }
+            if (batch.length() > 0) {
+                batch.append('|');
+            }
+            batch.append(entry.pack());
+        }
+        mChangedAddresses.clear();
+
+        Log.d("LynxAndroidSystem", "BluetoothDevicesDiscovered : " + batch);
+        LynxAndroidSystemComMng.sendUnityMessage("BluetoothDevicesDiscovered", batch.toString());
+    }
+}
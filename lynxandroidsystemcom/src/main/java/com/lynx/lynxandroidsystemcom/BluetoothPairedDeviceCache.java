@@ -0,0 +1,486 @@
+/**
+ * BluetoothPairedDeviceCache keeps the paired bluetooth devices and their connection state in memory
+ * so that they can be read every frame without any call to the bluetooth service.
+ * <p>
+ * The list is read once at the start, then updated by the bond state (BluetoothBondManager), the acl
+ * connection broadcasts and the A2DP (headphones) and HID (controllers) profile proxies.
+ * The acl link of the devices already connected at the start is read with the hidden BluetoothDevice.isConnected,
+ * its Method is looked up once and kept.
+ * BluetoothDeviceConnectionChange is sent to Unity with address$name$connected$profiles when the
+ * connection of a paired device changes. profiles is a set of PROFILE_ flags.
+ *
+ * @see BluetoothBondManager
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.bluetooth.BluetoothA2dp;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class BluetoothPairedDeviceCache {
+
+    public static final int PROFILE_ACL  = 1;
+    public static final int PROFILE_A2DP = 2;
+    public static final int PROFILE_HID  = 4;
+
+    /** BluetoothProfile.HID_HOST, hidden */
+    static final int HID_HOST_PROFILE = 4;
+
+    /** BluetoothHidHost.ACTION_CONNECTION_STATE_CHANGED, hidden */
+    static final String ACTION_HID_CONNECTION_STATE_CHANGED = "android.bluetooth.input.profile.action.CONNECTION_STATE_CHANGED";
+
+    /**
+     * Listener of the connection of the paired devices
+     */
+    public interface Listener {
+        /**
+         * Called on the monitor thread when the connected profiles of a paired device change
+         *
+         * @param  device
+         * @param  profiles         PROFILE_ flags, 0 when disconnected
+         * @param  previousProfiles
+         */
+        void onConnectionChanged(BluetoothDevice device, int profiles, int previousProfiles);
+    }
+
+    /**
+     * A paired device. Replaced, never modified, so that it can be read from any thread.
+     */
+    static final class Entry {
+        final BluetoothDevice device;
+        final String          name;
+        final int             type;
+        final int             deviceClass;
+        final int             profiles;
+
+        Entry(BluetoothDevice device, String name, int type, int deviceClass, int profiles) {
+            this.device      = device;
+            this.name        = name;
+            this.type        = type;
+            this.deviceClass = deviceClass;
+            this.profiles    = profiles;
+        }
+
+        Entry withProfiles(int newProfiles) {
+            return new Entry(device, name, type, deviceClass, newProfiles);
+        }
+
+        Entry withName(String newName) {
+            return new Entry(device, newName, type, deviceClass, profiles);
+        }
+
+        boolean isConnected() {
+            return profiles != 0;
+        }
+    }
+
+    /** The instance shared by the library */
+    private static BluetoothPairedDeviceCache mInstance = null;
+
+    /** BluetoothDevice.isConnected, hidden */
+    private static Method  mIsConnectedMethod = null;
+    private static boolean mIsConnectedLookedUp = false;
+
+    private final Context mContext;
+    private final Handler mHandler;
+
+    /** The paired devices, by mac address */
+    private final ConcurrentHashMap<String, Entry> mDevices = new ConcurrentHashMap<String, Entry>();
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    private BluetoothProfile mA2dpProxy = null;
+    private BluetoothProfile mHidProxy  = null;
+
+    private volatile boolean mStarted = false;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            String action = intent.getAction();
+            BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+
+            if (BluetoothDevice.ACTION_ACL_CONNECTED.equals(action)) {
+                setProfile(device, PROFILE_ACL, true);
+            } else if (BluetoothDevice.ACTION_ACL_DISCONNECTED.equals(action)) {
+                // the profiles are disconnected with the link.
+                setProfile(device, PROFILE_ACL | PROFILE_A2DP | PROFILE_HID, false);
+            } else if (BluetoothA2dp.ACTION_CONNECTION_STATE_CHANGED.equals(action)) {
+                int state = intent.getIntExtra(BluetoothProfile.EXTRA_STATE, BluetoothProfile.STATE_DISCONNECTED);
+                setProfile(device, PROFILE_A2DP, state == BluetoothProfile.STATE_CONNECTED);
+            } else if (ACTION_HID_CONNECTION_STATE_CHANGED.equals(action)) {
+                int state = intent.getIntExtra(BluetoothProfile.EXTRA_STATE, BluetoothProfile.STATE_DISCONNECTED);
+                setProfile(device, PROFILE_HID, state == BluetoothProfile.STATE_CONNECTED);
+            } else if (BluetoothDevice.ACTION_NAME_CHANGED.equals(action)) {
+                Entry entry = device != null ? mDevices.get(device.getAddress()) : null;
+                if (entry != null) {
+                    mDevices.put(device.getAddress(), entry.withName(intent.getStringExtra(BluetoothDevice.EXTRA_NAME)));
+                }
+            } else if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+                int state = intent.getIntExtra(BluetoothAdapter.EXTRA_STATE, BluetoothAdapter.ERROR);
+                if (state == BluetoothAdapter.STATE_ON || state == BluetoothAdapter.STATE_OFF) {
+                    reload();
+                }
+            }
+        }
+    };
+
+    private final BluetoothBondManager.Listener mBondListener = new BluetoothBondManager.Listener() {
+        @Override
+        public void onBondStateChanged(BluetoothDevice device, int bondState, int previousBondState)
+        {
+            if (bondState == BluetoothDevice.BOND_BONDED) {
+                add(device);
+            } else if (bondState == BluetoothDevice.BOND_NONE) {
+                Entry entry = mDevices.remove(device.getAddress());
+                if (entry != null && entry.isConnected()) {
+                    sendConnectionChange(entry.withProfiles(0), entry.profiles);
+                }
+            }
+        }
+    };
+
+    /**
+     * The profile proxies, called on the main thread
+     */
+    private final BluetoothProfile.ServiceListener mProfileListener = new BluetoothProfile.ServiceListener() {
+        @Override
+        public void onServiceConnected(final int profile, final BluetoothProfile proxy) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!mStarted) {
+                        BluetoothAdapter.getDefaultAdapter().closeProfileProxy(profile, proxy);
+                        return;
+                    }
+                    int flag = profile == BluetoothProfile.A2DP ? PROFILE_A2DP : PROFILE_HID;
+                    if (profile == BluetoothProfile.A2DP) {
+                        mA2dpProxy = proxy;
+                    } else {
+                        mHidProxy = proxy;
+                    }
+                    for (BluetoothDevice device : proxy.getConnectedDevices()) {
+                        setProfile(device, flag, true);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onServiceDisconnected(final int profile) {
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (profile == BluetoothProfile.A2DP) {
+                        mA2dpProxy = null;
+                    } else {
+                        mHidProxy = null;
+                    }
+                }
+            });
+        }
+    };
+
+    private BluetoothPairedDeviceCache(Context context) {
+        mContext = context.getApplicationContext();
+        mHandler = MonitorThread.getHandler();
+    }
+
+    /**
+     * Get the paired device cache of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return BluetoothPairedDeviceCache
+     */
+    public static synchronized BluetoothPairedDeviceCache getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new BluetoothPairedDeviceCache(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Read the paired devices and follow their changes
+     */
+    public synchronized void start()
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (mStarted || bluetoothAdapter == null) {
+            return;
+        }
+        mStarted = true;
+
+        // read before the changes are followed on the monitor thread.
+        reload();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(BluetoothDevice.ACTION_ACL_CONNECTED);
+        filter.addAction(BluetoothDevice.ACTION_ACL_DISCONNECTED);
+        filter.addAction(BluetoothDevice.ACTION_NAME_CHANGED);
+        filter.addAction(BluetoothA2dp.ACTION_CONNECTION_STATE_CHANGED);
+        filter.addAction(ACTION_HID_CONNECTION_STATE_CHANGED);
+        filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+        mContext.registerReceiver(mReceiver, filter, null, mHandler);
+
+        BluetoothBondManager.getInstance(mContext).addListener(mBondListener);
+
+        bluetoothAdapter.getProfileProxy(mContext, mProfileListener, BluetoothProfile.A2DP);
+        bluetoothAdapter.getProfileProxy(mContext, mProfileListener, HID_HOST_PROFILE);
+        Log.d("LynxAndroidSystem", "BluetoothPairedDeviceCache started");
+    }
+
+    /**
+     * Stop following the changes. The devices are forgotten.
+     */
+    public synchronized void stop()
+    {
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+
+        mContext.unregisterReceiver(mReceiver);
+        BluetoothBondManager.getInstance(mContext).removeListener(mBondListener);
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+                if (mA2dpProxy != null) {
+                    bluetoothAdapter.closeProfileProxy(BluetoothProfile.A2DP, mA2dpProxy);
+                    mA2dpProxy = null;
+                }
+                if (mHidProxy != null) {
+                    bluetoothAdapter.closeProfileProxy(HID_HOST_PROFILE, mHidProxy);
+                    mHidProxy = null;
+                }
+            }
+        });
+        // cleared now : a start just after this stop reloads the list before the runnable above is run.
+        mDevices.clear();
+        Log.d("LynxAndroidSystem", "BluetoothPairedDeviceCache stopped");
+    }
+
+    /**
+     * Add a listener of the connection of the paired devices
+     *
+     * @param  listener
+     */
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener added with addListener
+     *
+     * @param  listener
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Get a profile proxy. Called on the monitor thread.
+     *
+     * @param  profile PROFILE_A2DP or PROFILE_HID
+     * @return BluetoothProfile, null if not connected to the profile service yet
+     */
+    BluetoothProfile getProfileProxy(int profile) {
+        return profile == PROFILE_A2DP ? mA2dpProxy : profile == PROFILE_HID ? mHidProxy : null;
+    }
+
+    /**
+     * Say if the cache is started
+     *
+     * @return boolean
+     */
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Get the paired devices
+     *
+     * @return List<BluetoothData>, a new list
+     */
+    public List<BluetoothData> getDevices()
+    {
+        List<BluetoothData> devices = new ArrayList<BluetoothData>();
+        for (Entry entry : mDevices.values())
+        {
+            BluetoothData bluetoothData = new BluetoothData();
+            bluetoothData.name        = entry.name;
+            bluetoothData.type        = entry.type;
+            bluetoothData.address     = entry.device.getAddress();
+            bluetoothData.deviceClass = entry.deviceClass;
+            bluetoothData.connected   = entry.isConnected();
+            devices.add(bluetoothData);
+        }
+        return devices;
+    }
+
+    /**
+     * Get the paired devices packed in a string : address$name$type$connected$profiles|...
+     *
+     * @return String
+     */
+    public String getPackedDevices()
+    {
+        StringBuilder packed = new StringBuilder();
+        for (Entry entry : mDevices.values()) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entry.device.getAddress()).append('$').append(entry.name != null ? entry.name : "").append('$')
+                  .append(entry.type).append('$').append(entry.isConnected()).append('$').append(entry.profiles);
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Get the connected profiles of a paired device
+     *
+     * @param  nameOrAddress the mac address of the device, or its name
+     * @return PROFILE_ flags, 0 if not connected, -1 if not paired
+     */
+    public int getProfiles(String nameOrAddress)
+    {
+        if (nameOrAddress == null) {
+            return -1;
+        }
+        Entry entry = mDevices.get(nameOrAddress.toUpperCase());
+        if (entry != null) {
+            return entry.profiles;
+        }
+        for (Entry other : mDevices.values()) {
+            if (nameOrAddress.equals(other.name)) {
+                return other.profiles;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read the paired devices again. Called on the monitor thread, except at the start.
+     */
+    private void reload()
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+
+        List<String> addresses = new ArrayList<String>();
+        if (bluetoothAdapter.isEnabled()) {
+            for (BluetoothDevice device : bluetoothAdapter.getBondedDevices()) {
+                addresses.add(device.getAddress());
+                if (!mDevices.containsKey(device.getAddress())) {
+                    add(device);
+                }
+            }
+        }
+
+        for (Entry entry : mDevices.values()) {
+            if (!addresses.contains(entry.device.getAddress())) {
+                mDevices.remove(entry.device.getAddress());
+                if (entry.isConnected()) {
+                    sendConnectionChange(entry.withProfiles(0), entry.profiles);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add a paired device, its connected profiles are kept if it is already known
+     */
+    private void add(BluetoothDevice device)
+    {
+        BluetoothClass bluetoothClass = device.getBluetoothClass();
+        int type        = bluetoothClass != null ? LynxAndroidSystemComMng.getBluetoothDeviceTypeCode(bluetoothClass.getMajorDeviceClass()) : 0;
+        int deviceClass = bluetoothClass != null ? bluetoothClass.getDeviceClass() : 0;
+
+        Entry old = mDevices.get(device.getAddress());
+        int profiles = old != null ? old.profiles : isAclConnected(device) ? PROFILE_ACL : 0;
+        mDevices.put(device.getAddress(), new Entry(device, device.getName(), type, deviceClass, profiles));
+    }
+
+    /**
+     * Read the acl link of a device with the hidden BluetoothDevice.isConnected
+     *
+     * @return false if the link is down or can not be read
+     */
+    private static boolean isAclConnected(BluetoothDevice device)
+    {
+        Method method = getIsConnectedMethod();
+        if (method == null) {
+            return false;
+        }
+        try {
+            return (Boolean) method.invoke(device);
+        } catch (Exception e) {
+            Log.d("LynxAndroidSystem", "BluetoothDevice.isConnected failed : " + e);
+            return false;
+        }
+    }
+
+    private static synchronized Method getIsConnectedMethod()
+    {
+        if (!mIsConnectedLookedUp) {
+            mIsConnectedMethod   = BluetoothBondManager.findMethod("isConnected");
+            mIsConnectedLookedUp = true;
+        }
+        return mIsConnectedMethod;
+    }
+
+    /**
+     * Set or clear profile flags of a device and inform Unity. Called on the monitor thread.
+     */
+    private void setProfile(BluetoothDevice device, int flags, boolean connected)
+    {
+        if (device == null) {
+            return;
+        }
+        Entry entry = mDevices.get(device.getAddress());
+        if (entry == null) {
+            // connected but not paired (low energy device) : not in the cache.
+            return;
+        }
+
+        int profiles = connected ? entry.profiles | flags : entry.profiles & ~flags;
+        if (profiles == entry.profiles) {
+            return;
+        }
+        Entry updated = entry.withProfiles(profiles);
+        mDevices.put(device.getAddress(), updated);
+        sendConnectionChange(updated, entry.profiles);
+    }
+
+    private void sendConnectionChange(Entry entry, int previousProfiles)
+    {
+        for (Listener listener : mListeners) {
+            listener.onConnectionChanged(entry.device, entry.profiles, previousProfiles);
+        }
+
+        String message = entry.device.getAddress() + "$" + (entry.name != null ? entry.name : "") + "$" + entry.isConnected() + "$" + entry.profiles;
+        Log.d("LynxAndroidSystem", "BluetoothDeviceConnectionChange : " + message);
+        LynxAndroidSystemComMng.sendUnityMessage("BluetoothDeviceConnectionChange", message);
+    }
+}
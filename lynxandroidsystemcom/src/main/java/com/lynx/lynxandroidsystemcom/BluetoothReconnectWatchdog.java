@@ -0,0 +1,311 @@
+/**
+ * BluetoothReconnectWatchdog reconnects the paired devices of a priority list (controllers, headphones)
+ * when their connection drops, so that the user does not have to pair them again.
+ * <p>
+ * The disconnections are given by the BluetoothPairedDeviceCache, only the acl or profile disconnections of devices
+ * still paired are followed : a device unpaired by the user is not reconnected. The profiles that were connected
+ * (HID, A2DP) are connected again with an exponential backoff, the devices first in the list first.
+ * The connect methods of the profiles are hidden : their Method is looked up once and kept.
+ * <p>
+ * At the end of each outage BluetoothReconnectResult is sent to Unity with
+ * address$name$result$timeToReconnectMs$attempts, and the time to reconnect is kept per device in a LatencyHistory.
+ *
+ * @see BluetoothPairedDeviceCache
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BluetoothReconnectWatchdog {
+
+    public static final int RESULT_RECONNECTED = 0;
+    public static final int RESULT_GAVE_UP     = 1;
+
+    /** Default delay before the first attempt, the device often comes back by itself */
+    public static final long DEFAULT_INITIAL_DELAY_MS = 1000;
+
+    /** Default maximum delay between two attempts */
+    public static final long DEFAULT_MAX_DELAY_MS = 30 * 1000;
+
+    /** Default number of attempts before giving up */
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    /** Delay added per rank in the priority list, so that the first devices are connected first */
+    static final long PRIORITY_STEP_MS = 250;
+
+    /**
+     * A device of the priority list which is disconnected
+     */
+    private class Outage implements Runnable {
+        final BluetoothDevice device;
+        final int             profiles;
+        final long            startMs;
+        int                   attempts = 0;
+
+        Outage(BluetoothDevice device, int profiles) {
+            this.device   = device;
+            this.profiles = profiles;
+            this.startMs  = SystemClock.elapsedRealtime();
+        }
+
+        /** An attempt */
+        @Override
+        public void run() {
+            attempt(this);
+        }
+    }
+
+    /** The instance shared by the library */
+    private static BluetoothReconnectWatchdog mInstance = null;
+
+    // Hidden connect methods of the profiles, looked up once by profile class :
+    private static final Map<Class<?>, Method> mConnectMethods = new HashMap<Class<?>, Method>();
+
+    private final Context        mContext;
+    private final Handler        mHandler;
+    private final LatencyHistory mHistory = new LatencyHistory(LatencyHistory.DEFAULT_CAPACITY, LatencyHistory.DEFAULT_MAX_KEYS);
+
+    /** The addresses to watch, first is the most important */
+    private volatile List<String> mAddresses = new ArrayList<String>();
+
+    private volatile long mInitialDelayMs = DEFAULT_INITIAL_DELAY_MS;
+    private volatile long mMaxDelayMs     = DEFAULT_MAX_DELAY_MS;
+    private volatile int  mMaxAttempts    = DEFAULT_MAX_ATTEMPTS;
+
+    /** The outages by address, only used on the monitor thread */
+    private final Map<String, Outage> mOutages = new HashMap<String, Outage>();
+
+    private boolean mStarted = false;
+
+    private final BluetoothPairedDeviceCache.Listener mConnectionListener = new BluetoothPairedDeviceCache.Listener() {
+        @Override
+        public void onConnectionChanged(BluetoothDevice device, int profiles, int previousProfiles)
+        {
+            String address = device.getAddress();
+            Outage outage  = mOutages.get(address);
+
+            if (profiles != 0 && outage != null) {
+                finish(outage, RESULT_RECONNECTED);
+            } else if (profiles == 0 && previousProfiles != 0 && outage == null && mAddresses.contains(address)
+                    && device.getBondState() == BluetoothDevice.BOND_BONDED) {
+                // BOND_NONE : the device is removed from the cache because it is unpaired, not disconnected.
+                startOutage(device, previousProfiles);
+            }
+        }
+    };
+
+    private BluetoothReconnectWatchdog(Context context) {
+        mContext = context.getApplicationContext();
+        mHandler = MonitorThread.getHandler();
+    }
+
+    /**
+     * Get the reconnect watchdog of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return BluetoothReconnectWatchdog
+     */
+    public static synchronized BluetoothReconnectWatchdog getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new BluetoothReconnectWatchdog(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Set the devices to reconnect. The watchdog is started when the list is not empty.
+     *
+     * @param  addresses mac addresses separated by |, first is the most important, empty to stop the watchdog
+     * @return the number of devices watched
+     */
+    public synchronized int setDevices(String addresses)
+    {
+        List<String> list = new ArrayList<String>();
+        if (addresses != null) {
+            for (String address : addresses.split("\\|")) {
+                if (BluetoothAdapter.checkBluetoothAddress(address.trim().toUpperCase())) {
+                    list.add(address.trim().toUpperCase());
+                } else if (!address.trim().isEmpty()) {
+                    Log.w("LynxAndroidSystem", "BluetoothReconnectWatchdog : invalid address " + address);
+                }
+            }
+        }
+        mAddresses = list;
+
+        // the cache is owned by the session : subscribed while the list is not empty.
+        BluetoothPairedDeviceCache cache = BluetoothPairedDeviceCache.getInstance(mContext);
+        if (!list.isEmpty() && !mStarted) {
+            LynxAndroidSystemComMng.getSystemSession(mContext).subscribe("bluetooth");
+            cache.addListener(mConnectionListener);
+            mStarted = true;
+        } else if (list.isEmpty() && mStarted) {
+            cache.removeListener(mConnectionListener);
+            LynxAndroidSystemComMng.getSystemSession(mContext).unsubscribe("bluetooth");
+            mStarted = false;
+        }
+
+        // the outages of the devices removed from the list are forgotten.
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Outage outage : new ArrayList<Outage>(mOutages.values())) {
+                    if (!mAddresses.contains(outage.device.getAddress())) {
+                        mHandler.removeCallbacks(outage);
+                        mOutages.remove(outage.device.getAddress());
+                    }
+                }
+            }
+        });
+        return list.size();
+    }
+
+    /**
+     * Change the backoff of the attempts
+     *
+     * @param  initialDelayMs delay before the first attempt, doubled after each attempt, 0 for the default (1s)
+     * @param  maxDelayMs     maximum delay between two attempts, 0 for the default (30s)
+     * @param  maxAttempts    number of attempts before giving up, 0 for the default (10)
+     */
+    public void configure(long initialDelayMs, long maxDelayMs, int maxAttempts)
+    {
+        mInitialDelayMs = initialDelayMs > 0 ? initialDelayMs : DEFAULT_INITIAL_DELAY_MS;
+        mMaxDelayMs     = maxDelayMs > 0 ? Math.max(maxDelayMs, mInitialDelayMs) : DEFAULT_MAX_DELAY_MS;
+        mMaxAttempts    = maxAttempts > 0 ? maxAttempts : DEFAULT_MAX_ATTEMPTS;
+    }
+
+    /**
+     * Get the history of the time to reconnect, one key per address
+     *
+     * @return LatencyHistory
+     */
+    public LatencyHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Start the attempts for a device. Called on the monitor thread.
+     */
+    private void startOutage(BluetoothDevice device, int profiles)
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+            // bluetooth switched off : nothing to reconnect.
+            return;
+        }
+
+        Outage outage = new Outage(device, profiles);
+        mOutages.put(device.getAddress(), outage);
+        Log.d("LynxAndroidSystem", "BluetoothReconnectWatchdog : " + device.getAddress() + " disconnected, profiles " + profiles);
+        mHandler.postDelayed(outage, mInitialDelayMs + mAddresses.indexOf(device.getAddress()) * PRIORITY_STEP_MS);
+    }
+
+    /**
+     * Connect the profiles of a device again. Called on the monitor thread.
+     */
+    private void attempt(final Outage outage)
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        if (!bluetoothAdapter.isEnabled() || outage.device.getBondState() != BluetoothDevice.BOND_BONDED) {
+            finish(outage, RESULT_GAVE_UP);
+            return;
+        }
+
+        outage.attempts++;
+        BluetoothPairedDeviceCache cache = BluetoothPairedDeviceCache.getInstance(mContext);
+        boolean started = false;
+
+        // a device connected only by acl (unknown profile) is tried with both profiles.
+        int profiles = (outage.profiles & (BluetoothPairedDeviceCache.PROFILE_A2DP | BluetoothPairedDeviceCache.PROFILE_HID)) != 0
+                ? outage.profiles : BluetoothPairedDeviceCache.PROFILE_A2DP | BluetoothPairedDeviceCache.PROFILE_HID;
+
+        if ((profiles & BluetoothPairedDeviceCache.PROFILE_HID) != 0) {
+            started |= connect(cache.getProfileProxy(BluetoothPairedDeviceCache.PROFILE_HID), outage.device);
+        }
+        if ((profiles & BluetoothPairedDeviceCache.PROFILE_A2DP) != 0) {
+            started |= connect(cache.getProfileProxy(BluetoothPairedDeviceCache.PROFILE_A2DP), outage.device);
+        }
+        Log.d("LynxAndroidSystem", "BluetoothReconnectWatchdog : attempt " + outage.attempts + " on " + outage.device.getAddress() + " started : " + started);
+
+        if (outage.attempts >= mMaxAttempts) {
+            // the last attempt has the maximum delay to succeed.
+            mHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    if (mOutages.get(outage.device.getAddress()) == outage) {
+                        finish(outage, RESULT_GAVE_UP);
+                    }
+                }
+            }, mMaxDelayMs);
+            return;
+        }
+
+        long delay = mInitialDelayMs << Math.min(outage.attempts, 16);
+        mHandler.postDelayed(outage, Math.min(delay, mMaxDelayMs));
+    }
+
+    /**
+     * End an outage and inform Unity. Called on the monitor thread.
+     */
+    private void finish(Outage outage, int result)
+    {
+        mHandler.removeCallbacks(outage);
+        mOutages.remove(outage.device.getAddress());
+
+        long   elapsed = SystemClock.elapsedRealtime() - outage.startMs;
+        String name    = outage.device.getName();
+        mHistory.record(outage.device.getAddress(), elapsed, result == RESULT_RECONNECTED);
+
+        Log.d("LynxAndroidSystem", "BluetoothReconnectWatchdog : " + outage.device.getAddress() + " result " + result + " after (ms) : " + elapsed);
+        LynxAndroidSystemComMng.sendUnityMessage("BluetoothReconnectResult", outage.device.getAddress() + "$" + (name != null ? name : "")
+                + "$" + result + "$" + elapsed + "$" + outage.attempts);
+    }
+
+    /**
+     * Call the hidden connect method of a profile proxy
+     *
+     * @return true if the connection is started
+     */
+    private static boolean connect(BluetoothProfile proxy, BluetoothDevice device)
+    {
+        if (proxy == null) {
+            return false;
+        }
+        Method method;
+        synchronized (mConnectMethods) {
+            method = mConnectMethods.get(proxy.getClass());
+            if (method == null && !mConnectMethods.containsKey(proxy.getClass())) {
+                try {
+                    method = proxy.getClass().getMethod("connect", BluetoothDevice.class);
+                } catch (NoSuchMethodException e) {
+                    Log.d("LynxAndroidSystem", proxy.getClass().getName() + ".connect not found");
+                }
+                mConnectMethods.put(proxy.getClass(), method);
+            }
+        }
+        if (method == null) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(method.invoke(proxy, device));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
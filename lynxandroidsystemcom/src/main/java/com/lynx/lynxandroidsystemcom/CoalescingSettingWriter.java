@@ -0,0 +1,186 @@
+/**
+ * CoalescingSettingWriter writes a setting driven by a slider (brightness, volume) :
+ * the values can be given at any rate, every frame, and only the last one is written,
+ * at most maxWritesPerSecond times per second, on the monitor thread.
+ * <p>
+ * The last value given is always written. A value equal to the value of the setting is not written.
+ * The number of values given, written, avoided and failed is kept to check the gain.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+public class CoalescingSettingWriter {
+
+    /** Default maximum number of writes per second */
+    public static final int DEFAULT_MAX_WRITES_PER_SECOND = 10;
+
+    /** Value of a setting which is not known */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /**
+     * The setting to write
+     */
+    public interface Sink {
+        /**
+         * Get the current value of the setting, it may have been changed by someone else.
+         * Called on the monitor thread before each write.
+         *
+         * @return the value, UNKNOWN to compare with the last value written
+         */
+        int read();
+
+        /**
+         * Write the setting. Called on the monitor thread.
+         *
+         * @param  value
+         * @return true if the setting is written
+         */
+        boolean write(int value);
+    }
+
+    private final String  mName;
+    private final Sink    mSink;
+    private final Handler mHandler;
+
+    private volatile long mMinIntervalMs;
+
+    // Guarded by this :
+    private int     mPendingValue   = UNKNOWN;
+    private boolean mScheduled      = false;
+    private int     mCommittedValue = UNKNOWN;
+    private long    mLastWriteMs    = 0;
+
+    // Counters :
+    private long mRequestCount = 0;
+    private long mWriteCount   = 0;
+    private long mSkippedCount = 0;
+    private long mFailedCount  = 0;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    /**
+     * @param  name               name of the setting, for the statistics
+     * @param  sink               the setting to write
+     * @param  maxWritesPerSecond 0 for the default (10)
+     */
+    public CoalescingSettingWriter(String name, Sink sink, int maxWritesPerSecond)
+    {
+        mName    = name;
+        mSink    = sink;
+        mHandler = MonitorThread.getHandler();
+        setMaxWritesPerSecond(maxWritesPerSecond);
+    }
+
+    /**
+     * Change the maximum number of writes per second
+     *
+     * @param  maxWritesPerSecond 0 for the default (10)
+     */
+    public void setMaxWritesPerSecond(int maxWritesPerSecond) {
+        mMinIntervalMs = 1000 / (maxWritesPerSecond > 0 ? maxWritesPerSecond : DEFAULT_MAX_WRITES_PER_SECOND);
+    }
+
+    /**
+     * Give a new value of the setting. Returns at once, the value is written later.
+     *
+     * @param  value
+     */
+    public synchronized void set(int value)
+    {
+        mRequestCount++;
+        mPendingValue = value;
+        if (mScheduled) {
+            return;
+        }
+        mScheduled = true;
+        long delay = mLastWriteMs + mMinIntervalMs - SystemClock.elapsedRealtime();
+        mHandler.postDelayed(mWriteRunnable, Math.max(0, delay));
+    }
+
+    /**
+     * Forget the value written, when the setting may have been changed by someone else
+     */
+    public synchronized void invalidate() {
+        mCommittedValue = UNKNOWN;
+    }
+
+    /**
+     * Write the last value given. Called on the monitor thread.
+     */
+    void writePending()
+    {
+        int value;
+        int committed;
+        synchronized (this) {
+            mScheduled = false;
+            value      = mPendingValue;
+            committed  = mCommittedValue;
+        }
+
+        int current = mSink.read();
+        if (value == (current != UNKNOWN ? current : committed)) {
+            synchronized (this) {
+                mSkippedCount++;
+            }
+            return;
+        }
+
+        // set before the write : a set() during a slow write is delayed from its start, not from now.
+        synchronized (this) {
+            mLastWriteMs = SystemClock.elapsedRealtime();
+        }
+
+        // the sink is called outside the lock : set() is never blocked by a provider write.
+        boolean written = mSink.write(value);
+
+        synchronized (this) {
+            if (written) {
+                mWriteCount++;
+                mCommittedValue = value;
+            } else {
+                mFailedCount++;
+            }
+        }
+    }
+
+    /**
+     * Get the statistics of the writer : name$requests$writes$coalesced$skipped$failed
+     * coalesced are the values replaced by a newer one before being written,
+     * skipped are the values equal to the value of the setting,
+     * failed are the writes refused by the setting.
+     *
+     * @return String
+     */
+    public synchronized String getStats()
+    {
+        long coalesced = mRequestCount - mWriteCount - mSkippedCount - mFailedCount - (mScheduled ? 1 : 0);
+        return mName + "$" + mRequestCount + "$" + mWriteCount + "$" + Math.max(0, coalesced) + "$" + mSkippedCount + "$" + mFailedCount;
+    }
+
+    public synchronized long getRequestCount() {
+        return mRequestCount;
+    }
+
+    public synchronized long getWriteCount() {
+        return mWriteCount;
+    }
+
+    public synchronized long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    public synchronized long getFailedCount() {
+        return mFailedCount;
+    }
+}
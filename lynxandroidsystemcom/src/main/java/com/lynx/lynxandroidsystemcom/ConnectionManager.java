@@ -13,14 +13,9 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.wifi.ScanResult;
-import android.net.wifi.WifiConfiguration;
-import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.provider.Settings;
-import android.text.TextUtils;
 import android.util.Log;
 import java.util.ArrayList;
 import java.util.List;
@@ -33,9 +28,6 @@ public class ConnectionManager {
     private static final int PERMISSIONS_REQUEST_CODE_ACCESS_COARSE_LOCATION = 123;
     private Context context;
     private Activity activity;
-    private static final String WPA = "WPA";
-    private static final String WEP = "WEP";
-    private static final String OPEN = "Open";
     private final static String TAG = "WiFiConnector";
 
     public ConnectionManager(Context context, Activity activity) {
@@ -84,154 +76,46 @@ public class ConnectionManager {
 
     }
 
+    /**
+     * Connect to a network with the WifiConnectionPipeline. The result is not known at the return :
+     * WifiConnectionPhase and WifiConnectionResult are sent to Unity during the attempt.
+     *
+     * @param  networkSSID name of the network, without quotes
+     * @param  networkPass password of the network, ignored for open networks
+     * @return 100 if already connected, 300 if the connection is requested
+     */
     public int requestWIFIConnection(String networkSSID, String networkPass) {
 
-        Log.d("LynxAndroidSystem","requestWIFIConnection 1 called with : " + networkSSID);
+        Log.d("LynxAndroidSystem","requestWIFIConnection called with : " + networkSSID);
 
-        try {
-            Log.d("LynxAndroidSystem","requestWIFIConnection 2 called with : " + networkSSID);
-
-            WifiManager wifiManager = (WifiManager) context.getSystemService(WIFI_SERVICE);
-
-            /*
-            if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && context.checkSelfPermission(Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED)
-            {
-                Log.d("LynxAndroidSystem","before request permissions : ");
-
-
-                requestPermissions(new String[]{Manifest.permission.ACCESS_COARSE_LOCATION}, PERMISSIONS_REQUEST_CODE_ACCESS_COARSE_LOCATION);
-                //After this point you wait for callback in onRequestPermissionsResult(int, String[], int[]) overriden method
-
-            }else{
-
-                Log.d("LynxAndroidSystem","do something, permission was previously granted; or legacy device");
-
-                scanWifi(wifiManager, networkSSID);
-                //do something, permission was previously granted; or legacy device
-            }
-            */
-
-            //Check ssid exists
-            if (scanWifi(wifiManager, networkSSID))
-            {
-                // cedrock force return now :
-                Log.d("LynxAndroidSystem","Scan wifi has return true so SSID has been found");
-
-                // cedric
-                if (getCurrentSSID(wifiManager) != null && getCurrentSSID(wifiManager).equals("\"" + networkSSID + "\""))
-                {
-                    //new ShowToast(context, "Already Connected With " + networkSSID);
-                    Log.d("LynxAndroidSystem","Already Connected With " + networkSSID);
-                    return 100;//SyncStateContract.Constants.ALREADY_CONNECTED;
-                }
-
-                //Security type detection
-                String SECURE_TYPE = checkSecurity(wifiManager, networkSSID);
-                if (SECURE_TYPE == null)
-                {
-                    Log.d("LynxAndroidSystem","Unable to find Security type for " + networkSSID);
-                    //new ShowToast(context, "Unable to find Security type for " + networkSSID);
-                    return 200;//SyncStateContract.Constants.UNABLE_TO_FIND_SECURITY_TYPE;
-                }
-
-                if (SECURE_TYPE.equals(WPA)) {
-                    Log.d("LynxAndroidSystem","SECURE_TYPE.equals(WPA)");
-                    WPA(networkSSID, networkPass, wifiManager);
-                } else if (SECURE_TYPE.equals(WEP)) {
-                    Log.d("LynxAndroidSystem","SECURE_TYPE.equals(WEP)");
-                    WEP(networkSSID, networkPass);
-                } else {
-                    Log.d("LynxAndroidSystem","OPEN");
-                    OPEN(wifiManager, networkSSID);
-                }
-                return 300;//SyncStateContract.Constants.CONNECTION_REQUESTED;
-            }// cedric
-
-            /*connectME();*/
-            } catch (Exception e) {
-                Log.d("LynxAndroidSystem","Error Connecting WIFI " + e);
-                //new ShowToast(context, "Error Connecting WIFI " + e);
-            }
-
-        return 500;//SyncStateContract.Constants.SSID_NOT_FOUND;
-    }
-
-    private void WPA(String networkSSID, String networkPass, WifiManager wifiManager)
-    {
-        WifiConfiguration wc = new WifiConfiguration();
-        wc.SSID = "\"" + networkSSID + "\"";
-        wc.preSharedKey = "\"" + networkPass + "\"";
-        wc.status = WifiConfiguration.Status.ENABLED;
-        wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
-        wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
-        wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-        wc.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
-        wc.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
-        wc.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
-
-        int id = wifiManager.addNetwork(wc);
-        wifiManager.disconnect();
-
-        Log.d("LynxAndroidSystem","wifiManager.enableNetwork() in WPA ");
-
-        wifiManager.enableNetwork(id, true);// cedric : change le 27/10/2020 to false :
-        wifiManager.reconnect();
-
-    }
-
-    private void WEP(String networkSSID, String networkPass) {
-    }
-
-    private void OPEN(WifiManager wifiManager, String networkSSID) {
-        WifiConfiguration wc = new WifiConfiguration();
-        wc.SSID = "\"" + networkSSID + "\"";
-        wc.hiddenSSID = true;
-        wc.priority = 0xBADBAD;
-        wc.status = WifiConfiguration.Status.ENABLED;
-        wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
-        int id = wifiManager.addNetwork(wc);
-        wifiManager.disconnect();
-
-        Log.d("LynxAndroidSystem","wifiManager.enableNetwork() in OPEN ");
-
-        wifiManager.enableNetwork(id, true);// cedric : change le 27/10/2020 to false :
-        wifiManager.reconnect();
-    }
-
-    boolean scanWifi(WifiManager wifiManager, String networkSSID) {
-
-        Log.i("LynxAndroidSystem", "scanWifi called");
-
-        List<ScanResult> scanList = wifiManager.getScanResults();
-        boolean found = false;
-
-        for (ScanResult i : scanList)
+        String currentSSID = getSignalMonitor().getSsid();
+        if (currentSSID != null && currentSSID.equals("\"" + networkSSID + "\""))
         {
-            if (i.SSID != null) {
-                Log.i("LynxAndroidSystem", "SSID: " + i.SSID);
-            }
-
-            if (i.SSID != null && i.SSID.equals(networkSSID)) {
-                Log.i(TAG, "Found SSID: " + i.SSID);
-                found = true;
-                //return true;
-            }
+            Log.d("LynxAndroidSystem","Already Connected With " + networkSSID);
+            return 100;//SyncStateContract.Constants.ALREADY_CONNECTED;
         }
 
-        if (found) return true;
+        // the pipeline scans if the network is not in the last results, and reports RESULT_NOT_FOUND.
+        int attemptId = WifiConnectionPipeline.getInstance(context).connect(networkSSID, networkPass, 0);
+        Log.d("LynxAndroidSystem","Connection requested, attempt : " + attemptId);
+
+        return 300;//SyncStateContract.Constants.CONNECTION_REQUESTED;
+    }
 
-        Log.d("LynxAndroidSystem","SSID " + networkSSID + " Not Found");
-        //new ShowToast(context, "SSID " + networkSSID + " Not Found");
-        return false;
+    /**
+     * Get the last wifi scan results, kept in memory by the scan manager.
+     *
+     * @return WifiScanSnapshot
+     */
+    WifiScanSnapshot getScanSnapshot() {
+        return WifiScanManager.getInstance(context).getSnapshot();
     }
 
     List<String> getWifiSSIDList() {
 
         Log.i("LynxAndroidSystem", "get Wifi SSID List called");
 
-        WifiManager wifiManager = (WifiManager) context.getSystemService(WIFI_SERVICE);
-
-        List<ScanResult> scanList = wifiManager.getScanResults();
+        List<ScanResult> scanList = getScanSnapshot().getResults();
 
         List<String> SSIDList = new ArrayList<String>();
 
@@ -250,9 +134,7 @@ public class ConnectionManager {
 
         Log.i("LynxAndroidSystem", "getWifiDataList called");
 
-        WifiManager wifiManager = (WifiManager) context.getSystemService(WIFI_SERVICE);
-
-        List<ScanResult> scanList = wifiManager.getScanResults();
+        List<ScanResult> scanList = getScanSnapshot().getResults();
 
         List<WifiData> wifiDataList = new ArrayList<WifiData>();
 
@@ -293,51 +175,35 @@ public class ConnectionManager {
         return getCurrentSSID(wifiManager);
     }
 
-    public String getCurrentSSID(WifiManager wifiManager) {
-        String ssid = null;
-        ConnectivityManager connManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo networkInfo = connManager.getNetworkInfo(ConnectivityManager.TYPE_WIFI);
-
-        if (networkInfo.isConnected())
-        {
-            final WifiInfo connectionInfo = wifiManager.getConnectionInfo();
-
-            if (connectionInfo != null && !TextUtils.isEmpty(connectionInfo.getSSID())) {
-
-                ssid = connectionInfo.getSSID();
-
-                // Level of current connection
-                int rssi = wifiManager.getConnectionInfo().getRssi();
-                int level = WifiManager.calculateSignalLevel(rssi, 5);
-                //System.out.println("Level is " + level + " out of 5");
-
-                //Log.i("LynxAndroidSystem", "Level is " + level + " out of 5");
+    /**
+     * Get the signal monitor, started at the first call : the next calls are answered from memory.
+     * The monitor is stopped at the last unregisterChangesReceivers if nothing else started it.
+     *
+     * @return WifiSignalMonitor
+     */
+    WifiSignalMonitor getSignalMonitor() {
+        WifiSignalMonitor monitor = WifiSignalMonitor.getInstance(context);
+        monitor.startForGetter();
+        return monitor;
+    }
 
-            }
-        }
-        return ssid;
+    public String getCurrentSSID(WifiManager wifiManager) {
+        return getSignalMonitor().getSsid();
     }
 
 
     public WifiData getCurrentWifiData()
     {
-        WifiManager wifiManager = (WifiManager) context.getSystemService(WIFI_SERVICE);
-        final WifiInfo connectionInfo = wifiManager.getConnectionInfo();
-
-        if (connectionInfo != null && !TextUtils.isEmpty(connectionInfo.getSSID())) {
+        WifiSignalMonitor monitor = getSignalMonitor();
+        String ssid = monitor.getSsid();
 
-            String ssid = connectionInfo.getSSID();
+        if (ssid != null) {
 
-            // Level of current connection
-            int rssi  = connectionInfo.getRssi();
-            int level = WifiManager.calculateSignalLevel(rssi, 5);
-
-            //Log.i("LynxAndroidSystem", "Level is " + level + " out of 5");
             // cedrock again
             WifiData wifiData = new WifiData();
 
             wifiData.ssid = ssid;
-            wifiData.level = level; // level here is between 0 and 4. not in dB.
+            wifiData.level = monitor.getLevel(); // level here is between 0 and 4. not in dB.
             wifiData.security = 0; // dummy;
 
             return wifiData;
@@ -349,30 +215,4 @@ public class ConnectionManager {
 
 
 
-
-
-
-
-
-    private String checkSecurity(WifiManager wifiManager, String ssid) {
-        List<ScanResult> networkList = wifiManager.getScanResults();
-        for (ScanResult network : networkList) {
-            if (network.SSID.equals(ssid)) {
-                String Capabilities = network.capabilities;
-                if (Capabilities.contains("WPA")) {
-                    return WPA;
-                } else if (Capabilities.contains("WEP")) {
-                    return WEP;
-                } else {
-                    return OPEN;
-                }
-
-            }
-        }
-        return null;
-    }
-
-
-
-
 }
\ No newline at end of file
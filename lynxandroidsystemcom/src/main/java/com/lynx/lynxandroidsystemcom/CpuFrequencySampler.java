@@ -0,0 +1,267 @@
+/**
+ * CpuFrequencySampler reads the cpufreq and thermal zone files of the kernel :
+ * - [cpuRoot]/cpuN/cpufreq/scaling_cur_freq, scaling_max_freq and cpuinfo_max_freq
+ * - [thermalRoot]/thermal_zoneN/temp
+ * <p>
+ * All the files are found and opened once, then each sample reuses the same buffer and
+ * the same arrays : sampling doesn't allocate anything.
+ * The root folders can be given to read a fake tree (tests on any Linux machine).
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class CpuFrequencySampler {
+
+    /** Default folder of the cpus */
+    public static final String DEFAULT_CPU_ROOT     = "/sys/devices/system/cpu";
+
+    /** Default folder of the thermal zones */
+    public static final String DEFAULT_THERMAL_ROOT = "/sys/class/thermal";
+
+    // Readers, one per cpu or per thermal zone :
+    private final SysFileReader[] mCurFreqReaders;
+    private final SysFileReader[] mScalingMaxFreqReaders;
+    private final SysFileReader[] mCpuInfoMaxFreqReaders;
+    private final SysFileReader[] mTemperatureReaders;
+
+    private final byte[] mBuffer = new byte[64];
+
+    // Last sample (frequencies in kHz, temperatures in milli degree Celsius) :
+    private final long[] mCurFreq;
+    private final long[] mScalingMaxFreq;
+    private final long[] mCpuInfoMaxFreq;
+    private final long[] mTemperature;
+
+    // Summary of the last sample :
+    private int  mMinCapPercent     = 100;
+    private int  mAverageLoadPercent = 0;
+    private long mMaxTemperature    = 0;
+
+    public CpuFrequencySampler() {
+        this(new File(DEFAULT_CPU_ROOT), new File(DEFAULT_THERMAL_ROOT));
+    }
+
+    public CpuFrequencySampler(File cpuRoot, File thermalRoot)
+    {
+        File[] cpuFolders     = listNumberedFolders(cpuRoot, "cpu");
+        File[] thermalFolders = listNumberedFolders(thermalRoot, "thermal_zone");
+
+        mCurFreqReaders        = new SysFileReader[cpuFolders.length];
+        mScalingMaxFreqReaders = new SysFileReader[cpuFolders.length];
+        mCpuInfoMaxFreqReaders = new SysFileReader[cpuFolders.length];
+
+        for (int i = 0; i < cpuFolders.length; i++)
+        {
+            File cpufreq = new File(cpuFolders[i], "cpufreq");
+            mCurFreqReaders[i]        = new SysFileReader(new File(cpufreq, "scaling_cur_freq"));
+            mScalingMaxFreqReaders[i] = new SysFileReader(new File(cpufreq, "scaling_max_freq"));
+            mCpuInfoMaxFreqReaders[i] = new SysFileReader(new File(cpufreq, "cpuinfo_max_freq"));
+        }
+
+        mTemperatureReaders = new SysFileReader[thermalFolders.length];
+        for (int i = 0; i < thermalFolders.length; i++) {
+            mTemperatureReaders[i] = new SysFileReader(new File(thermalFolders[i], "temp"));
+        }
+
+        mCurFreq        = new long[cpuFolders.length];
+        mScalingMaxFreq = new long[cpuFolders.length];
+        mCpuInfoMaxFreq = new long[cpuFolders.length];
+        mTemperature    = new long[thermalFolders.length];
+    }
+
+    /**
+     * List the folders named prefix followed by a number (cpu0, cpu1.. or thermal_zone0..), sorted by number.
+     */
+    private static File[] listNumberedFolders(File root, String prefix)
+    {
+        File[] files = root.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+
+        List<File> folders = new ArrayList<File>();
+        for (File file : files)
+        {
+            String name = file.getName();
+            if (name.length() > prefix.length() && name.startsWith(prefix) && isNumber(name, prefix.length())) {
+                folders.add(file);
+            }
+        }
+
+        final int prefixLength = prefix.length();
+        File[] result = folders.toArray(new File[0]);
+        Arrays.sort(result, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(Integer.parseInt(a.getName().substring(prefixLength)),
+                                       Integer.parseInt(b.getName().substring(prefixLength)));
+            }
+        });
+        return result;
+    }
+
+    private static boolean isNumber(String text, int from)
+    {
+        for (int i = from; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read all the files and compute the summary.
+     * An offline cpu (no cpufreq file) gives 0 values and is ignored in the summary.
+     */
+    public void sample()
+    {
+        int  minCapPercent = 100;
+        long loadSum       = 0;
+        int  onlineCount   = 0;
+
+        for (int i = 0; i < mCurFreq.length; i++)
+        {
+            mCurFreq[i]        = mCurFreqReaders[i].readLong(mBuffer, 0);
+            mScalingMaxFreq[i] = mScalingMaxFreqReaders[i].readLong(mBuffer, 0);
+
+            // cpuinfo_max_freq never changes : read it only once.
+            if (mCpuInfoMaxFreq[i] <= 0) {
+                mCpuInfoMaxFreq[i] = mCpuInfoMaxFreqReaders[i].readLong(mBuffer, 0);
+                mCpuInfoMaxFreqReaders[i].close();
+            }
+
+            if (mCurFreq[i] <= 0 || mCpuInfoMaxFreq[i] <= 0) {
+                continue;
+            }
+
+            if (mScalingMaxFreq[i] > 0) {
+                int capPercent = (int) (mScalingMaxFreq[i] * 100 / mCpuInfoMaxFreq[i]);
+                minCapPercent = Math.min(minCapPercent, capPercent);
+            }
+
+            loadSum += mCurFreq[i] * 100 / mCpuInfoMaxFreq[i];
+            onlineCount++;
+        }
+
+        long maxTemperature = 0;
+        for (int i = 0; i < mTemperature.length; i++) {
+            mTemperature[i] = mTemperatureReaders[i].readLong(mBuffer, 0);
+            maxTemperature  = Math.max(maxTemperature, mTemperature[i]);
+        }
+
+        mMinCapPercent      = minCapPercent;
+        mAverageLoadPercent = onlineCount > 0 ? (int) (loadSum / onlineCount) : 0;
+        mMaxTemperature     = maxTemperature;
+    }
+
+    /**
+     * Close all the opened files.
+     */
+    public void close()
+    {
+        for (int i = 0; i < mCurFreq.length; i++) {
+            mCurFreqReaders[i].close();
+            mScalingMaxFreqReaders[i].close();
+            mCpuInfoMaxFreqReaders[i].close();
+        }
+        for (SysFileReader reader : mTemperatureReaders) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Get the number of cpus found
+     *
+     * @return int
+     */
+    public int getCpuCount() {
+        return mCurFreq.length;
+    }
+
+    /**
+     * Get the number of thermal zones found
+     *
+     * @return int
+     */
+    public int getThermalZoneCount() {
+        return mTemperature.length;
+    }
+
+    /**
+     * Get the current frequency of a cpu in kHz
+     *
+     * @param  cpu index of the cpu
+     * @return long
+     */
+    public long getCurrentFrequency(int cpu) {
+        return mCurFreq[cpu];
+    }
+
+    /**
+     * Get the maximum frequency allowed now for a cpu in kHz (lowered when the cpu is throttled)
+     *
+     * @param  cpu index of the cpu
+     * @return long
+     */
+    public long getScalingMaxFrequency(int cpu) {
+        return mScalingMaxFreq[cpu];
+    }
+
+    /**
+     * Get the hardware maximum frequency of a cpu in kHz
+     *
+     * @param  cpu index of the cpu
+     * @return long
+     */
+    public long getCpuInfoMaxFrequency(int cpu) {
+        return mCpuInfoMaxFreq[cpu];
+    }
+
+    /**
+     * Get the temperature of a thermal zone in milli degree Celsius
+     *
+     * @param  zone index of the thermal zone
+     * @return long
+     */
+    public long getTemperature(int zone) {
+        return mTemperature[zone];
+    }
+
+    /**
+     * Get the lowest frequency cap of all cpus : scaling_max_freq / cpuinfo_max_freq in percent.
+     * 100 means that no cpu is capped.
+     *
+     * @return int
+     */
+    public int getMinCapPercent() {
+        return mMinCapPercent;
+    }
+
+    /**
+     * Get the average of the current frequency / cpuinfo_max_freq in percent of all online cpus
+     *
+     * @return int
+     */
+    public int getAverageLoadPercent() {
+        return mAverageLoadPercent;
+    }
+
+    /**
+     * Get the highest temperature of all thermal zones in milli degree Celsius
+     *
+     * @return long
+     */
+    public long getMaxTemperature() {
+        return mMaxTemperature;
+    }
+}
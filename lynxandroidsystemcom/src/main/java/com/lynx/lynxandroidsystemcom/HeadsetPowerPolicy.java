@@ -0,0 +1,247 @@
+/**
+ * HeadsetPowerPolicy saves power while the headset is not worn : after a timeout without anything
+ * close to the proximity sensor, the participants (scans, high rate sensors, brightness, observers)
+ * are paused, and they are resumed as soon as the headset is worn again.
+ * <p>
+ * The resume is done at the first near sample, without the debounce of HeadsetWornStateChange,
+ * so that everything is back within one frame. The duration of each transition is logged,
+ * kept in a LatencyHistory (pause / resume, in microseconds) and sent to Unity with
+ * HeadsetPowerTransition : paused$totalUs$name:us,name:us...
+ *
+ * @see ProximitySensorMng
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class HeadsetPowerPolicy implements ProximitySensorMng.Listener {
+
+    /** Default time without the headset worn before the pause */
+    public static final long DEFAULT_NOT_WORN_TIMEOUT_MS = 30 * 1000;
+
+    /** Duration of a frame at 90Hz : a resume longer than this is logged as a warning */
+    static final long FRAME_BUDGET_US = 11111;
+
+    /**
+     * A part of the library that can be paused while the headset is not worn
+     */
+    public interface Participant {
+        /**
+         * @return the name of the participant, for the logs
+         */
+        String getName();
+
+        /**
+         * Pause the participant. Called on the sensor hub thread.
+         *
+         * @return true if something was paused and resume must be called
+         */
+        boolean pause();
+
+        /**
+         * Resume what was paused. Called on the sensor hub thread.
+         */
+        void resume();
+    }
+
+    private final ProximitySensorMng mProximitySensorMng;
+    private final Handler            mHandler;
+    private final List<Participant>  mParticipants = new CopyOnWriteArrayList<Participant>();
+    private final LatencyHistory     mHistory      = new LatencyHistory(LatencyHistory.DEFAULT_CAPACITY, LatencyHistory.DEFAULT_MAX_KEYS);
+
+    /** The participants paused, in the order of the pause, only used on the hub thread */
+    private final List<Participant> mPausedParticipants = new ArrayList<Participant>();
+
+    private volatile long    mNotWornTimeoutMs = DEFAULT_NOT_WORN_TIMEOUT_MS;
+    private volatile boolean mEnabled          = false;
+    private volatile boolean mPaused           = false;
+
+    private final Runnable mPauseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pauseAll();
+        }
+    };
+
+    /**
+     * @param  context            the android context of the calling application
+     * @param  proximitySensorMng the proximity sensor, started by enable
+     */
+    public HeadsetPowerPolicy(Context context, ProximitySensorMng proximitySensorMng)
+    {
+        mProximitySensorMng = proximitySensorMng;
+        mHandler            = SensorHub.getInstance(context).getHandler();
+    }
+
+    /**
+     * Add a participant. The participants are paused in the order they are added and resumed in the reverse order.
+     *
+     * @param  participant
+     */
+    public void addParticipant(Participant participant) {
+        if (participant != null && !mParticipants.contains(participant)) {
+            mParticipants.add(participant);
+        }
+    }
+
+    /**
+     * Start the policy
+     *
+     * @param  notWornTimeoutMs time without the headset worn before the pause, 0 for the default (30s)
+     * @return true if the device has a proximity sensor
+     */
+    public synchronized boolean enable(long notWornTimeoutMs)
+    {
+        mNotWornTimeoutMs = notWornTimeoutMs > 0 ? notWornTimeoutMs : DEFAULT_NOT_WORN_TIMEOUT_MS;
+        if (mEnabled) {
+            return true;
+        }
+        if (!mProximitySensorMng.start()) {
+            return false;
+        }
+        mProximitySensorMng.addListener(this);
+        mEnabled = true;
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onProximityChanged(mProximitySensorMng.isNear());
+            }
+        });
+        Log.d("LynxAndroidSystem", "HeadsetPowerPolicy enabled, timeout (ms) : " + mNotWornTimeoutMs);
+        return true;
+    }
+
+    /**
+     * Stop the policy, what is paused is resumed. The proximity sensor is left started.
+     */
+    public synchronized void disable()
+    {
+        if (!mEnabled) {
+            return;
+        }
+        mProximitySensorMng.removeListener(this);
+        mEnabled = false;
+
+        mHandler.removeCallbacks(mPauseRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                resumeAll();
+            }
+        });
+        Log.d("LynxAndroidSystem", "HeadsetPowerPolicy disabled");
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Say if the participants are paused
+     *
+     * @return boolean
+     */
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    /**
+     * Get the durations of the transitions, keys pause and resume, in microseconds
+     *
+     * @return LatencyHistory
+     */
+    public LatencyHistory getHistory() {
+        return mHistory;
+    }
+
+    @Override
+    public void onProximityChanged(boolean near)
+    {
+        if (!mEnabled) {
+            return;
+        }
+        mHandler.removeCallbacks(mPauseRunnable);
+        if (near) {
+            resumeAll();
+        } else if (!mPaused) {
+            mHandler.postDelayed(mPauseRunnable, mNotWornTimeoutMs);
+        }
+    }
+
+    /**
+     * Pause all the participants. Called on the hub thread.
+     */
+    private void pauseAll()
+    {
+        if (mPaused) {
+            return;
+        }
+        mPaused = true;
+
+        StringBuilder details = new StringBuilder();
+        long start = System.nanoTime();
+        for (Participant participant : mParticipants)
+        {
+            long participantStart = System.nanoTime();
+            if (participant.pause()) {
+                mPausedParticipants.add(participant);
+                appendDuration(details, participant.getName(), participantStart);
+            }
+        }
+        endTransition("pause", start, details);
+    }
+
+    /**
+     * Resume the participants paused, in the reverse order. Called on the hub thread.
+     */
+    private void resumeAll()
+    {
+        if (!mPaused) {
+            return;
+        }
+        mPaused = false;
+
+        StringBuilder details = new StringBuilder();
+        long start = System.nanoTime();
+        for (int i = mPausedParticipants.size() - 1; i >= 0; i--)
+        {
+            Participant participant = mPausedParticipants.get(i);
+            long participantStart = System.nanoTime();
+            participant.resume();
+            appendDuration(details, participant.getName(), participantStart);
+        }
+        mPausedParticipants.clear();
+        endTransition("resume", start, details);
+    }
+
+    private static void appendDuration(StringBuilder details, String name, long startNs)
+    {
+        if (details.length() > 0) {
+            details.append(',');
+        }
+        details.append(name).append(':').append((System.nanoTime() - startNs) / 1000);
+    }
+
+    private void endTransition(String transition, long startNs, StringBuilder details)
+    {
+        long totalUs = (System.nanoTime() - startNs) / 1000;
+        mHistory.record(transition, totalUs, true);
+
+        if ("resume".equals(transition) && totalUs > FRAME_BUDGET_US) {
+            Log.w("LynxAndroidSystem", "HeadsetPowerPolicy resume longer than a frame (us) : " + totalUs + " " + details);
+        } else {
+            Log.d("LynxAndroidSystem", "HeadsetPowerPolicy " + transition + " (us) : " + totalUs + " " + details);
+        }
+        LynxAndroidSystemComMng.sendUnityMessage("HeadsetPowerTransition", mPaused + "$" + totalUs + "$" + details);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * IconCache keeps the PNG icons already computed by GetIcon so that the same icon
+ * is not compressed again each time the launcher asks for it.
+ * The cache is reduced or emptied when the device is under memory pressure.
+ *
+ * @see MemoryPressureMonitor
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.util.LruCache;
+
+public class IconCache implements TrimmableCache {
+
+    /** Default size of the cache in bytes */
+    public static final int DEFAULT_MAX_SIZE_IN_BYTES = 8 * 1024 * 1024;
+
+    /** The icons, key is the package name */
+    private final LruCache<String, byte[]> mIcons;
+
+    /** Maximum size of the cache in bytes */
+    private final int mMaxSizeInBytes;
+
+    public IconCache(int maxSizeInBytes) {
+        mMaxSizeInBytes = maxSizeInBytes;
+        mIcons = new LruCache<String, byte[]>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(String packageName, byte[] icon) {
+                return icon.length;
+            }
+        };
+    }
+
+    /**
+     * Get the icon of a package
+     *
+     * @param  packageName
+     * @return the PNG icon, null if not in the cache.
+     */
+    public byte[] get(String packageName) {
+        return mIcons.get(packageName);
+    }
+
+    /**
+     * Store the icon of a package
+     *
+     * @param  packageName
+     * @param  icon the PNG icon
+     */
+    public void put(String packageName, byte[] icon) {
+        if (packageName != null && icon != null) {
+            mIcons.put(packageName, icon);
+        }
+    }
+
+    /**
+     * Remove the icon of a package (package updated or removed)
+     *
+     * @param  packageName
+     */
+    public void remove(String packageName) {
+        if (packageName != null) {
+            mIcons.remove(packageName);
+        }
+    }
+
+    /**
+     * Get the current size of the cache
+     *
+     * @return size in bytes
+     */
+    public int size() {
+        return mIcons.size();
+    }
+
+    @Override
+    public void trim(int pressureLevel)
+    {
+        if (pressureLevel >= MemoryPressureMonitor.LEVEL_CRITICAL) {
+            mIcons.evictAll();
+        } else if (pressureLevel == MemoryPressureMonitor.LEVEL_MODERATE) {
+            mIcons.trimToSize(mMaxSizeInBytes / 4);
+        } else if (pressureLevel == MemoryPressureMonitor.LEVEL_LOW) {
+            mIcons.trimToSize(mMaxSizeInBytes / 2);
+        }
+    }
+}
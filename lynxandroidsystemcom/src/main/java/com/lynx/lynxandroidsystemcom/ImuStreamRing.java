@@ -0,0 +1,174 @@
+/**
+ * ImuStreamRing is a ring of sensor samples in a direct ByteBuffer, shared with Unity :
+ * the c# side reads the samples in the memory of the buffer (AndroidJNI.GetDirectBufferAddress),
+ * without any message per sample.
+ * <p>
+ * Layout, native byte order :
+ * <pre>
+ * header (HEADER_SIZE bytes) :
+ *   0  int  MAGIC
+ *   4  int  VERSION
+ *   8  int  RECORD_SIZE
+ *   12 int  capacity, number of records
+ *   16 long write sequence, number of records written since the start
+ * record n at HEADER_SIZE + (n % capacity) * RECORD_SIZE :
+ *   0  long timestamp in ns (SensorEvent.timestamp)
+ *   8  int  sensor type
+ *   12 int  sequence of the record, low 32 bits
+ *   16 float x, 20 float y, 24 float z
+ * </pre>
+ * The record is written before the write sequence, its sequence last. The write sequence of the header
+ * is stored after a volatile write followed by a volatile read : a full fence, so it is never visible
+ * before the record it covers, whatever the reader (java or native).
+ * <p>
+ * A reader reads the write sequence with an acquire load (Volatile.Read in c#), copies the records from
+ * its last sequence to the write sequence, then reads the write sequence again after a full fence
+ * (Interlocked.MemoryBarrier in c#), so that the copy is not done after the second read. Only the records
+ * newer than the new write sequence - capacity are valid, the older ones may have been overwritten during
+ * the copy (the record at new write sequence - capacity can be in the middle of its overwrite).
+ * <p>
+ * write() does not allocate, it can be called for each sample.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class ImuStreamRing {
+
+    public static final int MAGIC       = 0x4C494D55; // "LIMU"
+    public static final int VERSION     = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+
+    /** Default number of records, about 2s of accelerometer and gyroscope at 400Hz */
+    public static final int DEFAULT_CAPACITY = 2048;
+
+    static final int OFFSET_CAPACITY       = 12;
+    static final int OFFSET_WRITE_SEQUENCE = 16;
+
+    private final ByteBuffer mBuffer;
+    private final int        mCapacity;
+
+    /** Only modified by the writer thread */
+    private long mWriteSequence = 0;
+
+    /**
+     * The write sequence, for the java readers. The volatile write (release) keeps the record before it,
+     * the volatile read that follows it is not moved before it and keeps the header store after it (acquire).
+     */
+    private volatile long mPublishedSequence = 0;
+
+    /**
+     * Written by read() between the copy of a record and the second read of mPublishedSequence :
+     * the volatile write keeps the loads of the copy before it, the volatile read is not moved before it.
+     */
+    private volatile long mReadFence = 0;
+
+    /**
+     * @param  capacity number of records, 0 for the default (2048)
+     */
+    public ImuStreamRing(int capacity)
+    {
+        mCapacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        mBuffer   = ByteBuffer.allocateDirect(HEADER_SIZE + mCapacity * RECORD_SIZE).order(ByteOrder.nativeOrder());
+
+        mBuffer.putInt(0, MAGIC);
+        mBuffer.putInt(4, VERSION);
+        mBuffer.putInt(8, RECORD_SIZE);
+        mBuffer.putInt(OFFSET_CAPACITY, mCapacity);
+        mBuffer.putLong(OFFSET_WRITE_SEQUENCE, 0);
+    }
+
+    /**
+     * Get the buffer shared with Unity
+     *
+     * @return ByteBuffer, direct
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Get the number of records written since the start
+     *
+     * @return long
+     */
+    public long getWriteSequence() {
+        return mPublishedSequence;
+    }
+
+    /**
+     * Write a sample. Must always be called on the same thread.
+     *
+     * @param  timestampNs
+     * @param  sensorType
+     * @param  x
+     * @param  y
+     * @param  z
+     */
+    public void write(long timestampNs, int sensorType, float x, float y, float z)
+    {
+        int offset = HEADER_SIZE + (int) (mWriteSequence % mCapacity) * RECORD_SIZE;
+
+        mBuffer.putLong(offset, timestampNs);
+        mBuffer.putInt(offset + 8, sensorType);
+        mBuffer.putFloat(offset + 16, x);
+        mBuffer.putFloat(offset + 20, y);
+        mBuffer.putFloat(offset + 24, z);
+        mBuffer.putInt(offset + 12, (int) mWriteSequence);
+
+        mWriteSequence++;
+        mPublishedSequence = mWriteSequence;
+        // the value stored comes from the volatile read : full fence between the record and the header.
+        mBuffer.putLong(OFFSET_WRITE_SEQUENCE, mPublishedSequence);
+    }
+
+    /**
+     * Read a record, for the java readers and the checks
+     *
+     * @param  sequence the sequence of the record
+     * @param  values   x, y, z of the record
+     * @return the timestamp of the record, -1 if it is not written yet or overwritten
+     */
+    public long read(long sequence, float[] values)
+    {
+        long writeSequence = getWriteSequence();
+        if (sequence >= writeSequence || sequence <= writeSequence - mCapacity) {
+            return -1;
+        }
+        int offset = HEADER_SIZE + (int) (sequence % mCapacity) * RECORD_SIZE;
+        if (mBuffer.getInt(offset + 12) != (int) sequence) {
+            return -1;
+        }
+        long timestampNs = mBuffer.getLong(offset);
+        values[0] = mBuffer.getFloat(offset + 16);
+        values[1] = mBuffer.getFloat(offset + 20);
+        values[2] = mBuffer.getFloat(offset + 24);
+
+        // overwritten during the copy : the write sequence is read again after the loads of the copy.
+        mReadFence = sequence;
+        if (sequence <= getWriteSequence() - mCapacity) {
+            return -1;
+        }
+        return timestampNs;
+    }
+
+    /**
+     * Get the sensor type of a record
+     *
+     * @param  sequence the sequence of the record
+     * @return int
+     */
+    public int getSensorType(long sequence) {
+        return mBuffer.getInt(HEADER_SIZE + (int) (sequence % mCapacity) * RECORD_SIZE + 8);
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * LatencyHistory keeps the last durations measured for a set of keys
+ * (for example the time to connect to each wifi access point) and summarizes them in percentiles.
+ * <p>
+ * Pure java class, thread safe.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LatencyHistory {
+
+    /** Default number of durations kept per key */
+    public static final int DEFAULT_CAPACITY = 32;
+
+    /** Default maximum number of keys, the oldest key is forgotten first */
+    public static final int DEFAULT_MAX_KEYS = 64;
+
+    private final int mCapacity;
+    private final int mMaxKeys;
+
+    /** The entries, in order of last record : reading does not change the order */
+    private final LinkedHashMap<String, Entry> mEntries;
+
+    /**
+     * The durations of one key
+     */
+    private static class Entry {
+        final long[] mDurations;
+        int          mCount     = 0;
+        int          mNextIndex = 0;
+        int          mFailures  = 0;
+
+        Entry(int capacity) {
+            mDurations = new long[capacity];
+        }
+    }
+
+    public LatencyHistory() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_KEYS);
+    }
+
+    public LatencyHistory(int capacity, final int maxKeys)
+    {
+        mCapacity = capacity;
+        mMaxKeys  = maxKeys;
+        mEntries  = new LinkedHashMap<String, Entry>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxKeys;
+            }
+        };
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param  key        what has been measured (an access point, a host...)
+     * @param  durationMs the duration, ignored if success is false
+     * @param  success    false if the operation failed : only the failure counter is increased.
+     */
+    public synchronized void record(String key, long durationMs, boolean success)
+    {
+        // removed and put again : the key becomes the most recent one.
+        Entry entry = mEntries.remove(key);
+        if (entry == null) {
+            entry = new Entry(mCapacity);
+        }
+        mEntries.put(key, entry);
+
+        if (!success) {
+            entry.mFailures++;
+            return;
+        }
+
+        entry.mDurations[entry.mNextIndex] = durationMs;
+        entry.mNextIndex = (entry.mNextIndex + 1) % mCapacity;
+        if (entry.mCount < mCapacity) {
+            entry.mCount++;
+        }
+    }
+
+    /**
+     * Forget all the durations
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Get the summary of a key :
+     * count$failures$p50$p90$max (durations in ms, -1 if no duration)
+     *
+     * @param  key
+     * @return String, null if the key is unknown
+     */
+    public synchronized String getSummary(String key)
+    {
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        return summarize(entry);
+    }
+
+    /**
+     * Get the summary of all the keys, the most recently recorded first :
+     * key$count$failures$p50$p90$max|key$count$failures$p50$p90$max|...
+     *
+     * @return String
+     */
+    public synchronized String getPackedSummaries()
+    {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<Map.Entry<String, Entry>>(mEntries.entrySet());
+
+        StringBuilder packed = new StringBuilder();
+        for (int i = entries.size() - 1; i >= 0; i--)
+        {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entries.get(i).getKey()).append('$').append(summarize(entries.get(i).getValue()));
+        }
+        return packed.toString();
+    }
+
+    private static String summarize(Entry entry)
+    {
+        long[] sorted = Arrays.copyOf(entry.mDurations, entry.mCount);
+        Arrays.sort(sorted);
+        return entry.mCount + "$" + entry.mFailures + "$" + percentile(sorted, sorted.length, 50) + "$"
+                + percentile(sorted, sorted.length, 90) + "$" + (sorted.length > 0 ? sorted[sorted.length - 1] : -1);
+    }
+
+    /**
+     * Get a percentile of sorted values (nearest rank method)
+     *
+     * @param  sorted  values sorted in ascending order
+     * @param  count   number of valid values in sorted
+     * @param  percent the percentile, between 0 and 100
+     * @return the value, -1 if count is 0
+     */
+    public static long percentile(long[] sorted, int count, int percent)
+    {
+        if (count <= 0) {
+            return -1;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * count);
+        rank = Math.max(1, Math.min(count, rank));
+        return sorted[rank - 1];
+    }
+}
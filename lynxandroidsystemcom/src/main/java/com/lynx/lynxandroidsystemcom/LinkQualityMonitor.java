@@ -0,0 +1,236 @@
+/**
+ * LinkQualityMonitor probes a list of endpoints periodically with a LinkQualityProber
+ * on its own thread (the probes are blocking).
+ * <p>
+ * After each round, LinkQualityUpdate is sent to Unity with the results of all the endpoints :
+ * endpoint$sent$lossPercent$minUs$p50Us$p90Us$p99Us$jitterUs$throughputKbps|...
+ * The round trip times of the last rounds are also kept per endpoint in a LatencyHistory.
+ *
+ * @see LinkQualityProber
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public class LinkQualityMonitor {
+
+    /** Default period of the probes */
+    public static final long DEFAULT_PERIOD_MS = 30 * 1000;
+
+    /** Minimum period of the probes */
+    public static final long MIN_PERIOD_MS = 1000;
+
+    /** Number of round trip times kept per endpoint */
+    static final int HISTORY_CAPACITY = 256;
+
+    private final ScheduledExecutorService mExecutor;
+    private final LatencyHistory           mHistory = new LatencyHistory(HISTORY_CAPACITY, LatencyHistory.DEFAULT_MAX_KEYS);
+
+    private volatile LinkQualityProber                mProber    = new LinkQualityProber(0, 0, LinkQualityProber.DEFAULT_THROUGHPUT_BYTES);
+    private volatile List<LinkQualityProber.Endpoint> mEndpoints = new ArrayList<LinkQualityProber.Endpoint>();
+
+    /** Last result of each endpoint, only modified on the prober thread */
+    private final Map<String, String> mLastResults = new LinkedHashMap<String, String>();
+
+    private ScheduledFuture<?> mSchedule = null;
+    private long               mPeriodMs = DEFAULT_PERIOD_MS;
+
+    private final Runnable mProbeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            probeAll();
+        }
+    };
+
+    public LinkQualityMonitor()
+    {
+        mExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "LynxLinkQualityProber");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Set the endpoints to probe
+     *
+     * @param  endpoints protocol:host:port separated by |, for example tcp:192.168.1.10:7|udp:192.168.1.10:7
+     * @return the number of valid endpoints
+     */
+    public int setEndpoints(String endpoints)
+    {
+        List<LinkQualityProber.Endpoint> list = new ArrayList<LinkQualityProber.Endpoint>();
+        if (endpoints != null) {
+            for (String text : endpoints.split("\\|")) {
+                LinkQualityProber.Endpoint endpoint = LinkQualityProber.Endpoint.parse(text);
+                if (endpoint != null) {
+                    list.add(endpoint);
+                } else if (!text.trim().isEmpty()) {
+                    Log.w("LynxAndroidSystem", "LinkQualityMonitor : invalid endpoint " + text);
+                }
+            }
+        }
+        mEndpoints = list;
+
+        // the results of the endpoints removed must not be given anymore.
+        synchronized (mLastResults) {
+            mLastResults.clear();
+        }
+        return list.size();
+    }
+
+    /**
+     * Change the parameters of the probes
+     *
+     * @param  probeCount      number of round trips per probe, 0 for the default (10)
+     * @param  timeoutMs       timeout of one round trip, 0 for the default (1s)
+     * @param  throughputBytes size of the throughput burst on tcp endpoints, 0 to disable it
+     */
+    public void configure(int probeCount, int timeoutMs, int throughputBytes) {
+        mProber = new LinkQualityProber(probeCount, timeoutMs, throughputBytes);
+    }
+
+    /**
+     * Probe the endpoints periodically
+     *
+     * @param  periodMs period of the probes, 0 for the default (30s)
+     */
+    public synchronized void start(long periodMs)
+    {
+        stop();
+        long period = periodMs > 0 ? Math.max(periodMs, MIN_PERIOD_MS) : DEFAULT_PERIOD_MS;
+        mPeriodMs = period;
+        mSchedule = mExecutor.scheduleWithFixedDelay(mProbeRunnable, 0, period, TimeUnit.MILLISECONDS);
+        Log.d("LynxAndroidSystem", "LinkQualityMonitor started with period (ms) : " + period);
+    }
+
+    /**
+     * Stop the periodic probes. A probe in progress ends normally.
+     */
+    public synchronized void stop()
+    {
+        if (mSchedule != null) {
+            mSchedule.cancel(false);
+            mSchedule = null;
+            Log.d("LynxAndroidSystem", "LinkQualityMonitor stopped");
+        }
+    }
+
+    /**
+     * Say if the periodic probes are running
+     *
+     * @return boolean
+     */
+    public synchronized boolean isRunning() {
+        return mSchedule != null;
+    }
+
+    /**
+     * Get the period of the last start
+     *
+     * @return long
+     */
+    public synchronized long getPeriodMs() {
+        return mPeriodMs;
+    }
+
+    /**
+     * Probe the endpoints once, now
+     */
+    public void probeNow() {
+        mExecutor.execute(mProbeRunnable);
+    }
+
+    /**
+     * Get the last result of all the endpoints, same format as LinkQualityUpdate
+     *
+     * @return String
+     */
+    public String getLastResults()
+    {
+        synchronized (mLastResults) {
+            return join(mLastResults.values());
+        }
+    }
+
+    /**
+     * Get the round trip times of the last rounds per endpoint
+     *
+     * @return LatencyHistory, durations in microseconds
+     */
+    public LatencyHistory getHistory() {
+        return mHistory;
+    }
+
+    /**
+     * Probe all the endpoints. Called on the prober thread.
+     */
+    private void probeAll()
+    {
+        List<LinkQualityProber.Endpoint> endpoints = mEndpoints;
+        if (endpoints.isEmpty()) {
+            return;
+        }
+
+        LinkQualityProber prober = mProber;
+        List<String> results = new ArrayList<String>();
+
+        for (LinkQualityProber.Endpoint endpoint : endpoints)
+        {
+            String key = endpoint.toString();
+            LinkQualityProber.Result result;
+            try {
+                result = prober.probe(endpoint);
+            } catch (RuntimeException e) {
+                // an exception would cancel the periodic probes without any notice.
+                Log.e("LynxAndroidSystem", "LinkQualityMonitor : error probing " + key, e);
+                result = new LinkQualityProber.Result();
+                result.endpoint = endpoint;
+                result.rttsUs   = new long[0];
+            }
+
+            for (long rtt : result.rttsUs) {
+                mHistory.record(key, rtt, true);
+            }
+            for (int i = result.received; i < result.sent; i++) {
+                mHistory.record(key, 0, false);
+            }
+
+            String packed = result.pack();
+            results.add(packed);
+            synchronized (mLastResults) {
+                mLastResults.put(key, packed);
+            }
+        }
+
+        LynxAndroidSystemComMng.sendUnityMessage("LinkQualityUpdate", join(results));
+    }
+
+    private static String join(Iterable<String> values)
+    {
+        StringBuilder packed = new StringBuilder();
+        for (String value : values) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(value);
+        }
+        return packed.toString();
+    }
+}
@@ -0,0 +1,363 @@
+/**
+ * LinkQualityProber measures the quality of the link to an endpoint :
+ * round trip time, jitter, loss and throughput.
+ * <p>
+ * - tcp endpoints : the round trip time is the time to open a connection (any open tcp port can be used),
+ * - udp endpoints : the round trip time of small datagrams sent to an echo server,
+ * - throughput (optional) : a burst of data sent to a tcp echo server and read back.
+ * <p>
+ * The probes are blocking : they must not be called on the main thread.
+ * Only java.net is used so it can be tested against a local echo server, without android.
+ *
+ * @see LinkQualityMonitor
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+
+public class LinkQualityProber {
+
+    public static final String PROTOCOL_TCP = "tcp";
+    public static final String PROTOCOL_UDP = "udp";
+
+    /** Default number of round trips per probe */
+    public static final int DEFAULT_PROBE_COUNT = 10;
+
+    /** Default timeout of one round trip */
+    public static final int DEFAULT_TIMEOUT_MS = 1000;
+
+    /** Default size of the throughput burst, 0 to disable it */
+    public static final int DEFAULT_THROUGHPUT_BYTES = 256 * 1024;
+
+    /** Maximum data sent and not read back yet during the throughput burst */
+    static final int THROUGHPUT_WINDOW_BYTES = 32 * 1024;
+
+    /** Delay between two round trips, not to measure our own queue */
+    static final int PROBE_INTERVAL_MS = 20;
+
+    /** Highest tcp / udp port */
+    static final int MAX_PORT = 65535;
+
+    /**
+     * An endpoint to probe : protocol:host:port
+     */
+    public static class Endpoint {
+
+        public final String protocol;
+        public final String host;
+        public final int    port;
+
+        public Endpoint(String protocol, String host, int port) {
+            this.protocol = protocol;
+            this.host     = host;
+            this.port     = port;
+        }
+
+        /**
+         * Parse an endpoint like tcp:192.168.1.10:7 or udp:server.local:7
+         *
+         * @param  text protocol:host:port
+         * @return Endpoint, null if the text is not valid (unknown protocol, no host, port not between 1 and 65535)
+         */
+        public static Endpoint parse(String text)
+        {
+            if (text == null) {
+                return null;
+            }
+            int first = text.indexOf(':');
+            int last  = text.lastIndexOf(':');
+            if (first <= 0 || last <= first + 1 || last == text.length() - 1) {
+                return null;
+            }
+            String protocol = text.substring(0, first).trim();
+            if (!PROTOCOL_TCP.equals(protocol) && !PROTOCOL_UDP.equals(protocol)) {
+                return null;
+            }
+            String host = text.substring(first + 1, last).trim();
+            if (host.isEmpty()) {
+                return null;
+            }
+            try {
+                int port = Integer.parseInt(text.substring(last + 1).trim());
+                if (port < 1 || port > MAX_PORT) {
+                    return null;
+                }
+                return new Endpoint(protocol, host, port);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return protocol + ":" + host + ":" + port;
+        }
+    }
+
+    /**
+     * The result of a probe. Times are in microseconds, -1 if not measured.
+     */
+    public static class Result {
+
+        public Endpoint endpoint;
+        public int      sent;
+        public int      received;
+        public long     minUs          = -1;
+        public long     p50Us          = -1;
+        public long     p90Us          = -1;
+        public long     p99Us          = -1;
+        public long     jitterUs       = -1;
+        public long     throughputKbps = -1;
+
+        /** The round trip times received, in the order of the measures */
+        public long[]   rttsUs;
+
+        /**
+         * Get the loss of the probe
+         *
+         * @return percent of round trips without answer
+         */
+        public int getLossPercent() {
+            return sent > 0 ? (sent - received) * 100 / sent : 0;
+        }
+
+        /**
+         * Pack the result in a string :
+         * endpoint$sent$lossPercent$minUs$p50Us$p90Us$p99Us$jitterUs$throughputKbps
+         *
+         * @return String
+         */
+        public String pack() {
+            return endpoint + "$" + sent + "$" + getLossPercent() + "$" + minUs + "$" + p50Us + "$" + p90Us + "$"
+                    + p99Us + "$" + jitterUs + "$" + throughputKbps;
+        }
+    }
+
+    private final int mProbeCount;
+    private final int mTimeoutMs;
+    private final int mThroughputBytes;
+
+    private final byte[] mSendBuffer    = new byte[8 * 1024];
+    private final byte[] mReceiveBuffer = new byte[8 * 1024];
+
+    /**
+     * @param  probeCount      number of round trips per probe
+     * @param  timeoutMs       timeout of one round trip
+     * @param  throughputBytes size of the throughput burst on tcp endpoints, 0 to disable it
+     */
+    public LinkQualityProber(int probeCount, int timeoutMs, int throughputBytes)
+    {
+        mProbeCount      = probeCount > 0 ? probeCount : DEFAULT_PROBE_COUNT;
+        mTimeoutMs       = timeoutMs > 0 ? timeoutMs : DEFAULT_TIMEOUT_MS;
+        mThroughputBytes = Math.max(0, throughputBytes);
+    }
+
+    /**
+     * Probe an endpoint. Blocking.
+     *
+     * @param  endpoint
+     * @return Result
+     */
+    public Result probe(Endpoint endpoint)
+    {
+        Result result   = new Result();
+        result.endpoint = endpoint;
+
+        long[] rtts = new long[mProbeCount];
+        int received = 0;
+
+        DatagramSocket datagramSocket = null;
+        try {
+            if (PROTOCOL_UDP.equals(endpoint.protocol)) {
+                datagramSocket = new DatagramSocket();
+                datagramSocket.connect(new InetSocketAddress(endpoint.host, endpoint.port));
+                datagramSocket.setSoTimeout(mTimeoutMs);
+            }
+
+            for (int i = 0; i < mProbeCount; i++)
+            {
+                if (i > 0) {
+                    Thread.sleep(PROBE_INTERVAL_MS);
+                }
+                long rtt = datagramSocket != null ? measureUdp(datagramSocket, i) : measureTcpConnect(endpoint);
+                result.sent++;
+                if (rtt >= 0) {
+                    rtts[received++] = rtt;
+                }
+            }
+
+            if (mThroughputBytes > 0 && PROTOCOL_TCP.equals(endpoint.protocol)) {
+                result.throughputKbps = measureThroughput(endpoint);
+            }
+
+        } catch (IOException e) {
+            // unknown host : everything is lost.
+            result.sent = mProbeCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (datagramSocket != null) {
+                datagramSocket.close();
+            }
+        }
+
+        result.received = received;
+        result.rttsUs   = Arrays.copyOf(rtts, received);
+        summarize(result);
+        return result;
+    }
+
+    /**
+     * Compute the percentiles and the jitter of the round trip times
+     */
+    static void summarize(Result result)
+    {
+        long[] rtts  = result.rttsUs;
+        int    count = rtts.length;
+        if (count == 0) {
+            return;
+        }
+
+        // jitter : mean difference between two consecutive round trips.
+        long differences = 0;
+        for (int i = 1; i < count; i++) {
+            differences += Math.abs(rtts[i] - rtts[i - 1]);
+        }
+        result.jitterUs = count > 1 ? differences / (count - 1) : 0;
+
+        long[] sorted = rtts.clone();
+        Arrays.sort(sorted);
+        result.minUs = sorted[0];
+        result.p50Us = LatencyHistory.percentile(sorted, count, 50);
+        result.p90Us = LatencyHistory.percentile(sorted, count, 90);
+        result.p99Us = LatencyHistory.percentile(sorted, count, 99);
+    }
+
+    /**
+     * Time to open a tcp connection
+     *
+     * @return microseconds, -1 if the connection failed
+     */
+    private long measureTcpConnect(Endpoint endpoint) throws IOException
+    {
+        InetSocketAddress address = new InetSocketAddress(endpoint.host, endpoint.port);
+        if (address.isUnresolved()) {
+            throw new IOException("unknown host " + endpoint.host);
+        }
+
+        Socket socket = new Socket();
+        try {
+            long start = System.nanoTime();
+            socket.connect(address, mTimeoutMs);
+            return (System.nanoTime() - start) / 1000;
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Round trip of a datagram to an echo server. The datagram contains the sequence number
+     * so that a late answer of a previous datagram is not taken for this one.
+     *
+     * @return microseconds, -1 if no answer before the timeout
+     */
+    private long measureUdp(DatagramSocket socket, int sequence) throws IOException
+    {
+        for (int i = 0; i < 4; i++) {
+            mSendBuffer[i] = (byte) (sequence >> (24 - 8 * i));
+        }
+        DatagramPacket request = new DatagramPacket(mSendBuffer, 16);
+        DatagramPacket answer  = new DatagramPacket(mReceiveBuffer, mReceiveBuffer.length);
+
+        long start    = System.nanoTime();
+        long deadline = start + mTimeoutMs * 1000000L;
+        socket.send(request);
+
+        while (true)
+        {
+            long remainingMs = (deadline - System.nanoTime()) / 1000000L;
+            if (remainingMs <= 0) {
+                return -1;
+            }
+            socket.setSoTimeout((int) remainingMs);
+            try {
+                answer.setLength(mReceiveBuffer.length);
+                socket.receive(answer);
+            } catch (SocketTimeoutException e) {
+                return -1;
+            } catch (IOException e) {
+                // port unreachable : no echo server.
+                return -1;
+            }
+
+            if (answer.getLength() >= 4 && mReceiveBuffer[0] == mSendBuffer[0] && mReceiveBuffer[1] == mSendBuffer[1]
+                    && mReceiveBuffer[2] == mSendBuffer[2] && mReceiveBuffer[3] == mSendBuffer[3]) {
+                return (System.nanoTime() - start) / 1000;
+            }
+        }
+    }
+
+    /**
+     * Send a burst to a tcp echo server and read it back
+     *
+     * @return the throughput in kbit/s (data sent and read back), -1 if it failed
+     */
+    private long measureThroughput(Endpoint endpoint)
+    {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(endpoint.host, endpoint.port), mTimeoutMs);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(mTimeoutMs);
+            OutputStream output = socket.getOutputStream();
+            InputStream  input  = socket.getInputStream();
+
+            long sent     = 0;
+            long received = 0;
+            long start    = System.nanoTime();
+
+            while (received < mThroughputBytes)
+            {
+                long inFlight = sent - received;
+                if (sent < mThroughputBytes && inFlight < THROUGHPUT_WINDOW_BYTES)
+                {
+                    int length = (int) Math.min(mSendBuffer.length, Math.min(mThroughputBytes - sent, THROUGHPUT_WINDOW_BYTES - inFlight));
+                    output.write(mSendBuffer, 0, length);
+                    sent += length;
+                    continue;
+                }
+                int count = input.read(mReceiveBuffer);
+                if (count < 0) {
+                    return -1;
+                }
+                received += count;
+            }
+
+            long elapsedUs = Math.max(1, (System.nanoTime() - start) / 1000);
+            // bits * 1000 / us = kbit/s
+            return received * 8L * 1000L / elapsedUs;
+
+        } catch (IOException e) {
+            return -1;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+}
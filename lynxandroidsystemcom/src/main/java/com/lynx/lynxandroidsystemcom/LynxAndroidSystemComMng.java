@@ -55,6 +55,7 @@ import android.os.Handler;
 import android.os.StatFs;
 import android.provider.Settings;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.view.WindowManager;
 
@@ -64,9 +65,9 @@ import com.unity3d.player.UnityPlayer;
 import java.io.BufferedReader;
 import 	java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashSet;
@@ -74,7 +75,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
-import java.util.TreeMap;
 
 import static android.content.Context.BATTERY_SERVICE;
 import static android.hardware.Sensor.TYPE_PROXIMITY;
@@ -82,12 +82,37 @@ import static android.hardware.Sensor.TYPE_PROXIMITY;
 public class LynxAndroidSystemComMng {
 
     /** This library .jar version  */
-    static String mLibVersion = "1.0.0"; // 0.5 : - add TimeZone features.
+    static String mLibVersion = "1.1.0"; // 0.5 : - add TimeZone features.
                                        //       - add lynx system version.
                                        //       - Remove some logs.
                                        // 0.5.5 : possibility to remove audio volume listener -> UnregisterVolumeChangeReceiver and registerVolumeChangeReceiver.
                                        // 0.5.6 : Add Ultraleap disable analytics part.
                                        // 1.0.0 : big cleaning phase before publishing all this code.
+                                       // 1.1.0 : - add memory pressure monitor and icon cache.
+                                       //         - add thermal and cpu frequency monitor.
+                                       //         - add cpu and memory usage per application.
+                                       //         - add asynchronous variants of the blocking calls.
+                                       //         - add wifi scan cache and scan scheduler.
+                                       //         - add wifi network list merged by SSID and sorted by signal.
+                                       //         - add asynchronous wifi connection with phases and connection time history.
+                                       //         - add network state monitor, replaces NetworkChangeReceiver.
+                                       //         - add wifi signal monitor with smoothing and hysteresis.
+                                       //         - add network traffic per application.
+                                       //         - add link quality prober (round trip time, jitter, throughput).
+                                       //         - add encrypted saved wifi networks with automatic reconnection.
+                                       //         - add bluetooth discovery registry keyed by address with batched results.
+                                       //         - add bluetooth low energy search with batched scan reports.
+                                       //         - add bluetooth bond manager with concurrent operations and timeouts.
+                                       //         - add bluetooth paired device cache with profile connection state.
+                                       //         - add bluetooth reconnect watchdog with time to reconnect history.
+                                       //         - add audio state monitor for volume, microphone mute and route.
+                                       //         - write brightness and volume at most 10 times per second.
+                                       //         - register the sensors on demand with a sensor hub, add headset worn detection.
+                                       //         - stream the accelerometer and gyroscope in a ring buffer shared with Unity.
+                                       //         - add headset power policy pausing scans and sensors when the headset is removed.
+                                       //         - list all the IANA time zones with their current offset, indexed in both directions.
+                                       //         - register the receivers once in a session, unregisterChangesReceivers and GetActiveRegistrations.
+                                       //         - subscribe to topics, their receivers are registered only while subscribed.
 
     // Broadcast receiver part :
     /** The package changes receiver, this one manage package added, deleted etc. */
@@ -106,18 +131,34 @@ public class LynxAndroidSystemComMng {
      */
     static BatteryChangeReceiver   mBatteryChangeReceiver   = null;
 
-    /** NetworkChangeReceiver
-     * @see NetworkChangeReceiver
+    /** Owns the receivers and observers of registerChangesReceivers */
+    static LynxSystemSession       mSystemSession           = null;
+
+    /** the Network State Monitor keeps the state of the networks in memory.
+     * @see NetworkStateMonitor
+     */
+    static NetworkStateMonitor     mNetworkStateMonitor     = null;
+
+    /** the Bluetooth Paired Device Cache keeps the paired devices and their connection in memory.
+     * @see BluetoothPairedDeviceCache
+     */
+    static BluetoothPairedDeviceCache mBluetoothPairedDeviceCache = null;
+
+    /** the Audio State Monitor keeps the volume, the microphone mute and the audio route in memory.
+     * @see AudioStateMonitor
+     */
+    static AudioStateMonitor       mAudioStateMonitor       = null;
+
+    /** the writers of the settings driven by sliders, at most a few writes per second.
+     * @see CoalescingSettingWriter
      */
-    static NetworkChangeReceiver   mNetworkChangeReceiver   = null;
+    static CoalescingSettingWriter mBrightnessWriter = null;
+    static CoalescingSettingWriter mVolumeWriter     = null;
 
-    // Bluetooth part :
-    static Set<String> mBTDeviceNameSet = new HashSet<String>();
-    static ArrayList<BluetoothData> mBluetoothDataForAvailableDevice  =  new ArrayList<BluetoothData>();
-    static ArrayList<BluetoothDevice> mBluetoothDeviceList =  new ArrayList<BluetoothDevice>();
-    static BluetoothDevice mDeviceToBePaired = null;
-    static BluetoothDevice mDeviceToBeUnPaired = null;
-    static BroadcastReceiver mBluetoothBroadcastReceiver = null;
+    /** the Proximity Sensor Manager says if the headset is worn.
+     * @see ProximitySensorMng
+     */
+    static ProximitySensorMng      mProximitySensorMng      = null;
 
     /** The unity game object name to use in UnityPlayer.UnitySendMessage functions */
     static String mUnityGameObjectForCallback = null;
@@ -127,8 +168,7 @@ public class LynxAndroidSystemComMng {
     static Set<String> mSVRAppSet             = new HashSet<String>();
 
     // Time on device part :
-    static Map<String, String> mTimeZonesMap = new TreeMap();
-    static ArrayList<String>   mTimeZonesReadableList = new ArrayList<String>();
+    static TimeZoneCatalog     mTimeZoneCatalog = null;
 
     /** The package name of the virtual display application. This one is launch from the lynx launcher on a 2 classical application not an OpenXR one*/
     static String mLynxVirtualDisplayPackageName = "com.lynx.virtualdisplay";
@@ -136,6 +176,43 @@ public class LynxAndroidSystemComMng {
     // Ultraleap analytics part :
     static Uri mUltraleapTrackingServiceUri = Uri.parse("content://com.ultraleap.tracking.service/settings");
 
+    // Memory part :
+    /** The icons already computed by GetIcon
+     * @see IconCache
+     */
+    static IconCache mIconCache = new IconCache(IconCache.DEFAULT_MAX_SIZE_IN_BYTES);
+
+    /** The memory pressure monitor, null if not started
+     * @see MemoryPressureMonitor
+     */
+    static MemoryPressureMonitor mMemoryPressureMonitor = null;
+
+    /** The thermal monitor, null if not started
+     * @see ThermalMonitor
+     */
+    static ThermalMonitor mThermalMonitor = null;
+
+    /** The monitor of cpu and memory usage per application, null if not started
+     * @see AppResourceMonitor
+     */
+    static AppResourceMonitor mAppResourceMonitor = null;
+
+    /** The monitor of network traffic per application, null if not started
+     * @see TrafficMonitor
+     */
+    static TrafficMonitor mTrafficMonitor = null;
+
+    /** The prober of the link quality (round trip time, jitter, throughput), created at the first call
+     * @see LinkQualityMonitor
+     */
+    static LinkQualityMonitor mLinkQualityMonitor = null;
+
+    // Asynchronous calls part :
+    /** The executor of the asynchronous calls, created at the first asynchronous call
+     * @see AsyncRequestExecutor
+     */
+    static AsyncRequestExecutor mAsyncRequestExecutor = null;
+
     /**
      * Returns the version of this android library.
      *
@@ -158,22 +235,83 @@ public class LynxAndroidSystemComMng {
         mUnityGameObjectForCallback = name;
     }
 
+    /**
+     * Send a message to the unity object given by setUnityGameObjectName.
+     * Nothing is sent if no unity object has been given yet.
+     *
+     * @param  methodName name of the c# function to call
+     * @param  message    the string parameter of the c# function
+     */
+    static void sendUnityMessage(String methodName, String message)
+    {
+        if (mUnityGameObjectForCallback == null) {
+            Log.w("LynxAndroidSystem", "No unity game object to send " + methodName);
+            return;
+        }
+        UnityPlayer.UnitySendMessage(mUnityGameObjectForCallback, methodName, message);
+    }
+
 
     /**
      * Register the broadcast receiver about package changes
      * Register Audio Volume of the device Observer
      * Register Battery changes receiver
-     * Register Network changes receiver
-     * and defines all the time zone data
+     * Start the Network state monitor, the bluetooth paired device cache, the audio state monitor
+     * and the time zone catalog
      * <p>
      * This method is called at the beginning of the calling application
-     * to registers all this important observers
+     * to registers all this important observers. They are registered once by the LynxSystemSession,
+     * whatever the number of calls : each call must be paired with a call to unregisterChangesReceivers.
      *
      * @param  currentActivity  the android activity of the calling application
      * @param  context          the android context of the calling application
      */
     public static void registerChangesReceivers(Activity currentActivity,Context context)
     {
+        int startCount = getSystemSession(context).start();
+        Log.d("LynxAndroidSystem", "registerChangesReceivers called, start count : " + startCount);
+
+        // the sensors are registered on demand by the SensorHub, see startHeadsetWornDetection.
+    }
+
+    /**
+     * Unregister what registerChangesReceivers registered, at the last call
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void unregisterChangesReceivers(Context context)
+    {
+        int startCount = getSystemSession(context).stop();
+        Log.d("LynxAndroidSystem", "unregisterChangesReceivers called, start count : " + startCount);
+
+        if (startCount == 0) {
+            releaseGetterTopics(context);
+        }
+    }
+
+    /**
+     * GetActiveRegistrations
+     *
+     * @param  context          the android context of the calling application
+     * @return String name$users|... of the registered receivers and observers, empty when nothing is registered.
+     *         users is 0 for the registrations made on demand outside the session (wifiScan, wifiSignal,
+     *         bluetoothBond, bluetoothDiscovery, thermal, memory).
+     */
+    public static String GetActiveRegistrations(Context context)
+    {
+        return getSystemSession(context).getActiveRegistrations();
+    }
+
+    /**
+     * The session owning the receivers and observers, created with its sources at the first call
+     */
+    static synchronized LynxSystemSession getSystemSession(Context context)
+    {
+        if (mSystemSession != null) {
+            return mSystemSession;
+        }
+        mSystemSession = LynxSystemSession.getInstance(context);
+
         IntentFilter filter = new IntentFilter();
         filter.addAction("android.intent.action.PACKAGE_ADDED");
         filter.addAction("android.intent.action.PACKAGE_FULLY_REMOVED");
@@ -191,6 +329,10 @@ public class LynxAndroidSystemComMng {
                 Log.d("LynxAndroidSystem", "Action: " + intent.getAction());
                 Log.d("LynxAndroidSystem", "DATA: " + data);
 
+                if (data != null) {
+                    mIconCache.remove(data.getSchemeSpecificPart());
+                }
+
                 if (intent.getAction() == "android.intent.action.PACKAGE_ADDED")
                 {
                     Log.d("LynxAndroidSystem", "--------- android.intent.action.PACKAGE_ADDED received");
@@ -205,76 +347,226 @@ public class LynxAndroidSystemComMng {
             }
         };
 
-        context.registerReceiver(mPackageChangeReceiver, filter);
+        mSystemSession.addSource("packages", new LynxSystemSession.ReceiverSource(mPackageChangeReceiver, filter, null));
 
-        if (!mSettingsContentReceiverRegistered) {
-            Log.d("LynxAndroidSystem", "--------- Register Volume Observer");
-            SettingsContentObserver settingsContentObserverObj = new SettingsContentObserver(context, new Handler());
-            mSettingsContentObserver = settingsContentObserverObj;
-            context.getContentResolver().registerContentObserver(android.provider.Settings.System.CONTENT_URI, true, settingsContentObserverObj);
-            mSettingsContentReceiverRegistered = true;
+        if (mSettingsContentObserver == null) {
+            mSettingsContentObserver = new SettingsContentObserver(context, new Handler());
         }
+        mSystemSession.addSource("volume", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                registerVolumeObserver(context);
+            }
+
+            @Override
+            public void unregister(Context context) {
+                unregisterVolumeObserver(context);
+            }
+        });
 
         // Create the battery change receiver :
-        IntentFilter batteryLevelFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
         mBatteryChangeReceiver = new BatteryChangeReceiver();
-        context.registerReceiver(mBatteryChangeReceiver, batteryLevelFilter);
-
-        // Create the network change receiver :
-        IntentFilter networkChangeFilter = new IntentFilter(WifiManager.NETWORK_STATE_CHANGED_ACTION);
-        mNetworkChangeReceiver = new NetworkChangeReceiver();
-        context.registerReceiver(mNetworkChangeReceiver, networkChangeFilter);
-
-        mTimeZonesMap.put("00- GMT+0 Europe/London","Europe/London" );
-        mTimeZonesMap.put("01- GMT+1 Europe/Paris","Europe/Paris");
-        mTimeZonesMap.put("02- GMT+2 Europe/Moscow","Europe/Moscow");
-        mTimeZonesMap.put("03- GMT+3 Asia/Dubai","Asia/Dubai");
-        mTimeZonesMap.put("04- GMT+4 Asia/Karachi","Asia/Karachi");
-        mTimeZonesMap.put("05- GMT+5 Asia/Omsk","Asia/Omsk");
-        mTimeZonesMap.put("06- GMT+6 Asia/Novosibirsk","Asia/Novosibirsk");
-        mTimeZonesMap.put("07- GMT+7 Asia/Hong Kong","Asia/Hong_Kong");
-        mTimeZonesMap.put("08- GMT+8 Asia/Tokyo","Asia/Tokyo");
-        mTimeZonesMap.put("09- GMT+9 Australia/Sydney","Australia/Sydney");
-        mTimeZonesMap.put("10- GMT+10 Asia/Sakhalin","Asia/Sakhalin");
-        mTimeZonesMap.put("11- GMT+11 Pacific/Auckland","Pacific/Auckland");
-        mTimeZonesMap.put("12- GMT+12 Pacific/Apia","Pacific/Apia");
-
-        mTimeZonesMap.put("13- GMT-1 Atlantic/Reykjavik","Atlantic/Reykjavik");
-        mTimeZonesMap.put("14- GMT-2 Atlantic/Azores","Atlantic/Azores");
-        mTimeZonesMap.put("15- GMT-3 America/Nuuk","America/Nuuk");
-        mTimeZonesMap.put("16- GMT-4 Atlantic/South Georgia","Atlantic/South_Georgia");
-        mTimeZonesMap.put("17- GMT-5 America/New York","America/New_York");
-        mTimeZonesMap.put("18- GMT-6 America/Bogota","America/Bogota");
-        mTimeZonesMap.put("19- GMT-7 America/Denver","America/Denver");
-        mTimeZonesMap.put("20- GMT-8 America/Los Angeles","America/Los_Angeles");
-        mTimeZonesMap.put("21- GMT-9 America/Anchorage","America/Anchorage");
-        mTimeZonesMap.put("22- GMT-10 Pacific/Gambier","Pacific/Gambier");
-        mTimeZonesMap.put("23- GMT-11 Pacific/Honolulu","Pacific/Honolulu");
-        mTimeZonesMap.put("24- GMT-12 Pacific/Niue","Pacific/Niue");
-
-        for (Map.Entry mapentry : mTimeZonesMap.entrySet())
-        {
-            /*
-            System.out.println("key : "+mapentry.getKey()
-                    + " | value : " + mapentry.getValue());
-            */
+        mSystemSession.addSource("battery", new LynxSystemSession.ReceiverSource(mBatteryChangeReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED), null));
 
-            mTimeZonesReadableList.add(mapentry.getKey().toString());
+        // Create the network state monitor :
+        if (mNetworkStateMonitor == null) {
+            mNetworkStateMonitor = new NetworkStateMonitor(context);
         }
+        mSystemSession.addSource("network", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                mNetworkStateMonitor.start();
+            }
 
-        // new :
-        mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+            @Override
+            public void unregister(Context context) {
+                mNetworkStateMonitor.stop();
+            }
+        });
 
-        Log.d("mSensorManager : " , mSensorManager.toString());
+        // Create the bluetooth paired device cache :
+        mBluetoothPairedDeviceCache = BluetoothPairedDeviceCache.getInstance(context);
+        mSystemSession.addSource("bluetooth", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                mBluetoothPairedDeviceCache.start();
+            }
 
-        mAccelerometer = mSensorManager.getDefaultSensor(TYPE_PROXIMITY /*Sensor.TYPE_ACCELEROMETER*/);
+            @Override
+            public void unregister(Context context) {
+                mBluetoothPairedDeviceCache.stop();
+            }
+        });
+
+        // Create the audio state monitor :
+        mAudioStateMonitor = AudioStateMonitor.getInstance(context);
+        mSystemSession.addSource("audio", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                mAudioStateMonitor.start();
+            }
+
+            @Override
+            public void unregister(Context context) {
+                mAudioStateMonitor.stop();
+            }
+        });
+
+        // Create the time zone catalog, built at the first call :
+        mTimeZoneCatalog = TimeZoneCatalog.getInstance(context);
+        mSystemSession.addSource("timezone", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                mTimeZoneCatalog.start();
+            }
+
+            @Override
+            public void unregister(Context context) {
+                mTimeZoneCatalog.stop();
+            }
+        });
+
+        // The topics only registered while subscribed :
+        mSystemSession.addTopic("proximity", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                startHeadsetWornDetection(context);
+            }
+
+            @Override
+            public void unregister(Context context) {
+                // the power policy needs the proximity sensor while it is enabled.
+                if (mHeadsetPowerPolicy == null || !mHeadsetPowerPolicy.isEnabled()) {
+                    stopHeadsetWornDetection(context);
+                }
+            }
+        });
+
+        // Registered on demand by the requests of Unity, only listed :
+        final Context appContext = context.getApplicationContext();
+        mSystemSession.addExternalRegistration("wifiScan", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return WifiScanManager.getInstance(appContext).isStarted();
+            }
+        });
+        mSystemSession.addExternalRegistration("wifiSignal", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return WifiSignalMonitor.getInstance(appContext).isStarted();
+            }
+        });
+        mSystemSession.addExternalRegistration("bluetoothBond", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return BluetoothBondManager.isCreated();
+            }
+        });
+        mSystemSession.addExternalRegistration("bluetoothDiscovery", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return BluetoothDiscoveryRegistry.getInstance(appContext).isRegistered();
+            }
+        });
+        mSystemSession.addExternalRegistration("thermal", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return mThermalMonitor != null;
+            }
+        });
+        mSystemSession.addExternalRegistration("memory", new LynxSystemSession.ExternalRegistration() {
+            @Override
+            public boolean isRegistered() {
+                return mMemoryPressureMonitor != null;
+            }
+        });
+
+        final StorageChangeReceiver storageChangeReceiver = new StorageChangeReceiver();
+        mSystemSession.addTopic("storage", new LynxSystemSession.Source() {
+            @Override
+            public void register(Context context) {
+                context.registerReceiver(storageChangeReceiver, StorageChangeReceiver.getFilter());
+                storageChangeReceiver.sendStorageState();
+            }
+
+            @Override
+            public void unregister(Context context) {
+                context.unregisterReceiver(storageChangeReceiver);
+            }
+        });
+
+        return mSystemSession;
+    }
+
+    /** The topics subscribed by the getters answered from memory */
+    private static final Set<String> mGetterTopics = new HashSet<String>();
+
+    /**
+     * Subscribe once to the topic of a getter answered from memory (GetNetworkStateInfo...) : the session
+     * keeps the monitor registered for the getter until the last unregisterChangesReceivers.
+     */
+    static synchronized void subscribeForGetter(Context context, String topic)
+    {
+        if (mGetterTopics.add(topic)) {
+            getSystemSession(context).subscribe(topic);
+        }
+    }
+
+    /**
+     * Unsubscribe the topics of the getters and stop the wifi signal monitor started by
+     * GetCurrentSSID or GetCurrentWifiInfo, at the last unregisterChangesReceivers.
+     * A getter called later subscribes or starts again.
+     */
+    static synchronized void releaseGetterTopics(Context context)
+    {
+        LynxSystemSession session = getSystemSession(context);
+        for (String topic : mGetterTopics) {
+            session.unsubscribe(topic);
+        }
+        mGetterTopics.clear();
+        WifiSignalMonitor.getInstance(context).stopForGetter();
+    }
+
+    /**
+     * subscribeTopic
+     * The receiver or observer of the topic is registered while it has at least one subscriber,
+     * without registerChangesReceivers. Each call must be paired with a call to unsubscribeTopic.
+     * Topics : packages, volume, battery, network, bluetooth, audio, timezone, proximity, storage
+     *
+     * @param  context          the android context of the calling application
+     * @param  topic
+     * @return boolean false if the topic is not known
+     */
+    public static boolean subscribeTopic(Context context, String topic)
+    {
+        Log.d("LynxAndroidSystem", "subscribeTopic called with : " + topic);
 
-        Log.d("mAccelerometer : " , mAccelerometer.toString());
+        return getSystemSession(context).subscribe(topic);
+    }
 
-        ProximitySensorMng proximitySensorMng = new ProximitySensorMng();
+    /**
+     * unsubscribeTopic
+     *
+     * @param  context          the android context of the calling application
+     * @param  topic
+     */
+    public static void unsubscribeTopic(Context context, String topic)
+    {
+        Log.d("LynxAndroidSystem", "unsubscribeTopic called with : " + topic);
 
-        mSensorManager.registerListener((SensorEventListener)proximitySensorMng, mAccelerometer , SensorManager.SENSOR_DELAY_NORMAL);
+        getSystemSession(context).unsubscribe(topic);
+    }
 
+    /**
+     * GetTopics
+     *
+     * @param  context          the android context of the calling application
+     * @return String name$subscribers|... of the topics
+     */
+    public static String GetTopics(Context context)
+    {
+        return getSystemSession(context).getTopics();
     }
 
 
@@ -311,6 +603,11 @@ public class LynxAndroidSystemComMng {
      */
     public static byte[] GetIcon(PackageManager pm, String PackageName)
     {
+        byte[] cachedIcon = mIconCache.get(PackageName);
+        if (cachedIcon != null) {
+            return cachedIcon;
+        }
+
         try {
             PackageInfo packageInfo=pm.getPackageInfo(PackageName,PackageManager.GET_META_DATA);
             ApplicationInfo applicationInfo = packageInfo.applicationInfo;
@@ -319,6 +616,7 @@ public class LynxAndroidSystemComMng {
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             bmp.compress(Bitmap.CompressFormat.PNG, 100, stream);
             byte[] byteArray = stream.toByteArray();
+            mIconCache.put(PackageName, byteArray);
             return byteArray;
         } catch (Exception e) {
             Log.e("LynxAndroidSystem", "--------- Error in GetIcon with error :");
@@ -399,13 +697,17 @@ public class LynxAndroidSystemComMng {
     }
 
     /**
-     * Get Network Info
+     * Get Network Info, from the memory of the network state monitor once started by registerChangesReceivers.
      *
      * @param  context the android activity of the calling application
-     * @return 0 if the battery is not charging , 1 if yes
+     * @return 0 if no network, 1 wifi, 2 mobile, 3 wifi and mobile
      */
     public static int getNetworkInfo(Context context)
     {
+        if (mNetworkStateMonitor != null && mNetworkStateMonitor.isRunning()) {
+            return mNetworkStateMonitor.getNetworkInfo();
+        }
+
         ConnectivityManager connMgr = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
 
         boolean isWifiConn = false;
@@ -418,17 +720,31 @@ public class LynxAndroidSystemComMng {
 
             if (networkInfo.getType() == ConnectivityManager.TYPE_WIFI) {
                 isWifiConn |= networkInfo.isConnected();
-                ret = ret + 1;
+                ret = ret | 1;
             }
             if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE) {
                 isMobileConn |= networkInfo.isConnected();
-                ret = ret + 2;
+                ret = ret | 2;
             }
         }
 
         return ret;
     }
 
+    /**
+     * Get the state of the default network, kept in memory by the network state monitor.
+     * NetworkStateChange is sent to unity with the same value when it changes.
+     *
+     * @param  context the android context of the calling application
+     * @return String transport$validated$metered$downKbps$upKbps$networkInfo
+     *         with transport : 0 none, 1 wifi, 2 mobile, 3 ethernet, 4 bluetooth, 5 vpn, 6 other.
+     */
+    public static String GetNetworkStateInfo(Context context)
+    {
+        subscribeForGetter(context, "network");
+        return mNetworkStateMonitor.getInfo();
+    }
+
     /**
      * Get Bluetooth Info
      *
@@ -507,6 +823,7 @@ public class LynxAndroidSystemComMng {
 
     /**
      * get Bluetooth Paired Devices
+     * From the memory of the paired device cache once started by registerChangesReceivers.
      *
      * @return List<BluetoothData>
      */
@@ -514,6 +831,10 @@ public class LynxAndroidSystemComMng {
     {
         Log.i("LynxAndroidSystem", "getBluetoothPairedDevices() called : " );
 
+        if (mBluetoothPairedDeviceCache != null && mBluetoothPairedDeviceCache.isStarted()) {
+            return mBluetoothPairedDeviceCache.getDevices();
+        }
+
         BluetoothAdapter     bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
         Set<BluetoothDevice> pairedDevices    = bluetoothAdapter.getBondedDevices();
 
@@ -528,8 +849,10 @@ public class LynxAndroidSystemComMng {
 
             BluetoothData bluetoothData = new BluetoothData();
 
-            bluetoothData.name = bt.getName();
-            bluetoothData.type = iDeviceType;
+            bluetoothData.name        = bt.getName();
+            bluetoothData.type        = iDeviceType;
+            bluetoothData.address     = bt.getAddress();
+            bluetoothData.deviceClass = btClass.getDeviceClass();
 
             bluetoothDatas.add(bluetoothData);
         }
@@ -538,68 +861,125 @@ public class LynxAndroidSystemComMng {
     }
 
     /**
-     * launchBluetoothSurroundingDevicesSearch
+     * GetBluetoothPairedDevicesState
+     * The connection changes are sent to Unity with BluetoothDeviceConnectionChange : address$name$connected$profiles
      *
      * @param  context          the android context of the calling application
+     * @return String, address$name$type$connected$profiles|... profiles : 1 acl, 2 A2DP, 4 HID
      */
-    public static void launchBluetoothSurroundingDevicesSearch(Context context)
+    public static String GetBluetoothPairedDevicesState(Context context)
     {
-        Log.i("LynxAndroidSystem", "launchBluetoothSurroundingDevicesSearch() called : " );
-
-        mBTDeviceNameSet.clear();
-        mBluetoothDataForAvailableDevice.clear();
-        mBluetoothDeviceList.clear();
-
-        mBluetoothBroadcastReceiver = null;
-
-        mBluetoothBroadcastReceiver = new BroadcastReceiver() {
-
-            public void onReceive(Context context, Intent intent) {
-                String action = intent.getAction();
-
-                //ArrayList<String> mDeviceList = new ArrayList<String>();
-
-                if (BluetoothDevice.ACTION_FOUND.equals(action)) {
-
-                    BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-
-                    if (device.getName() !=null)
-                    { // cedric : register only device with non null name.
-
-                        mBluetoothDeviceList.add(device);
+        subscribeForGetter(context, "bluetooth");
+        return mBluetoothPairedDeviceCache.getPackedDevices();
+    }
 
-                        boolean bTest = mBTDeviceNameSet.add(device.getName()); // keep only name.
+    /**
+     * GetBluetoothDeviceProfiles
+     *
+     * @param  context          the android context of the calling application
+     * @param  nameOrAddress    the name or the address of a paired device
+     * @return int the connected profiles : 1 acl, 2 A2DP, 4 HID, 0 if not connected, -1 if not paired
+     */
+    public static int GetBluetoothDeviceProfiles(Context context, String nameOrAddress)
+    {
+        subscribeForGetter(context, "bluetooth");
+        return mBluetoothPairedDeviceCache.getProfiles(nameOrAddress);
+    }
 
-                        if (bTest)
-                        {
-                            Log.i("LynxAndroidSystem", "BT device detecte with name : " + device.getName());
+    /**
+     * setBluetoothReconnectDevices
+     * The paired devices of the list are reconnected when their connection drops.
+     * BluetoothReconnectResult is sent to Unity at the end of each outage : address$name$result$timeToReconnectMs$attempts
+     * with result 0 reconnected, 1 gave up.
+     *
+     * @param  context          the android context of the calling application
+     * @param  addresses        mac addresses separated by |, the first is the most important, empty to stop
+     * @return int the number of devices watched
+     * @see BluetoothReconnectWatchdog
+     */
+    public static int setBluetoothReconnectDevices(Context context, String addresses)
+    {
+        return BluetoothReconnectWatchdog.getInstance(context).setDevices(addresses);
+    }
 
-                            // create a bluetooth data record :
-                            BluetoothData bluetoothData = new BluetoothData();
+    /**
+     * configureBluetoothReconnect
+     *
+     * @param  context          the android context of the calling application
+     * @param  initialDelayMs   delay before the first attempt, doubled after each attempt, 0 for the default (1s)
+     * @param  maxDelayMs       maximum delay between two attempts, 0 for the default (30s)
+     * @param  maxAttempts      number of attempts before giving up, 0 for the default (10)
+     */
+    public static void configureBluetoothReconnect(Context context, long initialDelayMs, long maxDelayMs, int maxAttempts)
+    {
+        BluetoothReconnectWatchdog.getInstance(context).configure(initialDelayMs, maxDelayMs, maxAttempts);
+    }
 
-                            bluetoothData.name     = device.getName();
-                            BluetoothClass btClass = device.getBluetoothClass();
-                            int iDeviceType = getBluetoothDeviceTypeCode(btClass.getMajorDeviceClass());
-                            bluetoothData.type = iDeviceType;
+    /**
+     * GetBluetoothReconnectHistory
+     *
+     * @param  context          the android context of the calling application
+     * @return String, address$count$failures$p50$p90$max|... times to reconnect in ms, most recent devices first
+     */
+    public static String GetBluetoothReconnectHistory(Context context)
+    {
+        return BluetoothReconnectWatchdog.getInstance(context).getHistory().getPackedSummaries();
+    }
 
-                            mBluetoothDataForAvailableDevice.add(bluetoothData);
-                        }
+    /**
+     * launchBluetoothSurroundingDevicesSearch
+     * The devices found are sent to Unity during the search with BluetoothDevicesDiscovered :
+     * address$name$type$rssi$deviceClass|... and BluetoothDiscoveryFinished at the end.
+     *
+     * @param  context          the android context of the calling application
+     * @see BluetoothDiscoveryRegistry
+     */
+    public static void launchBluetoothSurroundingDevicesSearch(Context context)
+    {
+        Log.i("LynxAndroidSystem", "launchBluetoothSurroundingDevicesSearch() called : " );
 
+        if (!BluetoothDiscoveryRegistry.getInstance(context).startDiscovery()) {
+            Log.i("LynxAndroidSystem", "Bluetooth discovery not started");
+        }
+    }
 
-                    }
-                }
-            }
-        };
+    /**
+     * launchBluetoothLeSearch
+     * Search the bluetooth low energy devices (controllers, trackers), merged with the devices of
+     * launchBluetoothSurroundingDevicesSearch and sent to Unity the same way.
+     *
+     * @param  context          the android context of the calling application
+     * @param  scanMode         0 low power, 1 balanced, 2 low latency, -1 opportunistic
+     * @param  reportDelayMs    the results are batched by the bluetooth controller during this delay, 0 for immediate results
+     * @param  filters          name:DeviceName, address:AA:BB:CC:DD:EE:FF or uuid:service-uuid separated by |, empty for all
+     * @return boolean true if the search is started
+     */
+    public static boolean launchBluetoothLeSearch(Context context, int scanMode, long reportDelayMs, String filters)
+    {
+        Log.i("LynxAndroidSystem", "launchBluetoothLeSearch() called : " );
 
-        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        bluetoothAdapter.startDiscovery();
+        return BluetoothDiscoveryRegistry.getInstance(context).startLeScan(scanMode, reportDelayMs, filters);
+    }
 
-        IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_FOUND);
-        context.registerReceiver(mBluetoothBroadcastReceiver, filter);
+    /**
+     * stopBluetoothSurroundingDevicesSearch
+     * Stop the classic and the low energy searches. The devices found are kept.
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void stopBluetoothSurroundingDevicesSearch(Context context)
+    {
+        BluetoothDiscoveryRegistry registry = BluetoothDiscoveryRegistry.getInstance(context);
+        registry.stopDiscovery();
+        registry.stopLeScan();
     }
 
     /**
      * getBluetoothSurroundingDevices
+     * Stop the search and give the devices found. The devices without name are given with their address as name.
+     * The low energy results still batched by the bluetooth controller (launchBluetoothLeSearch with a report delay)
+     * arrive asynchronously after this call : they are not in the list, they are sent with BluetoothDevicesDiscovered
+     * and given by GetBluetoothDiscoveredDevices. Waiting for them here could block the main thread that receives them.
      *
      * @param  context          the android context of the calling application
      * @return List<BluetoothData>
@@ -608,72 +988,61 @@ public class LynxAndroidSystemComMng {
     {
         Log.i("LynxAndroidSystem", "getBluetoothSurroundingDevices() called : " );
 
-        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        bluetoothAdapter.cancelDiscovery();
+        BluetoothDiscoveryRegistry registry = BluetoothDiscoveryRegistry.getInstance(context);
+        registry.stopDiscovery();
+        registry.stopLeScan();
 
-        if (mBluetoothBroadcastReceiver != null)
-        {
-            context.unregisterReceiver(mBluetoothBroadcastReceiver);
-            mBluetoothBroadcastReceiver = null;
-        }
-        else
-        {
-            Log.i("LynxAndroidSystem", "mBluetoothBroadcastReceiver Null : " );
+        List<BluetoothData> devices = registry.getDevices();
+        for (BluetoothData bluetoothData : devices) {
+            if (bluetoothData.name == null) {
+                bluetoothData.name = bluetoothData.address;
+            }
         }
+        return devices;
+    }
 
-        return mBluetoothDataForAvailableDevice;
-
+    /**
+     * GetBluetoothDiscoveredDevices
+     * The devices found so far, the search is not stopped.
+     *
+     * @param  context          the android context of the calling application
+     * @return String, address$name$type$rssi$deviceClass|...
+     */
+    public static String GetBluetoothDiscoveredDevices(Context context)
+    {
+        return BluetoothDiscoveryRegistry.getInstance(context).getPackedDevices();
     }
 
     /**
      * pairDevice
+     * The result is sent to Unity with BluetoothBondResult : address$name$operation$result$elapsedMs
+     * and NewBluetoophDeviceBonded when the device is paired.
      *
-     * @param  deviceName
-     * @param  context          the android context of the calling application=
+     * @param  deviceName       the name or the address of a device found by the search
+     * @param  context          the android context of the calling application
+     * @see BluetoothBondManager
      */
     public static void pairDevice(String deviceName, Context context)
     {
-        BluetoothDevice device = null;
-        Boolean bFound  = false;
+        pairDevice(deviceName, context, BluetoothBondManager.DEFAULT_TIMEOUT_MS);
+    }
 
+    /**
+     * pairDevice with a timeout
+     *
+     * @param  deviceName       the name or the address of a device found by the search
+     * @param  context          the android context of the calling application
+     * @param  timeoutMs        timeout of the pairing, 0 for the default (30s)
+     */
+    public static void pairDevice(String deviceName, Context context, long timeoutMs)
+    {
         Log.i("LynxAndroidSystem", "In pairDevice with device name : " + deviceName);
 
-        for(BluetoothDevice bt : mBluetoothDeviceList)
-        {
-            if ( deviceName.equals(bt.getName()) )
-            {
-                Log.i("LynxAndroidSystem", "Bluetoothdevice found : " + bt.getName());
-                device = bt;
-                bFound = true;
-            }
-        }
-
+        BluetoothDevice device = BluetoothDiscoveryRegistry.getInstance(context).findDevice(deviceName);
 
-        if (bFound)
+        if (device != null)
         {
-            // new
-            mBluetoothBroadcastReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent) {
-                    String action = intent.getAction();
-                    if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)){
-                        mDeviceToBePaired = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-                        if (mDeviceToBePaired.getBondState() == BluetoothDevice.BOND_BONDED) {
-                            //means device paired
-                            Log.d("LynxAndroidSystem", "bonded");
-                            deviceBonded(context);
-                        }
-                        else if(mDeviceToBePaired.getBondState() == BluetoothDevice.BOND_BONDING) {
-                            Log.d("LynxAndroidSystem", "bonding");
-                        }
-                    }
-                }
-            };
-
-            IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
-            context.registerReceiver(mBluetoothBroadcastReceiver, filter);
-
-            pairDevice(device);
+            BluetoothBondManager.getInstance(context).bond(device, timeoutMs);
         }
         else
         {
@@ -683,56 +1052,41 @@ public class LynxAndroidSystemComMng {
 
     /**
      * unpairDevice
+     * The result is sent to Unity with BluetoothBondResult : address$name$operation$result$elapsedMs
+     * and BluetoophDeviceUnbonded when the device is unpaired.
      *
-     * @param  deviceName
-     * @param  context          the android context of the calling application=
+     * @param  deviceName       the name or the address of a paired device
+     * @param  context          the android context of the calling application
      */
     public static void unpairDevice(String deviceName, Context context)
     {
-        BluetoothAdapter     bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        Set<BluetoothDevice> pairedDevices    = bluetoothAdapter.getBondedDevices();
+        unpairDevice(deviceName, context, BluetoothBondManager.DEFAULT_TIMEOUT_MS);
+    }
 
-        BluetoothDevice device = null;
-        Boolean         bFound = false;
+    /**
+     * unpairDevice with a timeout
+     *
+     * @param  deviceName       the name or the address of a paired device
+     * @param  context          the android context of the calling application
+     * @param  timeoutMs        timeout of the unpairing, 0 for the default (30s)
+     */
+    public static void unpairDevice(String deviceName, Context context, long timeoutMs)
+    {
+        BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+        BluetoothDevice  device           = null;
 
-        for(BluetoothDevice bt : pairedDevices)
+        for(BluetoothDevice bt : bluetoothAdapter.getBondedDevices())
         {
-            Log.i("LynxAndroidSystem", "bt.getName() in the loop : " + bt.getName());
-
-            if ( deviceName.equals(bt.getName()))
+            if (deviceName.equals(bt.getName()) || deviceName.equalsIgnoreCase(bt.getAddress()))
             {
                 Log.i("LynxAndroidSystem", "Bluetoothdevice found : " + bt.getName());
                 device = bt;
-                bFound = true;
             }
         }
 
-        if (bFound)
+        if (device != null)
         {
-            mBluetoothBroadcastReceiver = new BroadcastReceiver() {
-                @Override
-                public void onReceive(Context context, Intent intent)
-                {
-                    String action = intent.getAction();
-
-                    if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action))
-                    {
-                        mDeviceToBeUnPaired = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
-
-                        if (mDeviceToBeUnPaired.getBondState() == BluetoothDevice.BOND_NONE) {
-                            //means device paired
-                            Log.d("LynxAndroidSystem", "bonded");
-                            deviceUnbonded(context);
-                        }
-
-                    }
-                }
-            };
-
-            IntentFilter filter = new IntentFilter(BluetoothDevice.ACTION_BOND_STATE_CHANGED);
-            context.registerReceiver(mBluetoothBroadcastReceiver, filter);
-
-            unpairDevice(device);
+            BluetoothBondManager.getInstance(context).unbond(device, timeoutMs);
         }
         else
         {
@@ -740,112 +1094,6 @@ public class LynxAndroidSystemComMng {
         }
     }
 
-    /**
-     * pairDevice
-     *
-     * @param  device
-     */
-    private static void pairDevice(BluetoothDevice device) {
-
-        try {
-            Log.i("LynxAndroidSystem", "in pairDevice(BluetoothDevice device)");
-
-            Method method = device.getClass().getMethod("createBond", (Class[]) null);
-            method.invoke(device, (Object[]) null);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * deviceBonded
-     *
-     * @param  context the android context of the calling application
-     */
-    private static void deviceBonded(Context context) {
-
-        try {
-            if (mBluetoothBroadcastReceiver !=null) {
-                context.unregisterReceiver(mBluetoothBroadcastReceiver);
-                mBluetoothBroadcastReceiver = null;
-            }
-
-            UnityPlayer.UnitySendMessage(mUnityGameObjectForCallback, "NewBluetoophDeviceBonded", mDeviceToBePaired.getName());
-
-            Log.i("LynxAndroidSystem", "new deviceBonded called");
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-
-    /**
-     * deviceUnbonded
-     *
-     * @param  context the android context of the calling application
-     */
-    private static void deviceUnbonded(Context context) {
-
-        try {
-            if (mBluetoothBroadcastReceiver !=null) {
-                context.unregisterReceiver(mBluetoothBroadcastReceiver);
-                mBluetoothBroadcastReceiver = null;
-            }
-
-            Log.i("LynxAndroidSystem", "new deviceUnBonded called");
-
-            UnityPlayer.UnitySendMessage(mUnityGameObjectForCallback, "BluetoophDeviceUnbonded", mDeviceToBeUnPaired.getName());
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * unpairDevice
-     *
-     * @param  device
-     */
-    private static void unpairDevice(BluetoothDevice device)
-    {
-        try {
-            Log.i("LynxAndroidSystem", "in unpairDevice(BluetoothDevice device)");
-
-            Method method = device.getClass().getMethod("removeBond", (Class[]) null);
-            method.invoke(device, (Object[]) null);
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * BroadcastReceiver
-     *
-     */
-    private final BroadcastReceiver mPairReceiver = new BroadcastReceiver() {
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-
-            if (BluetoothDevice.ACTION_BOND_STATE_CHANGED.equals(action)) {
-                final int state 		= intent.getIntExtra(BluetoothDevice.EXTRA_BOND_STATE, BluetoothDevice.ERROR);
-                final int prevState	= intent.getIntExtra(BluetoothDevice.EXTRA_PREVIOUS_BOND_STATE, BluetoothDevice.ERROR);
-
-                if (state == BluetoothDevice.BOND_BONDED && prevState == BluetoothDevice.BOND_BONDING) {
-                    //showToast("Paired");
-                    Log.i("LynxAndroidSystem", "Paired " );
-                } else if (state == BluetoothDevice.BOND_NONE && prevState == BluetoothDevice.BOND_BONDED){
-                    //showToast("Unpaired");
-                    Log.i("LynxAndroidSystem", "UnPaired " );
-                }
-
-                //mAdapter.notifyDataSetChanged();
-            }
-        }
-    };
-
     /**
      * Enable or disable Wifi Network
      * it's important to notice that the calling application needs to be a system app
@@ -1036,8 +1284,40 @@ public class LynxAndroidSystemComMng {
             return;
         }
 
-        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
-        audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, volume, 0);
+        // written later, at most a few times per second :
+        getVolumeWriter(context).set(volume);
+    }
+
+    /**
+     * The writer of the audio volume, created at the first call
+     */
+    private static synchronized CoalescingSettingWriter getVolumeWriter(Context context)
+    {
+        if (mVolumeWriter == null)
+        {
+            final AudioManager audioManager = (AudioManager) context.getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+
+            mVolumeWriter = new CoalescingSettingWriter("volume", new CoalescingSettingWriter.Sink() {
+                @Override
+                public int read() {
+                    // the volume can be changed with the buttons : the volume in memory when it is followed, else the real one.
+                    if (mAudioStateMonitor != null && mAudioStateMonitor.isStarted()) {
+                        return mAudioStateMonitor.getVolume();
+                    }
+                    return audioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
+                }
+
+                @Override
+                public boolean write(int value) {
+                    audioManager.setStreamVolume(AudioManager.STREAM_MUSIC, value, 0);
+                    if (mAudioStateMonitor != null) {
+                        mAudioStateMonitor.onVolumeSet(value);
+                    }
+                    return true;
+                }
+            }, CoalescingSettingWriter.DEFAULT_MAX_WRITES_PER_SECOND);
+        }
+        return mVolumeWriter;
     }
 
     /**
@@ -1048,6 +1328,10 @@ public class LynxAndroidSystemComMng {
      */
     public static int getAudioVolume(Context context)
     {
+        if (mAudioStateMonitor != null && mAudioStateMonitor.isStarted()) {
+            return mAudioStateMonitor.getVolume();
+        }
+
         AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         return audioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
     }
@@ -1060,6 +1344,10 @@ public class LynxAndroidSystemComMng {
      */
     public static int getMaxAudioVolume(Context context)
     {
+        if (mAudioStateMonitor != null && mAudioStateMonitor.isStarted()) {
+            return mAudioStateMonitor.getMaxVolume();
+        }
+
         AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
 
         // Max volume is normally between 0 and 15.
@@ -1078,51 +1366,90 @@ public class LynxAndroidSystemComMng {
 
         AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         audioManager.setMicrophoneMute(mute);
+        if (mAudioStateMonitor != null) {
+            mAudioStateMonitor.onMicrophoneMuteSet(mute);
+        }
     }
 
     /**
-     * setMicrophoneMute
+     * isMicrophoneMute
+     * From the memory of the audio state monitor once started by registerChangesReceivers.
      *
      * @param  context the android context of the calling application
      * @return boolean if microphone is muted or not.
      */
     public static boolean isMicrophoneMute(Context context)
     {
-        //Log.i("LynxAndroidSystem", "isMicrophoneMute called");
+        if (mAudioStateMonitor != null && mAudioStateMonitor.isStarted()) {
+            return mAudioStateMonitor.isMicrophoneMute();
+        }
 
         AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
         return audioManager.isMicrophoneMute();
     }
 
 
+    /**
+     * GetAudioState
+     * The changes are sent to Unity with AudioStateChange, same format.
+     *
+     * @param  context the android context of the calling application
+     * @return String volume$maxVolume$microphoneMute$route$routeName
+     *         with route : 0 built-in, 1 wired headset, 2 bluetooth, 3 usb, 4 other.
+     */
+    public static String GetAudioState(Context context)
+    {
+        subscribeForGetter(context, "audio");
+        return mAudioStateMonitor.getInfo();
+    }
+
     /**
      * Unregister Volume Change Receiver
+     * The volume observer of the session is paused until RegisterVolumeChangeReceiver.
      *
      * @param  context the android context of the calling application
      */
     public static void UnregisterVolumeChangeReceiver(Context context)
     {
-        if (mSettingsContentReceiverRegistered ) {
-            Log.d("LynxAndroidSystem", "--------- UnRegisterVolumeReceiver called");
-            context.getContentResolver().unregisterContentObserver(mSettingsContentObserver);
-            mSettingsContentReceiverRegistered = false;
-        }
+        Log.d("LynxAndroidSystem", "--------- UnRegisterVolumeReceiver called");
+        getSystemSession(context).pause("volume");
     }
 
     /**
      * Register Volume Change Receiver
+     * The volume observer paused by UnregisterVolumeChangeReceiver is registered again, if registerChangesReceivers
+     * or subscribeTopic("volume") still needs it.
      *
      * @param  context the android context of the calling application
      */
     public static void RegisterVolumeChangeReceiver(Context context)
+    {
+        Log.d("LynxAndroidSystem", "--------- RegisterVolumeChangeReceiver called");
+        getSystemSession(context).resume("volume");
+    }
+
+    /**
+     * Register the volume observer, only called by the session
+     */
+    private static void registerVolumeObserver(Context context)
     {
         if (!mSettingsContentReceiverRegistered ) {
-            Log.d("LynxAndroidSystem", "--------- RegisterVolumeChangeReceiver called");
             context.getContentResolver().registerContentObserver(android.provider.Settings.System.CONTENT_URI, true, mSettingsContentObserver);
             mSettingsContentReceiverRegistered = true;
         }
     }
 
+    /**
+     * Unregister the volume observer, only called by the session
+     */
+    private static void unregisterVolumeObserver(Context context)
+    {
+        if (mSettingsContentReceiverRegistered ) {
+            context.getContentResolver().unregisterContentObserver(mSettingsContentObserver);
+            mSettingsContentReceiverRegistered = false;
+        }
+    }
+
 
 
     /*
@@ -1196,6 +1523,7 @@ public class LynxAndroidSystemComMng {
 
     /**
      * requestWIFIConnection
+     * Started with the WifiConnectionPipeline, see requestWIFIConnectionAsync for the messages sent to Unity.
      *
      * @param  context         the android context of the calling application
      * @param  currentActivity the android activity of the calling application
@@ -1210,6 +1538,119 @@ public class LynxAndroidSystemComMng {
         connectionManager.requestWIFIConnection(networkSSID,networkPass);
     }
 
+    /**
+     * requestWIFIConnectionAsync : connect without blocking and follow the connection.
+     * WifiConnectionPhase is sent to unity with attemptId$ssid$phase$elapsedMs at each phase
+     * (0 requested, 1 associating, 2 authenticating, 3 obtaining IP, 4 connected, 5 internet validated)
+     * and WifiConnectionResult with attemptId$ssid$result$timeToConnectMs$timeToValidateMs at the end
+     * (result : 0 success, 1 already connected, 2 not found, 3 authentication failed, 4 timeout, 5 cancelled, 6 error).
+     *
+     * @param  context          the android context of the calling application
+     * @param  networkSSID
+     * @param  networkPass
+     * @param  timeoutMs        maximum duration of the connection, 0 for the default (30s)
+     * @return int the attempt id
+     */
+    public static int requestWIFIConnectionAsync(Context context, String networkSSID, String networkPass, long timeoutMs)
+    {
+        Log.d("LynxAndroidSystem", "requestWIFIConnectionAsync ssid : " + networkSSID);
+        return WifiConnectionPipeline.getInstance(context).connect(networkSSID, networkPass, timeoutMs);
+    }
+
+    /**
+     * cancelWIFIConnection : cancel the connection started by requestWIFIConnectionAsync
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void cancelWIFIConnection(Context context)
+    {
+        WifiConnectionPipeline.getInstance(context).cancel();
+    }
+
+    /**
+     * GetWifiConnectionTimeHistory : time to connect of each access point, most recent first
+     *
+     * @param  context          the android context of the calling application
+     * @return String ssid/bssid$count$failures$p50Ms$p90Ms$maxMs|...
+     */
+    public static String GetWifiConnectionTimeHistory(Context context)
+    {
+        return WifiConnectionPipeline.getInstance(context).getLatencyHistory().getPackedSummaries();
+    }
+
+    /**
+     * saveWifiNetwork : the password is encrypted with a key of the android keystore.
+     *
+     * @param  context          the android context of the calling application
+     * @param  networkSSID
+     * @param  networkPass
+     * @param  site             the site of the network (building, office...), can be empty
+     * @param  priority         higher is better
+     * @return boolean true if the network is saved
+     */
+    public static boolean saveWifiNetwork(Context context, String networkSSID, String networkPass, String site, int priority)
+    {
+        return SavedNetworkStore.getInstance(context).saveNetwork(networkSSID, networkPass, site, priority);
+    }
+
+    /**
+     * removeSavedWifiNetwork
+     *
+     * @param  context          the android context of the calling application
+     * @param  networkSSID
+     */
+    public static void removeSavedWifiNetwork(Context context, String networkSSID)
+    {
+        SavedNetworkStore.getInstance(context).removeNetwork(networkSSID);
+    }
+
+    /**
+     * setCurrentWifiSite : the saved networks of this site are tried first
+     *
+     * @param  context          the android context of the calling application
+     * @param  site             the site, empty for none
+     */
+    public static void setCurrentWifiSite(Context context, String site)
+    {
+        SavedNetworkStore.getInstance(context).setCurrentSite(site);
+    }
+
+    /**
+     * GetSavedWifiNetworks
+     *
+     * @param  context          the android context of the calling application
+     * @return String ssid$site$priority$lastConnectedTime|... without the passwords
+     */
+    public static String GetSavedWifiNetworks(Context context)
+    {
+        return SavedNetworkStore.getInstance(context).getPackedNetworks();
+    }
+
+    /**
+     * connectToBestSavedWifiNetwork : connect to the best saved network of the last scan results
+     * (current site first, then priority, then signal), then to the next ones if it fails.
+     * SavedNetworkConnection is sent to unity with ssid$result at the end of each connection
+     * (result : same values as WifiConnectionResult, -1 if no saved network is available).
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void connectToBestSavedWifiNetwork(Context context)
+    {
+        SavedNetworkStore.getInstance(context).connectBest();
+    }
+
+    /**
+     * setWifiAutoReconnect : connect to the best saved network each time new scan results are received
+     * while the wifi is not connected.
+     *
+     * @param  context          the android context of the calling application
+     * @param  enabled
+     */
+    public static void setWifiAutoReconnect(Context context, boolean enabled)
+    {
+        SavedNetworkStore.getInstance(context).setAutoReconnect(enabled);
+    }
+
     /**
      * GetAllWifiAvailable
      *
@@ -1234,6 +1675,19 @@ public class LynxAndroidSystemComMng {
         return connectionManager.getWifiDataList();
     }
 
+    /**
+     * GetAllAvailableWifiNetworks : one entry per network (all the access points of a network are merged),
+     * sorted by signal, strongest first.
+     *
+     * @param  context         the android context of the calling application
+     * @return String ssid$rssi$signalLevel$security$bssid$frequency$accessPointCount|...
+     *         with signalLevel between 0 and 4 and security : 0 open, 1 WEP, 2 WPA, 3 WPA2, 4 WPA3, 5 enterprise,
+     *         6 OWE (enhanced open : encrypted, without password). On the Unity side, OWE connects without password like 0, and a code not known yet must not be taken as open.
+     */
+    public static String GetAllAvailableWifiNetworks(Context context) {
+        return WifiScanManager.getInstance(context).getSnapshot().getPackedNetworks();
+    }
+
     /**
      * GetCurrentSSID
      *
@@ -1259,80 +1713,349 @@ public class LynxAndroidSystemComMng {
     }
 
     /**
-     * GetTotalRAMInGB
+     * startWifiSignalMonitor : GetCurrentSSID and GetCurrentWifiInfo are then answered from memory
+     * and WifiSignalLevelChange is sent to unity with ssid$level$rssi when the level or the connection changes.
+     * The monitor is also started by the first call to GetCurrentSSID or GetCurrentWifiInfo, with the default filter.
      *
-     * @param  context         the android context of the calling application
-     * @return float
+     * @param  context          the android context of the calling application
+     * @param  smoothingPercent weight of a new signal value in the average (30 by default), 100 for no smoothing
+     * @param  hysteresisDb     margin in dB to change of level (3 by default), 0 for no hysteresis
      */
-    public static float GetTotalRAMInGB(Context context)
+    public static void startWifiSignalMonitor(Context context, int smoothingPercent, int hysteresisDb)
     {
-        ActivityManager actManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
-        ActivityManager.MemoryInfo memInfo = new ActivityManager.MemoryInfo();
-        actManager.getMemoryInfo(memInfo);
-        long totalMemory = memInfo.totalMem;
-        float memInGB = totalMemory /(1024.0f * 1024.0f *1024.0f);
-        return memInGB;
+        WifiSignalMonitor monitor = WifiSignalMonitor.getInstance(context);
+        monitor.configure(smoothingPercent, hysteresisDb);
+        monitor.start();
     }
 
     /**
-     * GetFreeInternalStorageinGB
+     * stopWifiSignalMonitor
      *
-     * @return float
+     * @param  context          the android context of the calling application
      */
-    public static float GetFreeInternalStorageinGB()
+    public static void stopWifiSignalMonitor(Context context)
     {
-        long freeInternalStorage = getFreeMemory(Environment.getDataDirectory());
-        float freeInternalStorageInGB = freeInternalStorage /  (1024.0f * 1024.0f *1024.0f);
-        return freeInternalStorageInGB;
+        WifiSignalMonitor.getInstance(context).stop();
     }
 
     /**
-     * GetTotalInternalStorageInGB
+     * Ask for wifi scan results not older than maxAgeMs.
+     * A scan is started in the android budget (4 scans every 2 minutes), or as soon as the budget allows it.
+     * WifiScanResultsAvailable is called on the unity object with the number of results when they are received.
      *
-     * @return float
+     * @param  context         the android context of the calling application
+     * @param  maxAgeMs        maximum age of the results, 0 to always scan
      */
-    public static float GetTotalInternalStorageInGB()
+    public static void requestWifiScan(Context context, long maxAgeMs)
     {
-        File path        = Environment.getDataDirectory();
-        StatFs stat      = new StatFs(path.getPath());
-        long blockSize   = stat.getBlockSizeLong();
-        long totalBlocks = stat.getBlockCountLong();
-        float totalStorageInGB = (totalBlocks * blockSize) / (1024.0f * 1024.0f *1024.0f);
-        return totalStorageInGB;
+        WifiScanManager.getInstance(context).requestScan(maxAgeMs);
     }
 
     /**
-     * Get external (SDCARD) free space
+     * Scan the wifi networks periodically, in the limit of the android budget.
      *
-     * @return long
+     * @param  context         the android context of the calling application
+     * @param  periodMs        period of the scans (30s minimum), 0 to stop the periodic scans
      */
-    public static long GetFreeExternalMemory()
+    public static void setWifiPeriodicScan(Context context, long periodMs)
     {
-        return getFreeMemory(Environment.getExternalStorageDirectory());
+        WifiScanManager.getInstance(context).setPeriodicScan(periodMs);
     }
 
-
     /**
-     *  Get Android OS (system partition) free space
+     * Stop to listen to the wifi scan results. The last results stay available.
      *
-     * @return long
+     * @param  context         the android context of the calling application
      */
-    public static long GetFreeSystemMemory()
+    public static void stopWifiScanManager(Context context)
     {
-        return getFreeMemory(Environment.getRootDirectory());
+        WifiScanManager.getInstance(context).stop();
     }
 
     /**
-     *  Get free space for provided path
-     *  Note that this will throw IllegalArgumentException for invalid paths
+     * GetWifiScanFreshness
      *
-     * @param  path
-     * @return long
+     * @param  context         the android context of the calling application
+     * @return String ageMs$resultCount$remainingScans$nextScanAllowedInMs$scanPending (ageMs is the age of the last scan, -1 if no scan has been received yet)
      */
-    public static long getFreeMemory(File path)
+    public static String GetWifiScanFreshness(Context context)
     {
-        StatFs stats = new StatFs(path.getAbsolutePath());
-        return stats.getAvailableBlocksLong() * stats.getBlockSizeLong();
+        return WifiScanManager.getInstance(context).getFreshness();
+    }
+
+    static synchronized LinkQualityMonitor getLinkQualityMonitor()
+    {
+        if (mLinkQualityMonitor == null) {
+            mLinkQualityMonitor = new LinkQualityMonitor();
+        }
+        return mLinkQualityMonitor;
+    }
+
+    /**
+     * startLinkQualityMonitor : probe the endpoints periodically.
+     * LinkQualityUpdate is sent to unity after each round with
+     * endpoint$sent$lossPercent$minUs$p50Us$p90Us$p99Us$jitterUs$throughputKbps|... (times in microseconds, -1 if not measured).
+     * tcp endpoints measure the time to open a connection and the throughput against a tcp echo server,
+     * udp endpoints measure the round trip time against an udp echo server.
+     *
+     * @param  endpoints        protocol:host:port separated by |, for example tcp:192.168.1.10:7|udp:192.168.1.10:7
+     * @param  periodMs         period of the probes, 0 for the default (30s)
+     * @return int the number of valid endpoints
+     */
+    public static int startLinkQualityMonitor(String endpoints, long periodMs)
+    {
+        Log.d("LynxAndroidSystem", "startLinkQualityMonitor called with : " + endpoints);
+
+        LinkQualityMonitor monitor = getLinkQualityMonitor();
+        int count = monitor.setEndpoints(endpoints);
+        monitor.start(periodMs);
+        return count;
+    }
+
+    /**
+     * stopLinkQualityMonitor
+     */
+    public static void stopLinkQualityMonitor()
+    {
+        getLinkQualityMonitor().stop();
+    }
+
+    /**
+     * configureLinkQualityProbes
+     *
+     * @param  probeCount       number of round trips per probe, 0 for the default (10)
+     * @param  timeoutMs        timeout of one round trip, 0 for the default (1s)
+     * @param  throughputBytes  size of the throughput burst on tcp endpoints, 0 to disable it (256KB by default)
+     */
+    public static void configureLinkQualityProbes(int probeCount, int timeoutMs, int throughputBytes)
+    {
+        getLinkQualityMonitor().configure(probeCount, timeoutMs, throughputBytes);
+    }
+
+    /**
+     * probeLinkQualityNow : probe the endpoints once, LinkQualityUpdate is sent to unity at the end.
+     */
+    public static void probeLinkQualityNow()
+    {
+        getLinkQualityMonitor().probeNow();
+    }
+
+    /**
+     * GetLinkQuality
+     *
+     * @return String last result of each endpoint, same format as LinkQualityUpdate
+     */
+    public static String GetLinkQuality()
+    {
+        return getLinkQualityMonitor().getLastResults();
+    }
+
+    /**
+     * GetLinkQualityHistory
+     *
+     * @return String endpoint$count$lost$p50Us$p90Us$maxUs|... on the round trip times of the last rounds
+     */
+    public static String GetLinkQualityHistory()
+    {
+        return getLinkQualityMonitor().getHistory().getPackedSummaries();
+    }
+
+    /**
+     * GetTotalRAMInGB
+     *
+     * @param  context         the android context of the calling application
+     * @return float
+     */
+    public static float GetTotalRAMInGB(Context context)
+    {
+        ActivityManager actManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memInfo = new ActivityManager.MemoryInfo();
+        actManager.getMemoryInfo(memInfo);
+        long totalMemory = memInfo.totalMem;
+        float memInGB = totalMemory /(1024.0f * 1024.0f *1024.0f);
+        return memInGB;
+    }
+
+    /**
+     * Start the memory pressure monitor. Each time the pressure level changes,
+     * MemoryPressureChange is called on the unity object with level$availableMB$totalMB$psiSomeAvg10$psiFullAvg10
+     * (level : 0 none, 1 low, 2 moderate, 3 critical. PSI in hundredths of percent, -1 if not available)
+     *
+     * @param  context          the android context of the calling application
+     * @param  samplingPeriodMs period of the memory sampling, 0 for the default period (1s)
+     */
+    public static void startMemoryPressureMonitor(Context context, int samplingPeriodMs)
+    {
+        Log.d("LynxAndroidSystem", "startMemoryPressureMonitor called");
+
+        if (mMemoryPressureMonitor != null) {
+            return;
+        }
+
+        mMemoryPressureMonitor = new MemoryPressureMonitor(context, samplingPeriodMs);
+        mMemoryPressureMonitor.addCache(mIconCache);
+        mMemoryPressureMonitor.addCache(TimeZoneCatalog.getInstance(context));
+        mMemoryPressureMonitor.start();
+    }
+
+    /**
+     * Stop the memory pressure monitor
+     */
+    public static void stopMemoryPressureMonitor()
+    {
+        Log.d("LynxAndroidSystem", "stopMemoryPressureMonitor called");
+
+        if (mMemoryPressureMonitor != null) {
+            mMemoryPressureMonitor.stop();
+            mMemoryPressureMonitor = null;
+        }
+    }
+
+    /**
+     * GetMemoryPressureLevel
+     *
+     * @return int 0 none, 1 low, 2 moderate, 3 critical. -1 if the monitor is not started.
+     */
+    public static int GetMemoryPressureLevel()
+    {
+        if (mMemoryPressureMonitor == null) {
+            return -1;
+        }
+        return mMemoryPressureMonitor.getLevel();
+    }
+
+    /**
+     * GetMemoryPressureInfo
+     *
+     * @return String level$availableMB$totalMB$psiSomeAvg10$psiFullAvg10, null if the monitor is not started.
+     */
+    public static String GetMemoryPressureInfo()
+    {
+        if (mMemoryPressureMonitor == null) {
+            return null;
+        }
+        return mMemoryPressureMonitor.getInfo();
+    }
+
+    /**
+     * Start the thermal monitor. ThermalStatusChange is called on the unity object with the throttling level
+     * (0 none, 1 light, 2 moderate, 3 severe, 4 critical, 5 emergency, 6 shutdown) when it changes,
+     * and CpuFrequencyCapChange with minCapPercent$averageLoadPercent$maxTemperatureInMilliCelsius
+     * when the cpu frequency cap changes.
+     *
+     * @param  context          the android context of the calling application
+     * @param  samplingPeriodMs period of the cpu frequency sampling, 0 for the default period (2s)
+     */
+    public static void startThermalMonitor(Context context, int samplingPeriodMs)
+    {
+        Log.d("LynxAndroidSystem", "startThermalMonitor called");
+
+        if (mThermalMonitor != null) {
+            return;
+        }
+
+        mThermalMonitor = new ThermalMonitor(context, new CpuFrequencySampler(), samplingPeriodMs);
+        mThermalMonitor.start();
+    }
+
+    /**
+     * Stop the thermal monitor
+     */
+    public static void stopThermalMonitor()
+    {
+        Log.d("LynxAndroidSystem", "stopThermalMonitor called");
+
+        if (mThermalMonitor != null) {
+            mThermalMonitor.stop();
+            mThermalMonitor = null;
+        }
+    }
+
+    /**
+     * GetThermalLevel
+     *
+     * @return int the throttling level, -1 if the monitor is not started.
+     */
+    public static int GetThermalLevel()
+    {
+        if (mThermalMonitor == null) {
+            return -1;
+        }
+        return mThermalMonitor.getLevel();
+    }
+
+    /**
+     * GetThermalInfo
+     *
+     * @return String level$minCapPercent$averageLoadPercent$maxTemperatureInMilliCelsius, null if the monitor is not started.
+     */
+    public static String GetThermalInfo()
+    {
+        if (mThermalMonitor == null) {
+            return null;
+        }
+        return mThermalMonitor.getInfo();
+    }
+
+    /**
+     * GetFreeInternalStorageinGB
+     *
+     * @return float
+     */
+    public static float GetFreeInternalStorageinGB()
+    {
+        long freeInternalStorage = getFreeMemory(Environment.getDataDirectory());
+        float freeInternalStorageInGB = freeInternalStorage /  (1024.0f * 1024.0f *1024.0f);
+        return freeInternalStorageInGB;
+    }
+
+    /**
+     * GetTotalInternalStorageInGB
+     *
+     * @return float
+     */
+    public static float GetTotalInternalStorageInGB()
+    {
+        File path        = Environment.getDataDirectory();
+        StatFs stat      = new StatFs(path.getPath());
+        long blockSize   = stat.getBlockSizeLong();
+        long totalBlocks = stat.getBlockCountLong();
+        float totalStorageInGB = (totalBlocks * blockSize) / (1024.0f * 1024.0f *1024.0f);
+        return totalStorageInGB;
+    }
+
+    /**
+     * Get external (SDCARD) free space
+     *
+     * @return long
+     */
+    public static long GetFreeExternalMemory()
+    {
+        return getFreeMemory(Environment.getExternalStorageDirectory());
+    }
+
+
+    /**
+     *  Get Android OS (system partition) free space
+     *
+     * @return long
+     */
+    public static long GetFreeSystemMemory()
+    {
+        return getFreeMemory(Environment.getRootDirectory());
+    }
+
+    /**
+     *  Get free space for provided path
+     *  Note that this will throw IllegalArgumentException for invalid paths
+     *
+     * @param  path
+     * @return long
+     */
+    public static long getFreeMemory(File path)
+    {
+        StatFs stats = new StatFs(path.getAbsolutePath());
+        return stats.getAvailableBlocksLong() * stats.getBlockSizeLong();
     }
 
     /**
@@ -1377,20 +2100,69 @@ public class LynxAndroidSystemComMng {
      */
     public static void setBrightness(Context context, int brightness)
     {
-        if (checkSystemWritePermission(context))
+        //constrain the value of brightness
+        if (brightness < 0)
+            brightness = 0;
+        else if (brightness > 2048)
+            brightness = 2048;
+
+        // written later, at most a few times per second :
+        getBrightnessWriter(context).set(brightness);
+    }
+
+    /**
+     * The writer of the brightness, created at the first call
+     */
+    private static synchronized CoalescingSettingWriter getBrightnessWriter(Context context)
+    {
+        if (mBrightnessWriter == null)
         {
-            Log.d("LynxAndroidSystem", "checkSystemWritePermission returns true");
-            Log.d("LynxAndroidSystem", "brightness : " + brightness);
+            final Context appContext = context.getApplicationContext();
 
-            //constrain the value of brightness
-            if (brightness < 0)
-                brightness = 0;
-            else if (brightness > 2048)
-                brightness = 2048;
+            mBrightnessWriter = new CoalescingSettingWriter("brightness", new CoalescingSettingWriter.Sink() {
+                @Override
+                public int read() {
+                    // the brightness can be changed by the system ui. Settings.System keeps the values in memory
+                    // and only asks the provider again when a setting changed.
+                    return Settings.System.getInt(appContext.getContentResolver(), Settings.System.SCREEN_BRIGHTNESS, CoalescingSettingWriter.UNKNOWN);
+                }
 
-            ContentResolver cResolver = context.getContentResolver();
-            Settings.System.putInt(cResolver, Settings.System.SCREEN_BRIGHTNESS, brightness);
+                @Override
+                public boolean write(int value) {
+                    if (!checkSystemWritePermission(appContext)) {
+                        return false;
+                    }
+                    Log.d("LynxAndroidSystem", "brightness : " + value);
+                    ContentResolver cResolver = appContext.getContentResolver();
+                    return Settings.System.putInt(cResolver, Settings.System.SCREEN_BRIGHTNESS, value);
+                }
+            }, CoalescingSettingWriter.DEFAULT_MAX_WRITES_PER_SECOND);
         }
+        return mBrightnessWriter;
+    }
+
+    /**
+     *  setSettingsMaxWritesPerSecond
+     *  Maximum number of writes per second of setBrightness and setAudioVolume, the last value is always written.
+     *
+     * @param  context            the android context of the calling application
+     * @param  maxWritesPerSecond 0 for the default (10)
+     */
+    public static void setSettingsMaxWritesPerSecond(Context context, int maxWritesPerSecond)
+    {
+        getBrightnessWriter(context).setMaxWritesPerSecond(maxWritesPerSecond);
+        getVolumeWriter(context).setMaxWritesPerSecond(maxWritesPerSecond);
+    }
+
+    /**
+     *  GetSettingsWriteStats
+     *
+     * @param  context    the android context of the calling application
+     * @return String name$requests$writes$coalesced$skipped$failed|... for brightness and volume
+     */
+    public static String GetSettingsWriteStats(Context context)
+    {
+        return getBrightnessWriter(context).getStats() + "|" + getVolumeWriter(context).getStats();
     }
 
     /**
@@ -1432,7 +2204,7 @@ public class LynxAndroidSystemComMng {
      * @param  AndroidBTDeviceTypeCode
      * @return int
      */
-    private static int  getBluetoothDeviceTypeCode(int AndroidBTDeviceTypeCode)
+    static int  getBluetoothDeviceTypeCode(int AndroidBTDeviceTypeCode)
     {
         int ret = 0;
 
@@ -1535,60 +2307,196 @@ public class LynxAndroidSystemComMng {
     }
 
     /**
-     * RestartApp
+     * Start to follow the cpu and memory usage of the running applications.
+     * Note that the calling application needs to be a system app to see the other applications.
      *
      * @param  context          the android context of the calling application
+     * @param  samplingPeriodMs period of the sampling, 0 for the default period (2s)
+     * @param  windowSize       number of samples used to compute the cpu usage, 0 for the default (5)
      */
-    public static void RestartApp(Context context) {
+    public static void startAppResourceMonitor(Context context, int samplingPeriodMs, int windowSize)
+    {
+        Log.d("LynxAndroidSystem", "startAppResourceMonitor called");
 
-        Log.d("LynxAndroidSystem", " -------- RestartApp called");
+        if (mAppResourceMonitor != null) {
+            return;
+        }
 
-        PackageManager packageManager = context.getPackageManager();
-        Intent intent = packageManager.getLaunchIntentForPackage(context.getPackageName());
-        ComponentName componentName = intent.getComponent();
-        Intent mainIntent = Intent.makeRestartActivityTask(componentName);
-        context.startActivity(mainIntent);
-        Runtime.getRuntime().exit(0);
+        mAppResourceMonitor = new AppResourceMonitor(context, samplingPeriodMs, windowSize);
+        mAppResourceMonitor.start();
     }
 
     /**
-     * computeLauncherAndMainApplicationList
-     *
-     * @param  context          the android context of the calling application
+     * Stop to follow the cpu and memory usage of the running applications
      */
-    public static void computeLauncherAndMainApplicationList(Context context)
+    public static void stopAppResourceMonitor()
     {
-        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
-        final List<ResolveInfo> pkgAppsList = context.getPackageManager().queryIntentActivities(mainIntent, 0);
-        CharSequence[] entries = new CharSequence[pkgAppsList.size()];
-        CharSequence[] entryValues = new CharSequence[pkgAppsList.size()];
-
-        mMainAndLauncherAppSet.clear();
-
-        int i = 0;
+        Log.d("LynxAndroidSystem", "stopAppResourceMonitor called");
 
-        for (ResolveInfo P : pkgAppsList)
-        {
-            entries[i] = P.loadLabel(context.getPackageManager());
-            //Log.d("LynxAndroidSystem", " -------- IntentActivities[i] " + entries[i]);
-            mMainAndLauncherAppSet.add(entries[i].toString());
+        if (mAppResourceMonitor != null) {
+            mAppResourceMonitor.stop();
+            mAppResourceMonitor = null;
+        }
+    }
 
-            ++i;
+    /**
+     * GetAppResourceUsage
+     *
+     * @return String packageName$pid$cpuPerMille$rssInKB|... sorted by cpu usage (1000 per mille = one full core),
+     *         null if the monitor is not started.
+     */
+    public static String GetAppResourceUsage()
+    {
+        if (mAppResourceMonitor == null) {
+            return null;
         }
+        return mAppResourceMonitor.getPackedTable();
     }
 
     /**
-     * computeSVRAppList
+     * GetAppCpuUsage
      *
-     * @param  context          the android context of the calling application
+     * @param  packageName
+     * @return int cpu usage in thousandths of one core, -1 if unknown.
      */
-    public static void computeSVRAppList(Context context)
+    public static int GetAppCpuUsage(String packageName)
     {
-        Log.d("LynxAndroidSystem", " -------- Compute SVR Application list" );
+        if (mAppResourceMonitor == null) {
+            return -1;
+        }
+        return mAppResourceMonitor.getSampler().getCpuPerMille(packageName);
+    }
 
-        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
-        mainIntent.addCategory("com.qti.intent.category.SNAPDRAGON_VR");
+    /**
+     * GetAppMemoryUsageInKB
+     *
+     * @param  packageName
+     * @return long resident memory in KB, -1 if unknown.
+     */
+    public static long GetAppMemoryUsageInKB(String packageName)
+    {
+        if (mAppResourceMonitor == null) {
+            return -1;
+        }
+        return mAppResourceMonitor.getSampler().getRssInKB(packageName);
+    }
+
+    /**
+     * Start to follow the network traffic of the launchable applications.
+     * Note that since Android 10 the calling application needs the PACKAGE_USAGE_STATS permission to see the other applications.
+     *
+     * @param  context          the android context of the calling application
+     * @param  samplingPeriodMs period of the sampling, 0 for the default period (2s)
+     * @param  windowSize       number of samples used to compute the rates, 0 for the default (5)
+     */
+    public static void startTrafficMonitor(Context context, int samplingPeriodMs, int windowSize)
+    {
+        Log.d("LynxAndroidSystem", "startTrafficMonitor called");
+
+        if (mTrafficMonitor != null) {
+            return;
+        }
+
+        mTrafficMonitor = new TrafficMonitor(context, samplingPeriodMs, windowSize);
+        mTrafficMonitor.start();
+    }
+
+    /**
+     * Stop to follow the network traffic of the applications
+     */
+    public static void stopTrafficMonitor()
+    {
+        Log.d("LynxAndroidSystem", "stopTrafficMonitor called");
+
+        if (mTrafficMonitor != null) {
+            mTrafficMonitor.stop();
+            mTrafficMonitor = null;
+        }
+    }
+
+    /**
+     * setTrafficSaturationThreshold : AppTrafficSaturation is sent to unity with packageName$uid$bytesPerSecond
+     * when an application uses more than this traffic.
+     *
+     * @param  bytesPerSecond   received and transmitted bytes per second, 0 to disable
+     */
+    public static void setTrafficSaturationThreshold(long bytesPerSecond)
+    {
+        if (mTrafficMonitor != null) {
+            mTrafficMonitor.setSaturationThreshold(bytesPerSecond);
+        }
+    }
+
+    /**
+     * GetAppTrafficUsage
+     *
+     * @param  maxCount         maximum number of applications, 0 for all
+     * @return String packageName$uid$rxBytesPerSecond$txBytesPerSecond|... highest traffic first, applications without traffic are not given,
+     *         null if the monitor is not started.
+     */
+    public static String GetAppTrafficUsage(int maxCount)
+    {
+        if (mTrafficMonitor == null) {
+            return null;
+        }
+        return mTrafficMonitor.getSampler().getPackedTopTable(maxCount);
+    }
+
+    /**
+     * RestartApp
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void RestartApp(Context context) {
+
+        Log.d("LynxAndroidSystem", " -------- RestartApp called");
+
+        PackageManager packageManager = context.getPackageManager();
+        Intent intent = packageManager.getLaunchIntentForPackage(context.getPackageName());
+        ComponentName componentName = intent.getComponent();
+        Intent mainIntent = Intent.makeRestartActivityTask(componentName);
+        context.startActivity(mainIntent);
+        Runtime.getRuntime().exit(0);
+    }
+
+    /**
+     * computeLauncherAndMainApplicationList
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void computeLauncherAndMainApplicationList(Context context)
+    {
+        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        final List<ResolveInfo> pkgAppsList = context.getPackageManager().queryIntentActivities(mainIntent, 0);
+        CharSequence[] entries = new CharSequence[pkgAppsList.size()];
+        CharSequence[] entryValues = new CharSequence[pkgAppsList.size()];
+
+        mMainAndLauncherAppSet.clear();
+
+        int i = 0;
+
+        for (ResolveInfo P : pkgAppsList)
+        {
+            entries[i] = P.loadLabel(context.getPackageManager());
+            //Log.d("LynxAndroidSystem", " -------- IntentActivities[i] " + entries[i]);
+            mMainAndLauncherAppSet.add(entries[i].toString());
+
+            ++i;
+        }
+    }
+
+    /**
+     * computeSVRAppList
+     *
+     * @param  context          the android context of the calling application
+     */
+    public static void computeSVRAppList(Context context)
+    {
+        Log.d("LynxAndroidSystem", " -------- Compute SVR Application list" );
+
+        final Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory("com.qti.intent.category.SNAPDRAGON_VR");
         final List<ResolveInfo> pkgAppsList = context.getPackageManager().queryIntentActivities(mainIntent, 0);
         CharSequence[] entries = new CharSequence[pkgAppsList.size()];
         CharSequence[] entryValues = new CharSequence[pkgAppsList.size()];
@@ -1692,6 +2600,18 @@ public class LynxAndroidSystemComMng {
      * @return boolean
      */
     public static boolean readAllApplicationPermissions(Context context)
+    {
+        collectAllApplicationPermissions(context);
+        return true;
+    }
+
+    /**
+     * collectAllApplicationPermissions
+     *
+     * @param  context          the android context of the calling application
+     * @return String all the packages followed by their requested permissions
+     */
+    private static String collectAllApplicationPermissions(Context context)
     {
         Log.d("LynxAndroidSystem", "\n");
 
@@ -1729,7 +2649,7 @@ public class LynxAndroidSystemComMng {
             }
         }
 
-        return true;
+        return appNameAndPermissions.toString();
     }
 
     /**
@@ -1876,7 +2796,19 @@ public class LynxAndroidSystemComMng {
      */
     public static int GetUsbFileTransferState(View view) {
 
-        int ret = 0;
+        readUsbFunctions();
+
+        return 0;
+    }
+
+    /**
+     * readUsbFunctions
+     *
+     * @return String the output of svc usb getFunctions, one line per function
+     */
+    private static String readUsbFunctions() {
+
+        StringBuilder functions = new StringBuilder();
 
         try {
             Log.i("LynxSystemAppTestTag", "--------- GetUsbFileTransferState");
@@ -1884,20 +2816,21 @@ public class LynxAndroidSystemComMng {
             // svc usb setFunctions sans argument ; ça marche :
             //String ret = Runtime.getRuntime().exec("svc usb getFunctions"); // MTP : Media Transfer Protocol
 
-            String arg = "svc usb getFunctions";
-
             Runtime runtime = Runtime.getRuntime();
             Process process = runtime.exec("svc usb getFunctions");
-            InputStream is = process.getInputStream();
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
 
-            Log.i("LynxSystemAppTestTag", "--------- GetUsbFileTransferState  2222222 ");
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
 
-            while ((line = br.readLine()) != null) {
-                System.out.println(line);
-                Log.i("LynxSystemAppTestTag", "--------- GetUsbFileTransferState  : " + line);
+                while ((line = br.readLine()) != null) {
+                    Log.i("LynxSystemAppTestTag", "--------- GetUsbFileTransferState  : " + line);
+                    if (functions.length() > 0) {
+                        functions.append('\n');
+                    }
+                    functions.append(line);
+                }
+            } finally {
+                process.destroy();
             }
 
         } catch (Exception e) {
@@ -1905,7 +2838,7 @@ public class LynxAndroidSystemComMng {
             e.printStackTrace();
         }
 
-        return 0;
+        return functions.toString();
     }
 
     // need to be system for this :
@@ -1973,14 +2906,47 @@ public class LynxAndroidSystemComMng {
 
     /**
      * getTimeZoneReadableList
+     * The labels are GMT+HH:MM Region/City, sorted by offset.
      *
-     * @return  List<String>
+     * @return  List<String>, empty if the catalog can not be created yet (no context, see getTimeZoneReadableList(Context))
      */
     public static List<String> getTimeZoneReadableList()
     {
         Log.i("LynxAndroidSystem", "getTimeZoneReadableList() called : " );
 
-        return mTimeZonesReadableList;
+        TimeZoneCatalog catalog = getTimeZoneCatalog(null);
+        if (catalog == null) {
+            return new ArrayList<String>();
+        }
+        return catalog.getLabels();
+    }
+
+    /**
+     * getTimeZoneReadableList
+     * The labels are GMT+HH:MM Region/City, sorted by offset. Can be called before registerChangesReceivers.
+     *
+     * @param  context the android context of the calling application
+     * @return  List<String>
+     */
+    public static List<String> getTimeZoneReadableList(Context context)
+    {
+        return getTimeZoneCatalog(context).getLabels();
+    }
+
+    /**
+     * The time zone catalog, created with the context given or the activity of Unity before registerChangesReceivers
+     *
+     * @return TimeZoneCatalog, null if there is no context yet
+     */
+    private static TimeZoneCatalog getTimeZoneCatalog(Context context)
+    {
+        if (mTimeZoneCatalog != null) {
+            return mTimeZoneCatalog;
+        }
+        if (context == null) {
+            context = UnityPlayer.currentActivity;
+        }
+        return context != null ? TimeZoneCatalog.getInstance(context) : null;
     }
 
     /**
@@ -1995,7 +2961,7 @@ public class LynxAndroidSystemComMng {
 
         try {
 
-            String timeZoneToSet=mTimeZonesMap.get(timeZone);
+            String timeZoneToSet=TimeZoneCatalog.getInstance(context).getTimeZoneId(timeZone);
 
             if (timeZoneToSet!=null && timeZoneToSet.length()>0)
             {
@@ -2045,26 +3011,37 @@ public class LynxAndroidSystemComMng {
      * getReadableTimeZoneFromNormalizedTimeZone
      *
      * @param normalizedTimeZone
+     * @return String GMT+HH:MM Region/City, empty if the catalog can not be created yet (no context,
+     *         see getReadableTimeZoneFromNormalizedTimeZone(Context, String))
      */
     public static String getReadableTimeZoneFromNormalizedTimeZone(String normalizedTimeZone)
+    {
+        return getReadableTimeZoneFromNormalizedTimeZone(null, normalizedTimeZone);
+    }
+
+    /**
+     * getReadableTimeZoneFromNormalizedTimeZone
+     * Can be called before registerChangesReceivers.
+     *
+     * @param  context the android context of the calling application
+     * @param  normalizedTimeZone
+     * @return String GMT+HH:MM Region/City
+     */
+    public static String getReadableTimeZoneFromNormalizedTimeZone(Context context, String normalizedTimeZone)
     {
         Log.i("LynxAndroidSystem", "getReadableTimeZoneFromNormalizedTimeZone called with normalizedTimeZone : " + normalizedTimeZone);
 
-        // Important : set GMT+0 as default readable timeZone
+        // Important : set Europe/London as default readable timeZone
         // If there is no correspondance , that is this one that will be displayed in the launcher.
 
-        String ret="00- GMT+0 Europe/London";
-
-        for (Map.Entry<String, String> entry : mTimeZonesMap.entrySet()) {
-
-            String value = entry.getValue().toString();
+        TimeZoneCatalog catalog = getTimeZoneCatalog(context);
+        if (catalog == null) {
+            return "";
+        }
 
-            if (value.equals(normalizedTimeZone))
-            {
-                ret = entry.getKey().toString();
-                Log.i("LynxAndroidSystem", "ReadableTimeZone found is : " + normalizedTimeZone);
-                break;
-            }
+        String ret = catalog.getLabel(normalizedTimeZone);
+        if (ret == null) {
+            ret = catalog.getLabel(TimeZoneCatalog.DEFAULT_TIME_ZONE_ID);
         }
 
         Log.i("LynxAndroidSystem", "ReadableTimeZone ret is  : " + ret);
@@ -2121,9 +3098,660 @@ public class LynxAndroidSystemComMng {
         }
     }
 
+    /*
+     *   Asynchronous calls :
+     *   Each function returns a request id immediately, the result is given later to the unity object
+     *   by AsyncRequestResult with requestId$status$result (status : 0 success, 1 error, 2 timeout, 3 cancelled).
+     *   priority : 0 high, 1 normal, 2 low. timeoutMs : 0 for no timeout.
+     */
+
+    /**
+     * Get the executor of the asynchronous calls, created at the first call
+     *
+     * @return AsyncRequestExecutor
+     */
+    static synchronized AsyncRequestExecutor getAsyncRequestExecutor()
+    {
+        if (mAsyncRequestExecutor == null) {
+            mAsyncRequestExecutor = new AsyncRequestExecutor();
+        }
+        return mAsyncRequestExecutor;
+    }
+
+    /**
+     * Cancel an asynchronous call. AsyncRequestResult is called with the cancelled status.
+     *
+     * @param  requestId the id returned by the asynchronous call
+     * @return boolean true if the call was not finished yet
+     */
+    public static boolean cancelAsyncRequest(int requestId)
+    {
+        return getAsyncRequestExecutor().cancel(requestId);
+    }
+
+    /**
+     * Asynchronous GetAllAvailableWifiInfo.
+     * The result is ssid$level$security|ssid$level$security|...
+     *
+     * @param  context         the android context of the calling application
+     * @param  currentActivity the android activity of the calling application
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int GetAllAvailableWifiInfoAsync(final Context context, final Activity currentActivity, int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("GetAllAvailableWifiInfo", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                return packWifiDataList(GetAllAvailableWifiInfo(context, currentActivity));
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous GetAllWifiAvailable.
+     * The result is ssid|ssid|...
+     *
+     * @param  context         the android context of the calling application
+     * @param  currentActivity the android activity of the calling application
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int GetAllWifiAvailableAsync(final Context context, final Activity currentActivity, int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("GetAllWifiAvailable", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                StringBuilder packed = new StringBuilder();
+                for (String ssid : GetAllWifiAvailable(context, currentActivity)) {
+                    if (packed.length() > 0) {
+                        packed.append('|');
+                    }
+                    packed.append(ssid);
+                }
+                return packed.toString();
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous GetCurrentWifiInfo.
+     * The result is ssid$level$security, empty if there is no current wifi.
+     *
+     * @param  context         the android context of the calling application
+     * @param  currentActivity the android activity of the calling application
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int GetCurrentWifiInfoAsync(final Context context, final Activity currentActivity, int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("GetCurrentWifiInfo", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                WifiData wifiData = GetCurrentWifiInfo(context, currentActivity);
+                return wifiData == null ? "" : packWifiData(wifiData);
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous getBluetoothPairedDevices.
+     * The result is name$type|name$type|...
+     *
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int getBluetoothPairedDevicesAsync(int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("getBluetoothPairedDevices", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                return packBluetoothDataList(getBluetoothPairedDevices());
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous readAllApplicationPermissions.
+     * The result is the list of packages followed by their requested permissions.
+     *
+     * @param  context          the android context of the calling application
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int readAllApplicationPermissionsAsync(final Context context, int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("readAllApplicationPermissions", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                return collectAllApplicationPermissions(context);
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous GetUsbFileTransferState.
+     * The result is the output of svc usb getFunctions.
+     *
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int GetUsbFileTransferStateAsync(int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("GetUsbFileTransferState", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                return readUsbFunctions();
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Asynchronous getNetworkInfo.
+     * The result is the value returned by getNetworkInfo.
+     *
+     * @param  context          the android context of the calling application
+     * @param  priority
+     * @param  timeoutMs
+     * @return int the request id
+     */
+    public static int getNetworkInfoAsync(final Context context, int priority, long timeoutMs)
+    {
+        return getAsyncRequestExecutor().submit("getNetworkInfo", new AsyncRequestExecutor.Task() {
+            @Override
+            public String run() {
+                return Integer.toString(getNetworkInfo(context));
+            }
+        }, priority, timeoutMs);
+    }
+
+    /**
+     * Pack a wifi data in a string : ssid$level$security
+     *
+     * @param  wifiData
+     * @return String
+     */
+    static String packWifiData(WifiData wifiData)
+    {
+        return wifiData.ssid + "$" + wifiData.level + "$" + wifiData.security;
+    }
+
+    /**
+     * Pack a list of wifi data in a string : ssid$level$security|ssid$level$security|...
+     *
+     * @param  wifiDataList
+     * @return String
+     */
+    static String packWifiDataList(List<WifiData> wifiDataList)
+    {
+        StringBuilder packed = new StringBuilder();
+        for (WifiData wifiData : wifiDataList) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(packWifiData(wifiData));
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Pack a list of bluetooth data in a string : name$type|name$type|...
+     *
+     * @param  bluetoothDataList
+     * @return String
+     */
+    static String packBluetoothDataList(List<BluetoothData> bluetoothDataList)
+    {
+        StringBuilder packed = new StringBuilder();
+        for (BluetoothData bluetoothData : bluetoothDataList) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(bluetoothData.name).append('$').append(bluetoothData.type);
+        }
+        return packed.toString();
+    }
+
+    /**
+     * startHeadsetWornDetection
+     * HeadsetWornStateChange is sent to Unity with true / false when the headset is put on or removed.
+     * The proximity sensor is registered only while the detection is started.
+     *
+     * @param  context the android context of the calling application
+     * @return boolean true if the device has a proximity sensor
+     */
+    public static synchronized boolean startHeadsetWornDetection(Context context)
+    {
+        if (mProximitySensorMng == null) {
+            mProximitySensorMng = new ProximitySensorMng(context);
+        }
+        return mProximitySensorMng.start();
+    }
+
+    /**
+     * stopHeadsetWornDetection
+     *
+     * @param  context the android context of the calling application
+     */
+    public static synchronized void stopHeadsetWornDetection(Context context)
+    {
+        if (mProximitySensorMng != null) {
+            mProximitySensorMng.stop();
+        }
+    }
+
+    /**
+     * isHeadsetWorn
+     *
+     * @return boolean the last stable state, false if the detection is not started
+     */
+    public static boolean isHeadsetWorn()
+    {
+        return mProximitySensorMng != null && mProximitySensorMng.isStarted() && mProximitySensorMng.isWorn();
+    }
+
+    /**
+     * GetActiveSensors
+     *
+     * @param  context the android context of the calling application
+     * @return String type$subscribers$samplingPeriodUs$maxReportLatencyUs|... of the registered sensors
+     */
+    public static String GetActiveSensors(Context context)
+    {
+        return SensorHub.getInstance(context).getActiveSensors();
+    }
+
+    /** The sensors subscribed by Unity, by type */
+    static final SparseArray<SensorChangeNotifier> mSensorNotifiers = new SparseArray<SensorChangeNotifier>();
+
+    /**
+     * subscribeSensor
+     * SensorChange is sent to Unity with sensorType$value0$value1$value2 when the values of the sensor change,
+     * not for each sample, see SensorChangeNotifier. The sensor is registered only while it is subscribed.
+     * A second subscribe of the same type replaces the first one.
+     *
+     * @param  context            the android context of the calling application
+     * @param  sensorType         Sensor.TYPE_ value (1 accelerometer, 4 gyroscope, 5 light, 8 proximity...)
+     * @param  samplingPeriodUs   sampling period in microseconds, 0 for the fastest
+     * @param  maxReportLatencyUs maximum delay of the samples batched by the sensor hardware, 0 for no batching
+     * @param  minChange          minimum change of a value of a continuous sensor to send it, 0 for any change
+     * @param  minIntervalMs      minimum delay between two messages of a continuous sensor, 0 for the default (100 ms)
+     * @return boolean true if the device has the sensor and it is registered
+     */
+    public static synchronized boolean subscribeSensor(Context context, int sensorType, int samplingPeriodUs, int maxReportLatencyUs,
+                                                       float minChange, long minIntervalMs)
+    {
+        unsubscribeSensor(context, sensorType);
+
+        SensorChangeNotifier notifier = new SensorChangeNotifier(sensorType, minChange, minIntervalMs);
+        if (!SensorHub.getInstance(context).subscribe(sensorType, notifier, samplingPeriodUs, maxReportLatencyUs)) {
+            return false;
+        }
+        mSensorNotifiers.put(sensorType, notifier);
+        return true;
+    }
+
+    /**
+     * unsubscribeSensor
+     *
+     * @param  context    the android context of the calling application
+     * @param  sensorType the type given to subscribeSensor
+     */
+    public static synchronized void unsubscribeSensor(Context context, int sensorType)
+    {
+        SensorChangeNotifier notifier = mSensorNotifiers.get(sensorType);
+        if (notifier != null) {
+            SensorHub.getInstance(context).unsubscribe(sensorType, notifier);
+            mSensorNotifiers.remove(sensorType);
+        }
+    }
+
     static SensorManager mSensorManager;
     static Sensor        mAccelerometer;
 
+    /** The ring of the accelerometer and gyroscope samples shared with Unity, null when the stream is stopped */
+    static volatile ImuStreamRing mImuStreamRing = null;
+
+    /** The rate asked to startImuStream, to subscribe again after a pause */
+    static int mImuStreamPeriodUs  = 0;
+    static int mImuStreamLatencyUs = 0;
+
+    /** Writes the samples in the ring, on the sensor hub thread, without allocation */
+    static final SensorEventListener mImuStreamListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            ImuStreamRing ring = mImuStreamRing;
+            if (ring != null) {
+                ring.write(event.timestamp, event.sensor.getType(), event.values[0], event.values[1], event.values[2]);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+    };
+
+    /**
+     * startImuStream
+     * The accelerometer and gyroscope samples are written in a ring shared with Unity, see ImuStreamRing for the layout.
+     * The c# reader must read the write sequence of the header with Volatile.Read, and call Interlocked.MemoryBarrier
+     * after its copy before reading it again.
+     *
+     * @param  context            the android context of the calling application
+     * @param  samplingPeriodUs   sampling period in microseconds, 0 for the fastest
+     * @param  maxReportLatencyUs maximum delay of the samples batched by the sensor hardware, 0 for no batching
+     * @param  capacity           number of samples in the ring, 0 for the default (2048)
+     * @return ByteBuffer the direct buffer of the ring, null if the device has no accelerometer
+     */
+    public static synchronized ByteBuffer startImuStream(Context context, int samplingPeriodUs, int maxReportLatencyUs, int capacity)
+    {
+        stopImuStream(context);
+
+        SensorHub sensorHub = SensorHub.getInstance(context);
+        mImuStreamRing = new ImuStreamRing(capacity);
+        mImuStreamPeriodUs  = samplingPeriodUs;
+        mImuStreamLatencyUs = maxReportLatencyUs;
+
+        if (!sensorHub.subscribe(Sensor.TYPE_ACCELEROMETER, mImuStreamListener, samplingPeriodUs, maxReportLatencyUs)) {
+            mImuStreamRing = null;
+            return null;
+        }
+        sensorHub.subscribe(Sensor.TYPE_GYROSCOPE, mImuStreamListener, samplingPeriodUs, maxReportLatencyUs);
+
+        Log.d("LynxAndroidSystem", "startImuStream period (us) : " + samplingPeriodUs + ", latency (us) : " + maxReportLatencyUs);
+        return mImuStreamRing.getBuffer();
+    }
+
+    /**
+     * stopImuStream
+     *
+     * @param  context the android context of the calling application
+     */
+    public static synchronized void stopImuStream(Context context)
+    {
+        if (mImuStreamRing == null) {
+            return;
+        }
+        SensorHub sensorHub = SensorHub.getInstance(context);
+        sensorHub.unsubscribe(Sensor.TYPE_ACCELEROMETER, mImuStreamListener);
+        sensorHub.unsubscribe(Sensor.TYPE_GYROSCOPE, mImuStreamListener);
+        mImuStreamRing = null;
+    }
+
+    /**
+     * getImuStreamBuffer
+     *
+     * @return ByteBuffer the direct buffer of the ring, null when the stream is stopped
+     */
+    public static ByteBuffer getImuStreamBuffer()
+    {
+        ImuStreamRing ring = mImuStreamRing;
+        return ring != null ? ring.getBuffer() : null;
+    }
+
+    /** The power policy of the headset, null until enableHeadsetPowerPolicy */
+    static HeadsetPowerPolicy mHeadsetPowerPolicy = null;
+
+    /** The brightness while the headset is not worn, given at each enableHeadsetPowerPolicy */
+    static volatile int mHeadsetPausedBrightness = 0;
+
+    /**
+     * enableHeadsetPowerPolicy
+     * When the headset is not worn during notWornTimeoutMs, the wifi and bluetooth scans, the imu stream,
+     * the traffic and link quality monitors and the volume observer are paused and the brightness is lowered.
+     * Everything is resumed at once when the headset is worn again. HeadsetPowerTransition is sent to Unity
+     * at each transition : paused$totalUs$name:us,name:us...
+     *
+     * @param  context          the android context of the calling application
+     * @param  notWornTimeoutMs time without the headset worn before the pause, 0 for the default (30s)
+     * @param  pausedBrightness brightness while paused
+     * @return boolean true if the device has a proximity sensor
+     */
+    public static synchronized boolean enableHeadsetPowerPolicy(Context context, long notWornTimeoutMs, int pausedBrightness)
+    {
+        Log.d("LynxAndroidSystem", "enableHeadsetPowerPolicy called with : " + notWornTimeoutMs + ", " + pausedBrightness);
+        mHeadsetPausedBrightness = pausedBrightness;
+
+        if (mHeadsetPowerPolicy == null) {
+            if (mProximitySensorMng == null) {
+                mProximitySensorMng = new ProximitySensorMng(context);
+            }
+            mHeadsetPowerPolicy = new HeadsetPowerPolicy(context, mProximitySensorMng);
+            addHeadsetPowerParticipants(context.getApplicationContext());
+        }
+        return mHeadsetPowerPolicy.enable(notWornTimeoutMs);
+    }
+
+    /**
+     * The parts of the library paused by the headset power policy, in the order of the pause
+     */
+    private static void addHeadsetPowerParticipants(final Context context)
+    {
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            private long mPausedPeriodMs = 0;
+
+            @Override
+            public String getName() {
+                return "wifiScan";
+            }
+
+            @Override
+            public boolean pause() {
+                WifiScanManager wifiScanManager = WifiScanManager.getInstance(context);
+                if (!wifiScanManager.isStarted()) {
+                    return false;
+                }
+                // stop() forgets the periodic scans.
+                mPausedPeriodMs = wifiScanManager.getPeriodicScanMs();
+                wifiScanManager.stop();
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                WifiScanManager wifiScanManager = WifiScanManager.getInstance(context);
+                wifiScanManager.start();
+                if (mPausedPeriodMs > 0) {
+                    wifiScanManager.setPeriodicScan(mPausedPeriodMs);
+                }
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            @Override
+            public String getName() {
+                return "bluetoothSearch";
+            }
+
+            @Override
+            public boolean pause() {
+                BluetoothDiscoveryRegistry registry = BluetoothDiscoveryRegistry.getInstance(context);
+                // a classic discovery ends by itself, it is stopped and not started again.
+                if (registry.isDiscovering()) {
+                    registry.stopDiscovery();
+                }
+                if (!registry.isLeScanning()) {
+                    return false;
+                }
+                registry.stopLeScan();
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                BluetoothDiscoveryRegistry.getInstance(context).restartLeScan();
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            @Override
+            public String getName() {
+                return "imuStream";
+            }
+
+            @Override
+            public boolean pause() {
+                // the ring is kept : the buffer given to Unity stays valid.
+                if (mImuStreamRing == null) {
+                    return false;
+                }
+                SensorHub sensorHub = SensorHub.getInstance(context);
+                sensorHub.unsubscribe(Sensor.TYPE_ACCELEROMETER, mImuStreamListener);
+                sensorHub.unsubscribe(Sensor.TYPE_GYROSCOPE, mImuStreamListener);
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                if (mImuStreamRing == null) {
+                    return;
+                }
+                SensorHub sensorHub = SensorHub.getInstance(context);
+                sensorHub.subscribe(Sensor.TYPE_ACCELEROMETER, mImuStreamListener, mImuStreamPeriodUs, mImuStreamLatencyUs);
+                sensorHub.subscribe(Sensor.TYPE_GYROSCOPE, mImuStreamListener, mImuStreamPeriodUs, mImuStreamLatencyUs);
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            private TrafficMonitor mPausedMonitor = null;
+
+            @Override
+            public String getName() {
+                return "trafficMonitor";
+            }
+
+            @Override
+            public boolean pause() {
+                TrafficMonitor monitor = mTrafficMonitor;
+                if (monitor == null || !monitor.isRunning()) {
+                    return false;
+                }
+                monitor.stop();
+                mPausedMonitor = monitor;
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                // not started again if the monitor was stopped or replaced during the pause.
+                if (mPausedMonitor != null && mPausedMonitor == mTrafficMonitor) {
+                    mPausedMonitor.start();
+                }
+                mPausedMonitor = null;
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            private long mPausedPeriodMs = 0;
+
+            @Override
+            public String getName() {
+                return "linkQuality";
+            }
+
+            @Override
+            public boolean pause() {
+                LinkQualityMonitor monitor = mLinkQualityMonitor;
+                if (monitor == null || !monitor.isRunning()) {
+                    return false;
+                }
+                mPausedPeriodMs = monitor.getPeriodMs();
+                monitor.stop();
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                getLinkQualityMonitor().start(mPausedPeriodMs);
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            private int mSavedBrightness = 0;
+
+            @Override
+            public String getName() {
+                return "brightness";
+            }
+
+            @Override
+            public boolean pause() {
+                int pausedBrightness = mHeadsetPausedBrightness;
+                mSavedBrightness = getBrightness(context);
+                if (mSavedBrightness <= pausedBrightness) {
+                    return false;
+                }
+                getBrightnessWriter(context).set(pausedBrightness);
+                return true;
+            }
+
+            @Override
+            public void resume() {
+                getBrightnessWriter(context).set(mSavedBrightness);
+            }
+        });
+
+        mHeadsetPowerPolicy.addParticipant(new HeadsetPowerPolicy.Participant() {
+            @Override
+            public String getName() {
+                return "volumeObserver";
+            }
+
+            @Override
+            public boolean pause() {
+                // paused in the session : not listed as registered, and not registered again after the last stop.
+                return getSystemSession(context).pause("volume");
+            }
+
+            @Override
+            public void resume() {
+                getSystemSession(context).resume("volume");
+            }
+        });
+    }
+
+    /**
+     * disableHeadsetPowerPolicy
+     * What is paused is resumed.
+     *
+     * @param  context the android context of the calling application
+     */
+    public static synchronized void disableHeadsetPowerPolicy(Context context)
+    {
+        Log.d("LynxAndroidSystem", "disableHeadsetPowerPolicy called");
+
+        if (mHeadsetPowerPolicy != null) {
+            mHeadsetPowerPolicy.disable();
+        }
+    }
+
+    /**
+     * isHeadsetPowerPolicyPaused
+     *
+     * @return boolean true while the participants are paused
+     */
+    public static boolean isHeadsetPowerPolicyPaused()
+    {
+        HeadsetPowerPolicy policy = mHeadsetPowerPolicy;
+        return policy != null && policy.isPaused();
+    }
+
+    /**
+     * GetHeadsetPowerPolicyHistory
+     *
+     * @return String the durations of the pause and resume transitions, in microseconds
+     */
+    public static String GetHeadsetPowerPolicyHistory()
+    {
+        HeadsetPowerPolicy policy = mHeadsetPowerPolicy;
+        return policy != null ? policy.getHistory().getPackedSummaries() : "";
+    }
+
     public static void testProximitySensor(Context context)
     {
         mSensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
@@ -0,0 +1,411 @@
+/**
+ * LynxSystemSession owns the registrations of the library : broadcast receivers, observers and monitors.
+ * <p>
+ * Each source of events is registered once, whatever the number of calls to start : the session counts
+ * the starts and the stops, the sources are registered at the first start and unregistered at the last stop,
+ * in the reverse order. A stop without start does nothing. getActiveRegistrations lists what is registered,
+ * to check that nothing is left after the last stop.
+ * <p>
+ * Each source is also a topic : subscribe registers the source of a topic until the last unsubscribe,
+ * so that an application only pays for the events it uses. The sources added with addTopic are only
+ * registered by subscribe, not by start.
+ * <p>
+ * A registered source can be paused (headset power policy) : it is unregistered until resume, keeping its users,
+ * and is not registered again by a start or a subscribe during the pause. A resume after the last stop does nothing.
+ * <p>
+ * The parts of the library registered on demand by a request of Unity (wifi scans, bluetooth discovery...)
+ * are not owned by the session, they are added with addExternalRegistration to be listed by getActiveRegistrations.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class LynxSystemSession {
+
+    /**
+     * A source of events owned by the session
+     */
+    public interface Source {
+        /**
+         * Register the source. Called once until unregister.
+         *
+         * @param  context the application context
+         */
+        void register(Context context);
+
+        /**
+         * Unregister the source
+         *
+         * @param  context the application context
+         */
+        void unregister(Context context);
+    }
+
+    /**
+     * A registration made outside the session, only listed
+     */
+    public interface ExternalRegistration {
+        /**
+         * @return true while it is registered
+         */
+        boolean isRegistered();
+    }
+
+    /**
+     * A broadcast receiver as a source
+     */
+    static class ReceiverSource implements Source {
+        private final BroadcastReceiver mReceiver;
+        private final IntentFilter      mFilter;
+        private final Handler           mHandler;
+
+        /**
+         * @param  receiver
+         * @param  filter
+         * @param  handler  the thread of onReceive, null for the main thread
+         */
+        ReceiverSource(BroadcastReceiver receiver, IntentFilter filter, Handler handler) {
+            mReceiver = receiver;
+            mFilter   = filter;
+            mHandler  = handler;
+        }
+
+        @Override
+        public void register(Context context) {
+            context.registerReceiver(mReceiver, mFilter, null, mHandler);
+        }
+
+        @Override
+        public void unregister(Context context) {
+            context.unregisterReceiver(mReceiver);
+        }
+    }
+
+    /**
+     * A source and the number of its users, guarded by the session
+     */
+    private static class Registration {
+        final Source  source;
+        final boolean onStart;
+        int           users       = 0;
+        int           subscribers = 0;
+        boolean       paused      = false;
+
+        Registration(Source source, boolean onStart) {
+            this.source  = source;
+            this.onStart = onStart;
+        }
+    }
+
+    /** The instance shared by the library */
+    private static LynxSystemSession mInstance = null;
+
+    private final Context mContext;
+
+    /** The sources by name, in the order of registration */
+    private final Map<String, Registration> mRegistrations = new LinkedHashMap<String, Registration>();
+
+    /** The registrations made outside the session, by name */
+    private final Map<String, ExternalRegistration> mExternalRegistrations = new LinkedHashMap<String, ExternalRegistration>();
+
+    private int mStartCount = 0;
+
+    private LynxSystemSession(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Get the session of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return LynxSystemSession
+     */
+    public static synchronized LynxSystemSession getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new LynxSystemSession(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Add a source registered by start and by subscribe. A source with the same name is not replaced.
+     *
+     * @param  name   the name of the source, and of its topic
+     * @param  source
+     * @return true if the source is added
+     */
+    public synchronized boolean addSource(String name, Source source) {
+        return add(name, source, true);
+    }
+
+    /**
+     * Add a source only registered by subscribe. A source with the same name is not replaced.
+     *
+     * @param  name   the name of the topic
+     * @param  source
+     * @return true if the source is added
+     */
+    public synchronized boolean addTopic(String name, Source source) {
+        return add(name, source, false);
+    }
+
+    /**
+     * Add a registration made outside the session, to list it in getActiveRegistrations.
+     * A registration with the same name is not replaced.
+     *
+     * @param  name
+     * @param  registration
+     * @return true if the registration is added
+     */
+    public synchronized boolean addExternalRegistration(String name, ExternalRegistration registration)
+    {
+        if (name == null || registration == null || mExternalRegistrations.containsKey(name) || mRegistrations.containsKey(name)) {
+            return false;
+        }
+        mExternalRegistrations.put(name, registration);
+        return true;
+    }
+
+    private boolean add(String name, Source source, boolean onStart)
+    {
+        if (name == null || source == null || mRegistrations.containsKey(name)) {
+            return false;
+        }
+        Registration registration = new Registration(source, onStart);
+        mRegistrations.put(name, registration);
+
+        // added while started : registered at once, as the others.
+        if (onStart && mStartCount > 0) {
+            acquire(name, registration);
+        }
+        return true;
+    }
+
+    /**
+     * Subscribe to a topic : its source is registered until the last unsubscribe
+     *
+     * @param  topic
+     * @return false if the topic is not known
+     */
+    public synchronized boolean subscribe(String topic)
+    {
+        Registration registration = topic != null ? mRegistrations.get(topic) : null;
+        if (registration == null) {
+            Log.w("LynxAndroidSystem", "LynxSystemSession : unknown topic " + topic);
+            return false;
+        }
+        registration.subscribers++;
+        acquire(topic, registration);
+        return true;
+    }
+
+    /**
+     * Unsubscribe from a topic. An unsubscribe without subscribe does nothing.
+     *
+     * @param  topic
+     */
+    public synchronized void unsubscribe(String topic)
+    {
+        Registration registration = topic != null ? mRegistrations.get(topic) : null;
+        if (registration == null || registration.subscribers == 0) {
+            return;
+        }
+        registration.subscribers--;
+        release(topic, registration);
+    }
+
+    /**
+     * Get the topics : name$subscribers|...
+     *
+     * @return String
+     */
+    public synchronized String getTopics()
+    {
+        StringBuilder packed = new StringBuilder();
+        for (Map.Entry<String, Registration> entry : mRegistrations.entrySet())
+        {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entry.getKey()).append('$').append(entry.getValue().subscribers);
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Start the session : the sources are registered at the first start
+     *
+     * @return the number of starts not stopped yet
+     */
+    public synchronized int start()
+    {
+        mStartCount++;
+        if (mStartCount == 1)
+        {
+            for (Map.Entry<String, Registration> entry : mRegistrations.entrySet()) {
+                if (entry.getValue().onStart) {
+                    acquire(entry.getKey(), entry.getValue());
+                }
+            }
+            Log.d("LynxAndroidSystem", "LynxSystemSession started : " + getActiveRegistrations());
+        }
+        return mStartCount;
+    }
+
+    /**
+     * Stop the session : the sources are unregistered at the last stop, in the reverse order
+     *
+     * @return the number of starts not stopped yet
+     */
+    public synchronized int stop()
+    {
+        if (mStartCount == 0) {
+            return 0;
+        }
+        mStartCount--;
+        if (mStartCount == 0)
+        {
+            List<Map.Entry<String, Registration>> entries = new ArrayList<Map.Entry<String, Registration>>(mRegistrations.entrySet());
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                if (entries.get(i).getValue().onStart) {
+                    release(entries.get(i).getKey(), entries.get(i).getValue());
+                }
+            }
+            Log.d("LynxAndroidSystem", "LynxSystemSession stopped, still registered : " + getActiveRegistrations());
+        }
+        return mStartCount;
+    }
+
+    public synchronized boolean isStarted() {
+        return mStartCount > 0;
+    }
+
+    /**
+     * Pause a registered source : it is unregistered until resume, its users are kept.
+     *
+     * @param  name the name of the source
+     * @return true if the source was registered and is now paused, resume must then be called
+     */
+    public synchronized boolean pause(String name)
+    {
+        Registration registration = name != null ? mRegistrations.get(name) : null;
+        if (registration == null || registration.paused || registration.users == 0) {
+            return false;
+        }
+        registration.paused = true;
+        unregister(name, registration);
+        return true;
+    }
+
+    /**
+     * Resume a source paused by pause : it is registered again only if it still has users,
+     * not after the last stop or the last unsubscribe.
+     *
+     * @param  name the name of the source
+     */
+    public synchronized void resume(String name)
+    {
+        Registration registration = name != null ? mRegistrations.get(name) : null;
+        if (registration == null || !registration.paused) {
+            return;
+        }
+        registration.paused = false;
+        if (registration.users > 0) {
+            register(name, registration);
+        }
+    }
+
+    /**
+     * Get the registered sources : name$users|... then the registrations made outside the session : name$0|...
+     *
+     * @return String, empty when nothing is registered
+     */
+    public synchronized String getActiveRegistrations()
+    {
+        StringBuilder packed = new StringBuilder();
+        for (Map.Entry<String, Registration> entry : mRegistrations.entrySet())
+        {
+            if (entry.getValue().users == 0 || entry.getValue().paused) {
+                continue;
+            }
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entry.getKey()).append('$').append(entry.getValue().users);
+        }
+        for (Map.Entry<String, ExternalRegistration> entry : mExternalRegistrations.entrySet())
+        {
+            if (!entry.getValue().isRegistered()) {
+                continue;
+            }
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(entry.getKey()).append("$0");
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Register the source at its first user, unless it is paused
+     */
+    private void acquire(String name, Registration registration)
+    {
+        registration.users++;
+        if (registration.users > 1 || registration.paused) {
+            return;
+        }
+        register(name, registration);
+    }
+
+    /**
+     * Unregister the source at its last user, unless it is paused (already unregistered)
+     */
+    private void release(String name, Registration registration)
+    {
+        if (registration.users == 0) {
+            return;
+        }
+        registration.users--;
+        if (registration.users > 0 || registration.paused) {
+            return;
+        }
+        unregister(name, registration);
+    }
+
+    private void register(String name, Registration registration)
+    {
+        try {
+            registration.source.register(mContext);
+        }
+        catch (Exception e) {
+            // the other sources are registered anyway.
+            registration.users = 0;
+            Log.e("LynxAndroidSystem", "LynxSystemSession : error registering " + name, e);
+        }
+    }
+
+    private void unregister(String name, Registration registration)
+    {
+        try {
+            registration.source.unregister(mContext);
+        }
+        catch (Exception e) {
+            Log.e("LynxAndroidSystem", "LynxSystemSession : error unregistering " + name, e);
+        }
+    }
+}
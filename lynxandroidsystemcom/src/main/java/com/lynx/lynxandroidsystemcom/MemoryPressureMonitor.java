@@ -0,0 +1,287 @@
+/**
+ * MemoryPressureMonitor follows the memory pressure of the device and informs Unity
+ * when the pressure level changes, before a heavy application reaches the low memory killer.
+ * <p>
+ * Three sources are combined :
+ * - the ComponentCallbacks2.onTrimMemory / onLowMemory calls of the system,
+ * - a periodic sampling of ActivityManager.MemoryInfo,
+ * - the Linux PSI (Pressure Stall Information) of /proc/pressure/memory, when the kernel gives it.
+ * <p>
+ * When the pressure increases, all the registered caches of the library are reduced.
+ *
+ * @see TrimmableCache
+ * @see PressureStallInfo
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class MemoryPressureMonitor implements ComponentCallbacks2 {
+
+    // Pressure levels sent to Unity :
+    public static final int LEVEL_NONE     = 0;
+    public static final int LEVEL_LOW      = 1;
+    public static final int LEVEL_MODERATE = 2;
+    public static final int LEVEL_CRITICAL = 3;
+
+    /** Default sampling period of MemoryInfo and PSI */
+    public static final int DEFAULT_SAMPLING_PERIOD_MS = 1000;
+
+    // PSI thresholds on avg10, in hundredths of percent :
+    static final int PSI_SOME_LOW_THRESHOLD      = 1000; // 10 %
+    static final int PSI_SOME_MODERATE_THRESHOLD = 3000; // 30 %
+    static final int PSI_FULL_CRITICAL_THRESHOLD = 1000; // 10 %
+
+    /** Available memory under which the level is at least LOW, in percent of the total memory */
+    static final int AVAILABLE_MEMORY_LOW_PERCENT = 15;
+
+    /** Duration during which a level given by onTrimMemory is kept */
+    static final long TRIM_LEVEL_HOLD_MS = 10000;
+
+    private final Context         mContext;
+    private final ActivityManager mActivityManager;
+    private final Handler         mHandler;
+    private final int             mSamplingPeriodMs;
+
+    // Reused at each sample :
+    private final ActivityManager.MemoryInfo mMemoryInfo = new ActivityManager.MemoryInfo();
+    private final PressureStallInfo          mPsi        = new PressureStallInfo();
+    private final SysFileReader              mPsiReader  = new SysFileReader(PressureStallInfo.MEMORY_PSI_PATH);
+    private final byte[]                     mBuffer     = new byte[256];
+    private volatile boolean                 mPsiAvailable = true;
+
+    /** The caches reduced when the pressure increases */
+    private final List<TrimmableCache> mCaches = new CopyOnWriteArrayList<TrimmableCache>();
+
+    // Last level given by the system through onTrimMemory or onLowMemory :
+    private int  mTrimLevel     = LEVEL_NONE;
+    private long mTrimLevelTime = 0;
+
+    // Current state, read from any thread :
+    private volatile int     mLevel           = LEVEL_NONE;
+    private volatile long    mAvailableMemory = 0;
+    private volatile long    mTotalMemory     = 0;
+    private volatile int     mSomeAvg10       = 0;
+    private volatile int     mFullAvg10       = 0;
+    private volatile boolean mRunning         = false;
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            sample();
+            evaluate();
+            mHandler.postDelayed(this, mSamplingPeriodMs);
+        }
+    };
+
+    public MemoryPressureMonitor(Context context, int samplingPeriodMs) {
+        mContext          = context.getApplicationContext();
+        mActivityManager  = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
+        mHandler          = MonitorThread.getHandler();
+        mSamplingPeriodMs = samplingPeriodMs > 0 ? samplingPeriodMs : DEFAULT_SAMPLING_PERIOD_MS;
+    }
+
+    /**
+     * Start the monitor : register the system callbacks and start the periodic sampling.
+     */
+    public void start()
+    {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mContext.registerComponentCallbacks(this);
+        mHandler.post(mSampleRunnable);
+        Log.d("LynxAndroidSystem", "MemoryPressureMonitor started with period (ms) : " + mSamplingPeriodMs);
+    }
+
+    /**
+     * Stop the monitor.
+     */
+    public void stop()
+    {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mContext.unregisterComponentCallbacks(this);
+        mHandler.removeCallbacks(mSampleRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPsiReader.close();
+            }
+        });
+        Log.d("LynxAndroidSystem", "MemoryPressureMonitor stopped");
+    }
+
+    /**
+     * Add a cache to reduce when the pressure increases
+     *
+     * @param  cache
+     */
+    public void addCache(TrimmableCache cache) {
+        if (cache != null && !mCaches.contains(cache)) {
+            mCaches.add(cache);
+        }
+    }
+
+    /**
+     * Remove a cache previously added with addCache
+     *
+     * @param  cache
+     */
+    public void removeCache(TrimmableCache cache) {
+        mCaches.remove(cache);
+    }
+
+    /**
+     * Get the current pressure level
+     *
+     * @return one of the LEVEL_ values
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Get the current memory state, packed in a string :
+     * level$availableMemoryInMB$totalMemoryInMB$psiSomeAvg10$psiFullAvg10
+     * PSI values are in hundredths of percent, -1 if PSI is not available.
+     *
+     * @return String
+     */
+    public String getInfo()
+    {
+        int someAvg10 = mPsiAvailable ? mSomeAvg10 : -1;
+        int fullAvg10 = mPsiAvailable ? mFullAvg10 : -1;
+        return mLevel + "$" + (mAvailableMemory / (1024 * 1024)) + "$" + (mTotalMemory / (1024 * 1024)) + "$" + someAvg10 + "$" + fullAvg10;
+    }
+
+    @Override
+    public void onTrimMemory(final int trimLevel)
+    {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mTrimLevel     = levelFromTrimMemory(trimLevel);
+                mTrimLevelTime = System.currentTimeMillis();
+                evaluate();
+            }
+        });
+    }
+
+    @Override
+    public void onLowMemory()
+    {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {}
+
+    /**
+     * Convert an onTrimMemory level to a pressure level
+     *
+     * @param  trimLevel ComponentCallbacks2.TRIM_MEMORY_ value
+     * @return one of the LEVEL_ values
+     */
+    static int levelFromTrimMemory(int trimLevel)
+    {
+        if (trimLevel >= TRIM_MEMORY_COMPLETE || trimLevel == TRIM_MEMORY_RUNNING_CRITICAL) {
+            return LEVEL_CRITICAL;
+        }
+        if (trimLevel >= TRIM_MEMORY_MODERATE || trimLevel == TRIM_MEMORY_RUNNING_LOW) {
+            return LEVEL_MODERATE;
+        }
+        if (trimLevel == TRIM_MEMORY_RUNNING_MODERATE || trimLevel == TRIM_MEMORY_BACKGROUND) {
+            return LEVEL_LOW;
+        }
+        // TRIM_MEMORY_UI_HIDDEN : only means that our UI is not visible anymore.
+        return LEVEL_NONE;
+    }
+
+    /**
+     * Read MemoryInfo and PSI. Called on the monitor thread.
+     */
+    private void sample()
+    {
+        mActivityManager.getMemoryInfo(mMemoryInfo);
+        mAvailableMemory = mMemoryInfo.availMem;
+        mTotalMemory     = mMemoryInfo.totalMem;
+
+        if (mPsiAvailable)
+        {
+            if (mPsi.read(mPsiReader, mBuffer)) {
+                mSomeAvg10 = mPsi.someAvg10;
+                mFullAvg10 = mPsi.fullAvg10;
+            } else {
+                // no PSI in this kernel, or access refused : don't try again.
+                mPsiAvailable = false;
+                Log.w("LynxAndroidSystem", "MemoryPressureMonitor : PSI not available in " + PressureStallInfo.MEMORY_PSI_PATH);
+            }
+        }
+    }
+
+    /**
+     * Compute the pressure level from the last sample and the last trim level.
+     * Called on the monitor thread.
+     */
+    private void evaluate()
+    {
+        int level = LEVEL_NONE;
+
+        // MemoryInfo :
+        if (mMemoryInfo.lowMemory) {
+            level = LEVEL_MODERATE;
+        } else if (mMemoryInfo.totalMem > 0 && mMemoryInfo.availMem * 100 < mMemoryInfo.totalMem * AVAILABLE_MEMORY_LOW_PERCENT) {
+            level = LEVEL_LOW;
+        }
+
+        // PSI :
+        if (mPsiAvailable)
+        {
+            if (mFullAvg10 >= PSI_FULL_CRITICAL_THRESHOLD) {
+                level = Math.max(level, LEVEL_CRITICAL);
+            } else if (mSomeAvg10 >= PSI_SOME_MODERATE_THRESHOLD) {
+                level = Math.max(level, LEVEL_MODERATE);
+            } else if (mSomeAvg10 >= PSI_SOME_LOW_THRESHOLD) {
+                level = Math.max(level, LEVEL_LOW);
+            }
+        }
+
+        // onTrimMemory, kept during TRIM_LEVEL_HOLD_MS :
+        if (System.currentTimeMillis() - mTrimLevelTime < TRIM_LEVEL_HOLD_MS) {
+            level = Math.max(level, mTrimLevel);
+        }
+
+        int previousLevel = mLevel;
+        if (level == previousLevel) {
+            return;
+        }
+        mLevel = level;
+
+        if (level > previousLevel) {
+            for (TrimmableCache cache : mCaches) {
+                cache.trim(level);
+            }
+        }
+
+        Log.i("LynxAndroidSystem", "Memory pressure level change : " + previousLevel + " -> " + level);
+        LynxAndroidSystemComMng.sendUnityMessage("MemoryPressureChange", getInfo());
+    }
+}
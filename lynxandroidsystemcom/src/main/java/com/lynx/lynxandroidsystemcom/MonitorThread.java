@@ -0,0 +1,64 @@
+/**
+ * MonitorThread gives the background thread shared by all the monitors of the library
+ * (memory, thermal, network etc...) so that none of them runs on the Unity main thread
+ * and the library only creates one thread for all its periodic work.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+
+public class MonitorThread {
+
+    /** The shared thread, created at the first call of getHandler() */
+    private static HandlerThread mHandlerThread = null;
+
+    /** Handler attached to the shared thread */
+    private static Handler       mHandler = null;
+
+    /** Executor that runs the tasks on the shared thread, for the android API that need an Executor */
+    private static Executor      mExecutor = null;
+
+    /**
+     * Get the handler of the monitor thread. The thread is created at the first call.
+     *
+     * @return Handler
+     */
+    public static synchronized Handler getHandler()
+    {
+        if (mHandler == null)
+        {
+            mHandlerThread = new HandlerThread("LynxSystemMonitor", Process.THREAD_PRIORITY_BACKGROUND);
+            mHandlerThread.start();
+            mHandler = new Handler(mHandlerThread.getLooper());
+        }
+        return mHandler;
+    }
+
+    /**
+     * Get an executor that runs the tasks on the monitor thread.
+     *
+     * @return Executor
+     */
+    public static synchronized Executor getExecutor()
+    {
+        if (mExecutor == null)
+        {
+            final Handler handler = getHandler();
+            mExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    handler.post(command);
+                }
+            };
+        }
+        return mExecutor;
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * NetworkStateMonitor keeps the state of the networks in memory with ConnectivityManager callbacks :
+ * transport of the default network, internet validation, metered status and bandwidth estimates.
+ * <p>
+ * The changes are coalesced : NetworkStateChange is sent to Unity at most once per COALESCE_DELAY_MS
+ * and only if something significant changed (the bandwidth estimates must change of more than
+ * BANDWIDTH_CHANGE_PERCENT), with transport$validated$metered$downKbps$upKbps$networkInfo.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class NetworkStateMonitor {
+
+    // Transport of the default network sent to Unity :
+    public static final int TRANSPORT_NONE      = 0;
+    public static final int TRANSPORT_WIFI      = 1;
+    public static final int TRANSPORT_CELLULAR  = 2;
+    public static final int TRANSPORT_ETHERNET  = 3;
+    public static final int TRANSPORT_BLUETOOTH = 4;
+    public static final int TRANSPORT_VPN       = 5;
+    public static final int TRANSPORT_OTHER     = 6;
+
+    /** Minimum delay between two messages sent to Unity */
+    static final long COALESCE_DELAY_MS = 500;
+
+    /** Minimum change of a bandwidth estimate to inform Unity */
+    static final int BANDWIDTH_CHANGE_PERCENT = 25;
+
+    private final ConnectivityManager mConnectivityManager;
+    private final Handler             mHandler;
+
+    /** Capabilities of all the networks, only used on the monitor thread */
+    private final Map<Network, NetworkCapabilities> mNetworks = new HashMap<Network, NetworkCapabilities>();
+
+    /** The default network, only used on the monitor thread */
+    private Network mDefaultNetwork = null;
+
+    // Current state :
+    private volatile int     mTransport   = TRANSPORT_NONE;
+    private volatile boolean mValidated   = false;
+    private volatile boolean mMetered     = false;
+    private volatile int     mDownKbps    = 0;
+    private volatile int     mUpKbps      = 0;
+    private volatile int     mNetworkInfo = 0;
+    private volatile boolean mRunning     = false;
+
+    // State sent to Unity, only used on the monitor thread :
+    private int     mSentTransport   = -1;
+    private boolean mSentValidated   = false;
+    private boolean mSentMetered     = false;
+    private int     mSentDownKbps    = 0;
+    private int     mSentUpKbps      = 0;
+    private int     mSentNetworkInfo = 0;
+    private boolean mSendPending     = false;
+
+    private final ConnectivityManager.NetworkCallback mAllNetworksCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            mNetworks.put(network, capabilities);
+            update();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            mNetworks.remove(network);
+            update();
+        }
+    };
+
+    private final ConnectivityManager.NetworkCallback mDefaultNetworkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onAvailable(Network network) {
+            mDefaultNetwork = network;
+            update();
+        }
+
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            mDefaultNetwork = network;
+            mNetworks.put(network, capabilities);
+            update();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            if (network.equals(mDefaultNetwork)) {
+                mDefaultNetwork = null;
+            }
+            // the VPN networks are only seen by this callback : the request of mAllNetworksCallback excludes them.
+            mNetworks.remove(network);
+            update();
+        }
+    };
+
+    private final Runnable mSendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mSendPending = false;
+            sendIfChanged();
+        }
+    };
+
+    public NetworkStateMonitor(Context context) {
+        mConnectivityManager = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        mHandler             = MonitorThread.getHandler();
+    }
+
+    /**
+     * Start the monitor. The state of the default network is read at once, then the callbacks
+     * are called on the monitor thread with the current networks.
+     */
+    public synchronized void start()
+    {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+
+        // the first calls of getInfo must not answer the empty state before the first callback.
+        Network activeNetwork = mConnectivityManager.getActiveNetwork();
+        NetworkCapabilities activeCapabilities = activeNetwork != null ? mConnectivityManager.getNetworkCapabilities(activeNetwork) : null;
+        setDefaultState(activeCapabilities);
+        mNetworkInfo = activeCapabilities != null ? getNetworkInfo(activeCapabilities) : 0;
+
+        // all the networks, not only the ones with internet.
+        NetworkRequest request = new NetworkRequest.Builder()
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_NOT_RESTRICTED)
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_TRUSTED)
+                .build();
+        mConnectivityManager.registerNetworkCallback(request, mAllNetworksCallback, mHandler);
+        mConnectivityManager.registerDefaultNetworkCallback(mDefaultNetworkCallback, mHandler);
+        Log.d("LynxAndroidSystem", "NetworkStateMonitor started");
+    }
+
+    /**
+     * Stop the monitor
+     */
+    public synchronized void stop()
+    {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+
+        mConnectivityManager.unregisterNetworkCallback(mAllNetworksCallback);
+        mConnectivityManager.unregisterNetworkCallback(mDefaultNetworkCallback);
+        mHandler.removeCallbacks(mSendRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mNetworks.clear();
+                mDefaultNetwork = null;
+                mSendPending    = false;
+                mSentTransport  = -1;
+            }
+        });
+        Log.d("LynxAndroidSystem", "NetworkStateMonitor stopped");
+    }
+
+    /**
+     * Say if the monitor is started
+     *
+     * @return boolean
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Get the transport of the default network
+     *
+     * @return one of the TRANSPORT_ values
+     */
+    public int getTransport() {
+        return mTransport;
+    }
+
+    /**
+     * Get the networks connected, same value as LynxAndroidSystemComMng.getNetworkInfo
+     *
+     * @return 0 none, 1 wifi, 2 mobile, 3 wifi and mobile
+     */
+    public int getNetworkInfo() {
+        return mNetworkInfo;
+    }
+
+    /**
+     * Get the current state packed in a string :
+     * transport$validated$metered$downKbps$upKbps$networkInfo
+     *
+     * @return String
+     */
+    public String getInfo() {
+        return pack(mTransport, mValidated, mMetered, mDownKbps, mUpKbps, mNetworkInfo);
+    }
+
+    /**
+     * Compute the state from the networks. Called on the monitor thread.
+     */
+    private void update()
+    {
+        int networkInfo = 0;
+        for (NetworkCapabilities capabilities : mNetworks.values()) {
+            networkInfo |= getNetworkInfo(capabilities);
+        }
+        mNetworkInfo = networkInfo;
+
+        setDefaultState(mDefaultNetwork != null ? mNetworks.get(mDefaultNetwork) : null);
+
+        if (!mSendPending) {
+            mSendPending = true;
+            mHandler.postDelayed(mSendRunnable, COALESCE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Set the state from the capabilities of the default network, null if there is none
+     */
+    private void setDefaultState(NetworkCapabilities capabilities)
+    {
+        if (capabilities == null)
+        {
+            mTransport = TRANSPORT_NONE;
+            mValidated = false;
+            mMetered   = false;
+            mDownKbps  = 0;
+            mUpKbps    = 0;
+        }
+        else
+        {
+            mTransport = getTransport(capabilities);
+            mValidated = capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+            mMetered   = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+            mDownKbps  = capabilities.getLinkDownstreamBandwidthKbps();
+            mUpKbps    = capabilities.getLinkUpstreamBandwidthKbps();
+        }
+    }
+
+    /**
+     * @return 1 for wifi, 2 for mobile, 3 for both
+     */
+    private static int getNetworkInfo(NetworkCapabilities capabilities)
+    {
+        int networkInfo = 0;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            networkInfo |= 1;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            networkInfo |= 2;
+        }
+        return networkInfo;
+    }
+
+    private void sendIfChanged()
+    {
+        boolean changed = mTransport != mSentTransport || mValidated != mSentValidated || mMetered != mSentMetered
+                || mNetworkInfo != mSentNetworkInfo
+                || isBandwidthChange(mSentDownKbps, mDownKbps) || isBandwidthChange(mSentUpKbps, mUpKbps);
+        if (!changed) {
+            return;
+        }
+
+        mSentTransport   = mTransport;
+        mSentValidated   = mValidated;
+        mSentMetered     = mMetered;
+        mSentDownKbps    = mDownKbps;
+        mSentUpKbps      = mUpKbps;
+        mSentNetworkInfo = mNetworkInfo;
+
+        String info = pack(mSentTransport, mSentValidated, mSentMetered, mSentDownKbps, mSentUpKbps, mSentNetworkInfo);
+        Log.d("LynxAndroidSystem", "NetworkStateChange : " + info);
+        LynxAndroidSystemComMng.sendUnityMessage("NetworkStateChange", info);
+    }
+
+    static boolean isBandwidthChange(int sentKbps, int kbps)
+    {
+        if (sentKbps == kbps) {
+            return false;
+        }
+        if (sentKbps == 0 || kbps == 0) {
+            return true;
+        }
+        return Math.abs(kbps - sentKbps) * 100L > (long) sentKbps * BANDWIDTH_CHANGE_PERCENT;
+    }
+
+    private static int getTransport(NetworkCapabilities capabilities)
+    {
+        // a VPN network also has the transport of the network below it.
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_VPN)) {
+            return TRANSPORT_VPN;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            return TRANSPORT_WIFI;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            return TRANSPORT_CELLULAR;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            return TRANSPORT_ETHERNET;
+        }
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_BLUETOOTH)) {
+            return TRANSPORT_BLUETOOTH;
+        }
+        return TRANSPORT_OTHER;
+    }
+
+    private static String pack(int transport, boolean validated, boolean metered, int downKbps, int upKbps, int networkInfo) {
+        return transport + "$" + (validated ? 1 : 0) + "$" + (metered ? 1 : 0) + "$" + downKbps + "$" + upKbps + "$" + networkInfo;
+    }
+}
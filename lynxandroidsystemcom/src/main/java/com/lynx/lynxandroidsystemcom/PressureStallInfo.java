@@ -0,0 +1,120 @@
+/**
+ * PressureStallInfo contains the values of a Linux PSI file (Pressure Stall Information)
+ * like /proc/pressure/memory :
+ * <pre>
+ * some avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * full avg10=0.00 avg60=0.00 avg300=0.00 total=0
+ * </pre>
+ * The averages are stored in hundredths of percent (12.34% is stored as 1234) so parsing
+ * doesn't allocate anything. Only java.io is used : it can be used on any Linux machine.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public class PressureStallInfo {
+
+    /** Default path of the memory PSI file */
+    public static final String MEMORY_PSI_PATH = "/proc/pressure/memory";
+
+    /** "some" line : share of time where at least one task is stalled, in hundredths of percent */
+    public int  someAvg10;
+    public int  someAvg60;
+    public int  someAvg300;
+    /** "some" line : total stall time in microseconds */
+    public long someTotal;
+
+    /** "full" line : share of time where all non idle tasks are stalled, in hundredths of percent */
+    public int  fullAvg10;
+    public int  fullAvg60;
+    public int  fullAvg300;
+    /** "full" line : total stall time in microseconds */
+    public long fullTotal;
+
+    /**
+     * Read the PSI file and fill this object.
+     *
+     * @param  reader reader of the PSI file
+     * @param  buffer work buffer (256 bytes are enough)
+     * @return true if the file has been read and parsed
+     */
+    public boolean read(SysFileReader reader, byte[] buffer)
+    {
+        int length = reader.read(buffer);
+        if (length <= 0) {
+            return false;
+        }
+        return parse(buffer, length);
+    }
+
+    /**
+     * Parse the content of a PSI file.
+     *
+     * @param  buffer content of the file
+     * @param  length number of valid bytes in buffer
+     * @return true if at least the "some" line has been found
+     */
+    public boolean parse(byte[] buffer, int length)
+    {
+        boolean someFound = false;
+        int lineStart = 0;
+
+        while (lineStart < length)
+        {
+            int lineEnd = SysFileReader.indexOf(buffer, (byte) '\n', lineStart, length);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+
+            if (SysFileReader.startsWith(buffer, lineStart, lineEnd, "some ")) {
+                someAvg10  = parseAverage(buffer, lineStart, lineEnd, "avg10=");
+                someAvg60  = parseAverage(buffer, lineStart, lineEnd, "avg60=");
+                someAvg300 = parseAverage(buffer, lineStart, lineEnd, "avg300=");
+                someTotal  = parseTotal(buffer, lineStart, lineEnd);
+                someFound  = true;
+            } else if (SysFileReader.startsWith(buffer, lineStart, lineEnd, "full ")) {
+                fullAvg10  = parseAverage(buffer, lineStart, lineEnd, "avg10=");
+                fullAvg60  = parseAverage(buffer, lineStart, lineEnd, "avg60=");
+                fullAvg300 = parseAverage(buffer, lineStart, lineEnd, "avg300=");
+                fullTotal  = parseTotal(buffer, lineStart, lineEnd);
+            }
+
+            lineStart = lineEnd + 1;
+        }
+
+        return someFound;
+    }
+
+    /**
+     * Find the index of the value that follows a key like "avg10=" in a line.
+     *
+     * @return the index of the value, -1 if the key is not found.
+     */
+    private static int findValue(byte[] buffer, int lineStart, int lineEnd, String key)
+    {
+        int i = lineStart;
+        while (i < lineEnd)
+        {
+            i = SysFileReader.skipSpaces(buffer, i, lineEnd);
+            if (SysFileReader.startsWith(buffer, i, lineEnd, key)) {
+                return i + key.length();
+            }
+            i = SysFileReader.skipToken(buffer, i, lineEnd);
+        }
+        return -1;
+    }
+
+    private static int parseAverage(byte[] buffer, int lineStart, int lineEnd, String key)
+    {
+        int index = findValue(buffer, lineStart, lineEnd, key);
+        return index < 0 ? 0 : SysFileReader.parseHundredths(buffer, index, lineEnd);
+    }
+
+    private static long parseTotal(byte[] buffer, int lineStart, int lineEnd)
+    {
+        int index = findValue(buffer, lineStart, lineEnd, "total=");
+        return index < 0 ? 0 : SysFileReader.parseLong(buffer, index, lineEnd);
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * ProcessSampler computes the cpu and memory usage of a set of processes
+ * by reading /proc/[pid]/stat and /proc/[pid]/statm.
+ * <p>
+ * Files stay open between two samples, they are read in a reused buffer and parsed by hand :
+ * a sample doesn't allocate anything. The cpu usage is computed over a sliding window of samples.
+ * Only java.io is used and the /proc folder can be given : it can be used on any Linux machine.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+public class ProcessSampler {
+
+    /** Default folder of the proc file system */
+    public static final String DEFAULT_PROC_ROOT = "/proc";
+
+    /** Maximum number of processes followed at the same time */
+    public static final int MAX_PROCESSES = 64;
+
+    /** Default number of samples in the sliding window */
+    public static final int DEFAULT_WINDOW_SIZE = 5;
+
+    private final File mProcRoot;
+    private final int  mClockTicksPerSecond;
+    private final long mPageSize;
+    private final int  mWindowSize;
+
+    private final byte[] mBuffer = new byte[1024];
+
+    // One slot per followed process :
+    private int             mProcessCount = 0;
+    private final String[]        mPackageNames  = new String[MAX_PROCESSES];
+    private final int[]           mPids          = new int[MAX_PROCESSES];
+    private final SysFileReader[] mStatReaders   = new SysFileReader[MAX_PROCESSES];
+    private final SysFileReader[] mStatmReaders  = new SysFileReader[MAX_PROCESSES];
+
+    // Sliding window, [slot][sample] :
+    private final long[][] mCpuTicks;
+    private final long[][] mSampleTimes;
+    private final int[]    mSampleCounts = new int[MAX_PROCESSES];
+    private int            mWindowIndex  = 0;
+
+    // Last results per slot :
+    private final int[]  mCpuPerMille = new int[MAX_PROCESSES];
+    private final long[] mRssInKB     = new long[MAX_PROCESSES];
+
+    public ProcessSampler(File procRoot, int clockTicksPerSecond, long pageSize, int windowSize)
+    {
+        mProcRoot            = procRoot;
+        mClockTicksPerSecond = clockTicksPerSecond > 0 ? clockTicksPerSecond : 100;
+        mPageSize            = pageSize > 0 ? pageSize : 4096;
+        mWindowSize          = windowSize > 1 ? windowSize : DEFAULT_WINDOW_SIZE;
+        mCpuTicks            = new long[MAX_PROCESSES][mWindowSize];
+        mSampleTimes         = new long[MAX_PROCESSES][mWindowSize];
+    }
+
+    /**
+     * Set the processes to follow. The processes already followed keep their sliding window.
+     *
+     * @param  packageNames package name of each process
+     * @param  pids         pid of each process
+     * @param  count        number of processes in the arrays
+     */
+    public synchronized void setProcesses(String[] packageNames, int[] pids, int count)
+    {
+        count = Math.min(count, MAX_PROCESSES);
+
+        String[]        oldPackageNames  = Arrays.copyOf(mPackageNames, mProcessCount);
+        int[]           oldPids          = Arrays.copyOf(mPids, mProcessCount);
+        SysFileReader[] oldStatReaders   = Arrays.copyOf(mStatReaders, mProcessCount);
+        SysFileReader[] oldStatmReaders  = Arrays.copyOf(mStatmReaders, mProcessCount);
+        long[][]        oldCpuTicks      = new long[mProcessCount][];
+        long[][]        oldSampleTimes   = new long[mProcessCount][];
+        int[]           oldSampleCounts  = Arrays.copyOf(mSampleCounts, mProcessCount);
+        int[]           oldCpuPerMille   = Arrays.copyOf(mCpuPerMille, mProcessCount);
+        long[]          oldRssInKB       = Arrays.copyOf(mRssInKB, mProcessCount);
+        boolean[]       kept             = new boolean[mProcessCount];
+
+        for (int i = 0; i < mProcessCount; i++) {
+            oldCpuTicks[i]    = mCpuTicks[i].clone();
+            oldSampleTimes[i] = mSampleTimes[i].clone();
+        }
+
+        for (int slot = 0; slot < count; slot++)
+        {
+            int old = -1;
+            for (int i = 0; i < oldPids.length; i++) {
+                if (oldPids[i] == pids[slot]) {
+                    old = i;
+                    break;
+                }
+            }
+
+            mPackageNames[slot] = packageNames[slot];
+            mPids[slot]         = pids[slot];
+
+            if (old >= 0)
+            {
+                kept[old]            = true;
+                mStatReaders[slot]   = oldStatReaders[old];
+                mStatmReaders[slot]  = oldStatmReaders[old];
+                System.arraycopy(oldCpuTicks[old], 0, mCpuTicks[slot], 0, mWindowSize);
+                System.arraycopy(oldSampleTimes[old], 0, mSampleTimes[slot], 0, mWindowSize);
+                mSampleCounts[slot]  = oldSampleCounts[old];
+                mCpuPerMille[slot]   = oldCpuPerMille[old];
+                mRssInKB[slot]       = oldRssInKB[old];
+            }
+            else
+            {
+                File processFolder   = new File(mProcRoot, Integer.toString(pids[slot]));
+                mStatReaders[slot]   = new SysFileReader(new File(processFolder, "stat"));
+                mStatmReaders[slot]  = new SysFileReader(new File(processFolder, "statm"));
+                mSampleCounts[slot]  = 0;
+                mCpuPerMille[slot]   = 0;
+                mRssInKB[slot]       = 0;
+            }
+        }
+
+        for (int i = 0; i < oldStatReaders.length; i++) {
+            if (!kept[i]) {
+                oldStatReaders[i].close();
+                oldStatmReaders[i].close();
+            }
+        }
+
+        for (int slot = count; slot < mProcessCount; slot++) {
+            mPackageNames[slot] = null;
+            mStatReaders[slot]  = null;
+            mStatmReaders[slot] = null;
+        }
+
+        mProcessCount = count;
+    }
+
+    /**
+     * Read the /proc files of all the followed processes and update the results.
+     *
+     * @param  nowMs current time in milliseconds (monotonic clock)
+     */
+    public synchronized void sample(long nowMs)
+    {
+        int index = mWindowIndex;
+
+        for (int slot = 0; slot < mProcessCount; slot++)
+        {
+            // cpu : utime + stime in /proc/[pid]/stat
+            int length = mStatReaders[slot].read(mBuffer);
+            if (length <= 0) {
+                // process is dead : no usage.
+                mSampleCounts[slot] = 0;
+                mCpuPerMille[slot]  = 0;
+                mRssInKB[slot]      = 0;
+                continue;
+            }
+
+            long ticks = parseCpuTicks(mBuffer, length);
+            mCpuTicks[slot][index]    = ticks;
+            mSampleTimes[slot][index] = nowMs;
+            if (mSampleCounts[slot] < mWindowSize) {
+                mSampleCounts[slot]++;
+            }
+
+            if (mSampleCounts[slot] > 1)
+            {
+                // oldest sample of the window for this slot :
+                int oldest = (index - mSampleCounts[slot] + 1 + mWindowSize) % mWindowSize;
+                long elapsedMs   = nowMs - mSampleTimes[slot][oldest];
+                long elapsedTicks = ticks - mCpuTicks[slot][oldest];
+                if (elapsedMs > 0 && elapsedTicks >= 0) {
+                    // ticks * 1000 / clk = cpu ms. cpu ms * 1000 / elapsed ms = per mille of one core.
+                    mCpuPerMille[slot] = (int) (elapsedTicks * 1000L * 1000L / mClockTicksPerSecond / elapsedMs);
+                }
+            }
+
+            // memory : resident pages in /proc/[pid]/statm
+            length = mStatmReaders[slot].read(mBuffer);
+            if (length > 0) {
+                mRssInKB[slot] = parseResidentPages(mBuffer, length) * mPageSize / 1024;
+            }
+        }
+
+        mWindowIndex = (index + 1) % mWindowSize;
+    }
+
+    /**
+     * Close all the opened files and forget all the processes.
+     */
+    public synchronized void close()
+    {
+        for (int slot = 0; slot < mProcessCount; slot++) {
+            mStatReaders[slot].close();
+            mStatmReaders[slot].close();
+            mStatReaders[slot]  = null;
+            mStatmReaders[slot] = null;
+            mPackageNames[slot] = null;
+        }
+        mProcessCount = 0;
+    }
+
+    /**
+     * Get the results packed in a string, sorted by cpu usage (highest first) :
+     * packageName$pid$cpuPerMille$rssInKB|packageName$pid$cpuPerMille$rssInKB|...
+     * cpuPerMille is the cpu usage in thousandths of one core (1000 = one full core).
+     *
+     * @return String
+     */
+    public synchronized String getPackedTable()
+    {
+        Integer[] order = new Integer[mProcessCount];
+        for (int i = 0; i < mProcessCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (mCpuPerMille[a] != mCpuPerMille[b]) {
+                    return Integer.compare(mCpuPerMille[b], mCpuPerMille[a]);
+                }
+                return Long.compare(mRssInKB[b], mRssInKB[a]);
+            }
+        });
+
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < order.length; i++)
+        {
+            int slot = order[i];
+            if (i > 0) {
+                table.append('|');
+            }
+            table.append(mPackageNames[slot]).append('$')
+                 .append(mPids[slot]).append('$')
+                 .append(mCpuPerMille[slot]).append('$')
+                 .append(mRssInKB[slot]);
+        }
+        return table.toString();
+    }
+
+    /**
+     * Get the cpu usage of a package. If the package has several processes, their usages are added.
+     *
+     * @param  packageName
+     * @return cpu usage in thousandths of one core, -1 if the package is not followed.
+     */
+    public synchronized int getCpuPerMille(String packageName)
+    {
+        int total = -1;
+        for (int slot = 0; slot < mProcessCount; slot++) {
+            if (mPackageNames[slot].equals(packageName)) {
+                total = Math.max(total, 0) + mCpuPerMille[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the resident memory of a package. If the package has several processes, their memories are added.
+     *
+     * @param  packageName
+     * @return resident memory in KB, -1 if the package is not followed.
+     */
+    public synchronized long getRssInKB(String packageName)
+    {
+        long total = -1;
+        for (int slot = 0; slot < mProcessCount; slot++) {
+            if (mPackageNames[slot].equals(packageName)) {
+                total = Math.max(total, 0) + mRssInKB[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Parse utime + stime (fields 14 and 15) of /proc/[pid]/stat.
+     * The process name (field 2) is between parenthesis and can contain spaces,
+     * so the fields are counted from the last ')'.
+     *
+     * @param  buffer content of the stat file
+     * @param  length number of valid bytes
+     * @return the cpu time in clock ticks, 0 if the content is not valid.
+     */
+    static long parseCpuTicks(byte[] buffer, int length)
+    {
+        int index = -1;
+        for (int i = length - 1; i >= 0; i--) {
+            if (buffer[i] == ')') {
+                index = i + 1;
+                break;
+            }
+        }
+        if (index < 0) {
+            return 0;
+        }
+
+        // field 3 (state) is the first token after ')' : skip 11 tokens to reach field 14.
+        for (int field = 3; field < 14; field++) {
+            index = SysFileReader.skipSpaces(buffer, index, length);
+            index = SysFileReader.skipToken(buffer, index, length);
+        }
+
+        index = SysFileReader.skipSpaces(buffer, index, length);
+        long utime = SysFileReader.parseLong(buffer, index, length);
+        index = SysFileReader.skipToken(buffer, index, length);
+        index = SysFileReader.skipSpaces(buffer, index, length);
+        long stime = SysFileReader.parseLong(buffer, index, length);
+
+        return utime + stime;
+    }
+
+    /**
+     * Parse the resident size (field 2) of /proc/[pid]/statm.
+     *
+     * @param  buffer content of the statm file
+     * @param  length number of valid bytes
+     * @return the resident size in pages
+     */
+    static long parseResidentPages(byte[] buffer, int length)
+    {
+        int index = SysFileReader.skipSpaces(buffer, 0, length);
+        index = SysFileReader.skipToken(buffer, index, length);
+        index = SysFileReader.skipSpaces(buffer, index, length);
+        return SysFileReader.parseLong(buffer, index, length);
+    }
+}
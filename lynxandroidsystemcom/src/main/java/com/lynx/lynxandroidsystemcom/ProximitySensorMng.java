@@ -1,39 +1,172 @@
 /**
  * ProximitySensorMng gives information about the proximity sensor of the device.
+ * <p>
+ * The proximity sensor of the headset says if it is worn : the sensor is subscribed on the SensorHub
+ * only while the detection is started, and HeadsetWornStateChange is sent to Unity with true / false
+ * once the state is stable, not for each sample.
  *
+ * @see SensorHub
  * @author      Cédric Morel Francoz
  * @since       1.0
  */
 
 package com.lynx.lynxandroidsystemcom;
 
+import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
 import android.util.Log;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 public class ProximitySensorMng implements SensorEventListener {
 
+    /**
+     * Listener of the proximity, for the parts that need to react at once (HeadsetPowerPolicy)
+     */
+    public interface Listener {
+        /**
+         * Called on the sensor hub thread at each change of the proximity, not debounced
+         *
+         * @param  near true if something is close to the sensor
+         */
+        void onProximityChanged(boolean near);
+    }
+
+    /** Time the headset must stay near to be worn */
+    public static final long WORN_DEBOUNCE_MS = 300;
+
+    /** Time the headset must stay away to be removed, longer : a short move must not pause the application */
+    public static final long REMOVED_DEBOUNCE_MS = 1000;
+
+    private final SensorHub mSensorHub;
+    private final Handler   mHandler;
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    /** The state given by the last sample, modified on the hub thread */
+    private volatile boolean mNear = false;
+
+    // The stable state :
+    private volatile boolean mWorn    = false;
+    private volatile boolean mStarted = false;
+
+    private final Runnable mStableRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mNear == mWorn) {
+                return;
+            }
+            mWorn = mNear;
+            Log.d("LynxAndroidSystem", "HeadsetWornStateChange : " + mWorn);
+            LynxAndroidSystemComMng.sendUnityMessage("HeadsetWornStateChange", Boolean.toString(mWorn));
+        }
+    };
+
+    public ProximitySensorMng(Context context)
+    {
+        mSensorHub = SensorHub.getInstance(context);
+        mHandler   = mSensorHub.getHandler();
+    }
+
+    /**
+     * Subscribe to the proximity sensor. The proximity sensor reports on change only, so its events are not batched.
+     *
+     * @return true if the device has a proximity sensor
+     */
+    public synchronized boolean start()
+    {
+        if (mStarted) {
+            return true;
+        }
+        mNear    = mWorn;
+        mStarted = mSensorHub.subscribe(Sensor.TYPE_PROXIMITY, this, SensorManager.SENSOR_DELAY_NORMAL, 0);
+        return mStarted;
+    }
+
+    /**
+     * Unsubscribe from the proximity sensor
+     */
+    public synchronized void stop()
+    {
+        if (!mStarted) {
+            return;
+        }
+        mSensorHub.unsubscribe(Sensor.TYPE_PROXIMITY, this);
+        mHandler.removeCallbacks(mStableRunnable);
+        mStarted = false;
+    }
+
+    /**
+     * Add a listener of the proximity
+     *
+     * @param  listener
+     */
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener added with addListener
+     *
+     * @param  listener
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Say if something is close to the sensor, from the last sample
+     *
+     * @return boolean
+     */
+    public boolean isNear() {
+        return mNear;
+    }
+
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Say if the headset is worn, from the last stable state
+     *
+     * @return boolean
+     */
+    public boolean isWorn() {
+        return mWorn;
+    }
+
     @Override
     public void onSensorChanged(SensorEvent sensorEvent) {
 
-        if (sensorEvent.sensor.getType() == Sensor.TYPE_PROXIMITY) {
-            if (sensorEvent.values[0] == 0) {
-                // here we are setting our status to our textview..
-                // if sensor event return 0 then object is closed
-                // to sensor else object is away from sensor.
+        if (sensorEvent.sensor.getType() != Sensor.TYPE_PROXIMITY) {
+            return;
+        }
 
-                Log.d("LynxAndroidSystem", "Proximity sensor Near");
+        // if sensor event is below the maximum range then an object is close to the sensor.
+        boolean near = sensorEvent.values[0] < sensorEvent.sensor.getMaximumRange();
+        if (near == mNear) {
+            return;
+        }
+        mNear = near;
 
-            } else {
+        for (Listener listener : mListeners) {
+            listener.onProximityChanged(near);
+        }
 
-                Log.d("LynxAndroidSystem", "Proximity sensor Away");
-            }
+        mHandler.removeCallbacks(mStableRunnable);
+        if (near != mWorn) {
+            mHandler.postDelayed(mStableRunnable, near ? WORN_DEBOUNCE_MS : REMOVED_DEBOUNCE_MS);
         }
     }
 
     @Override
     public void onAccuracyChanged(Sensor sensor, int i) {}
 }
-
-
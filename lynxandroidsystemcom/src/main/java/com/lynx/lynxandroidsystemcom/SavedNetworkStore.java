@@ -0,0 +1,426 @@
+/**
+ * SavedNetworkStore keeps the known wifi networks with their password, site and priority,
+ * and connects to the best of them without user input.
+ * <p>
+ * The passwords are encrypted with an AES/GCM key of the Android Keystore, which never leaves the device,
+ * and stored in the shared preferences with the other fields.
+ * <p>
+ * The best network is chosen in the last scan results (no new scan is needed) :
+ * networks of the current site first, then the highest priority, then the strongest signal.
+ * If the connection fails, the next candidate is tried. With auto reconnect, the best network
+ * is connected each time new scan results are received while the wifi is not connected.
+ * <p>
+ * SavedNetworkConnection is sent to Unity with ssid$result at the end of each connection
+ * started by this store (result : same values as WifiConnectionResult, -1 if no saved network is available).
+ *
+ * @see WifiConnectionPipeline
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+public class SavedNetworkStore {
+
+    /** Networks weaker than this signal are not tried */
+    public static final int MIN_RSSI = -85;
+
+    static final String PREFERENCES_NAME = "LynxSavedNetworks";
+    static final String KEY_ALIAS        = "LynxSavedNetworksKey";
+    static final String KEYSTORE         = "AndroidKeyStore";
+    static final String TRANSFORMATION   = "AES/GCM/NoPadding";
+    static final int    GCM_TAG_BITS     = 128;
+
+    // Preference keys :
+    static final String NETWORK_PREFIX   = "network.";
+    static final String CURRENT_SITE     = "currentSite";
+
+    // Fields of a network :
+    static final String FIELD_SITE           = "site";
+    static final String FIELD_PRIORITY       = "priority";
+    static final String FIELD_IV             = "iv";
+    static final String FIELD_PASSWORD       = "password";
+    static final String FIELD_LAST_CONNECTED = "lastConnected";
+
+    /**
+     * A saved network
+     */
+    static class SavedNetwork {
+        String ssid;
+        String site;
+        int    priority;
+        long   lastConnected;
+        int    rssi;
+    }
+
+    /** The instance shared by the library */
+    private static SavedNetworkStore mInstance = null;
+
+    private final Context           mContext;
+    private final SharedPreferences mPreferences;
+    private final Handler           mHandler;
+
+    /** Candidates still to try for the current connection, only used on the monitor thread */
+    private final LinkedList<String> mCandidates = new LinkedList<String>();
+
+    /** Id of the connection started by this store, 0 if none. Only used on the monitor thread */
+    private int mAttemptId = 0;
+
+    private volatile boolean mAutoReconnect = false;
+
+    private final WifiConnectionPipeline.Listener mConnectionListener = new WifiConnectionPipeline.Listener() {
+        @Override
+        public void onConnectionResult(int attemptId, String ssid, int result) {
+            if (attemptId != mAttemptId) {
+                return;
+            }
+            mAttemptId = 0;
+            LynxAndroidSystemComMng.sendUnityMessage("SavedNetworkConnection", ssid + "$" + result);
+
+            if (result == WifiConnectionPipeline.RESULT_SUCCESS || result == WifiConnectionPipeline.RESULT_ALREADY_CONNECTED) {
+                mCandidates.clear();
+                setLastConnected(ssid, System.currentTimeMillis());
+            } else if (result == WifiConnectionPipeline.RESULT_CANCELLED) {
+                mCandidates.clear();
+            } else {
+                connectNextCandidate();
+            }
+        }
+    };
+
+    private final WifiScanManager.Listener mScanListener = new WifiScanManager.Listener() {
+        @Override
+        public void onScanResults(WifiScanSnapshot snapshot) {
+            // a connection requested by Unity or by connectBest must not be cancelled.
+            if (!mAutoReconnect || mAttemptId != 0 || WifiConnectionPipeline.getInstance(mContext).isBusy()) {
+                return;
+            }
+            if (WifiSignalMonitor.getInstance(mContext).getSsid() == null) {
+                connectBest(snapshot, false);
+            }
+        }
+    };
+
+    private SavedNetworkStore(Context context) {
+        mContext     = context.getApplicationContext();
+        mPreferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mHandler     = MonitorThread.getHandler();
+        WifiConnectionPipeline.getInstance(mContext).addListener(mConnectionListener);
+    }
+
+    /**
+     * Get the store of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return SavedNetworkStore
+     */
+    public static synchronized SavedNetworkStore getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new SavedNetworkStore(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Save a network, or replace it if it is already saved
+     *
+     * @param  ssid     name of the network, without quotes
+     * @param  password password of the network, empty for an open network
+     * @param  site     the site of the network (building, office...), can be empty
+     * @param  priority higher is better
+     * @return true if the network is saved
+     */
+    public synchronized boolean saveNetwork(String ssid, String password, String site, int priority)
+    {
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getKey());
+            byte[] encrypted = cipher.doFinal((password != null ? password : "").getBytes(StandardCharsets.UTF_8));
+
+            JSONObject network = new JSONObject();
+            network.put(FIELD_SITE, site != null ? site : "");
+            network.put(FIELD_PRIORITY, priority);
+            network.put(FIELD_IV, Base64.encodeToString(cipher.getIV(), Base64.NO_WRAP));
+            network.put(FIELD_PASSWORD, Base64.encodeToString(encrypted, Base64.NO_WRAP));
+            network.put(FIELD_LAST_CONNECTED, 0);
+
+            mPreferences.edit().putString(NETWORK_PREFIX + ssid, network.toString()).apply();
+            return true;
+
+        } catch (Exception e) {
+            Log.e("LynxAndroidSystem", "SavedNetworkStore can't save " + ssid + " : " + e);
+            return false;
+        }
+    }
+
+    /**
+     * Forget a network
+     *
+     * @param  ssid name of the network, without quotes
+     */
+    public synchronized void removeNetwork(String ssid) {
+        mPreferences.edit().remove(NETWORK_PREFIX + ssid).apply();
+    }
+
+    /**
+     * Set the site where the device is : its networks are tried first
+     *
+     * @param  site the site, empty for none
+     */
+    public synchronized void setCurrentSite(String site) {
+        mPreferences.edit().putString(CURRENT_SITE, site != null ? site : "").apply();
+    }
+
+    /**
+     * Get the saved networks, without their password :
+     * ssid$site$priority$lastConnectedTime|... (lastConnectedTime in ms since 1970, 0 if never connected)
+     *
+     * @return String
+     */
+    public synchronized String getPackedNetworks()
+    {
+        StringBuilder packed = new StringBuilder();
+        for (SavedNetwork network : readNetworks()) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(network.ssid).append('$').append(network.site).append('$')
+                  .append(network.priority).append('$').append(network.lastConnected);
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Connect to the best saved network of the last scan results, then to the next ones if it fails.
+     */
+    public void connectBest()
+    {
+        final WifiScanManager scanManager = WifiScanManager.getInstance(mContext);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                connectBest(scanManager.getSnapshot(), true);
+            }
+        });
+    }
+
+    /**
+     * Connect automatically to the best saved network when new scan results are received while the wifi is not connected.
+     *
+     * @param  enabled
+     */
+    public void setAutoReconnect(boolean enabled)
+    {
+        mAutoReconnect = enabled;
+        WifiScanManager scanManager = WifiScanManager.getInstance(mContext);
+        if (enabled) {
+            WifiSignalMonitor.getInstance(mContext).start();
+            scanManager.addListener(mScanListener);
+            scanManager.requestScan(0);
+        } else {
+            scanManager.removeListener(mScanListener);
+        }
+    }
+
+    /**
+     * Choose the candidates in the scan results and connect to the first one. Called on the monitor thread.
+     *
+     * @param  snapshot     the scan results
+     * @param  notifyIfNone inform Unity if there is no candidate
+     */
+    private void connectBest(WifiScanSnapshot snapshot, boolean notifyIfNone)
+    {
+        if (mAttemptId != 0) {
+            return;
+        }
+
+        mCandidates.clear();
+        for (SavedNetwork network : getCandidates(snapshot)) {
+            mCandidates.add(network.ssid);
+        }
+
+        // no candidate, or no password that can be read.
+        if (!connectNextCandidate() && notifyIfNone) {
+            Log.d("LynxAndroidSystem", "SavedNetworkStore : no saved network to connect in the scan results");
+            LynxAndroidSystemComMng.sendUnityMessage("SavedNetworkConnection", "$-1");
+        }
+    }
+
+    /**
+     * Connect to the next candidate with a password that can be read
+     *
+     * @return false if no connection is started
+     */
+    private boolean connectNextCandidate()
+    {
+        while (!mCandidates.isEmpty())
+        {
+            String ssid = mCandidates.removeFirst();
+            String password = readPassword(ssid);
+            if (password == null) {
+                continue;
+            }
+            Log.d("LynxAndroidSystem", "SavedNetworkStore connects to " + ssid);
+            mAttemptId = WifiConnectionPipeline.getInstance(mContext).connect(ssid, password, 0);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the saved networks seen in the scan results, best first
+     */
+    private synchronized List<SavedNetwork> getCandidates(WifiScanSnapshot snapshot)
+    {
+        String currentSite = mPreferences.getString(CURRENT_SITE, "");
+        List<SavedNetwork> saved = readNetworks();
+        List<SavedNetwork> candidates = new ArrayList<SavedNetwork>();
+
+        // the networks of the snapshot are sorted by signal, strongest first.
+        for (WifiNetwork network : snapshot.getNetworks())
+        {
+            if (network.rssi < MIN_RSSI) {
+                break;
+            }
+            for (SavedNetwork savedNetwork : saved) {
+                if (savedNetwork.ssid.equals(network.ssid)) {
+                    savedNetwork.rssi = network.rssi;
+                    insertCandidate(candidates, savedNetwork, currentSite);
+                    break;
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Insert in order : current site first, then highest priority. Same site and priority keep the signal order.
+     */
+    private static void insertCandidate(List<SavedNetwork> candidates, SavedNetwork network, String currentSite)
+    {
+        boolean onSite = !currentSite.isEmpty() && currentSite.equals(network.site);
+        int index = candidates.size();
+        while (index > 0)
+        {
+            SavedNetwork previous = candidates.get(index - 1);
+            boolean previousOnSite = !currentSite.isEmpty() && currentSite.equals(previous.site);
+            if (previousOnSite && !onSite) {
+                break;
+            }
+            if (previousOnSite == onSite && previous.priority >= network.priority) {
+                break;
+            }
+            index--;
+        }
+        candidates.add(index, network);
+    }
+
+    private List<SavedNetwork> readNetworks()
+    {
+        List<SavedNetwork> networks = new ArrayList<SavedNetwork>();
+        for (Map.Entry<String, ?> entry : mPreferences.getAll().entrySet())
+        {
+            if (!entry.getKey().startsWith(NETWORK_PREFIX) || !(entry.getValue() instanceof String)) {
+                continue;
+            }
+            try {
+                JSONObject json = new JSONObject((String) entry.getValue());
+                SavedNetwork network  = new SavedNetwork();
+                network.ssid          = entry.getKey().substring(NETWORK_PREFIX.length());
+                network.site          = json.optString(FIELD_SITE, "");
+                network.priority      = json.optInt(FIELD_PRIORITY, 0);
+                network.lastConnected = json.optLong(FIELD_LAST_CONNECTED, 0);
+                networks.add(network);
+            } catch (JSONException e) {
+                Log.e("LynxAndroidSystem", "SavedNetworkStore : invalid entry " + entry.getKey());
+            }
+        }
+        return networks;
+    }
+
+    /**
+     * Decrypt the password of a network
+     *
+     * @return the password, null if the network is unknown or can't be decrypted (key lost after a reset)
+     */
+    private synchronized String readPassword(String ssid)
+    {
+        String value = mPreferences.getString(NETWORK_PREFIX + ssid, null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(value);
+            byte[] iv        = Base64.decode(json.getString(FIELD_IV), Base64.NO_WRAP);
+            byte[] encrypted = Base64.decode(json.getString(FIELD_PASSWORD), Base64.NO_WRAP);
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getKey(), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            return new String(cipher.doFinal(encrypted), StandardCharsets.UTF_8);
+
+        } catch (Exception e) {
+            Log.e("LynxAndroidSystem", "SavedNetworkStore can't read the password of " + ssid + " : " + e);
+            return null;
+        }
+    }
+
+    private synchronized void setLastConnected(String ssid, long time)
+    {
+        String value = mPreferences.getString(NETWORK_PREFIX + ssid, null);
+        if (value == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(value);
+            json.put(FIELD_LAST_CONNECTED, time);
+            mPreferences.edit().putString(NETWORK_PREFIX + ssid, json.toString()).apply();
+        } catch (JSONException e) {
+            Log.e("LynxAndroidSystem", "SavedNetworkStore : invalid entry " + ssid);
+        }
+    }
+
+    /**
+     * Get the key of the store, created in the Android Keystore at the first call
+     */
+    private static SecretKey getKey() throws Exception
+    {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+
+        if (!keyStore.containsAlias(KEY_ALIAS))
+        {
+            KeyGenerator keyGenerator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+            keyGenerator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            return keyGenerator.generateKey();
+        }
+        return (SecretKey) keyStore.getKey(KEY_ALIAS, null);
+    }
+}
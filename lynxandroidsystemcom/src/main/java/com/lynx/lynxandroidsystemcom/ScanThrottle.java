@@ -0,0 +1,91 @@
+/**
+ * ScanThrottle keeps track of the wifi scans already started to stay in the android budget :
+ * since Android 9, a foreground application can start only 4 scans every 2 minutes,
+ * the next ones are refused by the system and return the old results.
+ * <p>
+ * Pure java class, times are given by the caller.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public class ScanThrottle {
+
+    /** Android budget : number of scans */
+    public static final int  DEFAULT_MAX_SCANS = 4;
+
+    /** Android budget : duration of the window */
+    public static final long DEFAULT_WINDOW_MS = 2 * 60 * 1000;
+
+    private final int    mMaxScans;
+    private final long   mWindowMs;
+
+    /** Start time of the last scans, circular buffer */
+    private final long[] mScanTimes;
+    private int          mScanCount = 0;
+    private int          mNextIndex = 0;
+
+    public ScanThrottle() {
+        this(DEFAULT_MAX_SCANS, DEFAULT_WINDOW_MS);
+    }
+
+    public ScanThrottle(int maxScans, long windowMs) {
+        mMaxScans  = maxScans;
+        mWindowMs  = windowMs;
+        mScanTimes = new long[maxScans];
+    }
+
+    /**
+     * Get the number of scans that can be started now
+     *
+     * @param  nowMs current time (monotonic clock)
+     * @return int
+     */
+    public synchronized int getRemainingScans(long nowMs)
+    {
+        int used = 0;
+        for (int i = 0; i < mScanCount; i++) {
+            if (nowMs - mScanTimes[i] < mWindowMs) {
+                used++;
+            }
+        }
+        return mMaxScans - used;
+    }
+
+    /**
+     * Get the time at which the next scan can be started
+     *
+     * @param  nowMs current time (monotonic clock)
+     * @return nowMs if a scan can be started now
+     */
+    public synchronized long getNextAllowedTime(long nowMs)
+    {
+        if (mScanCount < mMaxScans) {
+            return nowMs;
+        }
+        // the buffer is full : the oldest scan is at mNextIndex.
+        long oldest = mScanTimes[mNextIndex];
+        return Math.max(nowMs, oldest + mWindowMs);
+    }
+
+    /**
+     * Record a scan if the budget allows it
+     *
+     * @param  nowMs current time (monotonic clock)
+     * @return true if the scan can be started
+     */
+    public synchronized boolean tryAcquire(long nowMs)
+    {
+        if (getNextAllowedTime(nowMs) > nowMs) {
+            return false;
+        }
+        mScanTimes[mNextIndex] = nowMs;
+        mNextIndex = (mNextIndex + 1) % mMaxScans;
+        if (mScanCount < mMaxScans) {
+            mScanCount++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * SensorChangeNotifier sends the changes of a sensor subscribed by Unity, not each sample :
+ * SensorChange is sent with sensorType$value0$value1$value2 (the values the sensor has).
+ * <p>
+ * A sensor reporting on change (light, proximity, step detector...) is sent at each change of its values.
+ * A continuous sensor (accelerometer, gyroscope...) is sent when one of its values moved of more than
+ * minChange since the last message, at most once per minIntervalMs. The events are given by the SensorHub
+ * on its thread, the values are compared without allocation.
+ *
+ * @see SensorHub
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+
+public class SensorChangeNotifier implements SensorEventListener {
+
+    /** Default minimum delay between two messages of a continuous sensor */
+    public static final long DEFAULT_MIN_INTERVAL_MS = 100;
+
+    /** Number of values sent */
+    static final int MAX_VALUES = 3;
+
+    private final int   mSensorType;
+    private final float mMinChange;
+    private final long  mMinIntervalNs;
+
+    // The last values sent, only used on the hub thread :
+    private final float[] mSentValues = new float[MAX_VALUES];
+    private int           mSentCount  = 0;
+    private long          mSentNs     = 0;
+
+    /**
+     * @param  sensorType    Sensor.TYPE_ value
+     * @param  minChange     minimum change of a value of a continuous sensor to send it, 0 for any change
+     * @param  minIntervalMs minimum delay between two messages of a continuous sensor, 0 for the default (100 ms)
+     */
+    public SensorChangeNotifier(int sensorType, float minChange, long minIntervalMs)
+    {
+        mSensorType    = sensorType;
+        mMinChange     = Math.max(0, minChange);
+        mMinIntervalNs = (minIntervalMs > 0 ? minIntervalMs : DEFAULT_MIN_INTERVAL_MS) * 1000000L;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event)
+    {
+        int count = Math.min(MAX_VALUES, event.values.length);
+        if (mSentCount > 0)
+        {
+            boolean continuous = event.sensor.getReportingMode() == Sensor.REPORTING_MODE_CONTINUOUS;
+            if (continuous && event.timestamp - mSentNs < mMinIntervalNs) {
+                return;
+            }
+            if (!hasChanged(event.values, count, continuous ? mMinChange : 0)) {
+                return;
+            }
+        }
+
+        System.arraycopy(event.values, 0, mSentValues, 0, count);
+        mSentCount = count;
+        mSentNs    = event.timestamp;
+
+        StringBuilder message = new StringBuilder().append(mSensorType);
+        for (int i = 0; i < count; i++) {
+            message.append('$').append(event.values[i]);
+        }
+        LynxAndroidSystemComMng.sendUnityMessage("SensorChange", message.toString());
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+
+    /**
+     * Say if a value moved of more than minChange since the last message, any change if minChange is 0
+     */
+    private boolean hasChanged(float[] values, int count, float minChange)
+    {
+        if (count != mSentCount) {
+            return true;
+        }
+        for (int i = 0; i < count; i++) {
+            float change = Math.abs(values[i] - mSentValues[i]);
+            if (change > minChange || (minChange == 0 && change != 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * SensorHub shares the sensors of the device between the parts of the library.
+ * A sensor is registered only while it has at least one subscriber, with the fastest
+ * sampling period and the shortest report latency asked by its subscribers.
+ * <p>
+ * The events are delivered on the hub thread, not on the main thread. With a report latency,
+ * the sensor hardware keeps the events and gives them in batches so the CPU is not woken up
+ * for each sample.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SensorHub {
+
+    /**
+     * A subscriber of a sensor and the rate it asked
+     */
+    private static class Subscription {
+        final SensorEventListener listener;
+        final int                 samplingPeriodUs;
+        final int                 maxReportLatencyUs;
+
+        Subscription(SensorEventListener listener, int samplingPeriodUs, int maxReportLatencyUs) {
+            this.listener           = listener;
+            this.samplingPeriodUs   = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+        }
+    }
+
+    /**
+     * A registered sensor and its subscribers
+     */
+    private static class Registration implements SensorEventListener {
+        final Sensor             sensor;
+        final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+        int                      samplingPeriodUs   = -1;
+        int                      maxReportLatencyUs = -1;
+
+        Registration(Sensor sensor) {
+            this.sensor = sensor;
+        }
+
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            for (Subscription subscription : subscriptions) {
+                subscription.listener.onSensorChanged(event);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            for (Subscription subscription : subscriptions) {
+                subscription.listener.onAccuracyChanged(sensor, accuracy);
+            }
+        }
+    }
+
+    /** The instance shared by the library */
+    private static SensorHub mInstance = null;
+
+    private final SensorManager mSensorManager;
+
+    private HandlerThread mHandlerThread = null;
+    private Handler       mHandler       = null;
+
+    /** The registered sensors by type, guarded by this */
+    private final SparseArray<Registration> mRegistrations = new SparseArray<Registration>();
+
+    private SensorHub(Context context) {
+        mSensorManager = (SensorManager) context.getApplicationContext().getSystemService(Context.SENSOR_SERVICE);
+    }
+
+    /**
+     * Get the sensor hub of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return SensorHub
+     */
+    public static synchronized SensorHub getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new SensorHub(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Get the sensor manager used by the hub
+     *
+     * @return SensorManager
+     */
+    public SensorManager getSensorManager() {
+        return mSensorManager;
+    }
+
+    /**
+     * Get the handler of the hub thread, where the events are delivered. The thread is created at the first call.
+     *
+     * @return Handler
+     */
+    public synchronized Handler getHandler()
+    {
+        if (mHandler == null)
+        {
+            mHandlerThread = new HandlerThread("LynxSensorHub", Process.THREAD_PRIORITY_DISPLAY);
+            mHandlerThread.start();
+            mHandler = new Handler(mHandlerThread.getLooper());
+        }
+        return mHandler;
+    }
+
+    /**
+     * Subscribe to the default sensor of a type. The listener is called on the hub thread.
+     *
+     * @param  sensorType         Sensor.TYPE_ value
+     * @param  listener
+     * @param  samplingPeriodUs   sampling period, or SensorManager.SENSOR_DELAY_ value
+     * @param  maxReportLatencyUs maximum delay of the events batched by the hardware, 0 for no batching
+     * @return true if the sensor exists and is registered
+     */
+    public synchronized boolean subscribe(int sensorType, SensorEventListener listener, int samplingPeriodUs, int maxReportLatencyUs)
+    {
+        if (listener == null) {
+            return false;
+        }
+
+        Registration registration = mRegistrations.get(sensorType);
+        if (registration == null)
+        {
+            Sensor sensor = mSensorManager.getDefaultSensor(sensorType);
+            if (sensor == null) {
+                Log.d("LynxAndroidSystem", "SensorHub : no sensor of type " + sensorType);
+                return false;
+            }
+            registration = new Registration(sensor);
+            mRegistrations.put(sensorType, registration);
+        }
+
+        for (Subscription subscription : registration.subscriptions) {
+            if (subscription.listener == listener) {
+                return true;
+            }
+        }
+        Subscription added = new Subscription(listener, toMicroseconds(samplingPeriodUs), Math.max(0, maxReportLatencyUs));
+        registration.subscriptions.add(added);
+        if (update(registration)) {
+            return true;
+        }
+
+        // refused by the sensor service : the other subscribers get their rate back.
+        registration.subscriptions.remove(added);
+        if (registration.subscriptions.isEmpty()) {
+            mRegistrations.remove(sensorType);
+        } else {
+            update(registration);
+        }
+        return false;
+    }
+
+    /**
+     * Unsubscribe a listener. The sensor is unregistered when it has no subscriber anymore.
+     *
+     * @param  sensorType
+     * @param  listener
+     */
+    public synchronized void unsubscribe(int sensorType, SensorEventListener listener)
+    {
+        Registration registration = mRegistrations.get(sensorType);
+        if (registration == null) {
+            return;
+        }
+        for (Subscription subscription : registration.subscriptions) {
+            if (subscription.listener == listener) {
+                registration.subscriptions.remove(subscription);
+            }
+        }
+
+        if (registration.subscriptions.isEmpty()) {
+            mSensorManager.unregisterListener(registration);
+            mRegistrations.remove(sensorType);
+            Log.d("LynxAndroidSystem", "SensorHub : " + registration.sensor.getName() + " unregistered");
+        } else {
+            update(registration);
+        }
+    }
+
+    /**
+     * Get the registered sensors : type$subscribers$samplingPeriodUs$maxReportLatencyUs|...
+     *
+     * @return String
+     */
+    public synchronized String getActiveSensors()
+    {
+        List<String> sensors = new ArrayList<String>();
+        for (int i = 0; i < mRegistrations.size(); i++) {
+            Registration registration = mRegistrations.valueAt(i);
+            sensors.add(mRegistrations.keyAt(i) + "$" + registration.subscriptions.size() + "$"
+                    + registration.samplingPeriodUs + "$" + registration.maxReportLatencyUs);
+        }
+
+        StringBuilder packed = new StringBuilder();
+        for (String sensor : sensors) {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(sensor);
+        }
+        return packed.toString();
+    }
+
+    /**
+     * Register the sensor again if the subscribers ask for another rate
+     *
+     * @return false if the sensor service refused the registration
+     */
+    private boolean update(Registration registration)
+    {
+        int samplingPeriodUs   = Integer.MAX_VALUE;
+        int maxReportLatencyUs = Integer.MAX_VALUE;
+        for (Subscription subscription : registration.subscriptions) {
+            samplingPeriodUs   = Math.min(samplingPeriodUs, subscription.samplingPeriodUs);
+            maxReportLatencyUs = Math.min(maxReportLatencyUs, subscription.maxReportLatencyUs);
+        }
+        if (registration.sensor.getFifoMaxEventCount() == 0) {
+            // no hardware fifo : the events can not be batched.
+            maxReportLatencyUs = 0;
+        }
+
+        if (samplingPeriodUs == registration.samplingPeriodUs && maxReportLatencyUs == registration.maxReportLatencyUs) {
+            return true;
+        }
+
+        if (registration.samplingPeriodUs >= 0) {
+            mSensorManager.unregisterListener(registration);
+        }
+        if (!mSensorManager.registerListener(registration, registration.sensor, samplingPeriodUs, maxReportLatencyUs, getHandler())) {
+            // too many listeners, or a rate not allowed (HIGH_SAMPLING_RATE_SENSORS) : registered again at the next update.
+            registration.samplingPeriodUs   = -1;
+            registration.maxReportLatencyUs = -1;
+            Log.w("LynxAndroidSystem", "SensorHub : " + registration.sensor.getName() + " not registered, period (us) " + samplingPeriodUs);
+            return false;
+        }
+        registration.samplingPeriodUs   = samplingPeriodUs;
+        registration.maxReportLatencyUs = maxReportLatencyUs;
+        Log.d("LynxAndroidSystem", "SensorHub : " + registration.sensor.getName() + " registered, period (us) " + samplingPeriodUs
+                + ", latency (us) " + maxReportLatencyUs);
+        return true;
+    }
+
+    /**
+     * Convert the SensorManager.SENSOR_DELAY_ values to microseconds, to compare them
+     */
+    static int toMicroseconds(int samplingPeriodUs)
+    {
+        switch (samplingPeriodUs)
+        {
+            case SensorManager.SENSOR_DELAY_FASTEST:
+                return 0;
+            case SensorManager.SENSOR_DELAY_GAME:
+                return 20000;
+            case SensorManager.SENSOR_DELAY_UI:
+                return 66667;
+            case SensorManager.SENSOR_DELAY_NORMAL:
+                return 200000;
+            default:
+                return samplingPeriodUs;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * SignalLevelFilter turns noisy signal values (RSSI in dBm) into a stable level :
+ * the values are smoothed by an exponential moving average and the level only changes
+ * when the smoothed value is inside the new level by more than the hysteresis margin.
+ * <p>
+ * The levels are the ones of WifiManager.calculateSignalLevel : linear between -100 dBm (level 0)
+ * and -55 dBm (highest level).
+ * <p>
+ * Pure java class, not thread safe.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public class SignalLevelFilter {
+
+    /** RSSI of the level 0 and below */
+    public static final int MIN_RSSI = -100;
+
+    /** RSSI of the highest level and above */
+    public static final int MAX_RSSI = -55;
+
+    /** Default number of levels, same as the level given to Unity by GetCurrentWifiInfo */
+    public static final int DEFAULT_LEVEL_COUNT = 5;
+
+    /** Default weight of a new value in the average, in percent */
+    public static final int DEFAULT_SMOOTHING_PERCENT = 30;
+
+    /** Default hysteresis margin in dB */
+    public static final int DEFAULT_HYSTERESIS_DB = 3;
+
+    private final int   mLevelCount;
+    private final float mAlpha;
+    private final int   mHysteresisDb;
+
+    private float   mSmoothedRssi = MIN_RSSI;
+    private int     mLevel        = 0;
+    private boolean mHasValue     = false;
+
+    public SignalLevelFilter() {
+        this(DEFAULT_LEVEL_COUNT, DEFAULT_SMOOTHING_PERCENT, DEFAULT_HYSTERESIS_DB);
+    }
+
+    /**
+     * @param  levelCount       number of levels
+     * @param  smoothingPercent weight of a new value in the average, 100 for no smoothing
+     * @param  hysteresisDb     margin to enter a new level, 0 for no hysteresis
+     */
+    public SignalLevelFilter(int levelCount, int smoothingPercent, int hysteresisDb) {
+        mLevelCount   = Math.max(2, levelCount);
+        mAlpha        = Math.max(1, Math.min(100, smoothingPercent)) / 100.0f;
+        mHysteresisDb = Math.max(0, hysteresisDb);
+    }
+
+    /**
+     * Add a new value
+     *
+     * @param  rssi the signal in dBm
+     * @return true if the level changed (always true for the first value)
+     */
+    public boolean add(int rssi)
+    {
+        if (!mHasValue)
+        {
+            mHasValue     = true;
+            mSmoothedRssi = rssi;
+            mLevel        = calculateLevel(rssi, mLevelCount);
+            return true;
+        }
+
+        mSmoothedRssi = mAlpha * rssi + (1 - mAlpha) * mSmoothedRssi;
+
+        int up = calculateLevel(Math.round(mSmoothedRssi - mHysteresisDb), mLevelCount);
+        if (up > mLevel) {
+            mLevel = up;
+            return true;
+        }
+        int down = calculateLevel(Math.round(mSmoothedRssi + mHysteresisDb), mLevelCount);
+        if (down < mLevel) {
+            mLevel = down;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Forget the values, for example when the connection changes
+     */
+    public void reset() {
+        mHasValue     = false;
+        mSmoothedRssi = MIN_RSSI;
+        mLevel        = 0;
+    }
+
+    /**
+     * Get the current level
+     *
+     * @return between 0 and levelCount - 1
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Get the smoothed signal
+     *
+     * @return the signal in dBm
+     */
+    public int getSmoothedRssi() {
+        return Math.round(mSmoothedRssi);
+    }
+
+    /**
+     * Compute the level of a signal without filter, like WifiManager.calculateSignalLevel
+     *
+     * @param  rssi       the signal in dBm
+     * @param  levelCount number of levels
+     * @return between 0 and levelCount - 1
+     */
+    public static int calculateLevel(int rssi, int levelCount)
+    {
+        if (rssi <= MIN_RSSI) {
+            return 0;
+        }
+        if (rssi >= MAX_RSSI) {
+            return levelCount - 1;
+        }
+        return (rssi - MIN_RSSI) * (levelCount - 1) / (MAX_RSSI - MIN_RSSI);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * StorageChangeReceiver gives information about the storage of the device when an external storage
+ * is mounted or removed.
+ * <p>
+ * StorageChange is sent to Unity with freeInternalGB$totalInternalGB$externalState,
+ * externalState is a value of Environment.getExternalStorageState (mounted, removed...).
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Environment;
+import android.util.Log;
+
+public class StorageChangeReceiver extends BroadcastReceiver {
+
+    /**
+     * Get the filter of the storage changes
+     *
+     * @return IntentFilter
+     */
+    static IntentFilter getFilter()
+    {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_MEDIA_MOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_UNMOUNTED);
+        filter.addAction(Intent.ACTION_MEDIA_EJECT);
+        filter.addAction(Intent.ACTION_MEDIA_REMOVED);
+        filter.addDataScheme("file");
+        return filter;
+    }
+
+    @Override
+    public void onReceive(Context ctx, Intent intent)
+    {
+        Log.d("LynxAndroidSystem", "--------- storage change : " + intent.getAction());
+        sendStorageState();
+    }
+
+    /**
+     * Send the state of the storage to Unity
+     */
+    void sendStorageState()
+    {
+        String state = LynxAndroidSystemComMng.GetFreeInternalStorageinGB() + "$"
+                + LynxAndroidSystemComMng.GetTotalInternalStorageInGB() + "$"
+                + Environment.getExternalStorageState();
+
+        LynxAndroidSystemComMng.sendUnityMessage("StorageChange", state);
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * SysFileReader reads small kernel files (/proc, /sys) again and again
+ * without allocating : the file is kept open and read from offset 0 into a
+ * caller provided buffer. It also contains the small number parsers used on these buffers.
+ * <p>
+ * This class only uses java.io so it can be used (and tested) on any Linux machine.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+public class SysFileReader {
+
+    /** The file to read */
+    private final File mFile;
+
+    /** The opened file, kept between two reads. null if not opened yet or closed after an error. */
+    private RandomAccessFile mRandomAccessFile = null;
+
+    public SysFileReader(File file) {
+        mFile = file;
+    }
+
+    public SysFileReader(String path) {
+        this(new File(path));
+    }
+
+    /**
+     * Get the file read by this reader
+     *
+     * @return File
+     */
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Read the whole file (or the beginning of the file if it's bigger than the buffer) into buffer.
+     *
+     * @param  buffer the buffer to fill
+     * @return the number of bytes read, -1 if the file can't be read.
+     */
+    public int read(byte[] buffer)
+    {
+        try {
+            if (mRandomAccessFile == null) {
+                mRandomAccessFile = new RandomAccessFile(mFile, "r");
+            }
+
+            mRandomAccessFile.seek(0);
+
+            int total = 0;
+            int count;
+            while (total < buffer.length && (count = mRandomAccessFile.read(buffer, total, buffer.length - total)) > 0) {
+                total += count;
+            }
+            return total;
+
+        } catch (IOException e) {
+            close();
+            return -1;
+        }
+    }
+
+    /**
+     * Close the file. The next read will open it again.
+     */
+    public void close()
+    {
+        if (mRandomAccessFile != null) {
+            try {
+                mRandomAccessFile.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+            mRandomAccessFile = null;
+        }
+    }
+
+    /**
+     * Read a file that contains only one integer value (typically a sysfs entry).
+     *
+     * @param  buffer       a work buffer
+     * @param  defaultValue the value returned if the file can't be read
+     * @return long
+     */
+    public long readLong(byte[] buffer, long defaultValue)
+    {
+        int length = read(buffer);
+        if (length <= 0) {
+            return defaultValue;
+        }
+        int start = skipSpaces(buffer, 0, length);
+        if (start >= length) {
+            return defaultValue;
+        }
+        return parseLong(buffer, start, length);
+    }
+
+    /**
+     * Skip the spaces, tabs and new lines.
+     *
+     * @param  buffer
+     * @param  from   first index to test
+     * @param  end    end of the valid data
+     * @return the index of the first non space character, or end.
+     */
+    public static int skipSpaces(byte[] buffer, int from, int end)
+    {
+        while (from < end && (buffer[from] == ' ' || buffer[from] == '\t' || buffer[from] == '\n')) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Skip the characters up to the next space, tab or new line.
+     *
+     * @param  buffer
+     * @param  from   first index to test
+     * @param  end    end of the valid data
+     * @return the index of the first space character, or end.
+     */
+    public static int skipToken(byte[] buffer, int from, int end)
+    {
+        while (from < end && buffer[from] != ' ' && buffer[from] != '\t' && buffer[from] != '\n') {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Find a byte in the buffer
+     *
+     * @param  buffer
+     * @param  value  the byte to find
+     * @param  from   first index to test
+     * @param  end    end of the valid data
+     * @return the index of the byte, or -1 if not found.
+     */
+    public static int indexOf(byte[] buffer, byte value, int from, int end)
+    {
+        for (int i = from; i < end; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a signed decimal integer. Parsing stops at the first non digit character.
+     *
+     * @param  buffer
+     * @param  from   index of the first character (sign or digit)
+     * @param  end    end of the valid data
+     * @return long
+     */
+    public static long parseLong(byte[] buffer, int from, int end)
+    {
+        boolean negative = false;
+        if (from < end && buffer[from] == '-') {
+            negative = true;
+            from++;
+        }
+
+        long value = 0;
+        while (from < end && buffer[from] >= '0' && buffer[from] <= '9') {
+            value = value * 10 + (buffer[from] - '0');
+            from++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a positive decimal number like "12.34" and returns it multiplied by 100 (1234).
+     * Only the 2 first decimals are kept.
+     *
+     * @param  buffer
+     * @param  from   index of the first digit
+     * @param  end    end of the valid data
+     * @return int
+     */
+    public static int parseHundredths(byte[] buffer, int from, int end)
+    {
+        int integerPart = 0;
+        while (from < end && buffer[from] >= '0' && buffer[from] <= '9') {
+            integerPart = integerPart * 10 + (buffer[from] - '0');
+            from++;
+        }
+
+        int decimals = 0;
+        int decimalCount = 0;
+        if (from < end && buffer[from] == '.') {
+            from++;
+            while (from < end && buffer[from] >= '0' && buffer[from] <= '9') {
+                if (decimalCount < 2) {
+                    decimals = decimals * 10 + (buffer[from] - '0');
+                    decimalCount++;
+                }
+                from++;
+            }
+        }
+        while (decimalCount < 2) {
+            decimals *= 10;
+            decimalCount++;
+        }
+        return integerPart * 100 + decimals;
+    }
+
+    /**
+     * Say if the buffer contains the given ascii text at the given position.
+     *
+     * @param  buffer
+     * @param  from   position to test
+     * @param  end    end of the valid data
+     * @param  text   ascii text
+     * @return boolean
+     */
+    public static boolean startsWith(byte[] buffer, int from, int end, String text)
+    {
+        int length = text.length();
+        if (end - from < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[from + i] != (byte) text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
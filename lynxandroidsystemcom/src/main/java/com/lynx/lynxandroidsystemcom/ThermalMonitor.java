@@ -0,0 +1,191 @@
+/**
+ * ThermalMonitor informs Unity when the device starts to throttle.
+ * <p>
+ * Two sources are used :
+ * - the thermal status of PowerManager (Android 10 and above only, the library supports Android 9),
+ * - a periodic sampling of the cpu frequencies and thermal zones (CpuFrequencySampler).
+ * <p>
+ * ThermalStatusChange is sent to Unity with the throttling level when it changes and
+ * CpuFrequencyCapChange is sent with minCapPercent$averageLoadPercent$maxTemperatureInMilliCelsius
+ * when the frequency cap changes of more than CAP_CHANGE_STEP_PERCENT.
+ *
+ * @see CpuFrequencySampler
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.util.Log;
+
+public class ThermalMonitor {
+
+    // Throttling levels sent to Unity. Same values as PowerManager.THERMAL_STATUS_ :
+    public static final int LEVEL_NONE      = 0;
+    public static final int LEVEL_LIGHT     = 1;
+    public static final int LEVEL_MODERATE  = 2;
+    public static final int LEVEL_SEVERE    = 3;
+    public static final int LEVEL_CRITICAL  = 4;
+    public static final int LEVEL_EMERGENCY = 5;
+    public static final int LEVEL_SHUTDOWN  = 6;
+
+    /** Default sampling period of the cpu frequencies */
+    public static final int DEFAULT_SAMPLING_PERIOD_MS = 2000;
+
+    /** Minimum change of the frequency cap to inform Unity */
+    static final int CAP_CHANGE_STEP_PERCENT = 5;
+
+    private final PowerManager        mPowerManager;
+    private final Handler             mHandler;
+    private final CpuFrequencySampler mSampler;
+    private final int                 mSamplingPeriodMs;
+
+    /** Thermal status listener, Android 10 and above */
+    private PowerManager.OnThermalStatusChangedListener mThermalStatusListener = null;
+
+    // Current state :
+    private volatile int     mPowerManagerStatus = LEVEL_NONE;
+    private volatile int     mLevel              = LEVEL_NONE;
+    private volatile int     mSentCapPercent     = 100;
+    private volatile boolean mRunning            = false;
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            mSampler.sample();
+            evaluate();
+            mHandler.postDelayed(this, mSamplingPeriodMs);
+        }
+    };
+
+    public ThermalMonitor(Context context, CpuFrequencySampler sampler, int samplingPeriodMs) {
+        mPowerManager     = (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE);
+        mHandler          = MonitorThread.getHandler();
+        mSampler          = sampler;
+        mSamplingPeriodMs = samplingPeriodMs > 0 ? samplingPeriodMs : DEFAULT_SAMPLING_PERIOD_MS;
+    }
+
+    /**
+     * Start the monitor
+     */
+    public void start()
+    {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && mPowerManager != null)
+        {
+            mThermalStatusListener = new PowerManager.OnThermalStatusChangedListener() {
+                @Override
+                public void onThermalStatusChanged(int status) {
+                    // called on the monitor thread, and once at registration with the current status.
+                    mPowerManagerStatus = status;
+                    evaluate();
+                }
+            };
+            mPowerManager.addThermalStatusListener(MonitorThread.getExecutor(), mThermalStatusListener);
+        }
+
+        mHandler.post(mSampleRunnable);
+        Log.d("LynxAndroidSystem", "ThermalMonitor started with " + mSampler.getCpuCount() + " cpus and " + mSampler.getThermalZoneCount() + " thermal zones");
+    }
+
+    /**
+     * Stop the monitor
+     */
+    public void stop()
+    {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && mThermalStatusListener != null) {
+            mPowerManager.removeThermalStatusListener(mThermalStatusListener);
+            mThermalStatusListener = null;
+        }
+
+        mHandler.removeCallbacks(mSampleRunnable);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSampler.close();
+            }
+        });
+        Log.d("LynxAndroidSystem", "ThermalMonitor stopped");
+    }
+
+    /**
+     * Get the current throttling level
+     *
+     * @return one of the LEVEL_ values
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Get the current state packed in a string :
+     * level$minCapPercent$averageLoadPercent$maxTemperatureInMilliCelsius
+     *
+     * @return String
+     */
+    public String getInfo() {
+        return mLevel + "$" + getCapSummary();
+    }
+
+    private String getCapSummary() {
+        return mSampler.getMinCapPercent() + "$" + mSampler.getAverageLoadPercent() + "$" + mSampler.getMaxTemperature();
+    }
+
+    /**
+     * Convert a frequency cap to a throttling level, used when PowerManager gives no status.
+     *
+     * @param  minCapPercent lowest scaling_max_freq / cpuinfo_max_freq in percent
+     * @return one of the LEVEL_ values
+     */
+    static int levelFromCap(int minCapPercent)
+    {
+        if (minCapPercent >= 95) {
+            return LEVEL_NONE;
+        }
+        if (minCapPercent >= 80) {
+            return LEVEL_LIGHT;
+        }
+        if (minCapPercent >= 60) {
+            return LEVEL_MODERATE;
+        }
+        return LEVEL_SEVERE;
+    }
+
+    /**
+     * Compute the level and inform Unity of the changes. Called on the monitor thread.
+     */
+    private void evaluate()
+    {
+        int capPercent = mSampler.getMinCapPercent();
+        int level      = Math.max(mPowerManagerStatus, levelFromCap(capPercent));
+
+        if (level != mLevel)
+        {
+            Log.i("LynxAndroidSystem", "Thermal throttling level change : " + mLevel + " -> " + level);
+            mLevel = level;
+            LynxAndroidSystemComMng.sendUnityMessage("ThermalStatusChange", Integer.toString(level));
+        }
+
+        if (Math.abs(capPercent - mSentCapPercent) >= CAP_CHANGE_STEP_PERCENT || (capPercent == 100 && mSentCapPercent != 100))
+        {
+            mSentCapPercent = capPercent;
+            LynxAndroidSystemComMng.sendUnityMessage("CpuFrequencyCapChange", getCapSummary());
+        }
+    }
+}
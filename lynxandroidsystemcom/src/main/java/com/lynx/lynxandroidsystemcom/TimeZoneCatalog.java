@@ -0,0 +1,300 @@
+/**
+ * TimeZoneCatalog lists all the IANA time zones with a readable label : GMT+01:00 Europe/Paris
+ * <p>
+ * The label gives the current offset, summer time included. The catalog is built at the first call, and again
+ * after the next change of offset of one of the zones (summer time transition, no broadcast for it), when the
+ * time or the time zone of the device changes (ACTION_TIME_CHANGED, ACTION_DATE_CHANGED, ACTION_TIMEZONE_CHANGED)
+ * and after a trim. It is indexed in both directions : label to IANA id and IANA id to label, without any scan of the list.
+ * <p>
+ * The labels of the older versions (00- GMT+0 Europe/London) are still understood by getTimeZoneId.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.icu.util.BasicTimeZone;
+import android.icu.util.TimeZoneTransition;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+public class TimeZoneCatalog implements TrimmableCache {
+
+    /** The zone used when a time zone has no label */
+    public static final String DEFAULT_TIME_ZONE_ID = "Europe/London";
+
+    /**
+     * The catalog at a given time. Built once, never modified, so that it can be read from any thread.
+     */
+    static final class Snapshot {
+        final List<String>        labels;
+        final Map<String, String> idsByLabel;
+        final Map<String, String> labelsById;
+
+        /** The offsets are the current ones from builtMs to validUntilMs (System.currentTimeMillis) */
+        final long builtMs;
+        final long validUntilMs;
+
+        Snapshot(List<String> labels, Map<String, String> idsByLabel, Map<String, String> labelsById, long builtMs, long validUntilMs) {
+            this.labels       = Collections.unmodifiableList(labels);
+            this.idsByLabel   = idsByLabel;
+            this.labelsById   = labelsById;
+            this.builtMs      = builtMs;
+            this.validUntilMs = validUntilMs;
+        }
+
+        /**
+         * Say if the offsets of the labels are still the current ones
+         *
+         * @param  nowMs System.currentTimeMillis
+         * @return boolean
+         */
+        boolean isValid(long nowMs) {
+            return nowMs >= builtMs && nowMs < validUntilMs;
+        }
+    }
+
+    /** The instance shared by the library */
+    private static TimeZoneCatalog mInstance = null;
+
+    private final Context mContext;
+
+    /** null until the first call, after a change of time or time zone and after a trim */
+    private volatile Snapshot mSnapshot = null;
+
+    private boolean mRegistered = false;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            // built again at the next call : the offsets and the summer time may have changed.
+            mSnapshot = null;
+            Log.d("LynxAndroidSystem", "TimeZoneCatalog : " + intent.getAction());
+        }
+    };
+
+    private TimeZoneCatalog(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Get the time zone catalog of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return TimeZoneCatalog
+     */
+    public static synchronized TimeZoneCatalog getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new TimeZoneCatalog(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Follow the changes of time and time zone. The catalog itself is only built at the first call.
+     */
+    public synchronized void start()
+    {
+        if (mRegistered) {
+            return;
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        filter.addAction(Intent.ACTION_DATE_CHANGED);
+        mContext.registerReceiver(mReceiver, filter, null, MonitorThread.getHandler());
+        mRegistered = true;
+    }
+
+    /**
+     * Stop following the changes of time and time zone
+     */
+    public synchronized void stop()
+    {
+        if (!mRegistered) {
+            return;
+        }
+        mContext.unregisterReceiver(mReceiver);
+        mRegistered = false;
+        mSnapshot   = null;
+    }
+
+    /**
+     * Get the labels, sorted by offset
+     *
+     * @return List<String>, not modifiable
+     */
+    public List<String> getLabels() {
+        return getSnapshot().labels;
+    }
+
+    /**
+     * Get the IANA id of a label
+     *
+     * @param  label a label of getLabels, a label of the older versions or an IANA id
+     * @return String, null if the label is not known
+     */
+    public String getTimeZoneId(String label)
+    {
+        if (label == null) {
+            return null;
+        }
+        Snapshot snapshot = getSnapshot();
+        String id = snapshot.idsByLabel.get(label);
+        if (id != null) {
+            return id;
+        }
+        if (snapshot.labelsById.containsKey(label)) {
+            return label;
+        }
+
+        // older labels : "07- GMT+7 Asia/Hong Kong", the id is after the last space before the region.
+        int slash = label.indexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        id = label.substring(label.lastIndexOf(' ', slash) + 1).replace(' ', '_');
+        return snapshot.labelsById.containsKey(id) ? id : getCanonicalId(id, snapshot);
+    }
+
+    /**
+     * Get the label of an IANA id. The aliases (Asia/Calcutta) give the label of their zone (Asia/Kolkata).
+     *
+     * @param  timeZoneId
+     * @return String, null if the id is not known
+     */
+    public String getLabel(String timeZoneId)
+    {
+        if (timeZoneId == null) {
+            return null;
+        }
+        Snapshot snapshot = getSnapshot();
+        String label = snapshot.labelsById.get(timeZoneId);
+        if (label != null) {
+            return label;
+        }
+        String id = getCanonicalId(timeZoneId, snapshot);
+        return id != null ? snapshot.labelsById.get(id) : null;
+    }
+
+    /**
+     * Get the number of time zones
+     *
+     * @return int
+     */
+    public int size() {
+        return getSnapshot().labels.size();
+    }
+
+    /**
+     * The catalog is built again at the next call
+     *
+     * @param  pressureLevel one of the MemoryPressureMonitor.LEVEL_ values
+     */
+    @Override
+    public void trim(int pressureLevel) {
+        mSnapshot = null;
+    }
+
+    private static String getCanonicalId(String timeZoneId, Snapshot snapshot)
+    {
+        String id = android.icu.util.TimeZone.getCanonicalID(timeZoneId);
+        return id != null && snapshot.labelsById.containsKey(id) ? id : null;
+    }
+
+    private Snapshot getSnapshot()
+    {
+        long now = System.currentTimeMillis();
+        Snapshot snapshot = mSnapshot;
+        if (snapshot == null || !snapshot.isValid(now)) {
+            synchronized (this) {
+                snapshot = mSnapshot;
+                if (snapshot == null || !snapshot.isValid(now)) {
+                    snapshot  = build(now);
+                    mSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Build the catalog from the time zones of the device with a location, without the aliases.
+     * It is valid until the first change of offset of one of the zones.
+     *
+     * @param  now System.currentTimeMillis
+     */
+    static Snapshot build(long now)
+    {
+        long start        = System.nanoTime();
+        long validUntilMs = Long.MAX_VALUE;
+
+        final Map<String, Integer> offsets = new HashMap<String, Integer>();
+        for (String id : android.icu.util.TimeZone.getAvailableIDs(android.icu.util.TimeZone.SystemTimeZoneType.CANONICAL_LOCATION, null, null)) {
+            offsets.put(id, TimeZone.getTimeZone(id).getOffset(now));
+            validUntilMs = Math.min(validUntilMs, getNextTransition(id, now));
+        }
+
+        List<String> ids = new ArrayList<String>(offsets.keySet());
+        Collections.sort(ids, new Comparator<String>() {
+            @Override
+            public int compare(String id1, String id2) {
+                int compare = Integer.compare(offsets.get(id1), offsets.get(id2));
+                return compare != 0 ? compare : id1.compareTo(id2);
+            }
+        });
+
+        List<String>        labels     = new ArrayList<String>(ids.size());
+        Map<String, String> idsByLabel = new HashMap<String, String>(ids.size() * 2);
+        Map<String, String> labelsById = new HashMap<String, String>(ids.size() * 2);
+        for (String id : ids) {
+            String label = formatLabel(id, offsets.get(id));
+            labels.add(label);
+            idsByLabel.put(label, id);
+            labelsById.put(id, label);
+        }
+
+        Log.d("LynxAndroidSystem", "TimeZoneCatalog : " + labels.size() + " time zones built in (us) " + (System.nanoTime() - start) / 1000);
+        return new Snapshot(labels, idsByLabel, labelsById, now, validUntilMs);
+    }
+
+    /**
+     * Get the time of the next change of offset of a zone
+     *
+     * @return long, Long.MAX_VALUE if the zone has no more transition
+     */
+    private static long getNextTransition(String timeZoneId, long now)
+    {
+        android.icu.util.TimeZone timeZone = android.icu.util.TimeZone.getTimeZone(timeZoneId);
+        if (!(timeZone instanceof BasicTimeZone)) {
+            return Long.MAX_VALUE;
+        }
+        TimeZoneTransition transition = ((BasicTimeZone) timeZone).getNextTransition(now, false);
+        return transition != null ? transition.getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * GMT+05:30 Asia/Kolkata, the underscores of the id are replaced by spaces
+     */
+    static String formatLabel(String timeZoneId, int offsetMs)
+    {
+        int minutes = Math.abs(offsetMs) / 60000;
+        return String.format(Locale.US, "GMT%c%02d:%02d %s", offsetMs < 0 ? '-' : '+', minutes / 60, minutes % 60,
+                timeZoneId.replace('_', ' '));
+    }
+}
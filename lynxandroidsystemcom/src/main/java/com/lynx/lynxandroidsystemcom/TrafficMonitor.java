@@ -0,0 +1,282 @@
+/**
+ * TrafficMonitor follows the network traffic of the launchable applications
+ * to show which applications use the bandwidth.
+ * <p>
+ * The counters are read with TrafficStats per uid. Since Android 10 the counters of the other
+ * applications are only given to the system : NetworkStatsManager is used instead
+ * (the calling application needs the PACKAGE_USAGE_STATS permission), its statistics are
+ * updated less often by the system so the rates are coarser.
+ * <p>
+ * When an application uses more than the saturation threshold, AppTrafficSaturation is sent
+ * to Unity with packageName$uid$bytesPerSecond.
+ *
+ * @see TrafficSampler
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.app.usage.NetworkStats;
+import android.app.usage.NetworkStatsManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ResolveInfo;
+import android.net.ConnectivityManager;
+import android.net.TrafficStats;
+import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TrafficMonitor {
+
+    /** Default sampling period */
+    public static final int DEFAULT_SAMPLING_PERIOD_MS = 2000;
+
+    /** The application list is asked to PackageManager every APPLICATION_LIST_REFRESH_COUNT samples */
+    static final int APPLICATION_LIST_REFRESH_COUNT = 30;
+
+    private final Context        mContext;
+    private final Handler        mHandler;
+    private final TrafficSampler mSampler;
+    private final int            mSamplingPeriodMs;
+
+    private TrafficSampler.CounterSource mSource = null;
+
+    // Reused to give the application list to the sampler :
+    private final int[]    mUids         = new int[TrafficSampler.MAX_APPLICATIONS];
+    private final String[] mPackageNames = new String[TrafficSampler.MAX_APPLICATIONS];
+
+    private int              mSampleCount         = 0;
+    private volatile long    mSaturationThreshold = 0;
+    private int              mSaturatedUid        = -1;
+    private volatile boolean mRunning             = false;
+
+    /**
+     * Counters of TrafficStats, without allocation
+     */
+    private static final TrafficSampler.CounterSource TRAFFIC_STATS_SOURCE = new TrafficSampler.CounterSource() {
+        @Override
+        public void readCounters(int[] uids, int count, long[] rxBytes, long[] txBytes) {
+            for (int i = 0; i < count; i++) {
+                long rx = TrafficStats.getUidRxBytes(uids[i]);
+                long tx = TrafficStats.getUidTxBytes(uids[i]);
+                rxBytes[i] = rx == TrafficStats.UNSUPPORTED ? TrafficSampler.UNKNOWN : rx;
+                txBytes[i] = tx == TrafficStats.UNSUPPORTED ? TrafficSampler.UNKNOWN : tx;
+            }
+        }
+    };
+
+    /**
+     * Counters of NetworkStatsManager, wifi and mobile added
+     */
+    private class NetworkStatsSource implements TrafficSampler.CounterSource {
+
+        private final NetworkStatsManager mNetworkStatsManager;
+        private final NetworkStats.Bucket mBucket = new NetworkStats.Bucket();
+
+        NetworkStatsSource() {
+            mNetworkStatsManager = (NetworkStatsManager) mContext.getSystemService(Context.NETWORK_STATS_SERVICE);
+        }
+
+        @Override
+        public void readCounters(int[] uids, int count, long[] rxBytes, long[] txBytes)
+        {
+            Arrays.fill(rxBytes, 0, count, 0);
+            Arrays.fill(txBytes, 0, count, 0);
+
+            boolean read = addCounters(ConnectivityManager.TYPE_WIFI, uids, count, rxBytes, txBytes);
+            read |= addCounters(ConnectivityManager.TYPE_MOBILE, uids, count, rxBytes, txBytes);
+
+            if (!read) {
+                Arrays.fill(rxBytes, 0, count, TrafficSampler.UNKNOWN);
+                Arrays.fill(txBytes, 0, count, TrafficSampler.UNKNOWN);
+            }
+        }
+
+        private boolean addCounters(int networkType, int[] uids, int count, long[] rxBytes, long[] txBytes)
+        {
+            NetworkStats stats;
+            try {
+                stats = mNetworkStatsManager.querySummary(networkType, null, 0, System.currentTimeMillis());
+            } catch (Exception e) {
+                // no PACKAGE_USAGE_STATS permission, or no subscriber for the mobile network.
+                return false;
+            }
+            if (stats == null) {
+                return false;
+            }
+
+            while (stats.getNextBucket(mBucket))
+            {
+                int uid = mBucket.getUid();
+                for (int i = 0; i < count; i++) {
+                    if (uids[i] == uid) {
+                        rxBytes[i] += mBucket.getRxBytes();
+                        txBytes[i] += mBucket.getTxBytes();
+                        break;
+                    }
+                }
+            }
+            stats.close();
+            return true;
+        }
+    }
+
+    private final Runnable mSampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mRunning) {
+                return;
+            }
+            if (mSampleCount % APPLICATION_LIST_REFRESH_COUNT == 0) {
+                refreshApplicationList();
+            }
+            mSampleCount++;
+            mSampler.sample(mSource, SystemClock.elapsedRealtime());
+            checkSaturation();
+            mHandler.postDelayed(this, mSamplingPeriodMs);
+        }
+    };
+
+    public TrafficMonitor(Context context, int samplingPeriodMs, int windowSize)
+    {
+        mContext          = context.getApplicationContext();
+        mHandler          = MonitorThread.getHandler();
+        mSamplingPeriodMs = samplingPeriodMs > 0 ? samplingPeriodMs : DEFAULT_SAMPLING_PERIOD_MS;
+        mSampler          = new TrafficSampler(windowSize);
+    }
+
+    /**
+     * Start the periodic sampling
+     */
+    public void start()
+    {
+        if (mRunning) {
+            return;
+        }
+        mRunning     = true;
+        mSampleCount = 0;
+        mHandler.post(mSampleRunnable);
+        Log.d("LynxAndroidSystem", "TrafficMonitor started with period (ms) : " + mSamplingPeriodMs);
+    }
+
+    /**
+     * Stop the periodic sampling
+     */
+    public void stop()
+    {
+        if (!mRunning) {
+            return;
+        }
+        mRunning = false;
+        mHandler.removeCallbacks(mSampleRunnable);
+        Log.d("LynxAndroidSystem", "TrafficMonitor stopped");
+    }
+
+    /**
+     * Say if the periodic sampling is running
+     *
+     * @return boolean
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Set the traffic above which AppTrafficSaturation is sent to Unity
+     *
+     * @param  bytesPerSecond received and transmitted bytes per second, 0 to disable
+     */
+    public void setSaturationThreshold(long bytesPerSecond) {
+        mSaturationThreshold = bytesPerSecond;
+    }
+
+    /**
+     * Get the sampler, to read the traffic of one package
+     *
+     * @return TrafficSampler
+     */
+    public TrafficSampler getSampler() {
+        return mSampler;
+    }
+
+    /**
+     * Map the launchable applications to their uid and choose the counter source. Called on the monitor thread.
+     * Applications sharing a uid are given with the first package name.
+     */
+    private void refreshApplicationList()
+    {
+        Intent mainIntent = new Intent(Intent.ACTION_MAIN, null);
+        mainIntent.addCategory(Intent.CATEGORY_LAUNCHER);
+        List<ResolveInfo> activities = mContext.getPackageManager().queryIntentActivities(mainIntent, 0);
+
+        int count = 0;
+        for (ResolveInfo activity : activities)
+        {
+            if (count >= TrafficSampler.MAX_APPLICATIONS) {
+                break;
+            }
+            int uid = activity.activityInfo.applicationInfo.uid;
+            boolean known = false;
+            for (int i = 0; i < count; i++) {
+                if (mUids[i] == uid) {
+                    known = true;
+                    break;
+                }
+            }
+            if (known) {
+                continue;
+            }
+            mUids[count]         = uid;
+            mPackageNames[count] = activity.activityInfo.packageName;
+            count++;
+        }
+
+        mSampler.setApplications(mUids, mPackageNames, count);
+
+        if (mSource == null) {
+            mSource = chooseSource(count);
+        }
+    }
+
+    /**
+     * Use TrafficStats if it gives the counters of the other applications
+     */
+    private TrafficSampler.CounterSource chooseSource(int count)
+    {
+        for (int i = 0; i < count; i++) {
+            if (mUids[i] != Process.myUid()) {
+                boolean supported = TrafficStats.getUidRxBytes(mUids[i]) != TrafficStats.UNSUPPORTED;
+                Log.d("LynxAndroidSystem", "TrafficMonitor uses " + (supported ? "TrafficStats" : "NetworkStatsManager"));
+                return supported ? TRAFFIC_STATS_SOURCE : new NetworkStatsSource();
+            }
+        }
+        return TRAFFIC_STATS_SOURCE;
+    }
+
+    /**
+     * Inform Unity when an application goes above the saturation threshold
+     */
+    private void checkSaturation()
+    {
+        long threshold = mSaturationThreshold;
+        int top = mSampler.getTopSlot();
+        if (threshold <= 0 || top < 0 || mSampler.getTotalRate(top) < threshold) {
+            mSaturatedUid = -1;
+            return;
+        }
+
+        int uid = mSampler.getUid(top);
+        if (uid == mSaturatedUid) {
+            return;
+        }
+        mSaturatedUid = uid;
+        LynxAndroidSystemComMng.sendUnityMessage("AppTrafficSaturation",
+                mSampler.getPackageName(top) + "$" + uid + "$" + mSampler.getTotalRate(top));
+    }
+}
@@ -0,0 +1,325 @@
+/**
+ * TrafficSampler computes the network traffic rates of a set of applications (one per uid)
+ * from their cumulative received and transmitted byte counters.
+ * <p>
+ * The counters are read by a CounterSource for all the uids at once, in reused arrays :
+ * a sample doesn't allocate anything and its cost is bounded by MAX_APPLICATIONS.
+ * The rates are computed over a sliding window of samples.
+ * <p>
+ * Pure java class, the counters and times are given by the caller.
+ *
+ * @see TrafficMonitor
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import java.util.Arrays;
+
+public class TrafficSampler {
+
+    /** Maximum number of applications followed at the same time */
+    public static final int MAX_APPLICATIONS = 128;
+
+    /** Default number of samples in the sliding window */
+    public static final int DEFAULT_WINDOW_SIZE = 5;
+
+    /** Value of a counter that can't be read */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * Source of the cumulative byte counters
+     */
+    public interface CounterSource {
+        /**
+         * Read the counters of the given uids
+         *
+         * @param  uids     the uids to read
+         * @param  count    number of uids in the array
+         * @param  rxBytes  filled with the received bytes of each uid, UNKNOWN if it can't be read
+         * @param  txBytes  filled with the transmitted bytes of each uid, UNKNOWN if it can't be read
+         */
+        void readCounters(int[] uids, int count, long[] rxBytes, long[] txBytes);
+    }
+
+    private final int mWindowSize;
+
+    // One slot per followed application :
+    private int            mApplicationCount = 0;
+    private final int[]    mUids             = new int[MAX_APPLICATIONS];
+    private final String[] mPackageNames     = new String[MAX_APPLICATIONS];
+
+    // Counters of the current sample :
+    private final long[] mRxBytes = new long[MAX_APPLICATIONS];
+    private final long[] mTxBytes = new long[MAX_APPLICATIONS];
+
+    // Sliding window, [slot][sample] :
+    private final long[][] mRxWindow;
+    private final long[][] mTxWindow;
+    private final long[][] mSampleTimes;
+    private final int[]    mSampleCounts = new int[MAX_APPLICATIONS];
+    private int            mWindowIndex  = 0;
+
+    // Last results per slot, in bytes per second :
+    private final long[] mRxRates = new long[MAX_APPLICATIONS];
+    private final long[] mTxRates = new long[MAX_APPLICATIONS];
+
+    // Reused to sort the results :
+    private final int[] mOrder = new int[MAX_APPLICATIONS];
+
+    public TrafficSampler(int windowSize)
+    {
+        mWindowSize  = windowSize > 1 ? windowSize : DEFAULT_WINDOW_SIZE;
+        mRxWindow    = new long[MAX_APPLICATIONS][mWindowSize];
+        mTxWindow    = new long[MAX_APPLICATIONS][mWindowSize];
+        mSampleTimes = new long[MAX_APPLICATIONS][mWindowSize];
+    }
+
+    /**
+     * Set the applications to follow. The applications already followed keep their sliding window.
+     *
+     * @param  uids         uid of each application
+     * @param  packageNames package name of each application
+     * @param  count        number of applications in the arrays
+     */
+    public synchronized void setApplications(int[] uids, String[] packageNames, int count)
+    {
+        count = Math.min(count, MAX_APPLICATIONS);
+
+        int[]    oldUids         = Arrays.copyOf(mUids, mApplicationCount);
+        long[][] oldRxWindow     = new long[mApplicationCount][];
+        long[][] oldTxWindow     = new long[mApplicationCount][];
+        long[][] oldSampleTimes  = new long[mApplicationCount][];
+        int[]    oldSampleCounts = Arrays.copyOf(mSampleCounts, mApplicationCount);
+        long[]   oldRxRates      = Arrays.copyOf(mRxRates, mApplicationCount);
+        long[]   oldTxRates      = Arrays.copyOf(mTxRates, mApplicationCount);
+
+        for (int i = 0; i < mApplicationCount; i++) {
+            oldRxWindow[i]    = mRxWindow[i].clone();
+            oldTxWindow[i]    = mTxWindow[i].clone();
+            oldSampleTimes[i] = mSampleTimes[i].clone();
+        }
+
+        for (int slot = 0; slot < count; slot++)
+        {
+            int old = -1;
+            for (int i = 0; i < oldUids.length; i++) {
+                if (oldUids[i] == uids[slot]) {
+                    old = i;
+                    break;
+                }
+            }
+
+            mUids[slot]         = uids[slot];
+            mPackageNames[slot] = packageNames[slot];
+
+            if (old >= 0)
+            {
+                System.arraycopy(oldRxWindow[old], 0, mRxWindow[slot], 0, mWindowSize);
+                System.arraycopy(oldTxWindow[old], 0, mTxWindow[slot], 0, mWindowSize);
+                System.arraycopy(oldSampleTimes[old], 0, mSampleTimes[slot], 0, mWindowSize);
+                mSampleCounts[slot] = oldSampleCounts[old];
+                mRxRates[slot]      = oldRxRates[old];
+                mTxRates[slot]      = oldTxRates[old];
+            }
+            else
+            {
+                mSampleCounts[slot] = 0;
+                mRxRates[slot]      = 0;
+                mTxRates[slot]      = 0;
+            }
+        }
+
+        for (int slot = count; slot < mApplicationCount; slot++) {
+            mPackageNames[slot] = null;
+        }
+
+        mApplicationCount = count;
+    }
+
+    /**
+     * Read the counters of all the followed applications and update the rates.
+     *
+     * @param  source the counters
+     * @param  nowMs  current time in milliseconds (monotonic clock)
+     */
+    public synchronized void sample(CounterSource source, long nowMs)
+    {
+        source.readCounters(mUids, mApplicationCount, mRxBytes, mTxBytes);
+
+        int index = mWindowIndex;
+
+        for (int slot = 0; slot < mApplicationCount; slot++)
+        {
+            long rx = mRxBytes[slot];
+            long tx = mTxBytes[slot];
+
+            if (rx == UNKNOWN || tx == UNKNOWN) {
+                mSampleCounts[slot] = 0;
+                mRxRates[slot]      = 0;
+                mTxRates[slot]      = 0;
+                continue;
+            }
+
+            mRxWindow[slot][index]    = rx;
+            mTxWindow[slot][index]    = tx;
+            mSampleTimes[slot][index] = nowMs;
+            if (mSampleCounts[slot] < mWindowSize) {
+                mSampleCounts[slot]++;
+            }
+
+            if (mSampleCounts[slot] > 1)
+            {
+                // oldest sample of the window for this slot :
+                int oldest = (index - mSampleCounts[slot] + 1 + mWindowSize) % mWindowSize;
+                long elapsedMs = nowMs - mSampleTimes[slot][oldest];
+                long rxDelta   = rx - mRxWindow[slot][oldest];
+                long txDelta   = tx - mTxWindow[slot][oldest];
+
+                if (rxDelta < 0 || txDelta < 0)
+                {
+                    // counters reset (application reinstalled, statistics cleared) : restart the window from this sample.
+                    mSampleCounts[slot] = 1;
+                    mRxRates[slot]      = 0;
+                    mTxRates[slot]      = 0;
+                }
+                else if (elapsedMs > 0)
+                {
+                    mRxRates[slot] = rxDelta * 1000L / elapsedMs;
+                    mTxRates[slot] = txDelta * 1000L / elapsedMs;
+                }
+            }
+        }
+
+        mWindowIndex = (index + 1) % mWindowSize;
+    }
+
+    /**
+     * Get the number of followed applications
+     *
+     * @return int
+     */
+    public synchronized int getApplicationCount() {
+        return mApplicationCount;
+    }
+
+    /**
+     * Get the applications with the highest traffic packed in a string, highest first :
+     * packageName$uid$rxBytesPerSecond$txBytesPerSecond|...
+     *
+     * @param  maxCount maximum number of applications, 0 for all
+     * @return String
+     */
+    public synchronized String getPackedTopTable(int maxCount)
+    {
+        int count = sortByTraffic();
+        if (maxCount > 0) {
+            count = Math.min(count, maxCount);
+        }
+
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            int slot = mOrder[i];
+            if (i > 0) {
+                table.append('|');
+            }
+            table.append(mPackageNames[slot]).append('$')
+                 .append(mUids[slot]).append('$')
+                 .append(mRxRates[slot]).append('$')
+                 .append(mTxRates[slot]);
+        }
+        return table.toString();
+    }
+
+    /**
+     * Get the received bytes per second of a package
+     *
+     * @param  packageName
+     * @return long, -1 if the package is not followed
+     */
+    public synchronized long getRxRate(String packageName)
+    {
+        int slot = findSlot(packageName);
+        return slot >= 0 ? mRxRates[slot] : -1;
+    }
+
+    /**
+     * Get the transmitted bytes per second of a package
+     *
+     * @param  packageName
+     * @return long, -1 if the package is not followed
+     */
+    public synchronized long getTxRate(String packageName)
+    {
+        int slot = findSlot(packageName);
+        return slot >= 0 ? mTxRates[slot] : -1;
+    }
+
+    /**
+     * Get the highest traffic of the applications
+     *
+     * @return index of the slot with the highest rx + tx rate, -1 if no traffic.
+     */
+    synchronized int getTopSlot()
+    {
+        int top = -1;
+        long topRate = 0;
+        for (int slot = 0; slot < mApplicationCount; slot++) {
+            long rate = mRxRates[slot] + mTxRates[slot];
+            if (rate > topRate) {
+                topRate = rate;
+                top     = slot;
+            }
+        }
+        return top;
+    }
+
+    synchronized String getPackageName(int slot) {
+        return mPackageNames[slot];
+    }
+
+    synchronized int getUid(int slot) {
+        return mUids[slot];
+    }
+
+    synchronized long getTotalRate(int slot) {
+        return mRxRates[slot] + mTxRates[slot];
+    }
+
+    private int findSlot(String packageName)
+    {
+        for (int slot = 0; slot < mApplicationCount; slot++) {
+            if (mPackageNames[slot].equals(packageName)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sort the slots with traffic in mOrder, highest first (insertion sort, no allocation)
+     *
+     * @return number of slots with traffic
+     */
+    private int sortByTraffic()
+    {
+        int count = 0;
+        for (int slot = 0; slot < mApplicationCount; slot++)
+        {
+            long rate = mRxRates[slot] + mTxRates[slot];
+            if (rate <= 0) {
+                continue;
+            }
+            int i = count;
+            while (i > 0 && mRxRates[mOrder[i - 1]] + mTxRates[mOrder[i - 1]] < rate) {
+                mOrder[i] = mOrder[i - 1];
+                i--;
+            }
+            mOrder[i] = slot;
+            count++;
+        }
+        return count;
+    }
+}
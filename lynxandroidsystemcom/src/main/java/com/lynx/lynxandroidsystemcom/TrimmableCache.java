@@ -0,0 +1,20 @@
+/**
+ * TrimmableCache is implemented by every cache of the library that can be reduced
+ * when the device is running out of memory.
+ *
+ * @see MemoryPressureMonitor
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public interface TrimmableCache {
+
+    /**
+     * Reduce the memory used by the cache.
+     *
+     * @param  pressureLevel one of the MemoryPressureMonitor.LEVEL_ values. LEVEL_CRITICAL means that the cache must be emptied.
+     */
+    void trim(int pressureLevel);
+}
@@ -0,0 +1,677 @@
+/**
+ * WifiConnectionPipeline connects to a wifi network asynchronously and follows the connection
+ * until it succeeds, fails or times out.
+ * <p>
+ * On Android 10 and above the network is given to the system as a WifiNetworkSuggestion
+ * (WEP can't be suggested and uses a WifiConfiguration like on Android 9).
+ * The progress is followed with the supplicant and network state broadcasts
+ * and a ConnectivityManager callback for the validation of the internet access.
+ * <p>
+ * Unity receives :
+ * - WifiConnectionPhase with attemptId$ssid$phase$elapsedMs each time a new phase is reached,
+ * - WifiConnectionResult with attemptId$ssid$result$timeToConnectMs$timeToValidateMs at the end (times are -1 if not reached).
+ * <p>
+ * The time to connect (association to IP address) of each access point is kept in a LatencyHistory.
+ *
+ * @see LatencyHistory
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WifiNetworkSuggestion;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WifiConnectionPipeline {
+
+    // Phases sent to Unity, always in increasing order during an attempt :
+    public static final int PHASE_REQUESTED      = 0;
+    public static final int PHASE_ASSOCIATING    = 1;
+    public static final int PHASE_AUTHENTICATING = 2;
+    public static final int PHASE_OBTAINING_IP   = 3;
+    public static final int PHASE_CONNECTED      = 4;
+    public static final int PHASE_VALIDATED      = 5;
+
+    // Results sent to Unity :
+    public static final int RESULT_SUCCESS               = 0;
+    public static final int RESULT_ALREADY_CONNECTED     = 1;
+    public static final int RESULT_NOT_FOUND             = 2;
+    public static final int RESULT_AUTHENTICATION_FAILED = 3;
+    public static final int RESULT_TIMEOUT               = 4;
+    public static final int RESULT_CANCELLED             = 5;
+    public static final int RESULT_ERROR                 = 6;
+
+    /** Default maximum duration of an attempt */
+    public static final long DEFAULT_TIMEOUT_MS = 30 * 1000;
+
+    /** Once connected, maximum wait of the internet validation before the attempt is reported successful anyway */
+    static final long VALIDATION_WAIT_MS = 5 * 1000;
+
+    /** Maximum age of the scan results to say that the network is not found without a new scan */
+    static final long SCAN_MAX_AGE_MS = 10 * 1000;
+
+    /**
+     * Listener of the end of the attempts
+     */
+    public interface Listener {
+        /**
+         * Called on the monitor thread at the end of an attempt
+         *
+         * @param  attemptId the id returned by connect
+         * @param  ssid      the network
+         * @param  result    one of the RESULT_ values
+         */
+        void onConnectionResult(int attemptId, String ssid, int result);
+    }
+
+    /**
+     * The connection in progress
+     */
+    private static class Attempt {
+        final int    id;
+        final String ssid;
+        final String password;
+        final long   startMs;
+        final long   timeoutMs;
+
+        WifiSecurityType      security     = null;
+        String                bssid        = null;
+        int                   phase        = PHASE_REQUESTED;
+        long                  connectedMs  = -1;
+        WifiNetworkSuggestion suggestion   = null;
+        boolean               waitingScan  = false;
+        int                   scanCount    = 0;
+
+        Attempt(int id, String ssid, String password, long timeoutMs) {
+            this.id        = id;
+            this.ssid      = ssid;
+            this.password  = password;
+            this.startMs   = SystemClock.elapsedRealtime();
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    /** The instance shared by the library */
+    private static WifiConnectionPipeline mInstance = null;
+
+    private final Context             mContext;
+    private final WifiManager         mWifiManager;
+    private final ConnectivityManager mConnectivityManager;
+    private final Handler             mHandler;
+    private final LatencyHistory      mLatencyHistory = new LatencyHistory();
+    private final AtomicInteger       mNextAttemptId  = new AtomicInteger(1);
+    private final List<Listener>      mListeners      = new CopyOnWriteArrayList<Listener>();
+
+    /** The attempt in progress, only modified on the monitor thread, read by isBusy */
+    private volatile Attempt mAttempt = null;
+
+    /** Attempts requested by connect and not begun yet on the monitor thread */
+    private final AtomicInteger mPendingAttempts = new AtomicInteger(0);
+
+    /** Suggestion status listener, Android 11 and above */
+    private Object mSuggestionStatusListener = null;
+
+    private final BroadcastReceiver mStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+                onSupplicantStateChanged(intent);
+            } else if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction())) {
+                onNetworkStateChanged(intent);
+            }
+        }
+    };
+
+    private final ConnectivityManager.NetworkCallback mNetworkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            // called on the monitor thread
+            if (mAttempt == null || !isTargetConnected(mAttempt)) {
+                return;
+            }
+            advance(mAttempt, PHASE_CONNECTED);
+            if (capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                advance(mAttempt, PHASE_VALIDATED);
+                finish(RESULT_SUCCESS);
+            }
+        }
+    };
+
+    private final WifiScanManager.Listener mScanListener = new WifiScanManager.Listener() {
+        @Override
+        public void onScanResults(WifiScanSnapshot snapshot) {
+            // end of a scan after the start of the attempt, even if the system refused the scan.
+            // The old results read by the scan manager at its start don't answer the scan.
+            if (mAttempt == null || !mAttempt.waitingScan
+                    || WifiScanManager.getInstance(mContext).getScanCount() == mAttempt.scanCount) {
+                return;
+            }
+            mAttempt.waitingScan = false;
+            WifiNetwork network = snapshot.findNetwork(mAttempt.ssid);
+            if (network == null) {
+                finish(RESULT_NOT_FOUND);
+                return;
+            }
+            startConnection(mAttempt, network);
+        }
+    };
+
+    private final Runnable mTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mAttempt == null) {
+                return;
+            }
+            // connected but no internet validation : the wifi is usable for the local network.
+            finish(mAttempt.phase >= PHASE_CONNECTED ? RESULT_SUCCESS : RESULT_TIMEOUT);
+        }
+    };
+
+    private WifiConnectionPipeline(Context context) {
+        mContext             = context.getApplicationContext();
+        mWifiManager         = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+        mConnectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mHandler             = MonitorThread.getHandler();
+    }
+
+    /**
+     * Get the connection pipeline of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return WifiConnectionPipeline
+     */
+    public static synchronized WifiConnectionPipeline getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new WifiConnectionPipeline(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Add a listener of the end of the attempts
+     *
+     * @param  listener
+     */
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener added with addListener
+     *
+     * @param  listener
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Get the history of the time to connect, one key per access point (ssid/bssid)
+     *
+     * @return LatencyHistory
+     */
+    public LatencyHistory getLatencyHistory() {
+        return mLatencyHistory;
+    }
+
+    /**
+     * Start to connect to a network. An attempt in progress is cancelled.
+     *
+     * @param  ssid      name of the network, without quotes
+     * @param  password  password of the network, ignored for open networks
+     * @param  timeoutMs maximum duration of the attempt, 0 for DEFAULT_TIMEOUT_MS
+     * @return the id of the attempt, given in the Unity messages
+     */
+    public int connect(final String ssid, final String password, long timeoutMs)
+    {
+        final Attempt attempt = new Attempt(mNextAttemptId.getAndIncrement(), ssid, password, timeoutMs > 0 ? timeoutMs : DEFAULT_TIMEOUT_MS);
+
+        mPendingAttempts.incrementAndGet();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mPendingAttempts.decrementAndGet();
+                begin(attempt);
+            }
+        });
+        return attempt.id;
+    }
+
+    /**
+     * Check if an attempt is in progress, or requested and not begun yet
+     *
+     * @return boolean
+     */
+    public boolean isBusy() {
+        return mAttempt != null || mPendingAttempts.get() > 0;
+    }
+
+    /**
+     * Cancel the attempt in progress, if any
+     */
+    public void cancel()
+    {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mAttempt != null) {
+                    finish(RESULT_CANCELLED);
+                }
+            }
+        });
+    }
+
+    /**
+     * Start an attempt. Called on the monitor thread.
+     */
+    private void begin(Attempt attempt)
+    {
+        if (mAttempt != null) {
+            finish(RESULT_CANCELLED);
+        }
+        mAttempt = attempt;
+
+        Log.d("LynxAndroidSystem", "WifiConnectionPipeline attempt " + attempt.id + " to " + attempt.ssid);
+        sendPhase(attempt);
+
+        if (isTargetConnected(attempt)) {
+            finish(RESULT_ALREADY_CONNECTED);
+            return;
+        }
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        mContext.registerReceiver(mStateReceiver, filter, null, mHandler);
+
+        NetworkRequest request = new NetworkRequest.Builder().addTransportType(NetworkCapabilities.TRANSPORT_WIFI).build();
+        mConnectivityManager.registerNetworkCallback(request, mNetworkCallback, mHandler);
+
+        mHandler.postDelayed(mTimeoutRunnable, attempt.timeoutMs);
+
+        WifiScanManager scanManager = WifiScanManager.getInstance(mContext);
+        WifiScanSnapshot snapshot = scanManager.getSnapshot();
+        WifiNetwork network = snapshot.findNetwork(attempt.ssid);
+
+        if (network != null) {
+            startConnection(attempt, network);
+            return;
+        }
+
+        if (!needsScan(snapshot, attempt.startMs)) {
+            finish(RESULT_NOT_FOUND);
+            return;
+        }
+
+        // not in old results : wait for a new scan.
+        attempt.waitingScan = true;
+        attempt.scanCount   = scanManager.getScanCount();
+        scanManager.addListener(mScanListener);
+        scanManager.requestScan(0);
+    }
+
+    /**
+     * Say if a network missing from the results needs a new scan before the attempt ends with RESULT_NOT_FOUND :
+     * the results don't come from a scan done less than SCAN_MAX_AGE_MS ago.
+     *
+     * @param  snapshot the last results
+     * @param  nowMs    current time (SystemClock.elapsedRealtime)
+     * @return boolean
+     */
+    static boolean needsScan(WifiScanSnapshot snapshot, long nowMs) {
+        return !snapshot.isFresh(nowMs, SCAN_MAX_AGE_MS);
+    }
+
+    /**
+     * Give the network to the system
+     */
+    private void startConnection(Attempt attempt, WifiNetwork network)
+    {
+        attempt.security = network.security;
+        attempt.bssid    = network.bssid;
+
+        if (attempt.security == WifiSecurityType.ENTERPRISE) {
+            Log.d("LynxAndroidSystem", "WifiConnectionPipeline : enterprise networks are not supported");
+            finish(RESULT_ERROR);
+            return;
+        }
+
+        boolean started;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && attempt.security != WifiSecurityType.WEP) {
+                started = addSuggestion(attempt);
+            } else {
+                started = addConfiguration(attempt);
+            }
+        } catch (Exception e) {
+            Log.d("LynxAndroidSystem", "WifiConnectionPipeline error : " + e);
+            started = false;
+        }
+
+        if (!started) {
+            finish(RESULT_ERROR);
+        }
+    }
+
+    /**
+     * Android 10 and above : add the network suggestion, the system connects by itself.
+     */
+    private boolean addSuggestion(Attempt attempt)
+    {
+        WifiNetworkSuggestion.Builder builder = new WifiNetworkSuggestion.Builder().setSsid(attempt.ssid);
+
+        switch (attempt.security) {
+            case WPA:
+                // no WPA1 suggestion : the PSK suggestion also matches the WPA-PSK access points (TKIP).
+                Log.d("LynxAndroidSystem", "WifiConnectionPipeline : WPA network suggested as WPA/WPA2-PSK");
+                builder.setWpa2Passphrase(attempt.password);
+                break;
+            case WPA2:
+                builder.setWpa2Passphrase(attempt.password);
+                break;
+            case WPA3:
+                builder.setWpa3Passphrase(attempt.password);
+                break;
+            case OWE:
+                builder.setIsEnhancedOpen(true);
+                break;
+            case OPEN:
+                break;
+            default:
+                Log.d("LynxAndroidSystem", "WifiConnectionPipeline : security not suggested " + attempt.security);
+                return false;
+        }
+
+        WifiNetworkSuggestion suggestion = builder.build();
+        List<WifiNetworkSuggestion> suggestions = Collections.singletonList(suggestion);
+
+        int status = mWifiManager.addNetworkSuggestions(suggestions);
+        if (status == WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_ADD_DUPLICATE) {
+            // same network already suggested, maybe with another password.
+            mWifiManager.removeNetworkSuggestions(suggestions);
+            status = mWifiManager.addNetworkSuggestions(suggestions);
+        }
+
+        if (status != WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS) {
+            Log.d("LynxAndroidSystem", "WifiConnectionPipeline : suggestion refused with status " + status);
+            return false;
+        }
+        attempt.suggestion = suggestion;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            addSuggestionStatusListener();
+        }
+        return true;
+    }
+
+    /**
+     * Android 11 and above : the system tells why a suggestion can't be connected.
+     */
+    private void addSuggestionStatusListener()
+    {
+        if (mSuggestionStatusListener != null) {
+            return;
+        }
+        WifiManager.SuggestionConnectionStatusListener listener = new WifiManager.SuggestionConnectionStatusListener() {
+            @Override
+            public void onConnectionStatus(final WifiNetworkSuggestion suggestion, final int failureReason) {
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mAttempt == null || !suggestion.equals(mAttempt.suggestion)) {
+                            return;
+                        }
+                        boolean authentication = failureReason == WifiManager.STATUS_SUGGESTION_CONNECTION_FAILURE_AUTHENTICATION;
+                        finish(authentication ? RESULT_AUTHENTICATION_FAILED : RESULT_ERROR);
+                    }
+                });
+            }
+        };
+        mWifiManager.addSuggestionConnectionStatusListener(MonitorThread.getExecutor(), listener);
+        mSuggestionStatusListener = listener;
+    }
+
+    /**
+     * Android 9, and WEP networks : add the network configuration and enable it.
+     */
+    private boolean addConfiguration(Attempt attempt)
+    {
+        WifiConfiguration configuration = buildConfiguration(attempt.ssid, attempt.password, attempt.security);
+
+        int networkId = mWifiManager.addNetwork(configuration);
+        if (networkId == -1) {
+            Log.d("LynxAndroidSystem", "WifiConnectionPipeline : configuration refused");
+            return false;
+        }
+        return mWifiManager.enableNetwork(networkId, true);
+    }
+
+    /**
+     * Build the configuration of a network, for Android 9 and the WEP networks.
+     * A WEP key of 10, 26 or 58 hexadecimal digits is used as is, else as an ascii key.
+     *
+     * @param  networkSSID name of the network, without quotes
+     * @param  networkPass password of the network, ignored for open networks
+     * @param  security    type of security of the network
+     * @return WifiConfiguration
+     */
+    static WifiConfiguration buildConfiguration(String networkSSID, String networkPass, WifiSecurityType security)
+    {
+        WifiConfiguration wc = new WifiConfiguration();
+        wc.SSID = "\"" + networkSSID + "\"";
+        wc.status = WifiConfiguration.Status.ENABLED;
+
+        switch (security) {
+            case WEP:
+                int length = networkPass.length();
+                boolean hex = (length == 10 || length == 26 || length == 58) && networkPass.matches("[0-9A-Fa-f]*");
+                wc.wepKeys[0] = hex ? networkPass : "\"" + networkPass + "\"";
+                wc.wepTxKeyIndex = 0;
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                wc.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
+                wc.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
+                wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP104);
+                break;
+            case WPA:
+            case WPA2:
+            case WPA3:
+                wc.preSharedKey = "\"" + networkPass + "\"";
+                wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.TKIP);
+                wc.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.CCMP);
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+                wc.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+                wc.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+                wc.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
+                wc.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
+                break;
+            default:
+                wc.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+                break;
+        }
+        return wc;
+    }
+
+    private void onSupplicantStateChanged(Intent intent)
+    {
+        if (mAttempt == null || mAttempt.security == null) {
+            return;
+        }
+
+        if (intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0) == WifiManager.ERROR_AUTHENTICATING) {
+            finish(RESULT_AUTHENTICATION_FAILED);
+            return;
+        }
+
+        SupplicantState state = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+        if (state == null) {
+            return;
+        }
+        switch (state) {
+            case ASSOCIATING:
+            case ASSOCIATED:
+                advance(mAttempt, PHASE_ASSOCIATING);
+                break;
+            case AUTHENTICATING:
+            case FOUR_WAY_HANDSHAKE:
+            case GROUP_HANDSHAKE:
+                advance(mAttempt, PHASE_AUTHENTICATING);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onNetworkStateChanged(Intent intent)
+    {
+        if (mAttempt == null || mAttempt.security == null) {
+            return;
+        }
+
+        NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+        if (networkInfo == null) {
+            return;
+        }
+        switch (networkInfo.getDetailedState()) {
+            case CONNECTING:
+                advance(mAttempt, PHASE_ASSOCIATING);
+                break;
+            case AUTHENTICATING:
+                advance(mAttempt, PHASE_AUTHENTICATING);
+                break;
+            case OBTAINING_IPADDR:
+                advance(mAttempt, PHASE_OBTAINING_IP);
+                break;
+            case CONNECTED:
+                if (isTargetConnected(mAttempt)) {
+                    advance(mAttempt, PHASE_CONNECTED);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Say if the wifi is connected to the network of the attempt
+     */
+    private boolean isTargetConnected(Attempt attempt)
+    {
+        WifiInfo connectionInfo = mWifiManager.getConnectionInfo();
+        if (connectionInfo == null || connectionInfo.getNetworkId() == -1 || connectionInfo.getSupplicantState() != SupplicantState.COMPLETED) {
+            return false;
+        }
+        if (!("\"" + attempt.ssid + "\"").equals(connectionInfo.getSSID())) {
+            return false;
+        }
+        if (connectionInfo.getBSSID() != null) {
+            attempt.bssid = connectionInfo.getBSSID();
+        }
+        return true;
+    }
+
+    /**
+     * Go to a new phase, the phases never go back
+     */
+    private void advance(Attempt attempt, int phase)
+    {
+        if (phase <= attempt.phase) {
+            return;
+        }
+        attempt.phase = phase;
+
+        if (phase == PHASE_CONNECTED)
+        {
+            attempt.connectedMs = SystemClock.elapsedRealtime();
+            mLatencyHistory.record(getHistoryKey(attempt), attempt.connectedMs - attempt.startMs, true);
+
+            // don't wait the whole timeout for a network without internet.
+            mHandler.removeCallbacks(mTimeoutRunnable);
+            mHandler.postDelayed(mTimeoutRunnable, VALIDATION_WAIT_MS);
+        }
+        sendPhase(attempt);
+    }
+
+    /**
+     * End the attempt in progress. Called on the monitor thread.
+     */
+    private void finish(int result)
+    {
+        Attempt attempt = mAttempt;
+        if (attempt == null) {
+            return;
+        }
+        mAttempt = null;
+
+        mHandler.removeCallbacks(mTimeoutRunnable);
+        WifiScanManager.getInstance(mContext).removeListener(mScanListener);
+        if (result != RESULT_ALREADY_CONNECTED) {
+            try {
+                mContext.unregisterReceiver(mStateReceiver);
+                mConnectivityManager.unregisterNetworkCallback(mNetworkCallback);
+            } catch (IllegalArgumentException e) {
+                // not registered
+            }
+        }
+
+        if (result != RESULT_SUCCESS && result != RESULT_ALREADY_CONNECTED && result != RESULT_CANCELLED)
+        {
+            mLatencyHistory.record(getHistoryKey(attempt), 0, false);
+
+            // the system must not keep trying a wrong password.
+            if (attempt.suggestion != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                List<WifiNetworkSuggestion> suggestions = new ArrayList<WifiNetworkSuggestion>();
+                suggestions.add(attempt.suggestion);
+                mWifiManager.removeNetworkSuggestions(suggestions);
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        long timeToConnect  = attempt.connectedMs > 0 ? attempt.connectedMs - attempt.startMs : -1;
+        long timeToValidate = attempt.phase == PHASE_VALIDATED ? now - attempt.startMs : -1;
+
+        Log.d("LynxAndroidSystem", "WifiConnectionPipeline attempt " + attempt.id + " result " + result + " in (ms) : " + (now - attempt.startMs));
+        LynxAndroidSystemComMng.sendUnityMessage("WifiConnectionResult",
+                attempt.id + "$" + attempt.ssid + "$" + result + "$" + timeToConnect + "$" + timeToValidate);
+
+        for (Listener listener : mListeners) {
+            listener.onConnectionResult(attempt.id, attempt.ssid, result);
+        }
+    }
+
+    private void sendPhase(Attempt attempt)
+    {
+        long elapsed = SystemClock.elapsedRealtime() - attempt.startMs;
+        LynxAndroidSystemComMng.sendUnityMessage("WifiConnectionPhase", attempt.id + "$" + attempt.ssid + "$" + attempt.phase + "$" + elapsed);
+    }
+
+    private static String getHistoryKey(Attempt attempt) {
+        return attempt.ssid + "/" + (attempt.bssid != null ? attempt.bssid : "");
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * WifiNetwork is a wifi network seen in the scan results, all its access points merged :
+ * the values are the ones of the access point with the strongest signal.
+ *
+ * @see WifiNetworkAggregator
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public class WifiNetwork {
+
+    /** The public name of the wifi */
+    public String           ssid;
+
+    /** The mac address of the strongest access point */
+    public String           bssid;
+
+    /** The signal of the strongest access point in dBm */
+    public int              rssi;
+
+    /** The frequency of the strongest access point in MHz */
+    public int              frequency;
+
+    /** The type of security of the wifi */
+    public WifiSecurityType security;
+
+    /** The number of access points seen for this wifi */
+    public int              accessPointCount;
+}
@@ -0,0 +1,105 @@
+/**
+ * WifiNetworkAggregator merges the scan results by network : one WifiNetwork per SSID,
+ * with the strongest access point, sorted by signal (strongest first).
+ * <p>
+ * With mesh networks, the same SSID is seen many times in the scan results :
+ * this is done once per scan result set (see WifiScanSnapshot.getNetworks) instead of in Unity.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class WifiNetworkAggregator {
+
+    /** Number of signal levels sent to Unity (0 to 4) */
+    public static final int SIGNAL_LEVEL_COUNT = 5;
+
+    /**
+     * Merge the scan results by SSID. Hidden networks (empty SSID) are ignored.
+     *
+     * @param  results scan results
+     * @return the networks sorted by signal, strongest first. The list can't be modified.
+     */
+    public static List<WifiNetwork> aggregate(List<ScanResult> results)
+    {
+        Map<String, WifiNetwork> networksBySsid = new HashMap<String, WifiNetwork>();
+
+        for (ScanResult result : results)
+        {
+            if (result.SSID == null || result.SSID.isEmpty()) {
+                continue;
+            }
+
+            WifiNetwork network = networksBySsid.get(result.SSID);
+            if (network == null)
+            {
+                network = new WifiNetwork();
+                network.ssid = result.SSID;
+                networksBySsid.put(result.SSID, network);
+            }
+            else if (result.level <= network.rssi)
+            {
+                network.accessPointCount++;
+                continue;
+            }
+
+            network.accessPointCount++;
+            network.bssid     = result.BSSID;
+            network.rssi      = result.level;
+            network.frequency = result.frequency;
+            network.security  = WifiSecurityType.fromCapabilities(result.capabilities);
+        }
+
+        List<WifiNetwork> networks = new ArrayList<WifiNetwork>(networksBySsid.values());
+        Collections.sort(networks, new Comparator<WifiNetwork>() {
+            @Override
+            public int compare(WifiNetwork a, WifiNetwork b) {
+                if (a.rssi != b.rssi) {
+                    return Integer.compare(b.rssi, a.rssi);
+                }
+                return a.ssid.compareTo(b.ssid);
+            }
+        });
+        return Collections.unmodifiableList(networks);
+    }
+
+    /**
+     * Pack the networks in a string :
+     * ssid$rssi$signalLevel$security$bssid$frequency$accessPointCount|...
+     * signalLevel is between 0 and 4, security is the WifiSecurityType code
+     * (0 open, 1 WEP, 2 WPA, 3 WPA2, 4 WPA3, 5 enterprise, 6 OWE : enhanced open, encrypted without password).
+     *
+     * @param  networks
+     * @return String
+     */
+    public static String pack(List<WifiNetwork> networks)
+    {
+        StringBuilder packed = new StringBuilder(networks.size() * 48);
+        for (WifiNetwork network : networks)
+        {
+            if (packed.length() > 0) {
+                packed.append('|');
+            }
+            packed.append(network.ssid).append('$')
+                  .append(network.rssi).append('$')
+                  .append(WifiManager.calculateSignalLevel(network.rssi, SIGNAL_LEVEL_COUNT)).append('$')
+                  .append(network.security.code).append('$')
+                  .append(network.bssid).append('$')
+                  .append(network.frequency).append('$')
+                  .append(network.accessPointCount);
+        }
+        return packed.toString();
+    }
+}
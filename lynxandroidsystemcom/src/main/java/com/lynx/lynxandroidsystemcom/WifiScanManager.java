@@ -0,0 +1,341 @@
+/**
+ * WifiScanManager keeps the last wifi scan results in memory and starts the scans.
+ * <p>
+ * The results are updated by the SCAN_RESULTS_AVAILABLE_ACTION broadcast so that reading them
+ * never needs a call to WifiManager. The scans are started in the android budget (ScanThrottle) :
+ * a scan asked while the budget is used is delayed to the first allowed time instead of being lost.
+ * When new results are received, WifiScanResultsAvailable is called on the unity object with
+ * the number of results.
+ *
+ * @see WifiScanSnapshot
+ * @see ScanThrottle
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class WifiScanManager {
+
+    /** Minimum period of the periodic scans */
+    public static final long MIN_PERIODIC_SCAN_MS = 30 * 1000;
+
+    /** Time after which a scan without results is considered lost */
+    static final long SCAN_TIMEOUT_MS = 15 * 1000;
+
+    /**
+     * Listener of the new scan results
+     */
+    public interface Listener {
+        /**
+         * Called on the monitor thread when new results are received
+         */
+        void onScanResults(WifiScanSnapshot snapshot);
+    }
+
+    /** The instance shared by the library */
+    private static WifiScanManager mInstance = null;
+
+    private final Context      mContext;
+    private final WifiManager  mWifiManager;
+    private final Handler      mHandler;
+    private final ScanThrottle mThrottle = new ScanThrottle();
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    private volatile WifiScanSnapshot mSnapshot = WifiScanSnapshot.EMPTY;
+    private volatile boolean mRegistered     = false;
+    private volatile boolean mScanPending    = false;
+    private volatile boolean mScanInProgress = false;
+    private volatile long    mPeriodicScanMs = 0;
+    private volatile int     mScanCount      = 0;
+
+    private final BroadcastReceiver mScanResultsReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            boolean updated = intent.getBooleanExtra(WifiManager.EXTRA_RESULTS_UPDATED, false);
+            mScanInProgress = false;
+            mScanCount++;
+            mHandler.removeCallbacks(mScanTimeoutRunnable);
+            updateSnapshot(updated);
+        }
+    };
+
+    private final Runnable mPendingScanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mScanPending = false;
+            startScanIfAllowed();
+        }
+    };
+
+    private final Runnable mScanTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            // the broadcast of the results was lost : the next scans must not be blocked.
+            mScanInProgress = false;
+            Log.w("LynxAndroidSystem", "Wifi scan without results after (ms) : " + SCAN_TIMEOUT_MS);
+        }
+    };
+
+    private final Runnable mPeriodicScanRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mPeriodicScanMs <= 0) {
+                return;
+            }
+            requestScan(mPeriodicScanMs / 2);
+            mHandler.postDelayed(this, mPeriodicScanMs);
+        }
+    };
+
+    private WifiScanManager(Context context) {
+        mContext     = context.getApplicationContext();
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+        mHandler     = MonitorThread.getHandler();
+    }
+
+    /**
+     * Get the scan manager of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return WifiScanManager
+     */
+    public static synchronized WifiScanManager getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new WifiScanManager(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Listen to the scan results. Called automatically by the functions of this class.
+     */
+    public synchronized void start()
+    {
+        if (mRegistered) {
+            return;
+        }
+        mContext.registerReceiver(mScanResultsReceiver, new IntentFilter(WifiManager.SCAN_RESULTS_AVAILABLE_ACTION), null, mHandler);
+        mRegistered = true;
+
+        // first results : the ones already known by the system, also after a stop.
+        // Their scan time is not known : they are not fresh for requestScan.
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                updateSnapshot(false);
+            }
+        });
+        Log.d("LynxAndroidSystem", "WifiScanManager started");
+    }
+
+    /**
+     * Stop to listen to the scan results and cancel the scans not started yet.
+     */
+    public synchronized void stop()
+    {
+        if (!mRegistered) {
+            return;
+        }
+        mContext.unregisterReceiver(mScanResultsReceiver);
+        mRegistered     = false;
+        mPeriodicScanMs = 0;
+        mScanPending    = false;
+        mScanInProgress = false;
+        mHandler.removeCallbacks(mPendingScanRunnable);
+        mHandler.removeCallbacks(mPeriodicScanRunnable);
+        mHandler.removeCallbacks(mScanTimeoutRunnable);
+        Log.d("LynxAndroidSystem", "WifiScanManager stopped");
+    }
+
+    /**
+     * Say if the scan manager listens to the scan results
+     *
+     * @return boolean
+     */
+    public boolean isStarted() {
+        return mRegistered;
+    }
+
+    /**
+     * Add a listener of the new results
+     *
+     * @param  listener
+     */
+    public void addListener(Listener listener) {
+        if (listener != null && !mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    /**
+     * Remove a listener added with addListener
+     *
+     * @param  listener
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Get the last scan results, without any call to WifiManager once started.
+     * If the manager is not started, the results known by the system are read at each call :
+     * they keep the time of the last scan received.
+     *
+     * @return WifiScanSnapshot
+     */
+    public WifiScanSnapshot getSnapshot()
+    {
+        if (!mRegistered) {
+            updateSnapshot(false);
+        }
+        return mSnapshot;
+    }
+
+    /**
+     * Ask for results not older than maxAgeMs. A scan is started if the budget allows it,
+     * else it is started as soon as the budget allows it. Nothing is done if the results are
+     * recent enough or if a scan is already in progress or planned.
+     *
+     * @param  maxAgeMs maximum age of the results, 0 to always scan
+     */
+    public void requestScan(final long maxAgeMs)
+    {
+        start();
+
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (maxAgeMs > 0 && mSnapshot.isFresh(SystemClock.elapsedRealtime(), maxAgeMs)) {
+                    return;
+                }
+                if (mScanPending || mScanInProgress) {
+                    return;
+                }
+                startScanIfAllowed();
+            }
+        });
+    }
+
+    /**
+     * Scan periodically, in the limit of the android budget.
+     *
+     * @param  periodMs period of the scans (at least MIN_PERIODIC_SCAN_MS), 0 to stop the periodic scans
+     */
+    public void setPeriodicScan(long periodMs)
+    {
+        start();
+
+        mHandler.removeCallbacks(mPeriodicScanRunnable);
+        mPeriodicScanMs = periodMs > 0 ? Math.max(periodMs, MIN_PERIODIC_SCAN_MS) : 0;
+        if (mPeriodicScanMs > 0) {
+            mHandler.post(mPeriodicScanRunnable);
+        }
+    }
+
+    /**
+     * Get the period of the scans given to setPeriodicScan
+     *
+     * @return long, 0 if there is no periodic scan
+     */
+    public long getPeriodicScanMs() {
+        return mPeriodicScanMs;
+    }
+
+    /**
+     * Get the number of scans ended since the creation of the manager, with new results or not.
+     * A listener can compare it with a previous value to know if a scan ended since.
+     *
+     * @return int
+     */
+    public int getScanCount() {
+        return mScanCount;
+    }
+
+    /**
+     * Get the freshness of the results, packed in a string :
+     * ageMs$resultCount$remainingScans$nextScanAllowedInMs$scanPending
+     * ageMs is the age of the last scan, -1 if no scan has been received yet. scanPending is 1 if a scan is in progress or planned.
+     *
+     * @return String
+     */
+    public String getFreshness()
+    {
+        long now = SystemClock.elapsedRealtime();
+        WifiScanSnapshot snapshot = mSnapshot;
+        long age = snapshot.getTimestampMs() > 0 ? now - snapshot.getTimestampMs() : -1;
+        boolean pending = mScanPending || mScanInProgress;
+        return age + "$" + snapshot.getResults().size() + "$" + mThrottle.getRemainingScans(now) + "$"
+                + (mThrottle.getNextAllowedTime(now) - now) + "$" + (pending ? 1 : 0);
+    }
+
+    /**
+     * Start a scan now if the budget allows it, else plan it. Called on the monitor thread.
+     */
+    private void startScanIfAllowed()
+    {
+        long now = SystemClock.elapsedRealtime();
+
+        if (mThrottle.tryAcquire(now))
+        {
+            mScanInProgress = mWifiManager.startScan();
+            if (mScanInProgress) {
+                mHandler.postDelayed(mScanTimeoutRunnable, SCAN_TIMEOUT_MS);
+            }
+            Log.d("LynxAndroidSystem", "Wifi scan started : " + mScanInProgress);
+        }
+        else
+        {
+            long delay = mThrottle.getNextAllowedTime(now) - now;
+            mScanPending = true;
+            mHandler.postDelayed(mPendingScanRunnable, delay);
+            Log.d("LynxAndroidSystem", "Wifi scan budget used, scan planned in (ms) : " + delay);
+        }
+    }
+
+    /**
+     * Read the results from WifiManager and replace the snapshot.
+     */
+    private void updateSnapshot(boolean fromNewScan)
+    {
+        long scanTime = getScanTime(mSnapshot, fromNewScan, SystemClock.elapsedRealtime());
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(mWifiManager.getScanResults(), scanTime, fromNewScan);
+        mSnapshot = snapshot;
+
+        if (!mRegistered) {
+            return;
+        }
+
+        for (Listener listener : mListeners) {
+            listener.onScanResults(snapshot);
+        }
+        LynxAndroidSystemComMng.sendUnityMessage("WifiScanResultsAvailable", Integer.toString(snapshot.getResults().size()));
+    }
+
+    /**
+     * Get the time of the results read after a scan. Only a new scan gives a new time : the old results
+     * given again by the system (scan refused or failed, results read at start) keep the time of the previous
+     * snapshot, 0 if no scan has been received yet.
+     *
+     * @param  previous    the snapshot replaced
+     * @param  fromNewScan true if the results come from a new scan
+     * @param  nowMs       current time (SystemClock.elapsedRealtime)
+     * @return long
+     */
+    static long getScanTime(WifiScanSnapshot previous, boolean fromNewScan, long nowMs) {
+        return fromNewScan ? nowMs : previous.getTimestampMs();
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * WifiScanSnapshot is an immutable set of wifi scan results with the time of the scan that gave them.
+ *
+ * @see WifiScanManager
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.net.wifi.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class WifiScanSnapshot {
+
+    /** Empty snapshot, used before the first results */
+    public static final WifiScanSnapshot EMPTY = new WifiScanSnapshot(null, 0, false);
+
+    private final List<ScanResult> mResults;
+    private final long             mTimestampMs;
+    private final boolean          mFromNewScan;
+
+    // Computed at the first call, only once per snapshot :
+    private volatile List<WifiNetwork> mNetworks       = null;
+    private volatile String            mPackedNetworks = null;
+
+    /**
+     * @param  results     the scan results, copied
+     * @param  timestampMs time of the scan that gave the results (SystemClock.elapsedRealtime), 0 if unknown
+     * @param  fromNewScan false if the system gave the old results (scan refused or failed)
+     */
+    public WifiScanSnapshot(List<ScanResult> results, long timestampMs, boolean fromNewScan)
+    {
+        if (results == null || results.isEmpty()) {
+            mResults = Collections.emptyList();
+        } else {
+            mResults = Collections.unmodifiableList(new ArrayList<ScanResult>(results));
+        }
+        mTimestampMs = timestampMs;
+        mFromNewScan = fromNewScan;
+    }
+
+    /**
+     * Get the scan results. The list can't be modified.
+     *
+     * @return List<ScanResult>
+     */
+    public List<ScanResult> getResults() {
+        return mResults;
+    }
+
+    /**
+     * Get the time of the scan that gave the results (SystemClock.elapsedRealtime),
+     * 0 if no scan has been received yet (results read from the system at start)
+     *
+     * @return long
+     */
+    public long getTimestampMs() {
+        return mTimestampMs;
+    }
+
+    /**
+     * Say if the results come from a scan done at most maxAgeMs before nowMs
+     *
+     * @param  nowMs    current time (SystemClock.elapsedRealtime)
+     * @param  maxAgeMs maximum age of the scan
+     * @return boolean, false if the time of the scan is not known
+     */
+    public boolean isFresh(long nowMs, long maxAgeMs) {
+        return mTimestampMs > 0 && nowMs - mTimestampMs <= maxAgeMs;
+    }
+
+    /**
+     * Say if the results come from a new scan or are the old results given again by the system
+     *
+     * @return boolean
+     */
+    public boolean isFromNewScan() {
+        return mFromNewScan;
+    }
+
+    /**
+     * Get the networks of the results, one per SSID, sorted by signal (strongest first).
+     *
+     * @see WifiNetworkAggregator
+     * @return List<WifiNetwork>
+     */
+    public List<WifiNetwork> getNetworks()
+    {
+        List<WifiNetwork> networks = mNetworks;
+        if (networks == null) {
+            networks  = WifiNetworkAggregator.aggregate(mResults);
+            mNetworks = networks;
+        }
+        return networks;
+    }
+
+    /**
+     * Get the networks packed in a string
+     *
+     * @see WifiNetworkAggregator#pack
+     * @return String
+     */
+    public String getPackedNetworks()
+    {
+        String packed = mPackedNetworks;
+        if (packed == null) {
+            packed          = WifiNetworkAggregator.pack(getNetworks());
+            mPackedNetworks = packed;
+        }
+        return packed;
+    }
+
+    /**
+     * Find a network by its name
+     *
+     * @param  ssid name of the network, without quotes
+     * @return WifiNetwork with the strongest access point, null if the network is not in the results
+     */
+    public WifiNetwork findNetwork(String ssid)
+    {
+        for (WifiNetwork network : getNetworks()) {
+            if (network.ssid.equals(ssid)) {
+                return network;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first result of a network
+     *
+     * @param  ssid name of the network, without quotes
+     * @return ScanResult, null if the network is not in the results
+     */
+    public ScanResult find(String ssid)
+    {
+        for (ScanResult result : mResults) {
+            if (result.SSID != null && result.SSID.equals(ssid)) {
+                return result;
+            }
+        }
+        return null;
+    }
+}
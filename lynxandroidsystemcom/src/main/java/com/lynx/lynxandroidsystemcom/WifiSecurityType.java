@@ -0,0 +1,70 @@
+/**
+ * WifiSecurityType is the type of security of a wifi network, computed once
+ * from the capabilities string of a scan result (ex : [WPA2-PSK-CCMP][RSN-PSK-CCMP][ESS]).
+ * The code is sent to Unity (GetAllAvailableWifiNetworks) : 0 open, 1 WEP, 2 WPA, 3 WPA2, 4 WPA3, 5 enterprise, 6 OWE.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+public enum WifiSecurityType {
+
+    OPEN(0),
+    WEP(1),
+    WPA(2),
+    WPA2(3),
+    WPA3(4),
+    ENTERPRISE(5),
+    OWE(6);
+
+    /** The code sent to Unity */
+    public final int code;
+
+    WifiSecurityType(int code) {
+        this.code = code;
+    }
+
+    /**
+     * Get the security type from the capabilities of a scan result
+     *
+     * @param  capabilities ScanResult.capabilities
+     * @return WifiSecurityType
+     */
+    public static WifiSecurityType fromCapabilities(String capabilities)
+    {
+        if (capabilities == null) {
+            return OPEN;
+        }
+        if (capabilities.contains("EAP")) {
+            return ENTERPRISE;
+        }
+        if (capabilities.contains("SAE")) {
+            return WPA3;
+        }
+        if (capabilities.contains("WPA2") || capabilities.contains("RSN-PSK")) {
+            return WPA2;
+        }
+        if (capabilities.contains("WPA")) {
+            return WPA;
+        }
+        if (capabilities.contains("WEP")) {
+            return WEP;
+        }
+        if (capabilities.contains("OWE")) {
+            // enhanced open : encrypted, without password.
+            return OWE;
+        }
+        return OPEN;
+    }
+
+    /**
+     * Say if a password is needed to connect
+     *
+     * @return boolean
+     */
+    public boolean needsPassword() {
+        return this != OPEN && this != OWE;
+    }
+}
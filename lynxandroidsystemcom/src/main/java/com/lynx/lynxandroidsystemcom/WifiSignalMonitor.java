@@ -0,0 +1,234 @@
+/**
+ * WifiSignalMonitor keeps the current wifi connection (SSID and signal level) in memory
+ * so that it can be read every frame without any call to WifiManager.
+ * <p>
+ * The signal is updated by the RSSI_CHANGED_ACTION broadcast and filtered by a SignalLevelFilter
+ * (smoothing and hysteresis). WifiSignalLevelChange is sent to Unity with ssid$level$rssi
+ * only when the level changes or when the connection changes (ssid is empty when disconnected).
+ *
+ * @see SignalLevelFilter
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.text.TextUtils;
+import android.util.Log;
+
+public class WifiSignalMonitor {
+
+    /** The instance shared by the library */
+    private static WifiSignalMonitor mInstance = null;
+
+    private final Context     mContext;
+    private final WifiManager mWifiManager;
+
+    private SignalLevelFilter mFilter = new SignalLevelFilter();
+
+    // Current state :
+    private volatile String  mSsid    = null;
+    private volatile int     mRssi    = SignalLevelFilter.MIN_RSSI;
+    private volatile int     mLevel   = 0;
+    private volatile boolean mStarted = false;
+
+    // started by a getter and not by a request of Unity, stopped with the session.
+    private boolean mStartedForGetter = false;
+
+    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent)
+        {
+            if (WifiManager.RSSI_CHANGED_ACTION.equals(intent.getAction()))
+            {
+                int rssi = intent.getIntExtra(WifiManager.EXTRA_NEW_RSSI, SignalLevelFilter.MIN_RSSI);
+                onRssiChanged(rssi);
+            }
+            else if (WifiManager.NETWORK_STATE_CHANGED_ACTION.equals(intent.getAction()))
+            {
+                NetworkInfo networkInfo = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+                boolean connected = networkInfo != null && networkInfo.isConnected();
+                // the connection info is read only when the connection changes.
+                onConnectionChanged(connected ? mWifiManager.getConnectionInfo() : null);
+            }
+        }
+    };
+
+    private WifiSignalMonitor(Context context) {
+        mContext     = context.getApplicationContext();
+        mWifiManager = (WifiManager) mContext.getSystemService(Context.WIFI_SERVICE);
+    }
+
+    /**
+     * Get the signal monitor of the library, created at the first call
+     *
+     * @param  context the android context of the calling application
+     * @return WifiSignalMonitor
+     */
+    public static synchronized WifiSignalMonitor getInstance(Context context)
+    {
+        if (mInstance == null) {
+            mInstance = new WifiSignalMonitor(context);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Change the filter of the signal
+     *
+     * @param  smoothingPercent weight of a new value in the average, 100 for no smoothing
+     * @param  hysteresisDb     margin to enter a new level, 0 for no hysteresis
+     */
+    public synchronized void configure(int smoothingPercent, int hysteresisDb)
+    {
+        mFilter = new SignalLevelFilter(SignalLevelFilter.DEFAULT_LEVEL_COUNT, smoothingPercent, hysteresisDb);
+        if (mSsid != null) {
+            mFilter.add(mRssi);
+            mLevel = mFilter.getLevel();
+        }
+    }
+
+    /**
+     * Start the monitor. The current connection is read at once.
+     */
+    public synchronized void start()
+    {
+        mStartedForGetter = false;
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+
+        onConnectionChanged(mWifiManager.getConnectionInfo());
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(WifiManager.RSSI_CHANGED_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        mContext.registerReceiver(mReceiver, filter, null, MonitorThread.getHandler());
+        Log.d("LynxAndroidSystem", "WifiSignalMonitor started");
+    }
+
+    /**
+     * Stop the monitor
+     */
+    public synchronized void stop()
+    {
+        mStartedForGetter = false;
+        if (!mStarted) {
+            return;
+        }
+        mStarted = false;
+        mContext.unregisterReceiver(mReceiver);
+        Log.d("LynxAndroidSystem", "WifiSignalMonitor stopped");
+    }
+
+    /**
+     * Start the monitor for a getter, if it is not already started.
+     * A monitor started this way is stopped by stopForGetter.
+     */
+    public synchronized void startForGetter()
+    {
+        if (!mStarted) {
+            start();
+            mStartedForGetter = true;
+        }
+    }
+
+    /**
+     * Stop the monitor if it was started by startForGetter only
+     */
+    public synchronized void stopForGetter()
+    {
+        if (mStartedForGetter) {
+            stop();
+        }
+    }
+
+    /**
+     * Say if the monitor is started
+     *
+     * @return boolean
+     */
+    public boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Get the SSID of the current connection, with quotes like WifiInfo.getSSID
+     *
+     * @return String, null if the wifi is not connected
+     */
+    public String getSsid() {
+        return mSsid;
+    }
+
+    /**
+     * Get the filtered level of the current connection
+     *
+     * @return between 0 and 4
+     */
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * Get the smoothed signal of the current connection
+     *
+     * @return the signal in dBm
+     */
+    public int getRssi() {
+        return mRssi;
+    }
+
+    private synchronized void onConnectionChanged(WifiInfo connectionInfo)
+    {
+        String ssid = null;
+        if (connectionInfo != null && connectionInfo.getNetworkId() != -1 && !TextUtils.isEmpty(connectionInfo.getSSID())) {
+            ssid = connectionInfo.getSSID();
+        }
+
+        if (TextUtils.equals(ssid, mSsid)) {
+            return;
+        }
+        mSsid = ssid;
+        mFilter.reset();
+
+        if (ssid != null) {
+            mFilter.add(connectionInfo.getRssi());
+            mRssi  = mFilter.getSmoothedRssi();
+            mLevel = mFilter.getLevel();
+        } else {
+            mRssi  = SignalLevelFilter.MIN_RSSI;
+            mLevel = 0;
+        }
+        sendLevel();
+    }
+
+    private synchronized void onRssiChanged(int rssi)
+    {
+        if (mSsid == null) {
+            return;
+        }
+        boolean changed = mFilter.add(rssi);
+        mRssi = mFilter.getSmoothedRssi();
+        if (changed) {
+            mLevel = mFilter.getLevel();
+            sendLevel();
+        }
+    }
+
+    private void sendLevel()
+    {
+        if (!mStarted) {
+            return;
+        }
+        LynxAndroidSystemComMng.sendUnityMessage("WifiSignalLevelChange", (mSsid != null ? mSsid : "") + "$" + mLevel + "$" + mRssi);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Unit tests of CoalescingSettingWriter : the last value wins, equal values are not written.
+ * The monitor thread is not run, writePending is called by the tests.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoalescingSettingWriterTest {
+
+    /**
+     * A setting in memory
+     */
+    private static class FakeSink implements CoalescingSettingWriter.Sink {
+        final List<Integer> writes   = new ArrayList<Integer>();
+        int                 value    = CoalescingSettingWriter.UNKNOWN;
+        boolean             readable = false;
+        boolean             writable = true;
+
+        @Override
+        public int read() {
+            return readable ? value : CoalescingSettingWriter.UNKNOWN;
+        }
+
+        @Override
+        public boolean write(int newValue) {
+            writes.add(newValue);
+            if (writable) {
+                value = newValue;
+            }
+            return writable;
+        }
+    }
+
+    @Test
+    public void onlyTheLastValueIsWritten() {
+        FakeSink sink = new FakeSink();
+        CoalescingSettingWriter writer = new CoalescingSettingWriter("test", sink, 0);
+        writer.set(1);
+        writer.set(2);
+        writer.set(3);
+        writer.writePending();
+
+        assertEquals(1, sink.writes.size());
+        assertEquals(3, (int) sink.writes.get(0));
+        assertEquals("test$3$1$2$0$0", writer.getStats());
+    }
+
+    @Test
+    public void valueOfTheSettingIsNotWritten() {
+        FakeSink sink = new FakeSink();
+        sink.readable = true;
+        sink.value    = 5;
+        CoalescingSettingWriter writer = new CoalescingSettingWriter("test", sink, 0);
+        writer.set(5);
+        writer.writePending();
+
+        assertEquals(0, sink.writes.size());
+        assertEquals(1, writer.getSkippedCount());
+    }
+
+    @Test
+    public void settingChangedByOthersIsWrittenAgain() {
+        FakeSink sink = new FakeSink();
+        sink.readable = true;
+        CoalescingSettingWriter writer = new CoalescingSettingWriter("test", sink, 0);
+        writer.set(4);
+        writer.writePending();
+
+        // changed by the system ui.
+        sink.value = 9;
+        writer.set(4);
+        writer.writePending();
+
+        assertEquals(2, sink.writes.size());
+        assertEquals(4, sink.value);
+    }
+
+    @Test
+    public void unknownSettingIsComparedWithTheLastWrite() {
+        FakeSink sink = new FakeSink();
+        CoalescingSettingWriter writer = new CoalescingSettingWriter("test", sink, 0);
+        writer.set(4);
+        writer.writePending();
+        writer.set(4);
+        writer.writePending();
+
+        assertEquals(1, sink.writes.size());
+        assertEquals(1, writer.getSkippedCount());
+
+        writer.invalidate();
+        writer.set(4);
+        writer.writePending();
+        assertEquals(2, sink.writes.size());
+    }
+
+    @Test
+    public void failedWriteIsTriedAgain() {
+        FakeSink sink = new FakeSink();
+        sink.writable = false;
+        CoalescingSettingWriter writer = new CoalescingSettingWriter("test", sink, 0);
+        writer.set(4);
+        writer.writePending();
+        writer.set(4);
+        writer.writePending();
+
+        assertEquals(2, sink.writes.size());
+        assertEquals(0, writer.getWriteCount());
+        assertEquals(2, writer.getFailedCount());
+        // the failed writes are not counted as coalesced.
+        assertEquals("test$2$0$0$0$2", writer.getStats());
+    }
+}
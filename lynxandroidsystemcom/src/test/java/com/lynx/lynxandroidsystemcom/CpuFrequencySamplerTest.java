@@ -0,0 +1,119 @@
+/**
+ * Unit tests of CpuFrequencySampler against a fake cpufreq and thermal tree in a temporary folder.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class CpuFrequencySamplerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mCpuRoot;
+    private File mThermalRoot;
+
+    @Before
+    public void createTree() throws IOException
+    {
+        mCpuRoot     = new File(mFolder.getRoot(), "cpu");
+        mThermalRoot = new File(mFolder.getRoot(), "thermal");
+
+        writeCpu(0, 900000, 1800000, 1800000);
+        writeCpu(1, 1200000, 1200000, 2400000);
+        writeCpu(10, 2400000, 2400000, 2400000);
+        // offline cpu : no cpufreq folder.
+        new File(mCpuRoot, "cpu2").mkdirs();
+        // not cpus :
+        new File(mCpuRoot, "cpufreq").mkdirs();
+        new File(mCpuRoot, "cpuidle").mkdirs();
+
+        SysFileReaderTest.write(new File(mThermalRoot, "thermal_zone0/temp"), "45000\n");
+        SysFileReaderTest.write(new File(mThermalRoot, "thermal_zone1/temp"), "51500\n");
+        SysFileReaderTest.write(new File(mThermalRoot, "cooling_device0/cur_state"), "3\n");
+    }
+
+    @Test
+    public void numberedFoldersAreFound() {
+        CpuFrequencySampler sampler = new CpuFrequencySampler(mCpuRoot, mThermalRoot);
+
+        assertEquals(4, sampler.getCpuCount());
+        assertEquals(2, sampler.getThermalZoneCount());
+        sampler.close();
+    }
+
+    @Test
+    public void sampleReadsEveryFile() {
+        CpuFrequencySampler sampler = new CpuFrequencySampler(mCpuRoot, mThermalRoot);
+        sampler.sample();
+
+        // sorted by number : cpu0, cpu1, cpu2, cpu10
+        assertEquals(900000, sampler.getCurrentFrequency(0));
+        assertEquals(1200000, sampler.getScalingMaxFrequency(1));
+        assertEquals(2400000, sampler.getCpuInfoMaxFrequency(1));
+        assertEquals(0, sampler.getCurrentFrequency(2));
+        assertEquals(2400000, sampler.getCurrentFrequency(3));
+        assertEquals(51500, sampler.getTemperature(1));
+
+        // cpu2 is offline : (50 + 50 + 100) / 3
+        assertEquals(66, sampler.getAverageLoadPercent());
+        assertEquals(50, sampler.getMinCapPercent());
+        assertEquals(51500, sampler.getMaxTemperature());
+        sampler.close();
+    }
+
+    @Test
+    public void changesAreSeenByTheNextSample() throws IOException {
+        CpuFrequencySampler sampler = new CpuFrequencySampler(mCpuRoot, mThermalRoot);
+        sampler.sample();
+
+        // throttled.
+        SysFileReaderTest.write(new File(mCpuRoot, "cpu1/cpufreq/scaling_max_freq"), "600000\n");
+        SysFileReaderTest.write(new File(mCpuRoot, "cpu1/cpufreq/scaling_cur_freq"), "600000\n");
+        SysFileReaderTest.write(new File(mThermalRoot, "thermal_zone0/temp"), "78000\n");
+        // read only once.
+        SysFileReaderTest.write(new File(mCpuRoot, "cpu1/cpufreq/cpuinfo_max_freq"), "1200000\n");
+        sampler.sample();
+
+        assertEquals(2400000, sampler.getCpuInfoMaxFrequency(1));
+        assertEquals(25, sampler.getMinCapPercent());
+        // (50 + 25 + 100) / 3
+        assertEquals(58, sampler.getAverageLoadPercent());
+        assertEquals(78000, sampler.getMaxTemperature());
+        sampler.close();
+    }
+
+    @Test
+    public void missingRootsGiveAnEmptySample() {
+        File missing = new File(mFolder.getRoot(), "missing");
+        CpuFrequencySampler sampler = new CpuFrequencySampler(missing, missing);
+        sampler.sample();
+
+        assertEquals(0, sampler.getCpuCount());
+        assertEquals(0, sampler.getThermalZoneCount());
+        assertEquals(100, sampler.getMinCapPercent());
+        assertEquals(0, sampler.getAverageLoadPercent());
+        assertEquals(0, sampler.getMaxTemperature());
+        sampler.close();
+    }
+
+    private void writeCpu(int cpu, long curFreq, long scalingMaxFreq, long cpuInfoMaxFreq) throws IOException
+    {
+        File cpufreq = new File(mCpuRoot, "cpu" + cpu + "/cpufreq");
+        SysFileReaderTest.write(new File(cpufreq, "scaling_cur_freq"), curFreq + "\n");
+        SysFileReaderTest.write(new File(cpufreq, "scaling_max_freq"), scalingMaxFreq + "\n");
+        SysFileReaderTest.write(new File(cpufreq, "cpuinfo_max_freq"), cpuInfoMaxFreq + "\n");
+    }
+}
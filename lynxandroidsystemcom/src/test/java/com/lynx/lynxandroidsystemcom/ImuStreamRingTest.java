@@ -0,0 +1,87 @@
+/**
+ * Unit tests of ImuStreamRing : layout of the header, wrap of the records and detection of the overwrites.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ImuStreamRingTest {
+
+    @Test
+    public void headerDescribesTheRing() {
+        ImuStreamRing ring = new ImuStreamRing(8);
+        ByteBuffer buffer = ring.getBuffer();
+
+        assertTrue(buffer.isDirect());
+        assertEquals(ImuStreamRing.HEADER_SIZE + 8 * ImuStreamRing.RECORD_SIZE, buffer.capacity());
+        assertEquals(ImuStreamRing.MAGIC, buffer.getInt(0));
+        assertEquals(ImuStreamRing.VERSION, buffer.getInt(4));
+        assertEquals(ImuStreamRing.RECORD_SIZE, buffer.getInt(8));
+        assertEquals(8, buffer.getInt(ImuStreamRing.OFFSET_CAPACITY));
+        assertEquals(0, buffer.getLong(ImuStreamRing.OFFSET_WRITE_SEQUENCE));
+        assertEquals(ImuStreamRing.DEFAULT_CAPACITY, new ImuStreamRing(0).getCapacity());
+    }
+
+    @Test
+    public void recordsAreReadBack() {
+        ImuStreamRing ring = new ImuStreamRing(8);
+        ring.write(1000, 1, 0.5f, 1.5f, 2.5f);
+        ring.write(2000, 4, 3f, 4f, 5f);
+
+        float[] values = new float[3];
+        assertEquals(2, ring.getWriteSequence());
+        assertEquals(2, ring.getBuffer().getLong(ImuStreamRing.OFFSET_WRITE_SEQUENCE));
+
+        assertEquals(1000, ring.read(0, values));
+        assertEquals(0.5f, values[0], 0);
+        assertEquals(2.5f, values[2], 0);
+        assertEquals(1, ring.getSensorType(0));
+
+        assertEquals(2000, ring.read(1, values));
+        assertEquals(4f, values[1], 0);
+        assertEquals(4, ring.getSensorType(1));
+
+        assertEquals(-1, ring.read(2, values));
+    }
+
+    @Test
+    public void recordsWrapAround() {
+        ImuStreamRing ring = new ImuStreamRing(4);
+        for (int i = 0; i < 10; i++) {
+            ring.write(i * 100, 1, i, 0, 0);
+        }
+
+        float[] values = new float[3];
+        assertEquals(10, ring.getWriteSequence());
+        for (long sequence = 7; sequence < 10; sequence++) {
+            assertEquals(sequence * 100, ring.read(sequence, values));
+            assertEquals(sequence, values[0], 0);
+        }
+        // record 9 is in the slot of record 5.
+        assertEquals(9, ring.getBuffer().getInt(ImuStreamRing.HEADER_SIZE + 1 * ImuStreamRing.RECORD_SIZE + 12));
+    }
+
+    @Test
+    public void overwrittenRecordsAreDetected() {
+        ImuStreamRing ring = new ImuStreamRing(4);
+        for (int i = 0; i < 10; i++) {
+            ring.write(i * 100, 1, i, 0, 0);
+        }
+
+        float[] values = new float[3];
+        assertEquals(-1, ring.read(0, values));
+        assertEquals(-1, ring.read(5, values));
+        // the oldest slot is the next one written : it can be in the middle of its overwrite.
+        assertEquals(-1, ring.read(6, values));
+        assertEquals(700, ring.read(7, values));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Unit tests of LatencyHistory : percentiles, order of the keys and eviction.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LatencyHistoryTest {
+
+    @Test
+    public void percentileUsesNearestRank() {
+        long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+        assertEquals(50, LatencyHistory.percentile(sorted, sorted.length, 50));
+        assertEquals(90, LatencyHistory.percentile(sorted, sorted.length, 90));
+        assertEquals(100, LatencyHistory.percentile(sorted, sorted.length, 100));
+        assertEquals(10, LatencyHistory.percentile(sorted, sorted.length, 0));
+        assertEquals(-1, LatencyHistory.percentile(sorted, 0, 50));
+    }
+
+    @Test
+    public void summaryCountsDurationsAndFailures() {
+        LatencyHistory history = new LatencyHistory(4, 8);
+        history.record("ap", 30, true);
+        history.record("ap", 10, true);
+        history.record("ap", 20, true);
+        history.record("ap", 0, false);
+
+        assertEquals("3$1$20$30$30", history.getSummary("ap"));
+        assertNull(history.getSummary("unknown"));
+    }
+
+    @Test
+    public void onlyTheLastDurationsAreKept() {
+        LatencyHistory history = new LatencyHistory(2, 8);
+        history.record("ap", 100, true);
+        history.record("ap", 1, true);
+        history.record("ap", 2, true);
+
+        assertEquals("2$0$1$2$2", history.getSummary("ap"));
+    }
+
+    @Test
+    public void readingDoesNotChangeTheOrder() {
+        LatencyHistory history = new LatencyHistory(4, 8);
+        history.record("a", 1, true);
+        history.record("b", 2, true);
+
+        history.getSummary("a");
+        String first = history.getPackedSummaries();
+        String second = history.getPackedSummaries();
+
+        assertEquals("b$1$0$2$2$2|a$1$0$1$1$1", first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void recordMovesTheKeyFirst() {
+        LatencyHistory history = new LatencyHistory(4, 8);
+        history.record("a", 1, true);
+        history.record("b", 2, true);
+        history.record("a", 3, true);
+
+        assertEquals("a$2$0$1$3$3|b$1$0$2$2$2", history.getPackedSummaries());
+    }
+
+    @Test
+    public void theOldestRecordedKeyIsEvicted() {
+        LatencyHistory history = new LatencyHistory(4, 2);
+        history.record("a", 1, true);
+        history.record("b", 2, true);
+        // a read of a must not protect it from the eviction.
+        history.getSummary("a");
+        history.record("c", 3, true);
+
+        assertNull(history.getSummary("a"));
+        assertEquals("c$1$0$3$3$3|b$1$0$2$2$2", history.getPackedSummaries());
+    }
+}
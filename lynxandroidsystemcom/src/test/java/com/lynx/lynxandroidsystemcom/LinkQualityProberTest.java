@@ -0,0 +1,187 @@
+/**
+ * Unit tests of LinkQualityProber against local tcp and udp echo servers.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LinkQualityProberTest {
+
+    private ServerSocket   mTcpServer;
+    private DatagramSocket mUdpServer;
+
+    @Before
+    public void startEchoServers() throws IOException
+    {
+        mTcpServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread tcp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!mTcpServer.isClosed()) {
+                    try {
+                        final Socket socket = mTcpServer.accept();
+                        Thread echo = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                echo(socket);
+                            }
+                        });
+                        echo.setDaemon(true);
+                        echo.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        tcp.setDaemon(true);
+        tcp.start();
+
+        mUdpServer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        Thread udp = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                byte[] buffer = new byte[1024];
+                while (!mUdpServer.isClosed()) {
+                    try {
+                        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                        mUdpServer.receive(packet);
+                        mUdpServer.send(packet);
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        udp.setDaemon(true);
+        udp.start();
+    }
+
+    @After
+    public void stopEchoServers() throws IOException
+    {
+        mTcpServer.close();
+        mUdpServer.close();
+    }
+
+    private static void echo(Socket socket)
+    {
+        try {
+            InputStream  input  = socket.getInputStream();
+            OutputStream output = socket.getOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+        } catch (IOException e) {
+            // closed by the prober
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    @Test
+    public void parseReadsProtocolHostAndPort() {
+        LinkQualityProber.Endpoint endpoint = LinkQualityProber.Endpoint.parse("udp:server.local:7");
+        assertNotNull(endpoint);
+        assertEquals(LinkQualityProber.PROTOCOL_UDP, endpoint.protocol);
+        assertEquals("server.local", endpoint.host);
+        assertEquals(7, endpoint.port);
+        assertEquals("udp:server.local:7", endpoint.toString());
+    }
+
+    @Test
+    public void parseRejectsInvalidEndpoints() {
+        assertNull(LinkQualityProber.Endpoint.parse(null));
+        assertNull(LinkQualityProber.Endpoint.parse("http:host:80"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp:host"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp: :80"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp:host:port"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp:host:0"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp:host:-1"));
+        assertNull(LinkQualityProber.Endpoint.parse("tcp:host:70000"));
+        assertNotNull(LinkQualityProber.Endpoint.parse("tcp:host:65535"));
+    }
+
+    @Test
+    public void summarizeGivesPercentilesAndJitter() {
+        LinkQualityProber.Result result = new LinkQualityProber.Result();
+        result.rttsUs = new long[] {100, 300, 200, 400};
+        LinkQualityProber.summarize(result);
+
+        assertEquals(100, result.minUs);
+        assertEquals(200, result.p50Us);
+        assertEquals(400, result.p90Us);
+        assertEquals(400, result.p99Us);
+        // |300-100| + |200-300| + |400-200| = 500 over 3 differences
+        assertEquals(166, result.jitterUs);
+    }
+
+    @Test
+    public void tcpProbeMeasuresConnectAndThroughput() {
+        LinkQualityProber prober = new LinkQualityProber(3, 1000, 64 * 1024);
+        LinkQualityProber.Result result = prober.probe(new LinkQualityProber.Endpoint(
+                LinkQualityProber.PROTOCOL_TCP, "127.0.0.1", mTcpServer.getLocalPort()));
+
+        assertEquals(3, result.sent);
+        assertEquals(3, result.received);
+        assertEquals(0, result.getLossPercent());
+        assertTrue(result.minUs >= 0);
+        assertTrue(result.throughputKbps > 0);
+    }
+
+    @Test
+    public void udpProbeMeasuresRoundTrips() {
+        LinkQualityProber prober = new LinkQualityProber(3, 1000, 0);
+        LinkQualityProber.Result result = prober.probe(new LinkQualityProber.Endpoint(
+                LinkQualityProber.PROTOCOL_UDP, "127.0.0.1", mUdpServer.getLocalPort()));
+
+        assertEquals(3, result.sent);
+        assertEquals(3, result.received);
+        assertEquals(3, result.rttsUs.length);
+        assertTrue(result.p50Us >= 0);
+        assertEquals(-1, result.throughputKbps);
+    }
+
+    @Test
+    public void closedPortLosesEveryRoundTrip() throws IOException {
+        ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        int port = closed.getLocalPort();
+        closed.close();
+
+        LinkQualityProber prober = new LinkQualityProber(2, 200, 1024);
+        LinkQualityProber.Result result = prober.probe(new LinkQualityProber.Endpoint(
+                LinkQualityProber.PROTOCOL_TCP, "127.0.0.1", port));
+
+        assertEquals(2, result.sent);
+        assertEquals(0, result.received);
+        assertEquals(100, result.getLossPercent());
+        assertEquals(-1, result.minUs);
+        assertEquals(-1, result.throughputKbps);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Unit tests of PressureStallInfo : parse of the some and full lines of a PSI file.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PressureStallInfoTest {
+
+    private static final String MEMORY_PSI =
+            "some avg10=1.23 avg60=0.50 avg300=12.345 total=12345\n"
+          + "full avg10=0.10 avg60=7 avg300=0.00 total=678\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void someAndFullLinesAreParsed() {
+        byte[] buffer = MEMORY_PSI.getBytes(StandardCharsets.US_ASCII);
+        PressureStallInfo info = new PressureStallInfo();
+
+        assertTrue(info.parse(buffer, buffer.length));
+        assertEquals(123, info.someAvg10);
+        assertEquals(50, info.someAvg60);
+        assertEquals(1234, info.someAvg300);
+        assertEquals(12345, info.someTotal);
+        assertEquals(10, info.fullAvg10);
+        assertEquals(700, info.fullAvg60);
+        assertEquals(0, info.fullAvg300);
+        assertEquals(678, info.fullTotal);
+    }
+
+    @Test
+    public void cpuFileWithoutFullLineIsParsed() {
+        byte[] buffer = "some avg10=2.00 avg60=1.00 avg300=0.25 total=99".getBytes(StandardCharsets.US_ASCII);
+        PressureStallInfo info = new PressureStallInfo();
+
+        assertTrue(info.parse(buffer, buffer.length));
+        assertEquals(200, info.someAvg10);
+        assertEquals(25, info.someAvg300);
+        assertEquals(99, info.someTotal);
+        assertEquals(0, info.fullTotal);
+    }
+
+    @Test
+    public void onlyTheGivenLengthIsParsed() {
+        byte[] buffer = new byte[256];
+        byte[] text   = MEMORY_PSI.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(text, 0, buffer, 0, text.length);
+        PressureStallInfo info = new PressureStallInfo();
+
+        // the full line is cut after its avg10.
+        int length = MEMORY_PSI.lastIndexOf(" avg60=");
+        assertTrue(info.parse(buffer, length));
+        assertEquals(10, info.fullAvg10);
+        assertEquals(0, info.fullAvg60);
+        assertEquals(0, info.fullTotal);
+    }
+
+    @Test
+    public void bufferWithoutSomeLineIsRejected() {
+        byte[] buffer = "full avg10=0.10 avg60=0.00 avg300=0.00 total=678\n".getBytes(StandardCharsets.US_ASCII);
+        PressureStallInfo info = new PressureStallInfo();
+
+        assertFalse(info.parse(buffer, buffer.length));
+        assertFalse(info.parse(buffer, 0));
+    }
+
+    @Test
+    public void fileIsReadAgainAtEachCall() throws IOException {
+        File file = mFolder.newFile("memory");
+        write(file, MEMORY_PSI);
+        SysFileReader reader = new SysFileReader(file);
+        PressureStallInfo info = new PressureStallInfo();
+        byte[] buffer = new byte[256];
+
+        assertTrue(info.read(reader, buffer));
+        assertEquals(12345, info.someTotal);
+
+        write(file, "some avg10=0.00 avg60=0.00 avg300=0.00 total=20000\n");
+        assertTrue(info.read(reader, buffer));
+        assertEquals(0, info.someAvg10);
+        assertEquals(20000, info.someTotal);
+        reader.close();
+    }
+
+    @Test
+    public void missingFileIsNotRead() {
+        SysFileReader reader = new SysFileReader(new File(mFolder.getRoot(), "missing"));
+        assertFalse(new PressureStallInfo().read(reader, new byte[256]));
+    }
+
+    private static void write(File file, String text) throws IOException
+    {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Unit tests of ProcessSampler : parse of /proc/[pid]/stat and statm, and the sliding window
+ * computed on a fake /proc folder.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProcessSamplerTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mProcRoot;
+
+    @Before
+    public void createProcRoot() {
+        mProcRoot = mFolder.getRoot();
+    }
+
+    @Test
+    public void cpuTicksAreUserPlusSystemTime() {
+        byte[] stat = bytes(stat(1234, "com.lynx.app", 250, 50));
+        assertEquals(300, ProcessSampler.parseCpuTicks(stat, stat.length));
+    }
+
+    @Test
+    public void processNameWithSpacesAndParenthesisIsSkipped() {
+        byte[] stat = bytes(stat(42, "Binder:42 (x) 1 2", 7, 3));
+        assertEquals(10, ProcessSampler.parseCpuTicks(stat, stat.length));
+    }
+
+    @Test
+    public void invalidStatGivesNoTicks() {
+        byte[] stat = bytes("1234 com.lynx.app S 1");
+        assertEquals(0, ProcessSampler.parseCpuTicks(stat, stat.length));
+        assertEquals(0, ProcessSampler.parseCpuTicks(stat, 0));
+    }
+
+    @Test
+    public void residentPagesAreTheSecondField() {
+        byte[] statm = bytes("5000 256 100 10 0 900 0\n");
+        assertEquals(256, ProcessSampler.parseResidentPages(statm, statm.length));
+    }
+
+    @Test
+    public void cpuUsageIsComputedOverTheWindow() throws IOException {
+        ProcessSampler sampler = new ProcessSampler(mProcRoot, 100, 4096, 3);
+        writeProcess(100, "com.lynx.app", 300, 256);
+        sampler.setProcesses(new String[] {"com.lynx.app"}, new int[] {100}, 1);
+
+        sampler.sample(0);
+        assertEquals(0, sampler.getCpuPerMille("com.lynx.app"));
+        assertEquals(1024, sampler.getRssInKB("com.lynx.app"));
+
+        // 50 ticks = 500 ms of cpu in 1000 ms
+        writeProcess(100, "com.lynx.app", 350, 512);
+        sampler.sample(1000);
+        assertEquals(500, sampler.getCpuPerMille("com.lynx.app"));
+        assertEquals(2048, sampler.getRssInKB("com.lynx.app"));
+
+        // 150 ticks in 2000 ms since the first sample
+        writeProcess(100, "com.lynx.app", 450, 512);
+        sampler.sample(2000);
+        assertEquals(750, sampler.getCpuPerMille("com.lynx.app"));
+
+        // the first sample left the window : 100 ticks in 2000 ms
+        sampler.sample(3000);
+        assertEquals(500, sampler.getCpuPerMille("com.lynx.app"));
+        sampler.close();
+    }
+
+    @Test
+    public void deadProcessHasNoUsage() throws IOException {
+        ProcessSampler sampler = new ProcessSampler(mProcRoot, 100, 4096, 3);
+        writeProcess(100, "com.lynx.app", 300, 256);
+        sampler.setProcesses(new String[] {"com.lynx.app", "com.lynx.dead"}, new int[] {100, 200}, 2);
+        sampler.sample(0);
+
+        assertEquals(0, sampler.getCpuPerMille("com.lynx.dead"));
+        assertEquals(0, sampler.getRssInKB("com.lynx.dead"));
+        assertEquals(-1, sampler.getCpuPerMille("com.lynx.unknown"));
+        assertEquals(-1, sampler.getRssInKB("com.lynx.unknown"));
+        sampler.close();
+    }
+
+    @Test
+    public void tableIsSortedAndPackagesAreAdded() throws IOException {
+        ProcessSampler sampler = new ProcessSampler(mProcRoot, 100, 4096, 3);
+        writeProcess(100, "com.lynx.app", 0, 256);
+        writeProcess(101, "com.lynx.app:service", 0, 128);
+        writeProcess(200, "com.lynx.launcher", 0, 64);
+        sampler.setProcesses(new String[] {"com.lynx.app", "com.lynx.app", "com.lynx.launcher"},
+                             new int[] {100, 101, 200}, 3);
+        sampler.sample(0);
+
+        writeProcess(100, "com.lynx.app", 10, 256);
+        writeProcess(101, "com.lynx.app:service", 20, 128);
+        writeProcess(200, "com.lynx.launcher", 10, 64);
+        sampler.sample(1000);
+
+        assertEquals("com.lynx.app$101$200$512|com.lynx.app$100$100$1024|com.lynx.launcher$200$100$256",
+                     sampler.getPackedTable());
+        assertEquals(300, sampler.getCpuPerMille("com.lynx.app"));
+        assertEquals(1536, sampler.getRssInKB("com.lynx.app"));
+        sampler.close();
+        assertEquals("", sampler.getPackedTable());
+    }
+
+    @Test
+    public void followedProcessKeepsItsWindow() throws IOException {
+        ProcessSampler sampler = new ProcessSampler(mProcRoot, 100, 4096, 3);
+        writeProcess(100, "com.lynx.app", 0, 256);
+        writeProcess(200, "com.lynx.launcher", 0, 64);
+        sampler.setProcesses(new String[] {"com.lynx.app"}, new int[] {100}, 1);
+        sampler.sample(0);
+
+        writeProcess(100, "com.lynx.app", 100, 256);
+        sampler.sample(1000);
+        assertEquals(1000, sampler.getCpuPerMille("com.lynx.app"));
+
+        // the app moves to the second slot and keeps its result and its window.
+        sampler.setProcesses(new String[] {"com.lynx.launcher", "com.lynx.app"}, new int[] {200, 100}, 2);
+        assertEquals(1000, sampler.getCpuPerMille("com.lynx.app"));
+        assertEquals(0, sampler.getCpuPerMille("com.lynx.launcher"));
+
+        writeProcess(100, "com.lynx.app", 100, 256);
+        sampler.sample(2000);
+        // 100 ticks in 2000 ms since the first sample
+        assertEquals(500, sampler.getCpuPerMille("com.lynx.app"));
+        sampler.close();
+    }
+
+    /**
+     * Build a stat line with the given cpu times, the other fields are not used.
+     */
+    private static String stat(int pid, String name, long utime, long stime) {
+        return pid + " (" + name + ") S 1 " + pid + " 0 0 -1 4194624 12000 0 3 0 "
+                + utime + " " + stime + " 0 0 20 0 40 0 1500 2000000000 6500 18446744073709551615\n";
+    }
+
+    private void writeProcess(int pid, String name, long ticks, long residentPages) throws IOException
+    {
+        File folder = new File(mProcRoot, Integer.toString(pid));
+        SysFileReaderTest.write(new File(folder, "stat"), stat(pid, name, ticks, 0));
+        SysFileReaderTest.write(new File(folder, "statm"), "5000 " + residentPages + " 100 10 0 900 0\n");
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Unit tests of SignalLevelFilter : levels, smoothing and hysteresis.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignalLevelFilterTest {
+
+    @Test
+    public void levelsAreTheOnesOfWifiManager() {
+        assertEquals(0, SignalLevelFilter.calculateLevel(-110, 5));
+        assertEquals(0, SignalLevelFilter.calculateLevel(-100, 5));
+        assertEquals(2, SignalLevelFilter.calculateLevel(-77, 5));
+        assertEquals(2, SignalLevelFilter.calculateLevel(-67, 5));
+        assertEquals(3, SignalLevelFilter.calculateLevel(-66, 5));
+        assertEquals(4, SignalLevelFilter.calculateLevel(-55, 5));
+        assertEquals(4, SignalLevelFilter.calculateLevel(-40, 5));
+    }
+
+    @Test
+    public void firstValueSetsTheLevel() {
+        SignalLevelFilter filter = new SignalLevelFilter();
+        assertTrue(filter.add(-60));
+        assertEquals(3, filter.getLevel());
+        assertEquals(-60, filter.getSmoothedRssi());
+    }
+
+    @Test
+    public void valuesAreSmoothed() {
+        SignalLevelFilter filter = new SignalLevelFilter(5, 50, 0);
+        filter.add(-100);
+        assertTrue(filter.add(-60));
+        assertEquals(-80, filter.getSmoothedRssi());
+        assertEquals(1, filter.getLevel());
+    }
+
+    @Test
+    public void levelChangesOnlyBeyondTheHysteresis() {
+        SignalLevelFilter filter = new SignalLevelFilter(5, 100, 3);
+        filter.add(-67);
+        assertEquals(2, filter.getLevel());
+
+        // inside the level 3, but not by more than 3 dB.
+        assertFalse(filter.add(-65));
+        assertEquals(2, filter.getLevel());
+
+        assertTrue(filter.add(-60));
+        assertEquals(3, filter.getLevel());
+
+        // back in the level 2 by 1 dB only.
+        assertFalse(filter.add(-66));
+        assertEquals(3, filter.getLevel());
+
+        assertTrue(filter.add(-70));
+        assertEquals(2, filter.getLevel());
+    }
+
+    @Test
+    public void resetForgetsTheValues() {
+        SignalLevelFilter filter = new SignalLevelFilter(5, 10, 3);
+        filter.add(-50);
+        filter.reset();
+        assertEquals(0, filter.getLevel());
+
+        assertTrue(filter.add(-90));
+        assertEquals(-90, filter.getSmoothedRssi());
+        assertEquals(0, filter.getLevel());
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Unit tests of SysFileReader : reads of sysfs like files in a temporary folder and the parse helpers.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SysFileReaderTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final byte[] mBuffer = new byte[64];
+
+    @Test
+    public void singleValueIsRead() throws IOException {
+        assertEquals(1804800, reader("scaling_cur_freq", "1804800\n").readLong(mBuffer, -1));
+        assertEquals(-4500, reader("temp", "-4500\n").readLong(mBuffer, 0));
+        assertEquals(42, reader("padded", "  42 \n").readLong(mBuffer, -1));
+    }
+
+    @Test
+    public void emptyOrMissingFileGivesTheDefault() throws IOException {
+        assertEquals(-1, reader("empty", "").readLong(mBuffer, -1));
+        assertEquals(-1, reader("blank", " \n").readLong(mBuffer, -1));
+
+        SysFileReader missing = new SysFileReader(new File(mFolder.getRoot(), "missing"));
+        assertEquals(-1, missing.read(mBuffer));
+        assertEquals(7, missing.readLong(mBuffer, 7));
+    }
+
+    @Test
+    public void fileIsReadAgainAfterItChanged() throws IOException {
+        SysFileReader reader = reader("scaling_cur_freq", "300000\n");
+        assertEquals(300000, reader.readLong(mBuffer, -1));
+
+        write(reader.getFile(), "1804800\n");
+        assertEquals(1804800, reader.readLong(mBuffer, -1));
+
+        // a shorter value doesn't keep the end of the previous one.
+        write(reader.getFile(), "9\n");
+        assertEquals(9, reader.readLong(mBuffer, -1));
+
+        reader.close();
+        assertEquals(9, reader.readLong(mBuffer, -1));
+        reader.close();
+    }
+
+    @Test
+    public void fileAppearingLaterIsRead() throws IOException {
+        File file = new File(mFolder.getRoot(), "online");
+        SysFileReader reader = new SysFileReader(file.getPath());
+        assertEquals(0, reader.readLong(mBuffer, 0));
+
+        write(file, "1\n");
+        assertEquals(1, reader.readLong(mBuffer, 0));
+        reader.close();
+    }
+
+    @Test
+    public void onlyTheBeginningOfABigFileIsRead() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append(i % 10);
+        }
+        SysFileReader reader = reader("big", text.toString());
+        assertEquals(mBuffer.length, reader.read(mBuffer));
+        assertEquals('0' + (mBuffer.length - 1) % 10, mBuffer[mBuffer.length - 1]);
+        reader.close();
+    }
+
+    @Test
+    public void tokensAreSkipped() {
+        byte[] line = bytes("cpu  12 \t34\n");
+        int end = line.length;
+
+        assertEquals(3, SysFileReader.skipToken(line, 0, end));
+        assertEquals(5, SysFileReader.skipSpaces(line, 3, end));
+        assertEquals(7, SysFileReader.skipToken(line, 5, end));
+        assertEquals(9, SysFileReader.skipSpaces(line, 7, end));
+        assertEquals(end, SysFileReader.skipSpaces(line, 11, end));
+        assertEquals(11, SysFileReader.indexOf(line, (byte) '\n', 0, end));
+        assertEquals(-1, SysFileReader.indexOf(line, (byte) '\n', 0, 11));
+    }
+
+    @Test
+    public void numbersAreParsed() {
+        byte[] text = bytes("-123x 45.678 5 0.5");
+
+        assertEquals(-123, SysFileReader.parseLong(text, 0, text.length));
+        assertEquals(12, SysFileReader.parseLong(text, 1, 3));
+        assertEquals(4567, SysFileReader.parseHundredths(text, 6, 12));
+        assertEquals(500, SysFileReader.parseHundredths(text, 13, 14));
+        assertEquals(50, SysFileReader.parseHundredths(text, 15, text.length));
+    }
+
+    @Test
+    public void prefixIsFound() {
+        byte[] line = bytes("VmRSS:   1024 kB");
+
+        assertTrue(SysFileReader.startsWith(line, 0, line.length, "VmRSS:"));
+        assertFalse(SysFileReader.startsWith(line, 0, line.length, "VmSwap:"));
+        assertFalse(SysFileReader.startsWith(line, 0, 3, "VmRSS:"));
+    }
+
+    private SysFileReader reader(String name, String text) throws IOException
+    {
+        File file = new File(mFolder.getRoot(), name);
+        write(file, text);
+        return new SysFileReader(file);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static void write(File file, String text) throws IOException
+    {
+        file.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Unit tests of TimeZoneCatalog : format of the labels and validity of a snapshot.
+ * The catalog itself is built with android.icu, not available in the unit tests.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeZoneCatalogTest {
+
+    @Test
+    public void labelGivesTheOffset() {
+        assertEquals("GMT+05:30 Asia/Kolkata", TimeZoneCatalog.formatLabel("Asia/Kolkata", 330 * 60000));
+        assertEquals("GMT+00:00 Europe/London", TimeZoneCatalog.formatLabel("Europe/London", 0));
+        assertEquals("GMT-03:00 America/Argentina/Buenos Aires",
+                     TimeZoneCatalog.formatLabel("America/Argentina/Buenos_Aires", -3 * 3600000));
+    }
+
+    @Test
+    public void snapshotIsValidUntilTheNextTransition() {
+        TimeZoneCatalog.Snapshot snapshot = new TimeZoneCatalog.Snapshot(new ArrayList<String>(),
+                new HashMap<String, String>(), new HashMap<String, String>(), 1000, 5000);
+
+        assertTrue(snapshot.isValid(1000));
+        assertTrue(snapshot.isValid(4999));
+        // summer time transition of one of the zones.
+        assertFalse(snapshot.isValid(5000));
+        // time of the device set back.
+        assertFalse(snapshot.isValid(999));
+    }
+}
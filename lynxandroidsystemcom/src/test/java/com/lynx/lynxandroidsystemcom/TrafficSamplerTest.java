@@ -0,0 +1,162 @@
+/**
+ * Unit tests of TrafficSampler : first sample, sliding window, counters reset and order of the table.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrafficSamplerTest {
+
+    /** Counters set by the test, indexed like the uids given to the sampler */
+    private static class FakeCounters implements TrafficSampler.CounterSource {
+        final long[] rx = new long[TrafficSampler.MAX_APPLICATIONS];
+        final long[] tx = new long[TrafficSampler.MAX_APPLICATIONS];
+
+        @Override
+        public void readCounters(int[] uids, int count, long[] rxBytes, long[] txBytes) {
+            System.arraycopy(rx, 0, rxBytes, 0, count);
+            System.arraycopy(tx, 0, txBytes, 0, count);
+        }
+    }
+
+    private static TrafficSampler newSampler(int windowSize, String... packageNames) {
+        int[] uids = new int[packageNames.length];
+        for (int i = 0; i < uids.length; i++) {
+            uids[i] = 10000 + i;
+        }
+        TrafficSampler sampler = new TrafficSampler(windowSize);
+        sampler.setApplications(uids, packageNames, uids.length);
+        return sampler;
+    }
+
+    @Test
+    public void firstSampleHasNoRate() {
+        TrafficSampler sampler = newSampler(5, "a");
+        FakeCounters counters = new FakeCounters();
+        counters.rx[0] = 5000000;
+        counters.tx[0] = 1000000;
+
+        sampler.sample(counters, 1000);
+        assertEquals(0, sampler.getRxRate("a"));
+        assertEquals(0, sampler.getTxRate("a"));
+        assertEquals("", sampler.getPackedTopTable(0));
+        assertEquals(-1, sampler.getRxRate("unknown"));
+    }
+
+    @Test
+    public void ratesAreComputedOverTheWindow() {
+        TrafficSampler sampler = newSampler(3, "a");
+        FakeCounters counters = new FakeCounters();
+
+        sampler.sample(counters, 0);
+        counters.rx[0] = 1000;
+        counters.tx[0] = 500;
+        sampler.sample(counters, 1000);
+        assertEquals(1000, sampler.getRxRate("a"));
+        assertEquals(500, sampler.getTxRate("a"));
+
+        counters.rx[0] = 4000;
+        sampler.sample(counters, 2000);
+        assertEquals(2000, sampler.getRxRate("a"));
+
+        // the first sample left the window : from 1000 at 1s to 10000 at 3s.
+        counters.rx[0] = 10000;
+        sampler.sample(counters, 3000);
+        assertEquals(4500, sampler.getRxRate("a"));
+        assertEquals(0, sampler.getTxRate("a"));
+    }
+
+    @Test
+    public void counterResetRestartsTheWindow() {
+        TrafficSampler sampler = newSampler(5, "a");
+        FakeCounters counters = new FakeCounters();
+
+        counters.rx[0] = 100000;
+        counters.tx[0] = 100000;
+        sampler.sample(counters, 0);
+        counters.rx[0] = 200000;
+        counters.tx[0] = 200000;
+        sampler.sample(counters, 1000);
+        assertEquals(100000, sampler.getRxRate("a"));
+
+        // statistics cleared : no negative rate.
+        counters.rx[0] = 1000;
+        counters.tx[0] = 0;
+        sampler.sample(counters, 2000);
+        assertEquals(0, sampler.getRxRate("a"));
+        assertEquals(0, sampler.getTxRate("a"));
+
+        // the rate is computed from the sample after the reset only.
+        counters.rx[0] = 3000;
+        counters.tx[0] = 1000;
+        sampler.sample(counters, 3000);
+        assertEquals(2000, sampler.getRxRate("a"));
+        assertEquals(1000, sampler.getTxRate("a"));
+    }
+
+    @Test
+    public void unknownCounterClearsTheRate() {
+        TrafficSampler sampler = newSampler(5, "a");
+        FakeCounters counters = new FakeCounters();
+
+        sampler.sample(counters, 0);
+        counters.rx[0] = 1000;
+        sampler.sample(counters, 1000);
+        assertEquals(1000, sampler.getRxRate("a"));
+
+        counters.rx[0] = TrafficSampler.UNKNOWN;
+        sampler.sample(counters, 2000);
+        assertEquals(0, sampler.getRxRate("a"));
+
+        // first sample again.
+        counters.rx[0] = 50000;
+        sampler.sample(counters, 3000);
+        assertEquals(0, sampler.getRxRate("a"));
+    }
+
+    @Test
+    public void tableIsSortedByTraffic() {
+        TrafficSampler sampler = newSampler(5, "a", "b", "c");
+        FakeCounters counters = new FakeCounters();
+
+        sampler.sample(counters, 0);
+        counters.rx[0] = 1000;
+        counters.rx[1] = 3000;
+        counters.tx[1] = 1000;
+        sampler.sample(counters, 1000);
+
+        assertEquals("b$10001$3000$1000|a$10000$1000$0", sampler.getPackedTopTable(0));
+        assertEquals("b$10001$3000$1000", sampler.getPackedTopTable(1));
+        assertEquals(1, sampler.getTopSlot());
+    }
+
+    @Test
+    public void followedApplicationsKeepTheirWindow() {
+        TrafficSampler sampler = newSampler(5, "a", "b");
+        FakeCounters counters = new FakeCounters();
+
+        sampler.sample(counters, 0);
+        counters.rx[1] = 2000;
+        sampler.sample(counters, 1000);
+        assertEquals(2000, sampler.getRxRate("b"));
+
+        // "b" moves to the first slot, "d" is new.
+        sampler.setApplications(new int[] {10001, 10003}, new String[] {"b", "d"}, 2);
+        assertEquals(2, sampler.getApplicationCount());
+        assertEquals(2000, sampler.getRxRate("b"));
+        assertEquals(0, sampler.getRxRate("d"));
+        assertEquals(-1, sampler.getRxRate("a"));
+
+        counters.rx[0] = 6000;
+        counters.rx[1] = 7000;
+        sampler.sample(counters, 2000);
+        assertEquals(3000, sampler.getRxRate("b"));
+        assertEquals(0, sampler.getRxRate("d"));
+    }
+}
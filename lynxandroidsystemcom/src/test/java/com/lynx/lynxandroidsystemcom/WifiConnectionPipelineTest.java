@@ -0,0 +1,46 @@
+/**
+ * Unit tests of WifiConnectionPipeline : a network missing from results that are not fresh is scanned
+ * before the attempt ends with RESULT_NOT_FOUND.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WifiConnectionPipelineTest {
+
+    @Test
+    public void noResultsNeedAScan() {
+        assertTrue(WifiConnectionPipeline.needsScan(WifiScanSnapshot.EMPTY, 5000));
+    }
+
+    @Test
+    public void resultsReadAtStartNeedAScan() {
+        // the results known by the system when the scan manager starts : no scan time.
+        long scanTime = WifiScanManager.getScanTime(WifiScanSnapshot.EMPTY, false, 5000);
+        assertTrue(WifiConnectionPipeline.needsScan(new WifiScanSnapshot(null, scanTime, false), 5000));
+    }
+
+    @Test
+    public void staleResultsNeedAScan() {
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(null, 5000, true);
+        assertTrue(WifiConnectionPipeline.needsScan(snapshot, 5000 + WifiConnectionPipeline.SCAN_MAX_AGE_MS + 1));
+
+        // a refused scan doesn't make the old results fresh.
+        long scanTime = WifiScanManager.getScanTime(snapshot, false, 60000);
+        assertTrue(WifiConnectionPipeline.needsScan(new WifiScanSnapshot(null, scanTime, false), 60000));
+    }
+
+    @Test
+    public void freshResultsDontNeedAScan() {
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(null, 5000, true);
+        assertFalse(WifiConnectionPipeline.needsScan(snapshot, 5000));
+        assertFalse(WifiConnectionPipeline.needsScan(snapshot, 5000 + WifiConnectionPipeline.SCAN_MAX_AGE_MS));
+    }
+}
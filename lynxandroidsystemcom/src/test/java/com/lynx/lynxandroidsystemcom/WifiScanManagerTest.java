@@ -0,0 +1,51 @@
+/**
+ * Unit tests of the freshness of the wifi scan results : only a new scan gives them a time.
+ *
+ * @author      Cédric Morel Francoz
+ * @since       1.1
+ */
+
+package com.lynx.lynxandroidsystemcom;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WifiScanManagerTest {
+
+    @Test
+    public void resultsReadAtStartAreNotFresh() {
+        long scanTime = WifiScanManager.getScanTime(WifiScanSnapshot.EMPTY, false, 5000);
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(null, scanTime, false);
+
+        assertEquals(0, scanTime);
+        assertFalse(snapshot.isFresh(5000, 30 * 1000));
+        assertFalse(snapshot.isFresh(5000, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void newScanGivesTheCurrentTime() {
+        long scanTime = WifiScanManager.getScanTime(WifiScanSnapshot.EMPTY, true, 5000);
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(null, scanTime, true);
+
+        assertEquals(5000, scanTime);
+        assertTrue(snapshot.isFresh(5000, 1000));
+        assertTrue(snapshot.isFresh(6000, 1000));
+        assertFalse(snapshot.isFresh(6001, 1000));
+    }
+
+    @Test
+    public void oldResultsKeepTheTimeOfTheLastScan() {
+        WifiScanSnapshot scanned = new WifiScanSnapshot(null, 5000, true);
+
+        // scan refused or failed, or results read again while stopped.
+        long scanTime = WifiScanManager.getScanTime(scanned, false, 65000);
+        WifiScanSnapshot snapshot = new WifiScanSnapshot(null, scanTime, false);
+
+        assertEquals(5000, scanTime);
+        assertFalse(snapshot.isFresh(65000, 30 * 1000));
+        assertTrue(snapshot.isFresh(65000, 60 * 1000));
+    }
+}